@@ -0,0 +1,273 @@
+/**
+ * BenchmarkFixtures builds the inputs for the JMH benchmarks and wraps each measured call in a
+ * PricingWorkload. JMH only generates code for benchmarks in a named package, and a named
+ * package cannot refer to the default package the analyzer lives in, so the benchmarks look
+ * these factories up by name (see benchmarks.Workloads) and call the workloads through the
+ * interface. Living in the default package, this class can reach the package-private parse
+ * methods of ConsumptionAndSavingsPlanPricing.
+ *
+ * Rows are generated from the API response fixtures in src/jmh/resources/fixtures: their items
+ * are cycled, with prices (and, for tiered pages, tier minimums) varied per row, and split into
+ * pages of PriceCatalog.API_PAGE_SIZE items the way the API pages them. Generated rows are held
+ * in a ColumnarPriceStore, so a million of them share one copy of each string. JSON pages are
+ * only kept for the first MAX_DISTINCT_PAGES pages and reused after that.
+ */
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import benchmarks.PricingWorkload;
+
+public class BenchmarkFixtures {
+    // The product name a lookup of the fixture's VM meter yields
+    static final String VM_PRODUCT_NAME = "Virtual Machines DSv3 Series";
+
+    private static final int MAX_DISTINCT_PAGES = 64;
+
+    /**
+     * Collects rows page by page and builds their consumption prices, as fetchPrices does for
+     * rows answered from the catalog
+     * @param shape "vm" for Virtual Machines pages, "tiered" for tiered storage pages
+     */
+    public static PricingWorkload consumptionPrices(String shape, int rows) {
+        List<PriceItem> items = items(shape, rows);
+        ConsumptionAndSavingsPlanPricing pricing = new ConsumptionAndSavingsPlanPricing();
+        return () -> {
+            int count = 0;
+            for (int start = 0; start < items.size(); start += PriceCatalog.API_PAGE_SIZE) {
+                ConsumptionAndSavingsPlanPricing.PricePage page = pricing.new PricePage(VM_PRODUCT_NAME);
+                for (int i = start; i < Math.min(start + PriceCatalog.API_PAGE_SIZE, items.size()); i++) {
+                    page.onItem(items.get(i));
+                }
+                count += pricing.parseConsumptionPrices(page).size();
+            }
+            return count;
+        };
+    }
+
+    /**
+     * Parses JSON response pages into consumption prices, as the pagination workers do
+     */
+    public static PricingWorkload consumptionPages(String shape, int rows) {
+        int pageCount = pageCount(rows);
+        List<String> responses = new ArrayList<>();
+        for (int p = 0; p < Math.min(pageCount, MAX_DISTINCT_PAGES); p++) {
+            responses.add(page(shape, p));
+        }
+        ConsumptionAndSavingsPlanPricing pricing = new ConsumptionAndSavingsPlanPricing();
+        return () -> {
+            int count = 0;
+            for (int p = 0; p < pageCount; p++) {
+                count += pricing.parsePage(responses.get(p % responses.size()), VM_PRODUCT_NAME).consumptionPrices.size();
+            }
+            return count;
+        };
+    }
+
+    public static PricingWorkload skuKeys(String shape, int rows) {
+        List<PriceItem> items = items(shape, rows);
+        return () -> {
+            int hash = 0;
+            for (PriceItem item : items) {
+                hash += SkuClassifier.forProduct(VM_PRODUCT_NAME).classify(item).hashCode();
+            }
+            return hash;
+        };
+    }
+
+    /**
+     * Builds PriceInfos from one page's worth of tiers at a time, in descending order and with
+     * every tenth tier in another unit, so both the unit rewrite and the sort do work.
+     * Each call copies the tiers first because parsePriceInfo sorts its list in place.
+     */
+    public static PricingWorkload priceInfo(int rows) {
+        List<List<TierInfo>> groups = new ArrayList<>();
+        for (int start = 0; start < rows; start += PriceCatalog.API_PAGE_SIZE) {
+            List<TierInfo> tiers = new ArrayList<>();
+            for (int i = Math.min(start + PriceCatalog.API_PAGE_SIZE, rows) - 1; i >= start; i--) {
+                tiers.add(new TierInfo((i - start) * 5120.0, 0.0208 - (i - start) * 0.0001, i % 10 == 9 ? "1 GB" : "1 GB/Month"));
+            }
+            groups.add(tiers);
+        }
+        ConsumptionAndSavingsPlanPricing pricing = new ConsumptionAndSavingsPlanPricing();
+        return () -> {
+            int count = 0;
+            for (List<TierInfo> tiers : groups) {
+                PriceInfo info = pricing.parsePriceInfo(new ArrayList<>(tiers));
+                count += info.hasTiers() ? info.getTiers().size() : 1;
+            }
+            return count;
+        };
+    }
+
+    /**
+     * Rates as many (meter, quantity) pairs as rows against the tier ranges of generated tiered
+     * pages, with quantities spread from zero to past the last breakpoint
+     */
+    public static PricingWorkload tieredCosts(int rows) {
+        ColumnarPriceStore.Builder builder = new ColumnarPriceStore.Builder();
+        for (int p = 0; p < Math.min(pageCount(rows), MAX_DISTINCT_PAGES); p++) {
+            PricePageReader.read(page("tiered", p), builder::add);
+        }
+        TieredCostEngine engine = TieredCostEngine.fromStore(builder.build());
+        int[] meters = new int[rows];
+        double[] quantities = new double[rows];
+        double[] costs = new double[rows];
+        Random random = new Random(rows);
+        for (int i = 0; i < rows; i++) {
+            meters[i] = random.nextInt(engine.getMeterCount());
+            quantities[i] = random.nextDouble() * PriceCatalog.API_PAGE_SIZE * 5120.0 * 1.1;
+        }
+        return () -> {
+            engine.costs(meters, quantities, costs);
+            return costs;
+        };
+    }
+
+    public static PricingWorkload bestOptions(int rows) {
+        PricingResult result = pricingResult(rows);
+        AzurePricingCalculator.PricingCalculator calculator = newCalculator();
+        return () -> {
+            calculator.calculateBestOptions(result);
+            return result.getBestOption();
+        };
+    }
+
+    public static PricingWorkload pricingResultString(int rows) {
+        PricingResult result = pricingResult(rows);
+        newCalculator().calculateBestOptions(result);
+        return result::toString;
+    }
+
+    private static AzurePricingCalculator.PricingCalculator newCalculator() {
+        return new AzurePricingCalculator("benchmark", "", RegionSelectionPolicy.keepAll()).new PricingCalculator();
+    }
+
+    /**
+     * A result with half its rows consumption prices (every tenth one tiered), a quarter
+     * reservations and a quarter savings plans, split evenly between 1 and 3 year terms
+     */
+    private static PricingResult pricingResult(int rows) {
+        List<ConsumptionPriceResult> consumptionPrices = new ArrayList<>();
+        List<ReservationPriceResult> reservationPrices = new ArrayList<>();
+        List<SavingsPlanResult> savingsPlans = new ArrayList<>();
+        for (int i = 0; i < rows; i++) {
+            double price = 0.096 * (1 + (i % 89) / 1000.0);
+            if (i % 2 == 0) {
+                PriceInfo priceInfo;
+                if (i % 20 == 0) {
+                    List<TierInfo> tiers = new ArrayList<>();
+                    tiers.add(new TierInfo(0, price, "1 GB/Month"));
+                    tiers.add(new TierInfo(51200, price * 0.96, "1 GB/Month"));
+                    tiers.add(new TierInfo(512000, price * 0.92, "1 GB/Month"));
+                    priceInfo = new PriceInfo(price, "1 GB/Month", price, tiers);
+                } else {
+                    priceInfo = new PriceInfo(price, "1 Hour", price, null);
+                }
+                consumptionPrices.add(new ConsumptionPriceResult("D2s v3 " + i, priceInfo));
+            } else if (i % 4 == 1) {
+                String term = i % 8 == 1 ? "1 Year" : "3 Years";
+                reservationPrices.add(new ReservationPriceResult(term, price * 0.6, price * 0.6 * 8760));
+            } else {
+                savingsPlans.add(new SavingsPlanResult(i % 8 == 3 ? 1 : 3, price * 0.7));
+            }
+        }
+        PricingResult result = new PricingResult();
+        result.setService(Constants.VIRTUAL_MACHINES);
+        result.setRegion("US East");
+        result.setInstanceType("Standard_D2s_v3");
+        result.setCurrency("USD");
+        result.setConsumptionPrices(consumptionPrices);
+        result.setReservationPrices(reservationPrices);
+        result.setSavingsPlans(savingsPlans);
+        return result;
+    }
+
+    /**
+     * Generates the rows page by page into a columnar store and reads them back out.
+     * The items read back share the store's dictionary strings, so they stay small.
+     */
+    private static List<PriceItem> items(String shape, int rows) {
+        ColumnarPriceStore.Builder builder = new ColumnarPriceStore.Builder();
+        for (int p = 0; p < pageCount(rows); p++) {
+            PricePageReader.read(page(shape, p), builder::add);
+        }
+        ColumnarPriceStore store = builder.build();
+        List<PriceItem> items = new ArrayList<>(store.size());
+        for (int row = 0; row < store.size(); row++) {
+            items.add(store.read(row, new PriceItem()));
+        }
+        return Collections.unmodifiableList(items);
+    }
+
+    // Rows are rounded up to whole pages
+    private static int pageCount(int rows) {
+        return (rows + PriceCatalog.API_PAGE_SIZE - 1) / PriceCatalog.API_PAGE_SIZE;
+    }
+
+    /**
+     * Builds the JSON response for one page of generated rows
+     */
+    private static String page(String shape, int pageIndex) {
+        JSONArray templates = template(shape).getJSONArray("Items");
+        JSONArray items = new JSONArray();
+        for (int i = 0; i < PriceCatalog.API_PAGE_SIZE; i++) {
+            int row = pageIndex * PriceCatalog.API_PAGE_SIZE + i;
+            JSONObject template = templates.getJSONObject(row % templates.length());
+            JSONObject item = new JSONObject(template, JSONObject.getNames(template));
+            double price = template.getDouble("retailPrice") * (1 + (row % 89) / 1000.0);
+            item.put("retailPrice", price);
+            item.put("unitPrice", price);
+            if ("tiered".equals(shape)) {
+                item.put("tierMinimumUnits", (PriceCatalog.API_PAGE_SIZE - 1 - i) * 5120.0);
+            }
+            items.put(item);
+        }
+        JSONObject page = new JSONObject();
+        page.put("BillingCurrency", "USD");
+        page.put("CustomerEntityId", "Default");
+        page.put("CustomerEntityType", "Retail");
+        page.put("Items", items);
+        page.put("NextPageLink", JSONObject.NULL);
+        page.put("Count", items.length());
+        return page.toString();
+    }
+
+    private static JSONObject vmTemplate;
+    private static JSONObject tieredTemplate;
+
+    private static synchronized JSONObject template(String shape) {
+        switch (shape) {
+            case "vm":
+                if (vmTemplate == null) {
+                    vmTemplate = loadFixture("vm-consumption.json");
+                }
+                return vmTemplate;
+            case "tiered":
+                if (tieredTemplate == null) {
+                    tieredTemplate = loadFixture("storage-tiered.json");
+                }
+                return tieredTemplate;
+            default:
+                throw new IllegalArgumentException("Unknown fixture shape: " + shape);
+        }
+    }
+
+    private static JSONObject loadFixture(String name) {
+        try (InputStream in = BenchmarkFixtures.class.getResourceAsStream("/fixtures/" + name)) {
+            if (in == null) {
+                throw new IllegalStateException("Missing benchmark fixture " + name);
+            }
+            return new JSONObject(new String(in.readAllBytes(), StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed to read benchmark fixture " + name, e);
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Best option selection and result formatting for a PricingResult of the given number of
+ * consumption prices, reservations and savings plans.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx3g")
+public class BestOptionBenchmark {
+    @Param({"100", "1000", "10000", "100000", "1000000"})
+    public int rows;
+
+    private PricingWorkload bestOptions;
+    private PricingWorkload resultString;
+
+    @Setup
+    public void setUp() {
+        bestOptions = Workloads.create("bestOptions", rows);
+        resultString = Workloads.create("pricingResultString", rows);
+    }
+
+    @Benchmark
+    public Object calculateBestOptions() {
+        return bestOptions.run();
+    }
+
+    @Benchmark
+    public Object pricingResultToString() {
+        return resultString.run();
+    }
+}
@@ -0,0 +1,54 @@
+package benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Consumption price parsing for Virtual Machines pages (grouped by VM pricing key) and tiered
+ * pages (one tiered price per page), from collected rows and from JSON responses.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx3g")
+public class ConsumptionPricingBenchmark {
+    @Param({"vm", "tiered"})
+    public String shape;
+
+    @Param({"100", "1000", "10000", "100000", "1000000"})
+    public int rows;
+
+    private PricingWorkload collectedRows;
+    private PricingWorkload responsePages;
+
+    @Setup
+    public void setUp() {
+        collectedRows = Workloads.create("consumptionPrices", shape, rows);
+        responsePages = Workloads.create("consumptionPages", shape, rows);
+    }
+
+    // Rows already parsed, e.g. read from the catalog: PricePage collection and parseConsumptionPrices
+    @Benchmark
+    public Object parseConsumptionPrices() {
+        return collectedRows.run();
+    }
+
+    // The same from JSON: streaming parse, collection and parseConsumptionPrices, per page
+    @Benchmark
+    public Object parsePages() {
+        return responsePages.run();
+    }
+}
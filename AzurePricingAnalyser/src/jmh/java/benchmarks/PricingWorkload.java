@@ -0,0 +1,9 @@
+package benchmarks;
+
+/**
+ * One measured call, prepared with its inputs by BenchmarkFixtures.
+ * The result is returned so JMH can consume it and the call cannot be optimized away.
+ */
+public interface PricingWorkload {
+    Object run();
+}
@@ -0,0 +1,45 @@
+package benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * SkuClassifier over Virtual Machines rows (OS and priority keys) and tiered storage rows
+ * (SKU name keys), through the classifier cached for the meter's product.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx3g")
+public class SkuClassifierBenchmark {
+    @Param({"vm", "tiered"})
+    public String shape;
+
+    @Param({"100", "1000", "10000", "100000", "1000000"})
+    public int rows;
+
+    private PricingWorkload keys;
+
+    @Setup
+    public void setUp() {
+        keys = Workloads.create("skuKeys", shape, rows);
+    }
+
+    @Benchmark
+    public Object classify() {
+        return keys.run();
+    }
+}
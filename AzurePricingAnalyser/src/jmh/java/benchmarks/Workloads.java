@@ -0,0 +1,33 @@
+package benchmarks;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+
+/**
+ * Creates workloads through the factories of the default-package BenchmarkFixtures class,
+ * which code in this package cannot name directly. The lookup happens once, in setup;
+ * the measured calls go through the PricingWorkload interface.
+ */
+final class Workloads {
+    private Workloads() {
+    }
+
+    /**
+     * @param factory Name of a public static BenchmarkFixtures method
+     * @param args Its arguments: Strings and ints
+     */
+    static PricingWorkload create(String factory, Object... args) {
+        Class<?>[] types = new Class<?>[args.length];
+        for (int i = 0; i < args.length; i++) {
+            types[i] = args[i] instanceof Integer ? int.class : args[i].getClass();
+        }
+        try {
+            Method method = Class.forName("BenchmarkFixtures").getMethod(factory, types);
+            return (PricingWorkload) method.invoke(null, args);
+        } catch (InvocationTargetException e) {
+            throw new IllegalStateException("Failed to build workload " + factory, e.getCause());
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("No workload factory " + factory, e);
+        }
+    }
+}
@@ -0,0 +1,193 @@
+/**
+ * AdaptiveRateLimiter paces every request ApiClient sends, across all threads.
+ * It is a token bucket whose refill rate is tuned AIMD-style: each successful request raises
+ * the rate a little (additive increase), each throttled response cuts it by a factor
+ * (multiplicative decrease, at most once per second so a burst of 429s counts as one signal).
+ * A Retry-After from the server pauses the whole bucket until it has passed. The rate settles
+ * just under the server's limit instead of alternating between bursts and failures.
+ *
+ * Throttled or failed requests are retried by ApiClient with jittered exponential backoff
+ * (see backoffMillis).
+ *
+ * Configured from system properties by fromSystemProperties():
+ *   azure.pricing.rate.initial        starting rate in requests per second (default 20)
+ *   azure.pricing.rate.min            lowest rate after decreases (default 0.5)
+ *   azure.pricing.rate.max            highest rate after increases (default 200)
+ *   azure.pricing.rate.burst          tokens that can accumulate while idle (default 5)
+ *   azure.pricing.retry.max           retries per request (default 6)
+ *   azure.pricing.retry.baseMs        first backoff delay (default 250 ms)
+ *   azure.pricing.retry.maxMs         longest backoff delay (default 30 s)
+ */
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+public class AdaptiveRateLimiter {
+    private static final double DECREASE_FACTOR = 0.5;
+    private static final long DECREASE_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(1);
+    // Seconds of history behind getAchievedRequestsPerSecond
+    private static final int RATE_WINDOW_SECONDS = 10;
+
+    private final double minRate;
+    private final double maxRate;
+    private final double burst;
+    private final int maxRetries;
+    private final long backoffBaseMillis;
+    private final long backoffMaxMillis;
+
+    // Bucket state, guarded by "this"
+    private double rate;
+    private double tokens;
+    private long refilledAtNanos;
+    private long pausedUntilNanos;
+    private long lastDecreaseNanos;
+    // Requests granted per second of the limiter's life, for the last RATE_WINDOW_SECONDS seconds
+    private final long[] recentRequests = new long[RATE_WINDOW_SECONDS];
+    private long recentSecond;
+
+    private final long createdAtNanos = System.nanoTime();
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder throttled = new LongAdder();
+    private final LongAdder retries = new LongAdder();
+    private final LongAdder waitNanos = new LongAdder();
+
+    public AdaptiveRateLimiter(double initialRate, double minRate, double maxRate, double burst,
+                               int maxRetries, long backoffBaseMillis, long backoffMaxMillis) {
+        this.rate = initialRate;
+        this.minRate = minRate;
+        this.maxRate = maxRate;
+        this.burst = burst;
+        this.tokens = burst;
+        this.maxRetries = maxRetries;
+        this.backoffBaseMillis = backoffBaseMillis;
+        this.backoffMaxMillis = backoffMaxMillis;
+        this.refilledAtNanos = System.nanoTime();
+        this.lastDecreaseNanos = refilledAtNanos - DECREASE_INTERVAL_NANOS;
+    }
+
+    public static AdaptiveRateLimiter fromSystemProperties() {
+        return new AdaptiveRateLimiter(
+            Double.parseDouble(System.getProperty("azure.pricing.rate.initial", "20")),
+            Double.parseDouble(System.getProperty("azure.pricing.rate.min", "0.5")),
+            Double.parseDouble(System.getProperty("azure.pricing.rate.max", "200")),
+            Double.parseDouble(System.getProperty("azure.pricing.rate.burst", "5")),
+            Integer.getInteger("azure.pricing.retry.max", 6),
+            Long.getLong("azure.pricing.retry.baseMs", 250L),
+            Long.getLong("azure.pricing.retry.maxMs", 30000L));
+    }
+
+    /**
+     * Blocks until the caller may send a request
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public void acquire() throws InterruptedException {
+        long start = System.nanoTime();
+        while (true) {
+            long sleepNanos;
+            synchronized (this) {
+                long now = System.nanoTime();
+                if (now < pausedUntilNanos) {
+                    sleepNanos = pausedUntilNanos - now;
+                } else {
+                    refill(now);
+                    if (tokens >= 1) {
+                        tokens -= 1;
+                        long second = advanceWindow(now);
+                        recentRequests[(int) (second % RATE_WINDOW_SECONDS)]++;
+                        break;
+                    }
+                    sleepNanos = (long) ((1 - tokens) / rate * 1e9);
+                }
+            }
+            TimeUnit.NANOSECONDS.sleep(Math.max(sleepNanos, 100000));
+        }
+        requests.increment();
+        waitNanos.add(System.nanoTime() - start);
+    }
+
+    private void refill(long now) {
+        // Time spent paused does not earn tokens
+        long from = Math.max(refilledAtNanos, pausedUntilNanos);
+        if (now > from) {
+            tokens = Math.min(burst, tokens + (now - from) / 1e9 * rate);
+        }
+        refilledAtNanos = now;
+    }
+
+    /**
+     * Records a successful request: additive increase of roughly one request per second, per second
+     */
+    public synchronized void onSuccess() {
+        rate = Math.min(maxRate, rate + 1.0 / rate);
+    }
+
+    /**
+     * Records a throttled response: multiplicative decrease, and a pause if the server asked for one
+     * @param retryAfterMillis The server's Retry-After delay, or -1 if none was given
+     */
+    public synchronized void onThrottled(long retryAfterMillis) {
+        throttled.increment();
+        long now = System.nanoTime();
+        if (now - lastDecreaseNanos >= DECREASE_INTERVAL_NANOS) {
+            rate = Math.max(minRate, rate * DECREASE_FACTOR);
+            lastDecreaseNanos = now;
+        }
+        if (retryAfterMillis > 0) {
+            refill(now);
+            pausedUntilNanos = Math.max(pausedUntilNanos, now + TimeUnit.MILLISECONDS.toNanos(retryAfterMillis));
+        }
+        tokens = Math.min(tokens, 0);
+    }
+
+    /**
+     * Delay before a retry: exponential in the attempt number, randomized between half and all of
+     * it so retrying callers spread out, and never shorter than the server's Retry-After
+     * @param attempt The retry about to be made, starting at 1
+     * @param retryAfterMillis The server's Retry-After delay, or -1 if none was given
+     */
+    public long backoffMillis(int attempt, long retryAfterMillis) {
+        retries.increment();
+        long ceiling = Math.min(backoffMaxMillis, backoffBaseMillis << Math.min(attempt - 1, 20));
+        long jittered = ThreadLocalRandom.current().nextLong(ceiling / 2, ceiling + 1);
+        return Math.max(jittered, retryAfterMillis);
+    }
+
+    public int getMaxRetries() {
+        return maxRetries;
+    }
+
+    public synchronized double getCurrentRate() {
+        return rate;
+    }
+
+    /**
+     * Requests sent per second over the last 10 seconds (or since creation, if that is more
+     * recent), so it shows the current pace next to getCurrentRate even in a long-running process
+     */
+    public synchronized double getAchievedRequestsPerSecond() {
+        long now = System.nanoTime();
+        long second = advanceWindow(now);
+        long count = 0;
+        for (long requestsInSecond : recentRequests) {
+            count += requestsInSecond;
+        }
+        // The window runs from the start of its oldest second to now
+        double seconds = (now - createdAtNanos) / 1e9 - Math.max(0, second - RATE_WINDOW_SECONDS + 1);
+        return seconds > 0 ? count / seconds : 0;
+    }
+
+    // Clears the seconds that fell out of the window since it was last moved; returns the current second
+    private long advanceWindow(long now) {
+        long second = (now - createdAtNanos) / 1_000_000_000L;
+        for (long s = recentSecond + 1; s <= second && s <= recentSecond + RATE_WINDOW_SECONDS; s++) {
+            recentRequests[(int) (s % RATE_WINDOW_SECONDS)] = 0;
+        }
+        recentSecond = Math.max(recentSecond, second);
+        return second;
+    }
+
+    public long getRequestCount() { return requests.sum(); }
+    public long getThrottledCount() { return throttled.sum(); }
+    public long getRetryCount() { return retries.sum(); }
+    public long getTotalWaitMillis() { return TimeUnit.NANOSECONDS.toMillis(waitNanos.sum()); }
+}
@@ -1,57 +1,237 @@
-import java.io.BufferedReader;
-import java.io.InputStreamReader;
-import java.net.HttpURLConnection;
-import java.net.URL;
-import java.util.concurrent.ConcurrentHashMap;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.StringReader;
+import java.nio.file.Paths;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
 
 public class ApiClient {
-    // Cache to store API responses, using ConcurrentHashMap for thread-safety
-    private static final ConcurrentHashMap<String, String> cache = new ConcurrentHashMap<>();
-    
-    // Thread pool for executing asynchronous API calls
-    private static final ExecutorService executor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+    /**
+     * Where responses come from.
+     * LIVE calls the Azure Retail Prices API, RECORD calls it and saves every response to the
+     * fixture store, REPLAY serves responses from the fixture store without touching the network.
+     */
+    public enum Mode { LIVE, RECORD, REPLAY }
+
+    // Cache to store API responses: bounded by bytes, LRU-evicted, expiring, loaded outside its lock
+    private static final ResponseCache cache = ResponseCache.fromSystemProperties();
+
+    // Executor for asynchronous API calls: a virtual thread per call, so waiting on the network is cheap.
+    // The number of requests actually on the wire is capped by the transport's bulkhead semaphore.
+    private static final ExecutorService executor = BlockingExecutors.create("api-client");
+
+    // Shared request budget for every caller; adapts to throttling and paces retries
+    private static final AdaptiveRateLimiter rateLimiter = AdaptiveRateLimiter.fromSystemProperties();
+
+    // HTTP transport for live requests: pooled keep-alive connections, gzip, timeouts and a bulkhead
+    private static volatile HttpTransport transport = PooledHttpTransport.fromSystemProperties();
+
+    // Response source, selected at startup from system properties or by configure()
+    private static volatile Mode mode = Mode.LIVE;
+    private static volatile FixtureStore fixtureStore;
+    private static volatile long replayLatencyMillis;
+
+    static {
+        try {
+            cache.setSecondLevel(DiskResponseCache.fromSystemProperties(cache.getTtlMillis()));
+        } catch (IOException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+
+        String fixtures = System.getProperty("azure.pricing.fixtures");
+        configure(Mode.valueOf(System.getProperty("azure.pricing.mode", Mode.LIVE.name()).toUpperCase()),
+                  fixtures == null ? null : new FixtureStore(Paths.get(fixtures)),
+                  Long.getLong("azure.pricing.replayLatencyMs", 0L));
+    }
+
+    /**
+     * Selects where responses come from. Call before the first request; responses already
+     * cached are not re-fetched when the mode changes.
+     * @param newMode LIVE, RECORD or REPLAY
+     * @param store The fixture store, required for RECORD and REPLAY
+     * @param latencyMillis Delay added to every replayed response to simulate network latency
+     */
+    public static void configure(Mode newMode, FixtureStore store, long latencyMillis) {
+        if (newMode != Mode.LIVE && store == null) {
+            throw new IllegalArgumentException(newMode + " mode requires a fixture directory (azure.pricing.fixtures)");
+        }
+        fixtureStore = store;
+        replayLatencyMillis = latencyMillis;
+        mode = newMode;
+    }
+
+    public static Mode getMode() {
+        return mode;
+    }
+
+    // Replaces the transport used for live requests, e.g. with one pointed at a test stub
+    public static void setTransport(HttpTransport newTransport) {
+        transport = newTransport;
+    }
+
+    public static HttpTransport getTransport() {
+        return transport;
+    }
 
     // Public method to get API response, using cache if available
     public static String getApiResponse(String endpoint) throws Exception {
-        return cache.computeIfAbsent(endpoint, ApiClient::fetchApiResponse);
+        return getApiResponse(endpoint, null);
+    }
+
+    /**
+     * Gets an API response, using the cache if available, and counts the call if it had to go to
+     * the network (or the fixture store); cache hits and joins of another caller's load are free
+     * @param roundTrips Counter to increment on a cache miss, or null
+     */
+    public static String getApiResponse(String endpoint, LongAdder roundTrips) throws Exception {
+        Metrics.API_CALLS.increment();
+        if (roundTrips == null) {
+            return cache.get(endpoint, ApiClient::loadApiResponse);
+        }
+        return cache.get(endpoint, e -> {
+            roundTrips.increment();
+            return loadApiResponse(e);
+        });
+    }
+
+    /**
+     * Reads an API response straight into a parser, bypassing the cache, for bulk downloads
+     * Live responses are decoded from the socket as they arrive; recorded and replayed ones
+     * go through the fixture store as usual
+     * @param reader Consumes the response body
+     * @return What the reader returned
+     */
+    public static <T> T readApiResponse(String endpoint, HttpTransport.BodyReader<T> reader) throws IOException {
+        if (mode == Mode.LIVE) {
+            // The reader may have consumed part of a body that failed, so only error statuses are retried
+            return sendWithRetries(endpoint, () -> transport.get(endpoint, reader), false);
+        }
+        return reader.read(new StringReader(loadApiResponse(endpoint)));
+    }
+
+    // Private method to load API response from the configured source if not in cache
+    private static String loadApiResponse(String endpoint) {
+        Metrics.API_LOADS.increment();
+        try {
+            switch (mode) {
+                case REPLAY:
+                    if (replayLatencyMillis > 0) {
+                        TimeUnit.MILLISECONDS.sleep(replayLatencyMillis);
+                    }
+                    return fixtureStore.load(endpoint);
+                case RECORD:
+                    String response = fetchApiResponse(endpoint);
+                    fixtureStore.save(endpoint, response);
+                    return response;
+                default:
+                    return fetchApiResponse(endpoint);
+            }
+        } catch (RuntimeException e) {
+            throw e;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while loading API response", e);
+        } catch (Exception e) {
+            throw new RuntimeException("Error loading API response", e);
+        }
     }
 
     // Private method to fetch API response if not in cache
     private static String fetchApiResponse(String endpoint) {
         try {
-            // Create URL object and open connection
-            URL url = new URL(endpoint);
-            HttpURLConnection conn = (HttpURLConnection) url.openConnection();
-            conn.setRequestMethod("GET");
-            conn.setRequestProperty("Accept", "application/json");
-
-            // Check if the response code is successful (200)
-            if (conn.getResponseCode() != 200) {
-                throw new RuntimeException("Failed : HTTP error code : " + conn.getResponseCode());
-            }
+            return sendWithRetries(endpoint, () -> transport.get(endpoint), true);
+        } catch (Exception e) {
+            throw new RuntimeException("Error fetching API response", e);
+        }
+    }
+
+    @FunctionalInterface
+    private interface Request<T> {
+        T send() throws IOException;
+    }
 
-            // Read the response into a StringBuilder
-            StringBuilder sb = new StringBuilder();
-            try (BufferedReader br = new BufferedReader(new InputStreamReader(conn.getInputStream()))) {
-                String line;
-                while ((line = br.readLine()) != null) {
-                    sb.append(line);
+    /**
+     * Sends a request within the shared rate limit, retrying throttled responses and, if allowed,
+     * network failures with jittered exponential backoff
+     * Other error statuses are not retried: the request itself is wrong and would fail again
+     * @param retryIOExceptions Whether failures without an HTTP status may be retried
+     */
+    private static <T> T sendWithRetries(String endpoint, Request<T> request, boolean retryIOExceptions) throws IOException {
+        for (int attempt = 1; ; attempt++) {
+            long retryAfterMillis = -1;
+            try {
+                rateLimiter.acquire();
+                T result = request.send();
+                rateLimiter.onSuccess();
+                return result;
+            } catch (HttpStatusException e) {
+                if (!e.isThrottled() || attempt > rateLimiter.getMaxRetries()) {
+                    throw e;
+                }
+                retryAfterMillis = e.getRetryAfterMillis();
+                rateLimiter.onThrottled(retryAfterMillis);
+            } catch (IOException e) {
+                if (!retryIOExceptions || attempt > rateLimiter.getMaxRetries()) {
+                    throw e;
                 }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted waiting to send " + endpoint);
             }
 
-            // Return the response as a string
-            return sb.toString();
-        } catch (Exception e) {
-            throw new RuntimeException("Error fetching API response", e);
+            try {
+                TimeUnit.MILLISECONDS.sleep(rateLimiter.backoffMillis(attempt, retryAfterMillis));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted before retrying " + endpoint);
+            }
         }
     }
 
     // Public method to get API response asynchronously
-    public static Future<String> getApiResponseAsync(String endpoint) {
-        return executor.submit(() -> getApiResponse(endpoint));
+    public static CompletableFuture<String> getApiResponseAsync(String endpoint) {
+        return getApiResponseAsync(endpoint, executor);
+    }
+
+    // Public method to get API response asynchronously on the given executor
+    public static CompletableFuture<String> getApiResponseAsync(String endpoint, Executor executor) {
+        return getApiResponseAsync(endpoint, executor, null);
+    }
+
+    // Public method to get API response asynchronously, counting cache misses as round trips
+    public static CompletableFuture<String> getApiResponseAsync(String endpoint, Executor executor, LongAdder roundTrips) {
+        CompletableFuture<String> future = new CompletableFuture<>();
+        executor.execute(() -> {
+            try {
+                future.complete(getApiResponse(endpoint, roundTrips));
+            } catch (Throwable e) {
+                future.completeExceptionally(e);
+            }
+        });
+        return future;
+    }
+
+    // Executor used for asynchronous API calls
+    public static Executor getExecutor() {
+        return executor;
+    }
+
+    // Number of responses currently cached
+    public static int getCacheSize() {
+        return cache.size();
+    }
+
+    // The shared rate limiter, for throughput and throttling statistics
+    public static AdaptiveRateLimiter getRateLimiter() {
+        return rateLimiter;
+    }
+
+    // The response cache, for statistics and invalidation
+    public static ResponseCache getCache() {
+        return cache;
     }
 
     // Method to shutdown the executor service
@@ -0,0 +1,33 @@
+/**
+ * ApiFetchEvent is a Java Flight Recorder event for one HTTP request to the pricing API, as sent
+ * by PooledHttpTransport: retries are separate events, and responses served by a cache or the
+ * fixture store have none. The duration runs from sending the request to the end of the
+ * response body; the wait for a request slot is not included.
+ *
+ * Connection setup is not broken down here. Record the JDK's own events for that, e.g.
+ * jdk.SocketRead and jdk.TLSHandshake, which land on the same thread inside this event.
+ */
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+@Name("azure.pricing.ApiFetch")
+@Label("Pricing API Fetch")
+@Category("Azure Pricing")
+@StackTrace(false)
+public class ApiFetchEvent extends jdk.jfr.Event {
+    @Label("Endpoint")
+    String endpoint;
+
+    @Label("Status")
+    @Description("HTTP status code, or -1 if the request failed without one")
+    int status;
+
+    @Label("Bytes")
+    @Description("Response body bytes received, as sent on the wire (compressed)")
+    @DataAmount
+    long bytes;
+}
@@ -1,21 +1,41 @@
+import java.io.UnsupportedEncodingException;
 import java.net.URLEncoder;
-import java.util.HashMap;
-import java.util.HashSet;
 import java.util.List;
-import java.util.Map;
-import java.util.Scanner;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.logging.Logger;
 
-import org.json.JSONArray;
-import org.json.JSONObject;
+import org.json.JSONException;
 
 public class AzurePricingCalculator {
+    private static final Logger logger = Logger.getLogger(AzurePricingCalculator.class.getName());
+
 	private String productName;
     private ConsumptionAndSavingsPlanPricing consumptionAndSavingsPlanPricing;
     private ReservationPricing reservationPricing;
     private PricingResult pricingResult;
     private String meterId;
     private String userRegion;
+    private RegionSelectionPolicy regionPolicy;
+    private PriceCatalog catalog;
+    // The region the policy picked for a meter ID sold in several regions, so it is asked only once
+    private volatile String selectedRegion;
+
+    // Lookup queries this calculator sent that the caches could not answer
+    private final LongAdder lookupRoundTrips = new LongAdder();
+
+    // Runs every step of the pricing graph inline on the calling thread
+    private static final Executor SAME_THREAD = Runnable::run;
+
+    // Parsed first pages of lookup queries, shared by every calculator
+    private static final PageSummaryCache summaries = PageSummaryCache.fromSystemProperties(ApiClient.getCache().getTtlMillis());
+
     /**
      * Constructor for AzurePricingCalculator
      * Initializes the calculator with a meter ID and user region
@@ -23,199 +43,380 @@ public class AzurePricingCalculator {
      */
 
     public AzurePricingCalculator(String meterId, String userRegion) {
+        this(meterId, userRegion, RegionSelectionPolicy.interactive());
+    }
+
+    /**
+     * Constructor for AzurePricingCalculator with an explicit region selection policy
+     * Used by non-interactive callers that must not block on stdin
+     * @param regionPolicy Decides which region to price when the filter matches several
+     */
+
+    public AzurePricingCalculator(String meterId, String userRegion, RegionSelectionPolicy regionPolicy) {
+        this(meterId, userRegion, regionPolicy, null);
+    }
+
+    /**
+     * Constructor for AzurePricingCalculator backed by an in-memory price catalog
+     * Lookups and price fetches the catalog covers are answered locally; the rest go to the API
+     * @param catalog The ingested catalog, or null to always call the API
+     */
+
+    public AzurePricingCalculator(String meterId, String userRegion, RegionSelectionPolicy regionPolicy, PriceCatalog catalog) {
         this.meterId = meterId;
-        this.userRegion = userRegion;
+        this.userRegion = userRegion == null ? "" : userRegion;
+        this.regionPolicy = regionPolicy;
+        this.catalog = catalog;
         this.pricingResult = new PricingResult();
-        this.consumptionAndSavingsPlanPricing = new ConsumptionAndSavingsPlanPricing();
-        this.reservationPricing = new ReservationPricing();
+        this.consumptionAndSavingsPlanPricing = new ConsumptionAndSavingsPlanPricing(catalog);
+        this.reservationPricing = new ReservationPricing(catalog);
     }
     /**
      * Calculates pricing for Azure services
      * Fetches prices for consumption, reservation, and savings plans
      * Calculates the best pricing options
-     * @param b Boolean flag to determine if user input for region is required
+     * Runs the same steps as calculatePricingAsync, one after another on the calling thread
+     * @param b Boolean flag kept for compatibility; region choice is made by the RegionSelectionPolicy
      * @throws Exception if there's an error in calculation or API calls
      */
 
     public void calculatePricing(boolean b) throws Exception {
-        String filter = buildFilter();
-        if (b && filter == null) {
-            System.out.println("Multiple regions found. Please enter a region:");
-            Scanner scanner = new Scanner(System.in);
-            userRegion = scanner.nextLine();
-            filter = buildFilter();
+        try {
+            runPricingGraph(SAME_THREAD, null).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof Exception) {
+                throw (Exception) e.getCause();
+            }
+            throw e;
         }
-        
-        consumptionAndSavingsPlanPricing.fetchPrices(filter,productName);
-        List<ConsumptionPriceResult> consumptionPrices = consumptionAndSavingsPlanPricing.getConsumptionPrices();
-        List<ReservationPriceResult> reservationPrices = reservationPricing.fetchPrices(filter);
-        List<SavingsPlanResult> savingsPlans = consumptionAndSavingsPlanPricing.getSavingsPlans();
-
-        pricingResult.setConsumptionPrices(consumptionPrices);
-        pricingResult.setReservationPrices(reservationPrices);
-        pricingResult.setSavingsPlans(savingsPlans);
-        PricingCalculator calculator = new PricingCalculator();
-        calculator.calculateBestOptions(pricingResult);
+    }
+
+    /**
+     * Calculates pricing without blocking the caller, using the ApiClient executor
+     * @return A stage completed with the pricing result, or exceptionally if a lookup or fetch fails
+     */
+
+    public CompletionStage<PricingResult> calculatePricingAsync() {
+        return calculatePricingAsync(ApiClient.getExecutor());
+    }
+
+    /**
+     * Calculates pricing as a dependency graph of asynchronous steps
+     * The meterId lookup comes first; the filter probes depend on it; the consumption and
+     * reservation fetches depend only on the final filter and run concurrently. While the
+     * region probe is in flight, the first consumption and reservation pages for the likely
+     * filter are prefetched so the critical path does not pay for them again.
+     * @param executor Executor that runs the blocking fetch steps
+     * @return A stage completed with the pricing result, or exceptionally if a lookup or fetch fails
+     */
+
+    public CompletionStage<PricingResult> calculatePricingAsync(Executor executor) {
+        return runPricingGraph(executor, null);
+    }
+
+    /**
+     * Calculates pricing like calculatePricingAsync, streaming the pricing options to a subscriber
+     * as their pages arrive, so it can show a provisional best option long before the last page
+     * @return A publisher that starts the calculation when it is subscribed to
+     */
+
+    public PricingOptionPublisher publishPricingOptions() {
+        return publishPricingOptions(ApiClient.getExecutor());
+    }
+
+    public PricingOptionPublisher publishPricingOptions(Executor executor) {
+        return new PricingOptionPublisher(this, executor);
+    }
+
+    /**
+     * Runs the pricing graph; the best options are aggregated as the prices arrive
+     * @param onOption Also called with every pricing option as its page arrives, or null
+     */
+    CompletableFuture<PricingResult> runPricingGraph(Executor executor, Consumer<? super PricingOption> onOption) {
+        long start = System.nanoTime();
+        BestOptionAggregator aggregator = new BestOptionAggregator();
+        Consumer<PricingOption> listener = onOption == null ? aggregator::accept : option -> {
+            aggregator.accept(option);
+            onOption.accept(option);
+        };
+
+        String initialFilter = String.format(Constants.METERID_FILTER, meterId);
+        CompletableFuture<String> filter = fetchSummaryAsync(initialFilter, executor)
+                .thenCompose(unchecked(lookup -> resolveFilter(lookup, initialFilter, executor)));
 
+        CompletableFuture<ConsumptionAndSavingsPlanPricing> consumption = filter.thenApplyAsync(unchecked(f -> {
+            consumptionAndSavingsPlanPricing.fetchPrices(f, productName, listener);
+            return consumptionAndSavingsPlanPricing;
+        }), executor);
+        CompletableFuture<List<ReservationPriceResult>> reservations = filter.thenApplyAsync(
+                unchecked(f -> reservationPricing.fetchPrices(f, listener)), executor);
+
+        return consumption.thenCombine(reservations, (consumptionPricing, reservationPrices) -> {
+            pricingResult.setConsumptionPrices(consumptionPricing.getConsumptionPrices());
+            pricingResult.setReservationPrices(reservationPrices);
+            pricingResult.setSavingsPlans(consumptionPricing.getSavingsPlans());
+            pricingResult.setLookupRoundTrips(lookupRoundTrips.sum());
+            pricingResult.setPriceRoundTrips(consumptionPricing.getRoundTrips() + reservationPricing.getRoundTrips());
+            aggregator.applyTo(pricingResult);
+            return pricingResult;
+        }).whenComplete((result, failure) -> {
+            Metrics.PRICING_TIME.recordSince(start);
+            (failure == null ? Metrics.PRICING_SUCCEEDED : Metrics.PRICING_FAILED).increment();
+        });
     }
     public class PricingCalculator {
     	/**
          * Calculates the best pricing options based on consumption, reservation, and savings plan prices
          * Determines the overall best option, best option without consumption, and term-wise best options
+         * The lists are fed through a BestOptionAggregator, which the streaming calculation also uses
          * @param pricingResult The object containing all pricing information
          */
         public void calculateBestOptions(PricingResult pricingResult) {
-            double lowestPrice = Double.MAX_VALUE;
-            double lowestPriceWithoutConsumption = Double.MAX_VALUE;
-            BestOptionResult bestOption = null;
-            BestOptionResult bestOptionWithoutConsumption = null;
-            Map<String, BestOptionResult> termWiseBestOptions = new HashMap<>();
-
-            for (ConsumptionPriceResult price : pricingResult.getConsumptionPrices()) {
-                double hourlyRate = price.getHourlyRate();
-                if (hourlyRate < lowestPrice) {
-                    lowestPrice = hourlyRate;
-                    bestOption = new BestOptionResult(price.getPricingType(), hourlyRate,Constants.Consumption);
-                }
-            }
-
-            for (ReservationPriceResult price : pricingResult.getReservationPrices()) {
-                double hourlyRate = price.getHourlyRate();
-                if (hourlyRate < lowestPrice) {
-                    lowestPrice = hourlyRate;
-                    bestOption = new BestOptionResult(price.getTerm() + " "+Constants.Reservation, hourlyRate,Constants.Reservation);
-                }
-                if (hourlyRate < lowestPriceWithoutConsumption) {
-                    lowestPriceWithoutConsumption = hourlyRate;
-                    bestOptionWithoutConsumption = new BestOptionResult(price.getTerm() + " "+Constants.Reservation, hourlyRate,Constants.Reservation);
-                }
-                String term = price.getTerm().split(" ")[0] + " Year";
-                termWiseBestOptions.put(term, new BestOptionResult(term + " "+Constants.Reservation, hourlyRate,Constants.Reservation));
-            }
-
-            for (SavingsPlanResult plan : pricingResult.getSavingsPlans()) {
-                double hourlyRate = plan.getHourlyRate();
-                if (hourlyRate < lowestPrice) {
-                    lowestPrice = hourlyRate;
-                    bestOption = new BestOptionResult(plan.getTermYears() + " Years "+Constants.Savings_Plan, hourlyRate,Constants.Savings_Plan);
-                }
-                if (hourlyRate < lowestPriceWithoutConsumption) {
-                    lowestPriceWithoutConsumption = hourlyRate;
-                    bestOptionWithoutConsumption = new BestOptionResult(plan.getTermYears() + " Years "+Constants.Savings_Plan, hourlyRate, Constants.Savings_Plan);
-                }
-                String term = plan.getTermYears() + " Year";
-                BestOptionResult currentBest = termWiseBestOptions.get(term);
-                if (currentBest == null || hourlyRate < currentBest.getPrice()) {
-                    termWiseBestOptions.put(term, new BestOptionResult(term + " "+Constants.Savings_Plan, hourlyRate,Constants.Savings_Plan));
-                }
-            }
-
-            pricingResult.setBestOption(bestOption);
-            pricingResult.setBestOptionWithoutConsumption(bestOptionWithoutConsumption);
-            pricingResult.setTermWiseBestOptions(termWiseBestOptions);
+            BestOptionAggregator aggregator = new BestOptionAggregator();
+            pricingResult.getConsumptionPrices().forEach(aggregator::accept);
+            pricingResult.getReservationPrices().forEach(aggregator::accept);
+            pricingResult.getSavingsPlans().forEach(aggregator::accept);
+            aggregator.applyTo(pricingResult);
         }
     }
     
     /**
-     * Builds the filter string for API calls based on the meter ID and service type
-     * Handles different filter construction for Virtual Machines and other services
-     * @return A string containing the filter for API calls
-     * @throws Exception if no data is found for the given meter ID or if there's an error in API calls
+     * Builds the filter string for API calls based on the meter ID lookup and service type
+     * Handles different filter construction for Virtual Machines and other services,
+     * then narrows to a single region if the filter matches several.
+     * Probes are planned from what is already known: the lookup item itself matches the
+     * detailed filter, so if it has a savings plan or is a reservation the detailed filter is
+     * used without probing it; and the detailed probe's page is reused by the region step.
+     * A meter ID sold in several regions is built from the item in the region the policy picks,
+     * so the filter is pinned to that region rather than to whichever the lookup listed first.
+     * @param lookup The first page of the meter ID lookup
+     * @param initialFilter The meter ID filter, used as the fallback filter
+     * @return A stage completed with the filter for the price fetches
+     * @throws MeterNotFoundException if no data is found for the given meter ID
      */
 
-    private String buildFilter() throws Exception {
-        String initialFilter = String.format(Constants.METERID_FILTER, meterId);
-        String initialEndpoint = Constants.AZURE_PRICING_API + Constants.API_VERSION + Constants.API_FILTER + URLEncoder.encode(initialFilter, "UTF-8");
-        String initialResponse = ApiClient.getApiResponse(initialEndpoint);
-        JSONArray items = new JSONObject(initialResponse).getJSONArray(Constants.ITEMS);
-
-        if (items.length() == 0) {
-            throw new Exception("No data found for the given meter ID.");
+    private CompletableFuture<String> resolveFilter(PageSummary lookup, String initialFilter, Executor executor) throws Exception {
+        if (lookup.getItemCount() == 0) {
+            throw new MeterNotFoundException(meterId);
         }
 
-        JSONObject initialData = items.getJSONObject(0);
-        String serviceName = initialData.getString(Constants.SERVICE_NAME);
+        PriceItem initialData = selectLookupItem(lookup);
+        String serviceName = required(initialData.getServiceName(), Constants.SERVICE_NAME);
         pricingResult.setService(serviceName);
-        String currency = initialData.getString(Constants.CURRENCY);
+        String currency = required(initialData.getCurrencyCode(), Constants.CURRENCY);
         pricingResult.setCurrency(currency);
-        productName = initialData.getString(Constants.PRODUCT_NAME);
+        productName = required(initialData.getProductName(), Constants.PRODUCT_NAME);
 
-        String filter;
+        CompletableFuture<String> filter;
         if (serviceName.equals(Constants.VIRTUAL_MACHINES)) {
-            filter = buildVirtualMachinesFilter(initialData);
+            filter = CompletableFuture.completedFuture(buildVirtualMachinesFilter(initialData));
         } else {
-            filter = buildOtherServicesFilter(initialData, initialFilter);
+            // Use the detailed filter only if SavingsPlan or Reservation exists for this service
+            String detailedFilter = buildOtherServicesFilter(initialData);
+            if (matchesUserRegion(initialData)
+                    && (initialData.hasSavingsPlan() || Constants.Reservation.equals(initialData.getType()))) {
+                filter = CompletableFuture.completedFuture(detailedFilter);
+            } else {
+                Metrics.DETAILED_PROBES.increment();
+                filter = probe("detailed", detailedFilter, executor)
+                        .thenApply(detailed -> detailed.hasSavingsPlanOrReservation() ? detailedFilter : initialFilter);
+            }
         }
 
-        // Check for multiple regions
-        if (hasMultipleRegions(filter)) {
-            System.out.println("Multiple regions found. Please enter a specific region:");
-            Scanner scanner = new Scanner(System.in);
-            String userInputRegion = scanner.nextLine().trim();
-            
-            // Apply appropriate filter based on user input
+        return filter.thenCompose(f -> {
+            if (executor != SAME_THREAD && catalog == null) {
+                prefetchPrices(f, executor);
+            }
+            return narrowRegion(f, initialFilter, executor);
+        });
+    }
+
+    /**
+     * Picks the lookup item to build the filter from: the first one, unless the meter ID is sold
+     * in several regions and the policy picks one the lookup has an item for
+     */
+    private PriceItem selectLookupItem(PageSummary lookup) {
+        Set<String> regions = lookup.getLocations();
+        String region = regions.size() > 1 ? regionPolicy.selectRegion(meterId, regions) : null;
+        if (region != null && !region.trim().isEmpty()) {
+            region = region.trim();
+            for (PriceItem row : lookup.getRows()) {
+                if (region.equalsIgnoreCase(row.getLocation()) || region.equalsIgnoreCase(row.getArmRegionName())) {
+                    selectedRegion = region;
+                    return row;
+                }
+            }
+        }
+        return lookup.getRows().get(0);
+    }
+
+    // Whether the lookup item satisfies the user's armRegionName clause, if there is one
+    private boolean matchesUserRegion(PriceItem initialData) {
+        return userRegion.isEmpty() || userRegion.equalsIgnoreCase(initialData.getArmRegionName());
+    }
+
+    /**
+     * Checks for multiple regions and lets the policy pick one
+     * A filter that already pins a location or armRegionName cannot match several regions, so it
+     * is not probed. The selected region is verified against the probe's page when that page
+     * answers the question, and only otherwise with a query of its own.
+     * @param filter The filter built for the meter
+     * @param initialFilter The meter ID filter, used if the selected region has no results
+     * @return A stage completed with the filter narrowed to the selected region, or the filter unchanged
+     */
+
+    private CompletableFuture<String> narrowRegion(String filter, String initialFilter, Executor executor) {
+        ODataFilter parsed = ODataFilter.parse(filter);
+        if (parsed != null && (parsed.get(Constants.LOCATION) != null || parsed.get(Constants.ARM_REGION_NAME) != null)) {
+            return CompletableFuture.completedFuture(filter);
+        }
+        Metrics.REGION_PROBES.increment();
+        return probe("region", filter, executor).thenCompose(page -> {
+            Set<String> regions = page.getLocations();
+            String userInputRegion = regions.size() <= 1 ? null
+                    : selectedRegion != null ? selectedRegion : regionPolicy.selectRegion(meterId, regions);
+            if (userInputRegion == null || userInputRegion.trim().isEmpty()) {
+                return CompletableFuture.completedFuture(filter);
+            }
+            userInputRegion = userInputRegion.trim();
+
+            // Apply appropriate filter based on the selected region
+            String regionFilter;
             if (userInputRegion.contains(" ")) {
-                filter += " and " + String.format(Constants.REGION_FILTER, userInputRegion);
+                regionFilter = filter + " and " + String.format(Constants.REGION_FILTER, userInputRegion);
             } else {
-                filter += " and " + String.format(Constants.ARM_REGION_FILTER, userInputRegion);
+                regionFilter = filter + " and " + String.format(Constants.ARM_REGION_FILTER, userInputRegion);
             }
             pricingResult.setRegion(userInputRegion);
-            
+            String region = userInputRegion;
+
             // Verify that the filter returns results
-            if (!hasResults(filter)) {
-                System.out.println("No results found for the specified region. Reverting to original filter.");
-                filter = initialFilter;
+            Boolean known = page.hasRegion(userInputRegion);
+            if (known == null) {
+                Metrics.REGION_CHECKS.increment();
             }
-        }
+            CompletableFuture<Boolean> hasResults = known != null
+                    ? CompletableFuture.completedFuture(known)
+                    : probe("region_check", regionFilter, executor).thenApply(regionPage -> regionPage.getItemCount() > 0);
+            return hasResults.thenApply(found -> {
+                if (found) {
+                    return regionFilter;
+                }
+                // Logged rather than printed: stdout may be carrying JSON, CSV or binary results
+                logger.warning("No results found for region " + region + " for meter ID " + meterId + ". Reverting to original filter.");
+                return initialFilter;
+            });
+        });
+    }
+
+    /**
+     * Fetches the summary for one of the filter probes, recorded as a FilterProbeEvent
+     * @param kind The probe's name in the event: detailed, region or region_check
+     */
 
-        return filter;
+    private CompletableFuture<PageSummary> probe(String kind, String filter, Executor executor) {
+        FilterProbeEvent event = new FilterProbeEvent();
+        event.begin();
+        CompletableFuture<PageSummary> page = fetchSummaryAsync(filter, executor);
+        if (!event.isEnabled()) {
+            return page;
+        }
+        return page.whenComplete((summary, failure) -> {
+            if (event.shouldCommit()) {
+                event.meterId = meterId;
+                event.probe = kind;
+                event.filter = filter;
+                event.items = failure == null ? summary.getItemCount() : -1;
+                event.commit();
+            }
+        });
     }
-    
+
     /**
-     * Checks if the given filter returns any results from the Azure Pricing API
-     * @param filter The filter string to be used in the API call
-     * @return true if results are found, false otherwise
-     * @throws Exception if there's an error in the API call
+     * Warms the ApiClient cache with the first consumption and reservation pages for a filter
+     * Failures are ignored here; the real fetch reports them
      */
-    private boolean hasResults(String filter) throws Exception {
-        String endpoint = Constants.AZURE_PRICING_API + Constants.API_VERSION + Constants.API_FILTER + URLEncoder.encode(filter, "UTF-8");
-        String response = ApiClient.getApiResponse(endpoint);
-        JSONArray items = new JSONObject(response).getJSONArray(Constants.ITEMS);
-        return items.length() > 0;
+
+    private void prefetchPrices(String filter, Executor executor) {
+        ApiClient.getApiResponseAsync(ConsumptionAndSavingsPlanPricing.buildEndpoint(filter), executor,
+                consumptionAndSavingsPlanPricing.roundTrips);
+        ApiClient.getApiResponseAsync(ReservationPricing.buildEndpoint(filter), executor, reservationPricing.roundTrips);
     }
-    
+
     /**
-     * Checks if the given filter returns results from multiple regions
+     * Fetches the summary of the first page of items for a filter
+     * Answered from the catalog if it covers the filter; otherwise from the shared summary cache,
+     * which parses the Azure Pricing API response once per query
      * @param filter The filter string to be used in the API call
-     * @return true if multiple regions are found, false otherwise
-     * @throws Exception if there's an error in the API call
+     * @return A stage completed with the page's summary
      */
 
-    private boolean hasMultipleRegions(String filter) throws Exception {
-        String endpoint = Constants.AZURE_PRICING_API + Constants.API_VERSION + Constants.API_FILTER + URLEncoder.encode(filter, "UTF-8");
-        String response = ApiClient.getApiResponse(endpoint);
-        JSONArray items = new JSONObject(response).getJSONArray(Constants.ITEMS);
-
-        Set<String> regions = new HashSet<>();
-        for (int i = 0; i < items.length(); i++) {
-            JSONObject item = items.getJSONObject(i);
-            String location = item.optString(Constants.LOCATION, "");
-            if (!location.isEmpty()) {
-                regions.add(location);
+    private CompletableFuture<PageSummary> fetchSummaryAsync(String filter, Executor executor) {
+        return fetchSummaryAsync(filter, catalog, executor, lookupRoundTrips);
+    }
+
+    private static CompletableFuture<PageSummary> fetchSummaryAsync(String filter, PriceCatalog catalog, Executor executor, LongAdder roundTrips) {
+        PriceCatalog.Selection rows = catalog == null ? null : catalog.query(filter);
+        if (rows != null) {
+            return CompletableFuture.completedFuture(
+                    PageSummary.of(rows.toList(PriceCatalog.API_PAGE_SIZE), rows.size() <= PriceCatalog.API_PAGE_SIZE));
+        }
+        return summaries.get(filter, f -> {
+            String endpoint;
+            try {
+                endpoint = Constants.AZURE_PRICING_API + Constants.API_VERSION + Constants.API_FILTER + URLEncoder.encode(f, "UTF-8");
+            } catch (UnsupportedEncodingException e) {
+                CompletableFuture<PageSummary> failed = new CompletableFuture<>();
+                failed.completeExceptionally(e);
+                return failed;
             }
+            return ApiClient.getApiResponseAsync(endpoint, executor, roundTrips).thenApply(PageSummary::parse);
+        });
+    }
+
+    /**
+     * Looks a meter ID up the way the pricing graph does and returns the lookup's first item
+     * Answered from the catalog or the shared summary cache where they can, so looking up a
+     * meter that was just priced costs no round trip
+     * @param catalog The ingested catalog, or null
+     * @param roundTrips Counts the lookup if it goes to the API, or null
+     * @throws Exception if no data is found for the meter ID or the lookup fails
+     */
+    static PriceItem lookupMeter(String meterId, PriceCatalog catalog, LongAdder roundTrips) throws Exception {
+        return lookupMeterItems(meterId, catalog, roundTrips).get(0);
+    }
+
+    /**
+     * Looks a meter ID up and returns every item of the lookup: each region, price type and tier
+     * @throws MeterNotFoundException if the lookup has no items
+     */
+    static List<PriceItem> lookupMeterItems(String meterId, PriceCatalog catalog, LongAdder roundTrips) throws Exception {
+        PageSummary lookup;
+        try {
+            lookup = fetchSummaryAsync(String.format(Constants.METERID_FILTER, meterId), catalog, SAME_THREAD, roundTrips).join();
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause();
+            throw cause instanceof Exception ? (Exception) cause : e;
         }
+        if (lookup.getItemCount() == 0) {
+            throw new MeterNotFoundException(meterId);
+        }
+        return lookup.getRows();
+    }
 
-        return regions.size() > 1;
+    // The shared page summary cache, for statistics and invalidation
+    public static PageSummaryCache getSummaryCache() {
+        return summaries;
     }
     /**
      * Builds a filter string specifically for Virtual Machines services
-     * @param initialData JSONObject containing initial data about the service
+     * @param initialData The meter ID lookup's first item
      * @return A string containing the filter for Virtual Machines
      */
 
-    private String buildVirtualMachinesFilter(JSONObject initialData) {
-        String location = initialData.getString(Constants.LOCATION);
-        String armSkuName = initialData.getString(Constants.ARM_SKU_NAME);
+    private String buildVirtualMachinesFilter(PriceItem initialData) {
+        String location = required(initialData.getLocation(), Constants.LOCATION);
+        String armSkuName = required(initialData.getArmSkuName(), Constants.ARM_SKU_NAME);
         pricingResult.setRegion(location);
         pricingResult.setInstanceType(armSkuName);
 
@@ -226,18 +427,16 @@ public class AzurePricingCalculator {
     }
     
     /**
-     * Builds a filter string for services other than Virtual Machines
-     * @param initialData JSONObject containing initial data about the service
-     * @param initialFilter The initial filter string based on meter ID
+     * Builds the detailed filter string for services other than Virtual Machines
+     * @param initialData The meter ID lookup's first item
      * @return A string containing the filter for the specific service
-     * @throws Exception if there's an error in API calls
      */
 
-    private String buildOtherServicesFilter(JSONObject initialData, String initialFilter) throws Exception {
-        String serviceName = initialData.getString(Constants.SERVICE_NAME);
-        String armSkuName = initialData.optString(Constants.ARM_SKU_NAME, "");
-        String location = initialData.optString(Constants.LOCATION, "");
-        String productName = initialData.optString(Constants.PRODUCT_NAME, "");
+    private String buildOtherServicesFilter(PriceItem initialData) {
+        String serviceName = required(initialData.getServiceName(), Constants.SERVICE_NAME);
+        String armSkuName = optional(initialData.getArmSkuName());
+        String location = optional(initialData.getLocation());
+        String productName = optional(initialData.getProductName());
         pricingResult.setRegion(location);
         pricingResult.setInstanceType(armSkuName);
 
@@ -258,34 +457,37 @@ public class AzurePricingCalculator {
             filterBuilder.append(" and ").append(String.format(Constants.ARM_REGION_FILTER, userRegion));
         }
 
-        String detailedFilter = filterBuilder.toString();
-
-        // Check if SavingsPlan or Reservation exists for this service
-        if (hasSavingsPlanOrReservation(detailedFilter)) {
-            return detailedFilter;
-        } else {
-            return initialFilter;
+        return filterBuilder.toString();
+    }
+    // A field the lookup must contain, failing the way JSONObject.getString does
+    private static String required(String value, String name) {
+        if (value == null) {
+            throw new JSONException("JSONObject[\"" + name + "\"] not found.");
         }
+        return value;
     }
-    /**
-     * Checks if Savings Plan or Reservation pricing exists for a given service
-     * @param filter The filter string to be used in the API call
-     * @return true if Savings Plan or Reservation pricing exists, false otherwise
-     * @throws Exception if there's an error in the API call
-     */
 
-    private boolean hasSavingsPlanOrReservation(String filter) throws Exception {
-        String endpoint = Constants.AZURE_PRICING_API + Constants.API_VERSION + Constants.API_FILTER + URLEncoder.encode(filter, "UTF-8");
-        String response = ApiClient.getApiResponse(endpoint);
-        JSONArray items = new JSONObject(response).getJSONArray(Constants.ITEMS);
+    // A field that may be missing, read as an empty string like JSONObject.optString
+    private static String optional(String value) {
+        return value == null ? "" : value;
+    }
 
-        for (int i = 0; i < items.length(); i++) {
-            JSONObject item = items.getJSONObject(i);
-            if (item.has(Constants.SAVINGS_PLAN) || Constants.Reservation.equals(item.optString(Constants.TYPE))) {
-                return true;
+    @FunctionalInterface
+    private interface Step<T, R> {
+        R apply(T t) throws Exception;
+    }
+
+    // Adapts a step that throws checked exceptions for use in a CompletableFuture chain
+    private static <T, R> Function<T, R> unchecked(Step<T, R> step) {
+        return t -> {
+            try {
+                return step.apply(t);
+            } catch (RuntimeException e) {
+                throw e;
+            } catch (Exception e) {
+                throw new CompletionException(e);
             }
-        }
-        return false;
+        };
     }
     /**
      * Retrieves the calculated pricing result
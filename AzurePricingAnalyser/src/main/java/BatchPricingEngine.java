@@ -0,0 +1,225 @@
+/**
+ * Prices many meter IDs in one run.
+ * Each meter gets its own AzurePricingCalculator, evaluated on its own virtual thread;
+ * a semaphore limits how many meters are in progress at once. Results are either collected
+ * for the whole batch or handed to a callback as each meter completes, so a batch of any size
+ * can be written out while it runs without holding its results.
+ * All calculators share the static ApiClient cache and the JVM's keep-alive connection pool,
+ * so service-level lookups repeated across meters are only fetched once per batch.
+ */
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.function.BiConsumer;
+
+public class BatchPricingEngine {
+    private final int parallelism;
+    private final String userRegion;
+    private final RegionSelectionPolicy regionPolicy;
+    private final PriceCatalog catalog;
+
+    /**
+     * Constructor for BatchPricingEngine
+     * @param parallelism Maximum number of meters evaluated at the same time
+     * @param userRegion ARM region applied to every meter, or empty for none
+     * @param regionPolicy Region decision for meters that resolve to several regions; must not block on stdin
+     */
+    public BatchPricingEngine(int parallelism, String userRegion, RegionSelectionPolicy regionPolicy) {
+        this(parallelism, userRegion, regionPolicy, null);
+    }
+
+    /**
+     * Constructor for BatchPricingEngine that prices from an in-memory catalog where it can
+     * @param catalog The ingested catalog shared by every meter, or null to always call the API
+     */
+    public BatchPricingEngine(int parallelism, String userRegion, RegionSelectionPolicy regionPolicy, PriceCatalog catalog) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("Parallelism must be at least 1: " + parallelism);
+        }
+        this.parallelism = parallelism;
+        this.userRegion = userRegion == null ? "" : userRegion;
+        this.regionPolicy = regionPolicy;
+        this.catalog = catalog;
+    }
+
+    /**
+     * Prices every meter ID and collects the per-meter results
+     * Duplicate meter IDs are priced once; a failure for one meter does not stop the batch
+     * @param meterIds The meter IDs to price
+     * @return Results, failures and throughput statistics for the batch
+     * @throws InterruptedException if the calling thread is interrupted while waiting
+     */
+    public BatchPricingResult run(Collection<String> meterIds) throws InterruptedException {
+        return run(tasks(meterIds), null);
+    }
+
+    /**
+     * Prices every meter ID and hands each result to a callback as soon as its meter completes
+     * The callback is called by one thread at a time, in completion order, so it can write to a
+     * PricingResultWriter directly; the batch result then only has the failures and statistics.
+     * If the callback throws, no further meters are started and the exception is rethrown once
+     * the meters in progress have finished.
+     * @param onResult Called with each meter ID and its result
+     * @return Failures and throughput statistics for the batch; getResults is empty
+     * @throws InterruptedException if the calling thread is interrupted while waiting
+     */
+    public BatchPricingResult run(Collection<String> meterIds, BiConsumer<String, ? super PricingResult> onResult) throws InterruptedException {
+        return run(tasks(meterIds), onResult);
+    }
+
+    private Map<String, Callable<PricingResult>> tasks(Collection<String> meterIds) {
+        Map<String, Callable<PricingResult>> tasks = new LinkedHashMap<>();
+        for (String meterId : new LinkedHashSet<>(meterIds)) {
+            tasks.put(meterId, () -> priceMeter(meterId, userRegion, regionPolicy));
+        }
+        return tasks;
+    }
+
+    /**
+     * Prices meters in given regions, each meter in each of its regions once
+     * A meter sold in several regions is narrowed to the region asked for, so its price is that
+     * region's; with an empty region it is priced like run does
+     * @param meterRegions Regions per meter ID, as location or ARM region names
+     * @return Results and failures keyed by regionKey(meterId, region)
+     * @throws InterruptedException if the calling thread is interrupted while waiting
+     */
+    public BatchPricingResult runInRegions(Map<String, ? extends Collection<String>> meterRegions) throws InterruptedException {
+        Map<String, Callable<PricingResult>> tasks = new LinkedHashMap<>();
+        for (Map.Entry<String, ? extends Collection<String>> entry : meterRegions.entrySet()) {
+            String meterId = entry.getKey();
+            for (String region : entry.getValue()) {
+                RegionSelectionPolicy policy = region.isEmpty() ? regionPolicy : RegionSelectionPolicy.fixed(region);
+                tasks.putIfAbsent(regionKey(meterId, region), () -> priceMeter(meterId, userRegion, policy));
+            }
+        }
+        return run(tasks, null);
+    }
+
+    /**
+     * The key runInRegions reports a meter and region under: the meter ID alone for an empty region
+     */
+    public static String regionKey(String meterId, String region) {
+        return region.isEmpty() ? meterId : meterId + " @ " + region;
+    }
+
+    /**
+     * Runs the tasks, collecting their results in task order, or streaming them to onResult if it is not null
+     */
+    private BatchPricingResult run(Map<String, Callable<PricingResult>> tasks, BiConsumer<String, ? super PricingResult> onResult)
+            throws InterruptedException {
+        ExecutorService pool = BlockingExecutors.create("batch-pricing");
+        Semaphore permits = new Semaphore(parallelism);
+
+        // Guarded by the lock, which also serializes the callback
+        Object lock = new Object();
+        Map<String, PricingResult> completed = new HashMap<>();
+        Map<String, Exception> failed = new HashMap<>();
+        List<Long> latencies = new ArrayList<>();
+        long[] streamed = new long[3];
+        RuntimeException[] callbackFailure = new RuntimeException[1];
+
+        long start = System.nanoTime();
+        try {
+            for (Map.Entry<String, Callable<PricingResult>> task : tasks.entrySet()) {
+                // Taken before submitting, so only the meters in progress are held, however long the batch
+                permits.acquire();
+                synchronized (lock) {
+                    if (callbackFailure[0] != null) {
+                        permits.release();
+                        break;
+                    }
+                }
+                String key = task.getKey();
+                pool.execute(() -> {
+                    long meterStart = System.nanoTime();
+                    try {
+                        PricingResult result = task.getValue().call();
+                        synchronized (lock) {
+                            if (onResult == null) {
+                                completed.put(key, result);
+                            } else if (callbackFailure[0] == null) {
+                                try {
+                                    onResult.accept(key, result);
+                                } catch (RuntimeException e) {
+                                    callbackFailure[0] = e;
+                                    return;
+                                }
+                                streamed[0]++;
+                                streamed[1] += result.getLookupRoundTrips();
+                                streamed[2] += result.getPriceRoundTrips();
+                            }
+                        }
+                    } catch (Exception e) {
+                        synchronized (lock) {
+                            failed.put(key, e);
+                        }
+                    } finally {
+                        synchronized (lock) {
+                            latencies.add(System.nanoTime() - meterStart);
+                        }
+                        permits.release();
+                    }
+                });
+            }
+            // Every permit is back once the last meter has finished
+            permits.acquire(parallelism);
+            long elapsed = System.nanoTime() - start;
+
+            synchronized (lock) {
+                if (callbackFailure[0] != null) {
+                    throw callbackFailure[0];
+                }
+                Map<String, PricingResult> results = new LinkedHashMap<>();
+                Map<String, Exception> failures = new LinkedHashMap<>();
+                for (String key : tasks.keySet()) {
+                    if (completed.containsKey(key)) {
+                        results.put(key, completed.get(key));
+                    } else if (failed.containsKey(key)) {
+                        failures.put(key, failed.get(key));
+                    }
+                }
+                if (onResult == null) {
+                    return new BatchPricingResult(results, failures, elapsed, latencies);
+                }
+                return new BatchPricingResult((int) streamed[0], streamed[1], streamed[2], failures, elapsed, latencies);
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private PricingResult priceMeter(String meterId, String userRegion, RegionSelectionPolicy regionPolicy) throws Exception {
+        AzurePricingCalculator calculator = new AzurePricingCalculator(meterId, userRegion, regionPolicy, catalog);
+        calculator.calculatePricing(false);
+        return calculator.getPricingResult(false);
+    }
+
+    /**
+     * Reads meter IDs from a file, one per line
+     * Blank lines and lines starting with '#' are ignored
+     * @param file The file to read
+     * @return The meter IDs in file order
+     * @throws IOException if the file cannot be read
+     */
+    public static List<String> readMeterIds(Path file) throws IOException {
+        List<String> meterIds = new ArrayList<>();
+        for (String line : Files.readAllLines(file, StandardCharsets.UTF_8)) {
+            String meterId = line.trim();
+            if (!meterId.isEmpty() && !meterId.startsWith("#")) {
+                meterIds.add(meterId);
+            }
+        }
+        return meterIds;
+    }
+}
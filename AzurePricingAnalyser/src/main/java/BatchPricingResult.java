@@ -0,0 +1,121 @@
+/**
+ * BatchPricingResult holds the outcome of a BatchPricingEngine run.
+ * It keeps the per-meter PricingResults and failures in input order,
+ * along with wall time and per-meter latencies for throughput statistics.
+ * When the results were streamed to a callback instead, only their count and round trips are kept.
+ */
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+public class BatchPricingResult {
+    private Map<String, PricingResult> results;
+    private Map<String, Exception> failures;
+    private long elapsedNanos;
+    private List<Long> latencyNanos;
+    private int succeeded;
+    private long lookupRoundTrips;
+    private long priceRoundTrips;
+
+    public BatchPricingResult(Map<String, PricingResult> results, Map<String, Exception> failures, long elapsedNanos, List<Long> latencyNanos) {
+        this(results, results.size(), 0, 0, failures, elapsedNanos, latencyNanos);
+        for (PricingResult result : results.values()) {
+            lookupRoundTrips += result.getLookupRoundTrips();
+            priceRoundTrips += result.getPriceRoundTrips();
+        }
+    }
+
+    /**
+     * For a batch whose results were streamed: their count and round-trip totals instead of the results
+     */
+    BatchPricingResult(int succeeded, long lookupRoundTrips, long priceRoundTrips, Map<String, Exception> failures,
+            long elapsedNanos, List<Long> latencyNanos) {
+        this(Collections.emptyMap(), succeeded, lookupRoundTrips, priceRoundTrips, failures, elapsedNanos, latencyNanos);
+    }
+
+    private BatchPricingResult(Map<String, PricingResult> results, int succeeded, long lookupRoundTrips, long priceRoundTrips,
+            Map<String, Exception> failures, long elapsedNanos, List<Long> latencyNanos) {
+        this.results = results;
+        this.succeeded = succeeded;
+        this.lookupRoundTrips = lookupRoundTrips;
+        this.priceRoundTrips = priceRoundTrips;
+        this.failures = failures;
+        this.elapsedNanos = elapsedNanos;
+        this.latencyNanos = latencyNanos;
+        Collections.sort(this.latencyNanos);
+    }
+
+    // Empty if the results were streamed to a callback
+    public Map<String, PricingResult> getResults() { return results; }
+    public Map<String, Exception> getFailures() { return failures; }
+    public long getElapsedNanos() { return elapsedNanos; }
+
+    public int getMeterCount() { return succeeded + failures.size(); }
+    public int getSucceededCount() { return succeeded; }
+    public int getFailedCount() { return failures.size(); }
+
+    public double getElapsedSeconds() {
+        return elapsedNanos / 1e9;
+    }
+
+    public double getMetersPerSecond() {
+        return elapsedNanos == 0 ? 0 : getMeterCount() / getElapsedSeconds();
+    }
+
+    public double getAverageLatencyMillis() {
+        if (latencyNanos.isEmpty()) {
+            return 0;
+        }
+        long total = 0;
+        for (long latency : latencyNanos) {
+            total += latency;
+        }
+        return total / (double) latencyNanos.size() / 1e6;
+    }
+
+    /**
+     * Average API round trips per succeeded meter, split into lookups and price pages
+     * @return {total, lookups, price pages}
+     */
+    public double[] getRoundTripsPerMeter() {
+        double meters = Math.max(1, succeeded);
+        return new double[] { (lookupRoundTrips + priceRoundTrips) / meters, lookupRoundTrips / meters, priceRoundTrips / meters };
+    }
+
+    /**
+     * Returns the latency below which the given fraction of meters completed
+     * @param percentile A value between 0 and 1, e.g. 0.99
+     */
+    public double getLatencyPercentileMillis(double percentile) {
+        if (latencyNanos.isEmpty()) {
+            return 0;
+        }
+        int index = (int) Math.ceil(percentile * latencyNanos.size()) - 1;
+        return latencyNanos.get(Math.max(0, Math.min(index, latencyNanos.size() - 1))) / 1e6;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("Batch Pricing Statistics:\n");
+        sb.append(String.format("Meters: %d (succeeded: %d, failed: %d)\n", getMeterCount(), getSucceededCount(), getFailedCount()));
+        sb.append(String.format("Elapsed: %.2f s, Throughput: %.2f meters/s\n", getElapsedSeconds(), getMetersPerSecond()));
+        sb.append(String.format("Latency: avg %.1f ms, p50 %.1f ms, p99 %.1f ms, max %.1f ms\n",
+            getAverageLatencyMillis(), getLatencyPercentileMillis(0.5), getLatencyPercentileMillis(0.99), getLatencyPercentileMillis(1.0)));
+        double[] roundTrips = getRoundTripsPerMeter();
+        sb.append(String.format("Round trips: %.1f per meter (%.1f lookups, %.1f price pages)\n",
+            roundTrips[0], roundTrips[1], roundTrips[2]));
+        ResponseCache cache = ApiClient.getCache();
+        sb.append(String.format("API cache: %d entries, %.1f MB, %d hits, %d disk hits, %d misses, %d evictions\n",
+            cache.size(), cache.getWeightBytes() / (1024.0 * 1024.0), cache.getHitCount(), cache.getSecondLevelHitCount(),
+            cache.getMissCount(), cache.getEvictionCount()));
+        PageSummaryCache summaries = AzurePricingCalculator.getSummaryCache();
+        sb.append(String.format("API page summaries: %d entries, %d hits, %d misses\n",
+            summaries.size(), summaries.getHitCount(), summaries.getMissCount()));
+        AdaptiveRateLimiter limiter = ApiClient.getRateLimiter();
+        sb.append(String.format("API rate: %.1f requests/sec achieved, limit now %.1f/sec, %d requests, %d throttled, %d retries\n",
+            limiter.getAchievedRequestsPerSecond(), limiter.getCurrentRate(), limiter.getRequestCount(),
+            limiter.getThrottledCount(), limiter.getRetryCount()));
+        return sb.toString();
+    }
+}
@@ -0,0 +1,164 @@
+/**
+ * BestOptionAggregator keeps the best pricing options up to date as options arrive, with O(1)
+ * work per option: the best option overall, the best without consumption, and the best per term.
+ * Options may arrive in any interleaving of consumption prices, reservations and savings plans,
+ * as long as each kind arrives in its list order; the result is then the same as visiting the
+ * consumption prices, reservations and savings plans one list after the other:
+ *   - a lower hourly rate wins; on equal rates the earlier kind (consumption, reservation,
+ *     savings plan) wins, and within a kind the earlier option
+ *   - per term, the last reservation of the term stands unless a savings plan of the term is
+ *     strictly cheaper, in which case the first cheapest savings plan wins
+ * Results are built when asked for, so the aggregator can be read at any time for a provisional
+ * answer. It is thread-safe.
+ */
+import java.util.HashMap;
+import java.util.Map;
+
+public class BestOptionAggregator {
+    // Kinds in the order the lists have always been visited; on equal rates the lower one wins
+    private static final int CONSUMPTION = 0;
+    private static final int RESERVATION = 1;
+    private static final int SAVINGS_PLAN = 2;
+
+    private PricingOption best;
+    private int bestKind;
+    private PricingOption bestWithoutConsumption;
+    private int bestWithoutConsumptionKind;
+
+    // Term-wise state by term key ("1 Year"), and term keys by reservation term and savings plan years
+    private final Map<String, TermBest> termBests = new HashMap<>();
+    private final Map<String, String> reservationTermKeys = new HashMap<>();
+    private final Map<Integer, String> savingsPlanTermKeys = new HashMap<>();
+
+    private long optionCount;
+
+    private static class TermBest {
+        ReservationPriceResult lastReservation;
+        SavingsPlanResult cheapestSavingsPlan;
+    }
+
+    /**
+     * Adds an option
+     * @param option A ConsumptionPriceResult, ReservationPriceResult or SavingsPlanResult
+     * @throws IllegalArgumentException for other kinds of option
+     */
+    public synchronized void accept(PricingOption option) {
+        double hourlyRate = option.getHourlyRate();
+        if (option instanceof ConsumptionPriceResult) {
+            if (beats(hourlyRate, CONSUMPTION, best, bestKind)) {
+                best = option;
+                bestKind = CONSUMPTION;
+            }
+        } else if (option instanceof ReservationPriceResult) {
+            acceptCommitment(option, hourlyRate, RESERVATION);
+            ReservationPriceResult reservation = (ReservationPriceResult) option;
+            termBest(reservationTermKey(reservation.getTerm())).lastReservation = reservation;
+        } else if (option instanceof SavingsPlanResult) {
+            acceptCommitment(option, hourlyRate, SAVINGS_PLAN);
+            SavingsPlanResult plan = (SavingsPlanResult) option;
+            TermBest term = termBest(savingsPlanTermKey(plan.getTermYears()));
+            if (term.cheapestSavingsPlan == null || hourlyRate < term.cheapestSavingsPlan.getHourlyRate()) {
+                term.cheapestSavingsPlan = plan;
+            }
+        } else {
+            throw new IllegalArgumentException("Unsupported pricing option: " + option.getClass().getName());
+        }
+        optionCount++;
+    }
+
+    private void acceptCommitment(PricingOption option, double hourlyRate, int kind) {
+        if (beats(hourlyRate, kind, best, bestKind)) {
+            best = option;
+            bestKind = kind;
+        }
+        if (beats(hourlyRate, kind, bestWithoutConsumption, bestWithoutConsumptionKind)) {
+            bestWithoutConsumption = option;
+            bestWithoutConsumptionKind = kind;
+        }
+    }
+
+    // Rates at or above Double.MAX_VALUE never win, as with the original running minimum
+    private static boolean beats(double hourlyRate, int kind, PricingOption current, int currentKind) {
+        if (current == null) {
+            return hourlyRate < Double.MAX_VALUE;
+        }
+        double currentRate = current.getHourlyRate();
+        return hourlyRate < currentRate || (hourlyRate == currentRate && kind < currentKind);
+    }
+
+    private TermBest termBest(String termKey) {
+        TermBest term = termBests.get(termKey);
+        if (term == null) {
+            term = new TermBest();
+            termBests.put(termKey, term);
+        }
+        return term;
+    }
+
+    private String reservationTermKey(String term) {
+        String key = reservationTermKeys.get(term);
+        if (key == null) {
+            key = term.split(" ")[0] + " Year";
+            reservationTermKeys.put(term, key);
+        }
+        return key;
+    }
+
+    private String savingsPlanTermKey(int termYears) {
+        String key = savingsPlanTermKeys.get(termYears);
+        if (key == null) {
+            key = termYears + " Year";
+            savingsPlanTermKeys.put(termYears, key);
+        }
+        return key;
+    }
+
+    public synchronized BestOptionResult getBestOption() {
+        return toResult(best);
+    }
+
+    public synchronized BestOptionResult getBestOptionWithoutConsumption() {
+        return toResult(bestWithoutConsumption);
+    }
+
+    public synchronized Map<String, BestOptionResult> getTermWiseBestOptions() {
+        Map<String, BestOptionResult> results = new HashMap<>();
+        for (Map.Entry<String, TermBest> entry : termBests.entrySet()) {
+            String term = entry.getKey();
+            ReservationPriceResult reservation = entry.getValue().lastReservation;
+            SavingsPlanResult plan = entry.getValue().cheapestSavingsPlan;
+            if (plan != null && (reservation == null || plan.getHourlyRate() < reservation.getHourlyRate())) {
+                results.put(term, new BestOptionResult(term + " " + Constants.Savings_Plan, plan.getHourlyRate(), Constants.Savings_Plan));
+            } else {
+                results.put(term, new BestOptionResult(term + " " + Constants.Reservation, reservation.getHourlyRate(), Constants.Reservation));
+            }
+        }
+        return results;
+    }
+
+    public synchronized long getOptionCount() {
+        return optionCount;
+    }
+
+    /**
+     * Stores the current best options in a pricing result
+     */
+    public synchronized void applyTo(PricingResult pricingResult) {
+        pricingResult.setBestOption(getBestOption());
+        pricingResult.setBestOptionWithoutConsumption(getBestOptionWithoutConsumption());
+        pricingResult.setTermWiseBestOptions(getTermWiseBestOptions());
+    }
+
+    private static BestOptionResult toResult(PricingOption option) {
+        if (option instanceof ConsumptionPriceResult) {
+            return new BestOptionResult(option.getPricingType(), option.getHourlyRate(), Constants.Consumption);
+        } else if (option instanceof ReservationPriceResult) {
+            return new BestOptionResult(((ReservationPriceResult) option).getTerm() + " " + Constants.Reservation,
+                    option.getHourlyRate(), Constants.Reservation);
+        } else if (option instanceof SavingsPlanResult) {
+            return new BestOptionResult(((SavingsPlanResult) option).getTermYears() + " Years " + Constants.Savings_Plan,
+                    option.getHourlyRate(), Constants.Savings_Plan);
+        }
+        return null;
+    }
+}
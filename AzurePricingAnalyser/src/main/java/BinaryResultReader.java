@@ -0,0 +1,174 @@
+/**
+ * BinaryResultReader reads back the records of a BinaryResultWriter stream (the format is
+ * described there), one result at a time.
+ */
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+public class BinaryResultReader implements Closeable {
+    private final DataInputStream in;
+    private final List<String> strings = new ArrayList<>();
+    private boolean headerRead;
+    private String meterId;
+
+    public BinaryResultReader(InputStream in) {
+        this.in = new DataInputStream(new BufferedInputStream(in, PricingResultWriter.BUFFER_SIZE));
+    }
+
+    /**
+     * Reads the next result
+     * @return The result, or null at the end of the stream
+     * @throws IOException if the stream is not in the format, or ends inside a record
+     */
+    public PricingResult read() throws IOException {
+        if (!headerRead) {
+            byte[] magic = new byte[BinaryResultWriter.MAGIC.length];
+            int n = in.readNBytes(magic, 0, magic.length);
+            if (n == 0) {
+                return null;
+            }
+            if (n < magic.length || !Arrays.equals(magic, BinaryResultWriter.MAGIC)) {
+                throw new IOException("Not a binary pricing result stream");
+            }
+            int version = in.readUnsignedByte();
+            if (version != BinaryResultWriter.VERSION) {
+                throw new IOException("Unsupported binary pricing result version: " + version);
+            }
+            headerRead = true;
+        }
+        in.mark(1);
+        if (in.read() < 0) {
+            return null;
+        }
+        in.reset();
+
+        meterId = string();
+        PricingResult result = new PricingResult();
+        result.setService(string());
+        result.setRegion(string());
+        result.setInstanceType(string());
+        result.setCurrency(string());
+
+        int count = count();
+        List<ConsumptionPriceResult> consumptionPrices = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            String pricingType = string();
+            String unitOfMeasure = string();
+            double unitPrice = in.readDouble();
+            double hourlyRate = in.readDouble();
+            int tierCount = count();
+            List<TierInfo> tiers = tierCount == 0 ? null : new ArrayList<>(tierCount);
+            for (int t = 0; t < tierCount; t++) {
+                tiers.add(new TierInfo(in.readDouble(), in.readDouble(), unitOfMeasure));
+            }
+            consumptionPrices.add(new ConsumptionPriceResult(pricingType, new PriceInfo(unitPrice, unitOfMeasure, hourlyRate, tiers)));
+        }
+        result.setConsumptionPrices(consumptionPrices);
+
+        count = count();
+        List<ReservationPriceResult> reservationPrices = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            reservationPrices.add(new ReservationPriceResult(string(), in.readDouble(), in.readDouble()));
+        }
+        result.setReservationPrices(reservationPrices);
+
+        count = count();
+        List<SavingsPlanResult> savingsPlans = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            savingsPlans.add(new SavingsPlanResult(count(), in.readDouble()));
+        }
+        result.setSavingsPlans(savingsPlans);
+
+        result.setBestOption(bestOption());
+        result.setBestOptionWithoutConsumption(bestOption());
+        count = count();
+        Map<String, BestOptionResult> termWise = new LinkedHashMap<>();
+        for (int i = 0; i < count; i++) {
+            termWise.put(string(), bestOption());
+        }
+        result.setTermWiseBestOptions(termWise);
+        result.setLookupRoundTrips(varint());
+        result.setPriceRoundTrips(varint());
+        return result;
+    }
+
+    /**
+     * The meter ID of the result last read
+     */
+    public String getMeterId() {
+        return meterId;
+    }
+
+    private BestOptionResult bestOption() throws IOException {
+        if (!in.readBoolean()) {
+            return null;
+        }
+        String optionName = string();
+        String pricingType = string();
+        return new BestOptionResult(optionName, in.readDouble(), pricingType);
+    }
+
+    private String string() throws IOException {
+        long v = varint();
+        if (v == 0) {
+            return null;
+        }
+        if (v % 3 == 1) {
+            long index = (v - 1) / 3;
+            if (index >= strings.size()) {
+                throw new IOException("String reference out of range: " + index);
+            }
+            return strings.get((int) index);
+        }
+        boolean indexed = v % 3 == 2;
+        long length = indexed ? (v - 2) / 3 : v / 3 - 1;
+        if (length > Integer.MAX_VALUE) {
+            throw new IOException("String too long: " + length);
+        }
+        byte[] bytes = new byte[(int) length];
+        in.readFully(bytes);
+        String value = new String(bytes, StandardCharsets.UTF_8);
+        if (indexed) {
+            strings.add(value);
+        }
+        return value;
+    }
+
+    private int count() throws IOException {
+        long value = varint();
+        if (value > Integer.MAX_VALUE) {
+            throw new IOException("Count out of range: " + value);
+        }
+        return (int) value;
+    }
+
+    private long varint() throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = in.read();
+            if (b < 0) {
+                throw new EOFException("Stream ends inside a record");
+            }
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed varint");
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+}
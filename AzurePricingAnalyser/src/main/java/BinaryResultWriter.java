@@ -0,0 +1,155 @@
+/**
+ * BinaryResultWriter writes results as compact binary records, read back by BinaryResultReader.
+ *
+ * The stream starts with the magic bytes "APR" and a version byte, followed by one record per
+ * result until the end of the stream. Counts are unsigned varints (7 bits per byte, low bits
+ * first) and prices are 8-byte IEEE doubles, so values round-trip exactly. Strings repeat heavily
+ * across results (services, regions, pricing types, terms), so each distinct one is written once
+ * and referred to by index afterwards. A string is a varint v followed by its UTF-8 bytes where
+ * it is new:
+ *
+ *   v = 0                   null
+ *   v = 3 * index + 1       a string written before, by index in order of first appearance
+ *   v = 3 * length + 2      a new string, which takes the next index
+ *   v = 3 * (length + 1)    a string written in full and not indexed (meter IDs, which rarely repeat)
+ *
+ * A record is: meterId, service, region, instanceType, currency; the consumption prices
+ * (pricingType, unitOfMeasure, unit price, hourly rate, then the tiers as minimum and price);
+ * the reservations (term, hourly rate, upfront cost); the savings plans (term years, hourly
+ * rate); the best option and the best option without consumption (a presence byte, then option
+ * name, pricing type and hourly rate); the term-wise best options (term, option); and the
+ * lookup and price round trips.
+ */
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public class BinaryResultWriter implements PricingResultWriter {
+    static final byte[] MAGIC = { 'A', 'P', 'R' };
+    static final int VERSION = 1;
+
+    private final DataOutputStream out;
+    private final Map<String, Integer> strings = new HashMap<>();
+    private boolean headerWritten;
+
+    public BinaryResultWriter(OutputStream out) {
+        this.out = new DataOutputStream(new BufferedOutputStream(out, BUFFER_SIZE));
+    }
+
+    @Override
+    public void write(String meterId, PricingResult result) throws IOException {
+        if (!headerWritten) {
+            out.write(MAGIC);
+            out.write(VERSION);
+            headerWritten = true;
+        }
+        literal(meterId);
+        string(result.getService());
+        string(result.getRegion());
+        string(result.getInstanceType());
+        string(result.getCurrency());
+
+        List<ConsumptionPriceResult> consumptionPrices = result.getConsumptionPrices();
+        varint(consumptionPrices == null ? 0 : consumptionPrices.size());
+        for (int i = 0; consumptionPrices != null && i < consumptionPrices.size(); i++) {
+            ConsumptionPriceResult price = consumptionPrices.get(i);
+            PriceInfo priceInfo = price.getPriceInfo();
+            string(price.getPricingType());
+            string(priceInfo.getUnitOfMeasure());
+            out.writeDouble(priceInfo.getOriginalPrice());
+            out.writeDouble(priceInfo.getHourlyRate());
+            List<TierInfo> tiers = priceInfo.hasTiers() ? priceInfo.getTiers() : null;
+            varint(tiers == null ? 0 : tiers.size());
+            for (int t = 0; tiers != null && t < tiers.size(); t++) {
+                out.writeDouble(tiers.get(t).getTierMinimumUnits());
+                out.writeDouble(tiers.get(t).getRetailPrice());
+            }
+        }
+
+        List<ReservationPriceResult> reservationPrices = result.getReservationPrices();
+        varint(reservationPrices == null ? 0 : reservationPrices.size());
+        for (int i = 0; reservationPrices != null && i < reservationPrices.size(); i++) {
+            string(reservationPrices.get(i).getTerm());
+            out.writeDouble(reservationPrices.get(i).getHourlyRate());
+            out.writeDouble(reservationPrices.get(i).getUpfrontCost());
+        }
+
+        List<SavingsPlanResult> savingsPlans = result.getSavingsPlans();
+        varint(savingsPlans == null ? 0 : savingsPlans.size());
+        for (int i = 0; savingsPlans != null && i < savingsPlans.size(); i++) {
+            varint(savingsPlans.get(i).getTermYears());
+            out.writeDouble(savingsPlans.get(i).getHourlyRate());
+        }
+
+        bestOption(result.getBestOption());
+        bestOption(result.getBestOptionWithoutConsumption());
+        Map<String, BestOptionResult> termWise = result.getTermWiseBestOptions();
+        varint(termWise == null ? 0 : termWise.size());
+        if (termWise != null) {
+            for (Map.Entry<String, BestOptionResult> entry : termWise.entrySet()) {
+                string(entry.getKey());
+                bestOption(entry.getValue());
+            }
+        }
+        varint(result.getLookupRoundTrips());
+        varint(result.getPriceRoundTrips());
+    }
+
+    private void bestOption(BestOptionResult option) throws IOException {
+        out.writeBoolean(option != null);
+        if (option != null) {
+            string(option.getOptionName());
+            string(option.getPricingType());
+            out.writeDouble(option.getPrice());
+        }
+    }
+
+    private void string(String value) throws IOException {
+        if (value == null) {
+            varint(0);
+            return;
+        }
+        Integer index = strings.get(value);
+        if (index != null) {
+            varint(3L * index + 1);
+            return;
+        }
+        strings.put(value, strings.size());
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        varint(3L * bytes.length + 2);
+        out.write(bytes);
+    }
+
+    private void literal(String value) throws IOException {
+        if (value == null) {
+            varint(0);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        varint(3L * (bytes.length + 1));
+        out.write(bytes);
+    }
+
+    private void varint(long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.write((int) (value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+
+    @Override
+    public void flush() throws IOException {
+        out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        out.close();
+    }
+}
@@ -0,0 +1,33 @@
+/**
+ * BlockingExecutors creates the executors used for work that blocks on network I/O.
+ * Every task gets its own virtual thread, so thousands of fetches can wait on the network at once
+ * for the cost of a few kilobytes each. How many actually run is limited by semaphores where the
+ * limit matters (the transport bulkhead, batch, sweep, server and pagination permits), not by the
+ * size of a pool. Threads are named after the executor, so they can be told apart in thread dumps
+ * and Flight Recorder.
+ */
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+public class BlockingExecutors {
+    // Concurrency used when the caller does not choose one
+    private static final int DEFAULT_CONCURRENCY = 64;
+
+    private BlockingExecutors() {
+    }
+
+    /**
+     * Creates an executor that runs each task on a new virtual thread
+     * @param name Thread name prefix; threads are numbered from 1
+     */
+    public static ExecutorService create(String name) {
+        return Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name(name + "-", 1).factory());
+    }
+
+    /**
+     * Default number of concurrent blocking tasks, e.g. meters priced at once in batch mode
+     */
+    public static int defaultConcurrency() {
+        return DEFAULT_CONCURRENCY;
+    }
+}
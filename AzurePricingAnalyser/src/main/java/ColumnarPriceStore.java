@@ -0,0 +1,370 @@
+/**
+ * ColumnarPriceStore keeps price rows as primitive columns instead of one object per row.
+ * Prices live in double[] columns (retailPrice, tierMinimumUnits, hourlyRate); string fields are
+ * dictionary-encoded into int[] columns, so each distinct value is stored once. Savings plans are
+ * flattened into shared arrays addressed by per-row offsets.
+ *
+ * Consecutive rows of the same meter, type and reservation term form a tier range; ranges are
+ * stored as start offsets into the rows. Rows are read back by filling a reused PriceItem, or as a
+ * PricingOption view created on demand over a row index. A built store is immutable.
+ */
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public class ColumnarPriceStore {
+    private final int size;
+
+    private final double[] retailPrice;
+    private final double[] tierMinimumUnits;
+    private final double[] hourlyRate;
+
+    private final Column currencyCode;
+    private final Column meterId;
+    private final Column serviceName;
+    private final Column productName;
+    private final Column skuName;
+    private final Column armSkuName;
+    private final Column armRegionName;
+    private final Column location;
+    private final Column unitOfMeasure;
+    private final Column type;
+    private final Column reservationTerm;
+    private final Map<String, Column> columnsByField = new HashMap<>();
+
+    // Row i's savings plans are entries savingsPlanStart[i] until savingsPlanStart[i + 1]; hasSavingsPlan records whether the field was present
+    private final int[] savingsPlanStart;
+    private final boolean[] hasSavingsPlan;
+    private final int[] savingsPlanTerm;
+    private final double[] savingsPlanPrice;
+    private final StringDictionary savingsPlanTerms;
+
+    // Tier range r covers rows tierRangeStart[r] until tierRangeStart[r + 1]
+    private final int[] tierRangeStart;
+
+    /**
+     * One dictionary-encoded string column
+     */
+    private static class Column {
+        final StringDictionary dictionary;
+        final int[] codes;
+
+        Column(StringDictionary dictionary, int[] codes) {
+            this.dictionary = dictionary;
+            this.codes = codes;
+        }
+
+        String get(int row) {
+            return dictionary.decode(codes[row]);
+        }
+    }
+
+    private ColumnarPriceStore(Builder b) {
+        size = b.size;
+        retailPrice = Arrays.copyOf(b.retailPrice, size);
+        tierMinimumUnits = Arrays.copyOf(b.tierMinimumUnits, size);
+        hourlyRate = Arrays.copyOf(b.hourlyRate, size);
+
+        currencyCode = column(Constants.CURRENCY, b, 0);
+        meterId = column(Constants.METER_ID, b, 1);
+        serviceName = column(Constants.SERVICE_NAME, b, 2);
+        productName = column(Constants.PRODUCT_NAME, b, 3);
+        skuName = column(Constants.SKU_NAME, b, 4);
+        armSkuName = column(Constants.ARM_SKU_NAME, b, 5);
+        armRegionName = column(Constants.ARM_REGION_NAME, b, 6);
+        location = column(Constants.LOCATION, b, 7);
+        unitOfMeasure = column(Constants.UNIT_OF_MEASURE, b, 8);
+        type = column(Constants.TYPE, b, 9);
+        reservationTerm = column(Constants.RESERVATION_TERM, b, 10);
+
+        savingsPlanStart = Arrays.copyOf(b.savingsPlanStart, size + 1);
+        hasSavingsPlan = Arrays.copyOf(b.hasSavingsPlan, size);
+        savingsPlanTerm = Arrays.copyOf(b.savingsPlanTerm, b.savingsPlanCount);
+        savingsPlanPrice = Arrays.copyOf(b.savingsPlanPrice, b.savingsPlanCount);
+        savingsPlanTerms = b.savingsPlanTerms;
+
+        tierRangeStart = Arrays.copyOf(b.tierRangeStart, b.tierRangeCount + 1);
+        tierRangeStart[b.tierRangeCount] = size;
+    }
+
+    private Column column(String field, Builder b, int index) {
+        Column column = new Column(b.dictionaries[index], Arrays.copyOf(b.codes[index], size));
+        columnsByField.put(field, column);
+        return column;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public double getRetailPrice(int row) { return retailPrice[row]; }
+    public double getTierMinimumUnits(int row) { return tierMinimumUnits[row]; }
+    public double getHourlyRate(int row) { return hourlyRate[row]; }
+
+    /**
+     * Returns a string field of a row by its API name
+     * @return The value, or null if absent or if the field is not stored
+     */
+    public String getField(String field, int row) {
+        Column column = columnsByField.get(field);
+        return column == null ? null : column.get(row);
+    }
+
+    /**
+     * Returns the dictionary code of a row's field, for scans that compare codes instead of strings
+     * @throws IllegalArgumentException if the field is not stored
+     */
+    public int getCode(String field, int row) {
+        return requireColumn(field).codes[row];
+    }
+
+    /**
+     * Returns the dictionary of a field, to translate values to codes and back
+     * @throws IllegalArgumentException if the field is not stored
+     */
+    public StringDictionary getDictionary(String field) {
+        return requireColumn(field).dictionary;
+    }
+
+    private Column requireColumn(String field) {
+        Column column = columnsByField.get(field);
+        if (column == null) {
+            throw new IllegalArgumentException("Not a stored field: " + field);
+        }
+        return column;
+    }
+
+    /**
+     * Fills a PriceItem with a row's values, reusing it like PricePageReader does
+     * @return The item passed in
+     */
+    public PriceItem read(int row, PriceItem item) {
+        item.clear();
+        item.setCurrencyCode(currencyCode.get(row));
+        item.setMeterId(meterId.get(row));
+        item.setServiceName(serviceName.get(row));
+        item.setProductName(productName.get(row));
+        item.setSkuName(skuName.get(row));
+        item.setArmSkuName(armSkuName.get(row));
+        item.setArmRegionName(armRegionName.get(row));
+        item.setLocation(location.get(row));
+        item.setUnitOfMeasure(unitOfMeasure.get(row));
+        item.setType(type.get(row));
+        item.setReservationTerm(reservationTerm.get(row));
+        item.setRetailPrice(retailPrice[row]);
+        item.setTierMinimumUnits(tierMinimumUnits[row]);
+        item.setHasSavingsPlan(hasSavingsPlan[row]);
+        for (int i = savingsPlanStart[row]; i < savingsPlanStart[row + 1]; i++) {
+            item.addSavingsPlan(savingsPlanTerms.decode(savingsPlanTerm[i]), savingsPlanPrice[i]);
+        }
+        return item;
+    }
+
+    public int getTierRangeCount() {
+        return tierRangeStart.length - 1;
+    }
+
+    /**
+     * Finds the tier range containing a row by binary search over the range offsets
+     */
+    public int getTierRange(int row) {
+        int index = Arrays.binarySearch(tierRangeStart, 0, tierRangeStart.length - 1, row);
+        return index >= 0 ? index : -index - 2;
+    }
+
+    public int getTierRangeStart(int range) { return tierRangeStart[range]; }
+    public int getTierRangeEnd(int range) { return tierRangeStart[range + 1]; }
+
+    /**
+     * Returns a PricingOption over a row; nothing is copied until a getter is called
+     * Reservation rows are priced per hour over their term with the retail price as upfront cost;
+     * other rows use their hourly rate and, if their tier range has several rows, its tiers.
+     */
+    public PricingOption view(int row) {
+        return new RowView(row);
+    }
+
+    private class RowView implements PricingOption {
+        private final int row;
+
+        RowView(int row) {
+            this.row = row;
+        }
+
+        private boolean isReservation() {
+            return Constants.Reservation.equals(type.get(row));
+        }
+
+        @Override
+        public String getPricingType() {
+            return isReservation() ? reservationTerm.get(row) : skuName.get(row);
+        }
+
+        @Override
+        public double getHourlyRate() {
+            return hourlyRate[row];
+        }
+
+        @Override
+        public double getUpfrontCost() {
+            return isReservation() ? retailPrice[row] : 0;
+        }
+
+        @Override
+        public PriceInfo getPriceInfo() {
+            String unit = unitOfMeasure.get(row);
+            int range = getTierRange(row);
+            int start = tierRangeStart[range];
+            int end = tierRangeStart[range + 1];
+            List<TierInfo> tiers = null;
+            if (end - start > 1) {
+                tiers = new ArrayList<>(end - start);
+                for (int i = start; i < end; i++) {
+                    tiers.add(new TierInfo(tierMinimumUnits[i], retailPrice[i], unit));
+                }
+                tiers.sort(Comparator.comparingDouble(TierInfo::getTierMinimumUnits));
+            }
+            PriceInfo priceInfo = new PriceInfo(retailPrice[row], unit, hourlyRate[row], tiers);
+            priceInfo.setUpfrontCost(getUpfrontCost());
+            return priceInfo;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s: $%.4f/hr", getPricingType(), getHourlyRate());
+        }
+    }
+
+    /**
+     * Rough heap size of the store: every column plus the distinct strings of its dictionaries
+     */
+    public long estimateBytes() {
+        long bytes = 8L * 3 * size + 4L * 11 * size + 4L * (size + 1) + size
+                + 12L * savingsPlanTerm.length + 4L * tierRangeStart.length;
+        for (Column column : columnsByField.values()) {
+            bytes += column.dictionary.estimateBytes();
+        }
+        return bytes + savingsPlanTerms.estimateBytes();
+    }
+
+    public static ColumnarPriceStore empty() {
+        return new Builder().build();
+    }
+
+    /**
+     * Appends rows in order and builds the store. Arrays grow by doubling and are trimmed by build().
+     */
+    public static class Builder {
+        private static final int COLUMNS = 11;
+
+        private int size;
+        private double[] retailPrice = new double[64];
+        private double[] tierMinimumUnits = new double[64];
+        private double[] hourlyRate = new double[64];
+        private final StringDictionary[] dictionaries = new StringDictionary[COLUMNS];
+        private final int[][] codes = new int[COLUMNS][64];
+
+        private int[] savingsPlanStart = new int[65];
+        private boolean[] hasSavingsPlan = new boolean[64];
+        private int savingsPlanCount;
+        private int[] savingsPlanTerm = new int[64];
+        private double[] savingsPlanPrice = new double[64];
+        private final StringDictionary savingsPlanTerms = new StringDictionary();
+
+        private int tierRangeCount;
+        private int[] tierRangeStart = new int[65];
+
+        public Builder() {
+            for (int i = 0; i < COLUMNS; i++) {
+                dictionaries[i] = new StringDictionary();
+            }
+        }
+
+        /**
+         * Appends a row; the item is not retained, so a reused PriceItem may be passed
+         */
+        public Builder add(PriceItem item) {
+            if (size == retailPrice.length) {
+                grow();
+            }
+            int row = size++;
+            retailPrice[row] = item.getRetailPrice();
+            tierMinimumUnits[row] = item.getTierMinimumUnits();
+            hourlyRate[row] = hourlyRateOf(item);
+
+            codes[0][row] = dictionaries[0].encode(item.getCurrencyCode());
+            codes[1][row] = dictionaries[1].encode(item.getMeterId());
+            codes[2][row] = dictionaries[2].encode(item.getServiceName());
+            codes[3][row] = dictionaries[3].encode(item.getProductName());
+            codes[4][row] = dictionaries[4].encode(item.getSkuName());
+            codes[5][row] = dictionaries[5].encode(item.getArmSkuName());
+            codes[6][row] = dictionaries[6].encode(item.getArmRegionName());
+            codes[7][row] = dictionaries[7].encode(item.getLocation());
+            codes[8][row] = dictionaries[8].encode(item.getUnitOfMeasure());
+            codes[9][row] = dictionaries[9].encode(item.getType());
+            codes[10][row] = dictionaries[10].encode(item.getReservationTerm());
+
+            hasSavingsPlan[row] = item.hasSavingsPlan();
+            for (int i = 0; i < item.getSavingsPlanCount(); i++) {
+                if (savingsPlanCount == savingsPlanTerm.length) {
+                    savingsPlanTerm = Arrays.copyOf(savingsPlanTerm, savingsPlanCount * 2);
+                    savingsPlanPrice = Arrays.copyOf(savingsPlanPrice, savingsPlanCount * 2);
+                }
+                savingsPlanTerm[savingsPlanCount] = savingsPlanTerms.encode(item.getSavingsPlanTerm(i));
+                savingsPlanPrice[savingsPlanCount] = item.getSavingsPlanRetailPrice(i);
+                savingsPlanCount++;
+            }
+            savingsPlanStart[row + 1] = savingsPlanCount;
+
+            // A new tier range starts whenever the meter, type or reservation term changes
+            if (row == 0 || codes[1][row] != codes[1][row - 1] || codes[9][row] != codes[9][row - 1] || codes[10][row] != codes[10][row - 1]) {
+                if (tierRangeCount + 1 == tierRangeStart.length) {
+                    tierRangeStart = Arrays.copyOf(tierRangeStart, tierRangeStart.length * 2);
+                }
+                tierRangeStart[tierRangeCount++] = row;
+            }
+            return this;
+        }
+
+        /**
+         * Appends a row of another store
+         */
+        public Builder add(ColumnarPriceStore store, int row, PriceItem scratch) {
+            return add(store.read(row, scratch));
+        }
+
+        private void grow() {
+            int capacity = size * 2;
+            retailPrice = Arrays.copyOf(retailPrice, capacity);
+            tierMinimumUnits = Arrays.copyOf(tierMinimumUnits, capacity);
+            hourlyRate = Arrays.copyOf(hourlyRate, capacity);
+            for (int i = 0; i < COLUMNS; i++) {
+                codes[i] = Arrays.copyOf(codes[i], capacity);
+            }
+            hasSavingsPlan = Arrays.copyOf(hasSavingsPlan, capacity);
+            savingsPlanStart = Arrays.copyOf(savingsPlanStart, capacity + 1);
+        }
+
+        public int size() {
+            return size;
+        }
+
+        public ColumnarPriceStore build() {
+            return new ColumnarPriceStore(this);
+        }
+    }
+
+    // Hourly rate as the pricing classes compute it: spread over the term for reservations, by unit otherwise
+    private static double hourlyRateOf(PriceItem item) {
+        if (Constants.Reservation.equals(item.getType()) && item.getReservationTerm() != null) {
+            return item.getRetailPrice() / (PricingUtils.extractYearsFromTerm(item.getReservationTerm()) * Constants.YEARLY);
+        }
+        if (item.getUnitOfMeasure() == null) {
+            return item.getRetailPrice();
+        }
+        return PricingUtils.calculateHourlyRate(item.getRetailPrice(), item.getUnitOfMeasure());
+    }
+}
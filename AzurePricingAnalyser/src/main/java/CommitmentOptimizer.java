@@ -0,0 +1,396 @@
+/**
+ * CommitmentOptimizer finds the cheapest mix of reservations, savings plan commitment and
+ * on-demand usage for a fleet, given each SKU's hourly usage and its fetched rates.
+ * calculateBestOptions compares flat rates as if every instance ran every hour; this prices the
+ * actual usage curve instead.
+ *
+ * The model follows how Azure bills commitments:
+ *   - a reservation is bought per SKU and paid every hour whether it is used or not
+ *   - the savings plan is one hourly commitment for the whole fleet; each hour it covers the
+ *     usage left after reservations at the SKUs' savings plan rates, the SKUs with the highest
+ *     discount first, and is paid in full whether it is used up or not
+ *   - whatever neither covers is billed on demand
+ * The cost is convex in the reserved quantities and the commitment. The commitment is found by
+ * bisection on its marginal saving, which is the discount ratio of the SKU each hour's
+ * commitment runs out at. Each SKU's reservation is then sized against the marginal cost of its
+ * uncovered usage at that commitment, and the two steps alternate until the cost stops falling.
+ * Reservations come in whole instances, so the result is a local optimum: for a handful of SKUs
+ * it can be a few percent above the best mix, for a fleet the hourly steps average out.
+ *
+ * Usage is held as one primitive array per SKU and every pass runs in parallel, over hours or
+ * over SKUs, so a fleet of thousands of SKUs with a year of hourly usage takes seconds.
+ */
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.IntStream;
+
+public class CommitmentOptimizer {
+    // Rounds of alternating reservation and commitment updates, at most
+    private static final int MAX_ROUNDS = 20;
+    // Bisection steps for the commitment; the bracket shrinks to well below a cent an hour
+    private static final int COMMITMENT_STEPS = 60;
+    // Hours per parallel task
+    private static final int HOURS_PER_TASK = 256;
+
+    private final double[][] usage;
+    private final double[] onDemandRates;
+    private final double[] reservationRates;
+    private final double[] savingsPlanRates;
+    private final int hours;
+
+    // SKUs the savings plan saves money on, by discount ratio (on-demand / savings plan rate) descending
+    private final int[] savingsPlanOrder;
+    private final double[] discountRatios;
+    // The other SKUs, always billed on demand past their reservations
+    private final int[] onDemandOnly;
+
+    /**
+     * Constructor for CommitmentOptimizer
+     * Rates are per instance-hour, in one currency. An option a SKU does not offer is given as
+     * Double.NaN; see rates(PricingResult, String, int).
+     * @param usage Per SKU, the instances used in each hour; every series must be equally long
+     * @param onDemandRates Per SKU, the consumption rate
+     * @param reservationRates Per SKU, the reservation's hourly rate, or NaN
+     * @param savingsPlanRates Per SKU, the savings plan rate, or NaN
+     * @throws IllegalArgumentException if the arrays do not line up or a usage or rate is invalid
+     */
+    public CommitmentOptimizer(double[][] usage, double[] onDemandRates, double[] reservationRates, double[] savingsPlanRates) {
+        int skuCount = usage.length;
+        if (onDemandRates.length != skuCount || reservationRates.length != skuCount || savingsPlanRates.length != skuCount) {
+            throw new IllegalArgumentException("Expected " + skuCount + " rates of each kind, one per usage series");
+        }
+        this.hours = skuCount == 0 ? 0 : usage[0].length;
+        List<Integer> eligible = new ArrayList<>();
+        List<Integer> ineligible = new ArrayList<>();
+        this.discountRatios = new double[skuCount];
+        for (int i = 0; i < skuCount; i++) {
+            if (usage[i].length != hours) {
+                throw new IllegalArgumentException("Usage series " + i + " has " + usage[i].length + " hours, expected " + hours);
+            }
+            for (double used : usage[i]) {
+                if (!(used >= 0) || Double.isInfinite(used)) {
+                    throw new IllegalArgumentException("Usage series " + i + " has an invalid value: " + used);
+                }
+            }
+            if (!(onDemandRates[i] > 0) || Double.isInfinite(onDemandRates[i])) {
+                throw new IllegalArgumentException("SKU " + i + " needs a positive consumption rate: " + onDemandRates[i]);
+            }
+            if (offered(savingsPlanRates[i]) && savingsPlanRates[i] < onDemandRates[i]) {
+                discountRatios[i] = onDemandRates[i] / savingsPlanRates[i];
+                eligible.add(i);
+            } else {
+                ineligible.add(i);
+            }
+        }
+        eligible.sort(Comparator.comparingDouble((Integer i) -> -discountRatios[i]).thenComparingInt(i -> i));
+
+        this.usage = usage;
+        this.onDemandRates = onDemandRates;
+        this.reservationRates = reservationRates;
+        this.savingsPlanRates = savingsPlanRates;
+        this.savingsPlanOrder = eligible.stream().mapToInt(Integer::intValue).toArray();
+        this.onDemandOnly = ineligible.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    /**
+     * Picks a SKU's rates out of its pricing result
+     * @param pricingType The consumption pricing type the usage runs as, e.g. "Linux"
+     * @param termYears The reservation and savings plan term to commit to
+     * @return {consumption rate, reservation rate, savings plan rate}, NaN where the result has none
+     * @throws IllegalArgumentException if the result has no consumption price of the pricing type
+     */
+    public static double[] rates(PricingResult result, String pricingType, int termYears) {
+        double onDemand = Double.NaN;
+        for (ConsumptionPriceResult price : result.getConsumptionPrices()) {
+            if (price.getPricingType().equals(pricingType)) {
+                onDemand = price.getHourlyRate();
+                break;
+            }
+        }
+        if (Double.isNaN(onDemand)) {
+            throw new IllegalArgumentException("No consumption price for pricing type " + pricingType);
+        }
+        double reservation = Double.NaN;
+        String termPrefix = termYears + " Year";
+        for (ReservationPriceResult price : result.getReservationPrices()) {
+            if (price.getTerm().startsWith(termPrefix)) {
+                reservation = Double.isNaN(reservation) ? price.getHourlyRate() : Math.min(reservation, price.getHourlyRate());
+            }
+        }
+        double savingsPlan = Double.NaN;
+        for (SavingsPlanResult plan : result.getSavingsPlans()) {
+            if (plan.getTermYears() == termYears) {
+                savingsPlan = Double.isNaN(savingsPlan) ? plan.getHourlyRate() : Math.min(savingsPlan, plan.getHourlyRate());
+            }
+        }
+        return new double[] { onDemand, reservation, savingsPlan };
+    }
+
+    private static boolean offered(double rate) {
+        return rate > 0 && !Double.isInfinite(rate);
+    }
+
+    /**
+     * Finds the cost-minimizing reservations and savings plan commitment
+     */
+    public CommitmentPlan optimize() {
+        long start = System.nanoTime();
+        int skuCount = usage.length;
+
+        // Start from reservations sized as if everything past them ran on demand, and from none at all
+        int[] reserved = new int[skuCount];
+        IntStream.range(0, skuCount).parallel().forEach(i -> reserved[i] = reserve(i, null));
+        double commitment = optimizeCommitment(reserved);
+        double[] marginals = new double[hours];
+        double cost = totalCost(reserved, commitment, marginals);
+
+        int[] none = new int[skuCount];
+        double noneCommitment = optimizeCommitment(none);
+        double[] noneMarginals = new double[hours];
+        double noneCost = totalCost(none, noneCommitment, noneMarginals);
+        int[] best = reserved;
+        if (noneCost < cost) {
+            best = none;
+            commitment = noneCommitment;
+            marginals = noneMarginals;
+            cost = noneCost;
+        }
+
+        int rounds = 0;
+        while (rounds < MAX_ROUNDS) {
+            double[] currentMarginals = marginals;
+            int[] next = new int[skuCount];
+            IntStream.range(0, skuCount).parallel().forEach(i -> next[i] = reserve(i, currentMarginals));
+            double nextCommitment = optimizeCommitment(next);
+            double[] nextMarginals = new double[hours];
+            double nextCost = totalCost(next, nextCommitment, nextMarginals);
+            if (!(nextCost < cost - 1e-9 * cost)) {
+                break;
+            }
+            best = next;
+            commitment = nextCommitment;
+            marginals = nextMarginals;
+            cost = nextCost;
+            rounds++;
+        }
+
+        double reservationCost = 0;
+        for (int i = 0; i < skuCount; i++) {
+            if (best[i] > 0) {
+                reservationCost += best[i] * reservationRates[i] * hours;
+            }
+        }
+        double savingsPlanCost = commitment * hours;
+        double onDemandOnlyCost = 0;
+        for (int i = 0; i < skuCount; i++) {
+            double used = 0;
+            for (double u : usage[i]) {
+                used += u;
+            }
+            onDemandOnlyCost += used * onDemandRates[i];
+        }
+        return new CommitmentPlan(hours, best, commitment, reservationCost, savingsPlanCost,
+                cost - reservationCost - savingsPlanCost, onDemandOnlyCost, rounds, System.nanoTime() - start);
+    }
+
+    /**
+     * Sizes one SKU's reservation: the k-th instance is reserved while the usage it would cover,
+     * valued at the marginal cost of that usage otherwise, exceeds what it costs to reserve
+     * @param marginals Per hour, the marginal discount ratio as totalCost reports it, or null to
+     *                  value all uncovered usage at the consumption rate
+     */
+    private int reserve(int sku, double[] marginals) {
+        double rate = reservationRates[sku];
+        if (!offered(rate)) {
+            return 0;
+        }
+        double[] series = usage[sku];
+        double peak = 0;
+        for (double used : series) {
+            peak = Math.max(peak, used);
+        }
+        double threshold = rate * hours;
+        // benefit(k) falls as k grows, so find the largest k whose benefit beats the threshold
+        int low = 0;
+        int high = (int) Math.ceil(peak);
+        while (low < high) {
+            int k = (low + high + 1) >>> 1;
+            if (benefit(sku, k, marginals) > threshold) {
+                low = k;
+            } else {
+                high = k - 1;
+            }
+        }
+        return low;
+    }
+
+    // What the k-th reserved instance saves over the series
+    private double benefit(int sku, int k, double[] marginals) {
+        double[] series = usage[sku];
+        double onDemand = onDemandRates[sku];
+        double savingsPlan = savingsPlanRates[sku];
+        boolean eligible = discountRatios[sku] > 0;
+        double benefit = 0;
+        for (int h = 0; h < series.length; h++) {
+            double covered = series[h] - (k - 1);
+            if (covered <= 0) {
+                continue;
+            }
+            double marginalCost = onDemand;
+            if (eligible && marginals != null) {
+                marginalCost = Math.min(onDemand, savingsPlan * marginals[h]);
+            }
+            benefit += marginalCost * Math.min(covered, 1);
+        }
+        return benefit;
+    }
+
+    /**
+     * Finds the hourly commitment at which one more unit saves less than it costs
+     * Committing a unit more saves, in each hour it runs out in, the discount ratio of the SKU it
+     * runs out at; the saving falls as the commitment grows.
+     */
+    private double optimizeCommitment(int[] reserved) {
+        if (savingsPlanOrder.length == 0 || hours == 0) {
+            return 0;
+        }
+        double high = IntStream.range(0, taskCount()).parallel().mapToDouble(t -> {
+            int from = t * HOURS_PER_TASK;
+            double[] needed = new double[Math.min(hours, from + HOURS_PER_TASK) - from];
+            for (int i : savingsPlanOrder) {
+                double[] series = usage[i];
+                int quantity = reserved[i];
+                double rate = savingsPlanRates[i];
+                for (int k = 0; k < needed.length; k++) {
+                    double uncovered = series[from + k] - quantity;
+                    if (uncovered > 0) {
+                        needed[k] += uncovered * rate;
+                    }
+                }
+            }
+            double peak = 0;
+            for (double hourNeeded : needed) {
+                peak = Math.max(peak, hourNeeded);
+            }
+            return peak;
+        }).max().orElse(0);
+        if (high == 0 || marginalSaving(reserved, 0) <= hours) {
+            return 0;
+        }
+        double low = 0;
+        for (int step = 0; step < COMMITMENT_STEPS && high - low > 1e-9 * high; step++) {
+            double mid = (low + high) / 2;
+            if (marginalSaving(reserved, mid) > hours) {
+                low = mid;
+            } else {
+                high = mid;
+            }
+        }
+        return high;
+    }
+
+    // The saving of one more unit of commitment over the series: the sum of the hours' marginal ratios
+    private double marginalSaving(int[] reserved, double commitment) {
+        return IntStream.range(0, taskCount()).parallel().mapToDouble(t -> {
+            int from = t * HOURS_PER_TASK;
+            double[] budgets = new double[Math.min(hours, from + HOURS_PER_TASK) - from];
+            Arrays.fill(budgets, commitment);
+            double saving = 0;
+            for (int i : savingsPlanOrder) {
+                double[] series = usage[i];
+                int quantity = reserved[i];
+                double rate = savingsPlanRates[i];
+                for (int k = 0; k < budgets.length; k++) {
+                    double needed = (series[from + k] - quantity) * rate;
+                    // A negative budget marks an hour whose marginal ratio is already counted
+                    if (needed <= 0 || budgets[k] < 0) {
+                        continue;
+                    }
+                    if (budgets[k] < needed) {
+                        saving += discountRatios[i];
+                        budgets[k] = -1;
+                    } else {
+                        budgets[k] -= needed;
+                    }
+                }
+            }
+            return saving;
+        }).sum();
+    }
+
+    /**
+     * Bills the series for the given reservations and commitment
+     * Loops run SKU by SKU over a block of hours, so each usage series is read sequentially.
+     * @param marginals Filled with each hour's marginal discount ratio: that of the SKU the
+     *                  commitment ran out at, infinity if it ran out exactly or is zero (more usage
+     *                  would run on demand), or 0 if some of it was left unused
+     */
+    private double totalCost(int[] reserved, double commitment, double[] marginals) {
+        double fixed = commitment * hours;
+        for (int i = 0; i < reserved.length; i++) {
+            if (reserved[i] > 0) {
+                fixed += reserved[i] * reservationRates[i] * hours;
+            }
+        }
+        double onDemand = IntStream.range(0, taskCount()).parallel().mapToDouble(t -> {
+            int from = t * HOURS_PER_TASK;
+            int length = Math.min(hours, from + HOURS_PER_TASK) - from;
+            double[] budgets = new double[length];
+            Arrays.fill(budgets, commitment);
+            Arrays.fill(marginals, from, from + length, 0);
+            double cost = 0;
+            for (int i : savingsPlanOrder) {
+                double[] series = usage[i];
+                int quantity = reserved[i];
+                double rate = savingsPlanRates[i];
+                for (int k = 0; k < length; k++) {
+                    double uncovered = series[from + k] - quantity;
+                    if (uncovered <= 0) {
+                        continue;
+                    }
+                    double needed = uncovered * rate;
+                    if (budgets[k] >= needed) {
+                        budgets[k] -= needed;
+                        continue;
+                    }
+                    cost += (uncovered - budgets[k] / rate) * onDemandRates[i];
+                    if (marginals[from + k] == 0) {
+                        marginals[from + k] = discountRatios[i];
+                    }
+                    budgets[k] = 0;
+                }
+            }
+            for (int i : onDemandOnly) {
+                double[] series = usage[i];
+                int quantity = reserved[i];
+                for (int k = 0; k < length; k++) {
+                    double uncovered = series[from + k] - quantity;
+                    if (uncovered > 0) {
+                        cost += uncovered * onDemandRates[i];
+                    }
+                }
+            }
+            for (int k = 0; k < length; k++) {
+                if (marginals[from + k] == 0 && budgets[k] <= 0) {
+                    marginals[from + k] = Double.POSITIVE_INFINITY;
+                }
+            }
+            return cost;
+        }).sum();
+        return fixed + onDemand;
+    }
+
+    private int taskCount() {
+        return (hours + HOURS_PER_TASK - 1) / HOURS_PER_TASK;
+    }
+
+    public int getSkuCount() {
+        return usage.length;
+    }
+
+    public int getHours() {
+        return hours;
+    }
+}
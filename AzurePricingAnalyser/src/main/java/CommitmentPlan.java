@@ -0,0 +1,73 @@
+/**
+ * CommitmentPlan holds the outcome of a CommitmentOptimizer run: the instances to reserve per
+ * SKU, the fleet's hourly savings plan commitment, and what the usage costs under the plan
+ * compared with running it all on demand. Costs cover the whole usage series.
+ */
+public class CommitmentPlan {
+    private final int hours;
+    private final int[] reservedQuantities;
+    private final double savingsPlanCommitment;
+    private final double reservationCost;
+    private final double savingsPlanCost;
+    private final double onDemandCost;
+    private final double onDemandOnlyCost;
+    private final int rounds;
+    private final long elapsedNanos;
+
+    public CommitmentPlan(int hours, int[] reservedQuantities, double savingsPlanCommitment, double reservationCost,
+            double savingsPlanCost, double onDemandCost, double onDemandOnlyCost, int rounds, long elapsedNanos) {
+        this.hours = hours;
+        this.reservedQuantities = reservedQuantities;
+        this.savingsPlanCommitment = savingsPlanCommitment;
+        this.reservationCost = reservationCost;
+        this.savingsPlanCost = savingsPlanCost;
+        this.onDemandCost = onDemandCost;
+        this.onDemandOnlyCost = onDemandOnlyCost;
+        this.rounds = rounds;
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    public int getHours() { return hours; }
+    // Instances to reserve, per SKU in the optimizer's order
+    public int[] getReservedQuantities() { return reservedQuantities.clone(); }
+    public int getReservedQuantity(int sku) { return reservedQuantities[sku]; }
+    // Committed spend per hour
+    public double getSavingsPlanCommitment() { return savingsPlanCommitment; }
+    public double getReservationCost() { return reservationCost; }
+    public double getSavingsPlanCost() { return savingsPlanCost; }
+    public double getOnDemandCost() { return onDemandCost; }
+    public double getOnDemandOnlyCost() { return onDemandOnlyCost; }
+    public int getRounds() { return rounds; }
+    public long getElapsedNanos() { return elapsedNanos; }
+
+    public double getTotalCost() {
+        return reservationCost + savingsPlanCost + onDemandCost;
+    }
+
+    /**
+     * The saving against running all usage on demand, as a fraction of that cost
+     */
+    public double getSavingsFraction() {
+        return onDemandOnlyCost == 0 ? 0 : 1 - getTotalCost() / onDemandOnlyCost;
+    }
+
+    @Override
+    public String toString() {
+        int reservedInstances = 0;
+        int reservedSkus = 0;
+        for (int quantity : reservedQuantities) {
+            reservedInstances += quantity;
+            reservedSkus += quantity > 0 ? 1 : 0;
+        }
+        StringBuilder sb = new StringBuilder();
+        sb.append("Commitment Plan:\n");
+        sb.append(String.format("SKUs: %d, Hours: %d\n", reservedQuantities.length, hours));
+        sb.append(String.format("Reserved instances: %d across %d SKUs\n", reservedInstances, reservedSkus));
+        sb.append(String.format("Savings plan commitment: %.4f per hour\n", savingsPlanCommitment));
+        sb.append(String.format("Cost: %.2f (reservations %.2f, savings plan %.2f, on demand %.2f)\n",
+                getTotalCost(), reservationCost, savingsPlanCost, onDemandCost));
+        sb.append(String.format("On demand only: %.2f, saving %.1f%%\n", onDemandOnlyCost, getSavingsFraction() * 100));
+        sb.append(String.format("Optimized in %d rounds, %.2f s\n", rounds, elapsedNanos / 1e9));
+        return sb.toString();
+    }
+}
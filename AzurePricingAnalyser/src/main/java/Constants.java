@@ -1,6 +1,7 @@
 
 public class Constants {
-    public static final String AZURE_PRICING_API = "https://prices.azure.com/api/retail/prices?";
+    // Overridable with -Dazure.pricing.api, e.g. to run against a local stub server
+    public static final String AZURE_PRICING_API = System.getProperty("azure.pricing.api", "https://prices.azure.com/api/retail/prices?");
     public static final String API_VERSION = "api-version=2023-01-01-preview";
     public static final String API_FILTER = "&$filter=";
     public static final String SERVICE_FILTER = "serviceName eq '%s'";
@@ -16,10 +17,13 @@ public class Constants {
     public static final String SERVICE_NAME = "serviceName";
     public static final String SKU_NAME = "skuName";
     public static final String ARM_SKU_NAME = "armSkuName";
+    public static final String ARM_REGION_NAME = "armRegionName";
+    public static final String METER_ID = "meterId";
     public static final String LOCATION = "location";
     public static final String PRODUCT_NAME = "productName";
     public static final String TYPE = "type";
     public static final String RETAIL_PRICE = "retailPrice";
+    public static final String TIER_MINIMUM_UNITS = "tierMinimumUnits";
     public static final String SAVINGS_PLAN = "savingsPlan";
     public static final String TERM = "term";
     public static final String ITEMS = "Items";
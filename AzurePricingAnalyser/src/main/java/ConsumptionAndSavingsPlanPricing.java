@@ -1,13 +1,13 @@
+import java.io.UnsupportedEncodingException;
 import java.net.URLEncoder;
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-
-import org.json.JSONArray;
-import org.json.JSONObject;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.function.IntFunction;
 
 public class ConsumptionAndSavingsPlanPricing {
 	/**
@@ -22,6 +22,20 @@ public class ConsumptionAndSavingsPlanPricing {
     List<ConsumptionPriceResult> consumptionPrices = new ArrayList<>();
     List<SavingsPlanResult> savingsPlans = new ArrayList<>();
 
+    // Answers price queries locally when it covers the filter; null to always call the API
+    private final PriceCatalog catalog;
+
+    // API calls that missed the response cache, including prefetches made for this fetch
+    final LongAdder roundTrips = new LongAdder();
+
+    public ConsumptionAndSavingsPlanPricing() {
+        this(null);
+    }
+
+    public ConsumptionAndSavingsPlanPricing(PriceCatalog catalog) {
+        this.catalog = catalog;
+    }
+
     
     public List<ConsumptionPriceResult> getConsumptionPrices() {
 		return consumptionPrices;
@@ -36,66 +50,203 @@ public class ConsumptionAndSavingsPlanPricing {
 		this.savingsPlans = plans;
 	}
 	public void fetchPrices(String filter, String vmProductName) throws Exception {
-        String endpoint = Constants.AZURE_PRICING_API + Constants.API_VERSION + Constants.API_FILTER + URLEncoder.encode(filter + " and " + Constants.TYPE_CONSUMPTION_FILTER, "UTF-8");
-
-        while (endpoint != null) {
-            String response = ApiClient.getApiResponse(endpoint);
-            JSONObject jsonObject = new JSONObject(response);
-            JSONArray items = jsonObject.getJSONArray(Constants.ITEMS);
-
-            List<JSONObject> itemList = new ArrayList<>();
-            for (int i = 0; i < items.length(); i++) {
-                itemList.add(items.getJSONObject(i));
-                if (items.getJSONObject(i).has(Constants.SAVINGS_PLAN)) {
-                    JSONArray savingsPlans = items.getJSONObject(i).getJSONArray(Constants.SAVINGS_PLAN);
-                    for (int j = 0; j < savingsPlans.length(); j++) {
-                       this.savingsPlans.add(parseSavingsPlan(savingsPlans.getJSONObject(j)));
-                    }
-                }
+        fetchPrices(filter, vmProductName, null);
+    }
+
+    /**
+     * Fetches the consumption prices and savings plans for a filter, handing each page's options
+     * to a listener as the page arrives: its consumption prices, then its savings plans
+     * @param onOption Called with every option, each kind in list order, from the fetching thread; or null
+     */
+    public void fetchPrices(String filter, String vmProductName, Consumer<? super PricingOption> onOption) throws Exception {
+        List<PricePage> pages;
+        PriceCatalog.Selection rows = catalog == null ? null : catalog.query(filter + " and " + Constants.TYPE_CONSUMPTION_FILTER);
+        if (rows != null) {
+            // Answered from the catalog
+            PriceItem item = new PriceItem();
+            pages = pagesOf(rows.size(), i -> rows.read(i, item), vmProductName, onOption);
+        } else {
+            // Pages are fetched back to back and parsed on the pipeline's worker pool, then merged in page order
+            Consumer<PricePage> onPage = onOption == null ? null : page -> page.forEachOption(onOption);
+            pages = PaginationPipeline.fetchAll(buildEndpoint(filter), response -> parsePage(response, vmProductName), roundTrips, onPage);
+        }
+        addPages(pages);
+    }
+
+    /**
+     * Builds the consumption prices and savings plans from consumption items already fetched,
+     * such as the items of one region picked out of a multi-region listing, without calling the API
+     * @param items The consumption items, in the order the API listed them
+     * @param onOption Called with every option, as in fetchPrices; or null
+     */
+    public void addPrices(List<PriceItem> items, String vmProductName, Consumer<? super PricingOption> onOption) {
+        addPages(pagesOf(items.size(), items::get, vmProductName, onOption));
+    }
+
+    // Splits items the way the API would page them, so the prices match a fetch of the same items
+    private List<PricePage> pagesOf(int size, IntFunction<PriceItem> items, String vmProductName, Consumer<? super PricingOption> onOption) {
+        List<PricePage> pages = new ArrayList<>();
+        for (int start = 0; start < size; start += PriceCatalog.API_PAGE_SIZE) {
+            PricePage page = new PricePage(vmProductName);
+            for (int i = start; i < Math.min(start + PriceCatalog.API_PAGE_SIZE, size); i++) {
+                page.onItem(items.apply(i));
             }
+            page.consumptionPrices = parseConsumptionPrices(page);
+            pages.add(page);
+            if (onOption != null) {
+                page.forEachOption(onOption);
+            }
+        }
+        return pages;
+    }
+
+    private void addPages(List<PricePage> pages) {
+        Metrics.CONSUMPTION_PAGES.record(pages.size());
+        for (PricePage page : pages) {
+            this.consumptionPrices.addAll(page.consumptionPrices);
+            this.savingsPlans.addAll(page.savingsPlans);
+        }
+    }
 
-            this.consumptionPrices.addAll(parseConsumptionPrices(itemList, vmProductName));
+    public long getRoundTrips() {
+        return roundTrips.sum();
+    }
 
-            endpoint = jsonObject.optString(Constants.NEXT_PAGE_LINK, null);
+    /**
+     * Builds the first-page endpoint fetched for a filter
+     * Also used by AzurePricingCalculator to prefetch the page before the filter is final
+     */
+    static String buildEndpoint(String filter) {
+        try {
+            return Constants.AZURE_PRICING_API + Constants.API_VERSION + Constants.API_FILTER + URLEncoder.encode(filter + " and " + Constants.TYPE_CONSUMPTION_FILTER, "UTF-8");
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
         }
     }
+
     /**
-     * Parses the consumption prices from the API response.
-     * This function processes the JSON objects returned by the API and converts them
-     * into ConsumptionPriceResult objects. It handles different pricing structures
-     * for various services, including special handling for Virtual Machines.
+     * Parses one page of the consumption response into consumption prices and savings plans.
+     * Runs on a pagination worker thread, so it only touches the page it is given.
+     * Items are streamed from the response one at a time; no JSON tree is built.
      * 
-     * @param items A list of JSONObjects containing the pricing data
+     * @param response The JSON response for a single page
+     * @param vmProductName The product name of the meter being priced
+     * @return The prices and savings plans found on the page
+     */
+    PricePage parsePage(String response, String vmProductName) {
+        PageParseEvent event = new PageParseEvent();
+        event.begin();
+        PricePage page = new PricePage(vmProductName);
+        page.timeClassify = event.isEnabled();
+        PricePageReader.read(response, page);
+        page.consumptionPrices = parseConsumptionPrices(page);
+        if (event.shouldCommit()) {
+            event.pricing = "consumption";
+            event.responseLength = response.length();
+            event.items = page.itemCount;
+            event.classifyTime = page.classifyTime;
+            event.commit();
+        }
+        return page;
+    }
+
+    /**
+     * Collects one page's items as they are streamed.
+     * Savings plans are emitted directly; consumption items are reduced to TierInfo entries,
+     * grouped by pricing type for Virtual Machines and kept in page order otherwise.
+     * Pricing types come from the SkuClassifier compiled for the meter's product; classification
+     * is timed for the page's PageParseEvent only while Flight Recorder records it.
+     * Package-private, like the parse methods below, so the JMH benchmarks can drive them.
+     */
+    class PricePage implements PricePageReader.ItemHandler {
+        private final SkuClassifier classifier;
+        List<ConsumptionPriceResult> consumptionPrices;
+        List<SavingsPlanResult> savingsPlans = new ArrayList<>();
+
+        private String serviceName;
+        private Map<String, List<TierInfo>> vmPrices = new HashMap<>();
+        private List<String> pricingTypes = new ArrayList<>();
+        private List<TierInfo> tiers = new ArrayList<>();
+        private boolean allItemsHaveZeroTierMinimumUnits = true;
+
+        private boolean timeClassify;
+        private long classifyTime;
+        private int itemCount;
+
+        PricePage(String vmProductName) {
+            this.classifier = SkuClassifier.forProduct(vmProductName);
+        }
+
+        @Override
+        public void onItem(PriceItem item) {
+            itemCount++;
+            for (int j = 0; j < item.getSavingsPlanCount(); j++) {
+                savingsPlans.add(parseSavingsPlan(item.getSavingsPlanTerm(j), item.getSavingsPlanRetailPrice(j)));
+            }
+
+            if (serviceName == null) {
+                serviceName = item.getServiceName();
+            }
+            TierInfo tier = new TierInfo(item.getTierMinimumUnits(), item.getRetailPrice(), item.getUnitOfMeasure());
+            if (Constants.VIRTUAL_MACHINES.equals(serviceName)) {
+                vmPrices.computeIfAbsent(classify(item), k -> new ArrayList<>()).add(tier);
+            } else {
+                pricingTypes.add(classify(item));
+                tiers.add(tier);
+                allItemsHaveZeroTierMinimumUnits &= item.getTierMinimumUnits() == 0;
+            }
+        }
+
+        private String classify(PriceItem item) {
+            if (!timeClassify) {
+                return classifier.classify(item);
+            }
+            long start = System.nanoTime();
+            String pricingType = classifier.classify(item);
+            classifyTime += System.nanoTime() - start;
+            return pricingType;
+        }
+
+        void forEachOption(Consumer<? super PricingOption> onOption) {
+            consumptionPrices.forEach(onOption);
+            savingsPlans.forEach(onOption);
+        }
+    }
+
+    /**
+     * Builds the consumption prices for a page from its collected items.
+     * It handles different pricing structures for various services, including
+     * special handling for Virtual Machines. Other services are flat-rate when
+     * every item has zero tier minimum units and tiered otherwise.
+     * 
+     * @param page The page's collected items
      * @return A list of ConsumptionPriceResult objects
      */
 
-    private List<ConsumptionPriceResult> parseConsumptionPrices(List<JSONObject> items, String productName) {
+    List<ConsumptionPriceResult> parseConsumptionPrices(PricePage page) {
         List<ConsumptionPriceResult> prices = new ArrayList<>();
-        String serviceName = items.get(0).getString(Constants.SERVICE_NAME);
+        if (page.serviceName == null) {
+            return prices;
+        }
         
-        if (serviceName.equals(Constants.VIRTUAL_MACHINES)) {
-            Map<String, List<JSONObject>> vmPrices = new HashMap<>();
-            for (JSONObject item : items) {
-                String key = getVMPricingKey(item, productName);
-                vmPrices.computeIfAbsent(key, k -> new ArrayList<>()).add(item);
-            }
-            for (Map.Entry<String, List<JSONObject>> entry : vmPrices.entrySet()) {
+        if (page.serviceName.equals(Constants.VIRTUAL_MACHINES)) {
+            for (Map.Entry<String, List<TierInfo>> entry : page.vmPrices.entrySet()) {
                 PriceInfo priceInfo = parsePriceInfo(entry.getValue());
                 prices.add(new ConsumptionPriceResult(entry.getKey(), priceInfo));
             }
         } else {
-        	if (allItemsHaveZeroTierMinimumUnits(items)) {
-                for (JSONObject item : items) {
-                    String skuName = item.getString(Constants.SKU_NAME);
-                    double retailPrice = item.getDouble(Constants.RETAIL_PRICE);
-                    String unitOfMeasure = item.getString(Constants.UNIT_OF_MEASURE);
+        	if (page.allItemsHaveZeroTierMinimumUnits) {
+                for (int i = 0; i < page.tiers.size(); i++) {
+                    TierInfo tier = page.tiers.get(i);
+                    double retailPrice = tier.getRetailPrice();
+                    String unitOfMeasure = tier.getUnitOfMeasure();
                     double hourlyRate = convertToHourlyRate(retailPrice, unitOfMeasure);
                     PriceInfo priceInfo = new PriceInfo(retailPrice, unitOfMeasure, hourlyRate, null); // Set tiers to null
-                    prices.add(new ConsumptionPriceResult(skuName, priceInfo));
+                    prices.add(new ConsumptionPriceResult(page.pricingTypes.get(i), priceInfo));
                 }
             } else {
-                String pricingType = items.get(0).getString(Constants.SKU_NAME);
-                PriceInfo priceInfo = parsePriceInfo(items);
+                String pricingType = page.pricingTypes.get(0);
+                PriceInfo priceInfo = parsePriceInfo(page.tiers);
                 prices.add(new ConsumptionPriceResult(pricingType, priceInfo));
             }
         }
@@ -104,73 +255,24 @@ public class ConsumptionAndSavingsPlanPricing {
     }
     
     /**
-     * Checks if all items in the list have zero tier minimum units.
-     * This helper function is used to determine if the pricing structure
-     * is flat-rate or tiered.
-     * 
-     * @param items A list of JSONObjects containing the pricing data
-     * @return true if all items have zero tier minimum units, false otherwise
-     */
-    
-    private boolean allItemsHaveZeroTierMinimumUnits(List<JSONObject> items) {
-        return items.stream().allMatch(item -> item.getDouble("tierMinimumUnits") == 0);
-    }
-    /**
-     * Generates a key for Virtual Machine pricing.
-     * This function creates a unique key for VM pricing based on the OS type
-     * and pricing model (e.g., Spot, Low Priority, or Normal).
-     * 
-     * @param item A JSONObject containing the VM pricing data
-     * @return A string key representing the VM pricing category
-     */
-
-    private static String getVMPricingKey(JSONObject item, String vmProductName) {
-        String serviceName = item.getString(Constants.SERVICE_NAME);
-        String productName = item.getString(Constants.PRODUCT_NAME);
-        String skuName = item.getString(Constants.SKU_NAME);
-        String osType = null;
-        vmProductName = vmProductName.replaceAll(Constants.WINDOWS+"\\s*", "").replaceAll("\\s+", " ").trim(); //replaceInOriginalCode
-
-        if (productName.contains(vmProductName)) {
-            if ((productName.contains(Constants.VIRTUAL_MACHINES) || serviceName.equals(Constants.VIRTUAL_MACHINES)) && productName.contains(Constants.WINDOWS)) {
-                osType = Constants.WINDOWS;
-            } else if((productName.contains(Constants.VIRTUAL_MACHINES) || serviceName.equals(Constants.VIRTUAL_MACHINES)) || 
-                       (((productName.contains(Constants.VIRTUAL_MACHINES)) || (serviceName.equals(Constants.VIRTUAL_MACHINES))) && productName.contains(Constants.LINUX))) {
-                osType = Constants.LINUX;
-            } else {
-            	osType = productName;
-            }
-        } else {
-            osType = productName;
-        }
-
-        if (skuName.contains(Constants.SPOT)) {
-            return osType + " " + Constants.SPOT;
-        } else if (skuName.contains(Constants.LOW_PRIORITY)) {
-            return osType + " " + Constants.LOW_PRIORITY;
-        } else {
-            return osType + " " + Constants.NORMAL;
-        }
-    }
-
-    /**
-     * Parses the price information from a list of JSON objects.
-     * This function processes the pricing tiers, calculates the hourly rate,
+     * Parses the price information from a list of tiers.
+     * This function sorts the pricing tiers, calculates the hourly rate,
      * and creates a PriceInfo object with the parsed data.
+     * All tiers take the unit of measure of the first one.
      * 
-     * @param items A list of JSONObjects containing the pricing data
+     * @param tiers The tiers collected for one price, in page order
      * @return A PriceInfo object with the parsed pricing information
      */
  
 
-    private PriceInfo parsePriceInfo(List<JSONObject> items) {
-        List<TierInfo> tiers = new ArrayList<>();
-        String unitOfMeasure = items.get(0).getString(Constants.UNIT_OF_MEASURE);
+    PriceInfo parsePriceInfo(List<TierInfo> tiers) {
+        String unitOfMeasure = tiers.get(0).getUnitOfMeasure();
         
-        for (JSONObject item : items) {
-            double tierMinimumUnits = item.getDouble("tierMinimumUnits");
-            double retailPrice = item.getDouble(Constants.RETAIL_PRICE);
-            tiers.add(new TierInfo(tierMinimumUnits, retailPrice, unitOfMeasure));
+        for (int i = 1; i < tiers.size(); i++) {
+            TierInfo tier = tiers.get(i);
+            if (!unitOfMeasure.equals(tier.getUnitOfMeasure())) {
+                tiers.set(i, new TierInfo(tier.getTierMinimumUnits(), tier.getRetailPrice(), unitOfMeasure));
+            }
         }
         
         // Sort tiers by minimum units
@@ -211,10 +313,9 @@ public class ConsumptionAndSavingsPlanPricing {
     }
   
 
-    private SavingsPlanResult parseSavingsPlan(JSONObject planJson) {
-        String term = planJson.getString(Constants.TERM);
+    private SavingsPlanResult parseSavingsPlan(String term, double retailPrice) {
         int years = extractYearsFromTerm(term);
-        double hourlyRate = planJson.getDouble(Constants.RETAIL_PRICE);
+        double hourlyRate = retailPrice;
         return new SavingsPlanResult(years, hourlyRate);
     }
 
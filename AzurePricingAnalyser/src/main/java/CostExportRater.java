@@ -0,0 +1,509 @@
+/**
+ * CostExportRater rates an Azure cost-management export (CSV): for every usage line, what it
+ * cost and what it would have cost at the meter's best alternative, aggregated per subscription
+ * and SKU.
+ *
+ * The export is read in two parallel passes over memory-mapped segments that end on line
+ * boundaries, so only the segments being worked on are mapped at a time. The first pass collects
+ * the distinct meter and region pairs, which are then priced once each through
+ * AzurePricingCalculator (in a BatchPricingEngine run, sharing its caches). A meter can be sold in
+ * several regions, so each pair is narrowed to the line's region; regions are compared
+ * case-insensitively, and lines without one are priced across every region the meter matches.
+ * The second pass rates every line; each segment aggregates into its own table, and the tables
+ * are merged as segments finish. Memory therefore grows with the number of distinct meter/region
+ * and subscription/SKU pairs, not with the file.
+ *
+ * Columns are found by name in the header, case-insensitively, under the names the export
+ * formats use (see the *_COLUMNS arrays). Quoted fields are supported; fields spanning lines are not.
+ */
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.IntStream;
+
+public class CostExportRater {
+    static final String[] METER_COLUMNS = { "MeterId" };
+    static final String[] QUANTITY_COLUMNS = { "Quantity", "UsageQuantity", "ConsumedQuantity" };
+    static final String[] COST_COLUMNS = { "CostInBillingCurrency", "Cost", "PreTaxCost", "CostInUsd" };
+    static final String[] SUBSCRIPTION_COLUMNS = { "SubscriptionId", "SubscriptionGuid", "SubscriptionName" };
+    static final String[] REGION_COLUMNS = { "ResourceLocation", "ResourceLocationNormalized", "MeterRegion", "Location" };
+
+    // Bytes per mapped segment; overridable with -Dazure.pricing.exportSegmentBytes
+    private static final long DEFAULT_SEGMENT_BYTES = 64L << 20;
+
+    // Time-based units of measure, which commitments can replace: "1 Hour", "100 Hours", "1 Day"
+    private static final Pattern TIME_UNIT = Pattern.compile("(\\d+)\\s+(Hour|Hours|Day|Days)");
+
+    private final BatchPricingEngine engine;
+    private final PriceCatalog catalog;
+    private final long segmentBytes;
+
+    /**
+     * Constructor for CostExportRater
+     * @param parallelism Maximum number of meters priced at the same time
+     * @param catalog The ingested catalog to price from where it can, or null to always call the API
+     */
+    public CostExportRater(int parallelism, PriceCatalog catalog) {
+        this(parallelism, catalog, Long.getLong("azure.pricing.exportSegmentBytes", DEFAULT_SEGMENT_BYTES));
+    }
+
+    CostExportRater(int parallelism, PriceCatalog catalog, long segmentBytes) {
+        if (segmentBytes < 1 || segmentBytes > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Segment size must be between 1 byte and 2 GB: " + segmentBytes);
+        }
+        this.engine = new BatchPricingEngine(parallelism, "", RegionSelectionPolicy.keepAll(), catalog);
+        this.catalog = catalog;
+        this.segmentBytes = segmentBytes;
+    }
+
+    /**
+     * Rates every line of an export
+     * Lines whose meter could not be priced, or whose quantity is not a number, are counted and skipped
+     * @param file The export, a CSV file with a header line
+     * @return Actual and best-alternative cost per subscription and SKU; failures are keyed by
+     *         BatchPricingEngine.regionKey
+     * @throws IOException if the file cannot be read
+     * @throws IllegalArgumentException if the header lacks a meter ID or quantity column
+     * @throws InterruptedException if interrupted while the meters are priced
+     */
+    public CostExportResult rate(Path file) throws IOException, InterruptedException {
+        long start = System.nanoTime();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            long headerEnd = nextLineStart(channel, 0, size);
+            Columns columns = Columns.parse(readHeader(channel, headerEnd));
+            List<long[]> segments = split(channel, headerEnd, size);
+
+            // Pass 1: the distinct meter and region pairs
+            Map<String, Set<String>> meterRegions = new LinkedHashMap<>();
+            forEachSegment(segments, channel, segment -> {
+                Map<String, Set<String>> local = new HashMap<>();
+                segment.forEachLine(line -> {
+                    String meterId = line.field(columns.meterId);
+                    if (!meterId.isEmpty()) {
+                        local.computeIfAbsent(meterId, k -> new HashSet<>()).add(columns.region(line));
+                    }
+                });
+                synchronized (meterRegions) {
+                    local.forEach((meterId, regions) -> meterRegions.computeIfAbsent(meterId, k -> new LinkedHashSet<>()).addAll(regions));
+                }
+            });
+
+            // Each pair is priced once, with the calculator's caches shared across meters
+            BatchPricingResult priced = engine.runInRegions(meterRegions);
+            Map<String, MeterRate> rates = new HashMap<>();
+            Map<String, Exception> failures = new LinkedHashMap<>(priced.getFailures());
+            for (Map.Entry<String, Set<String>> entry : meterRegions.entrySet()) {
+                for (String region : entry.getValue()) {
+                    String key = BatchPricingEngine.regionKey(entry.getKey(), region);
+                    PricingResult result = priced.getResults().get(key);
+                    if (result == null) {
+                        continue;
+                    }
+                    try {
+                        List<PriceItem> items = AzurePricingCalculator.lookupMeterItems(entry.getKey(), catalog, null);
+                        rates.put(key, MeterRate.of(baselineItem(entry.getKey(), region, items), result));
+                    } catch (Exception e) {
+                        failures.put(key, e);
+                    }
+                }
+            }
+
+            // Pass 2: rate every line into per-segment tables, merged as segments finish
+            CostExportResult result = new CostExportResult(size, rates.size(), failures);
+            LongAdder lines = new LongAdder();
+            forEachSegment(segments, channel, segment -> {
+                Map<String, CostExportResult.Aggregate> table = new HashMap<>();
+                long[] counts = new long[2];
+                double[] unpricedCost = new double[1];
+                segment.forEachLine(line -> {
+                    lines.increment();
+                    MeterRate rate = rates.get(BatchPricingEngine.regionKey(line.field(columns.meterId), columns.region(line)));
+                    double quantity = line.number(columns.quantity);
+                    double cost = columns.cost < 0 ? Double.NaN : line.number(columns.cost);
+                    if (rate == null) {
+                        counts[0]++;
+                        unpricedCost[0] += Double.isNaN(cost) ? 0 : cost;
+                        return;
+                    }
+                    if (Double.isNaN(quantity)) {
+                        counts[1]++;
+                        return;
+                    }
+                    double actual = Double.isNaN(cost) ? quantity * rate.unitPrice : cost;
+                    // The alternative is discounted like the actual cost, so negotiated prices carry over
+                    double best = rate.unitPrice > 0 ? actual * rate.bestUnitPrice / rate.unitPrice : actual;
+                    String subscription = columns.subscription < 0 ? "" : line.field(columns.subscription);
+                    table.computeIfAbsent(subscription + '\u0000' + rate.sku,
+                            k -> new CostExportResult.Aggregate(subscription, rate.sku, rate.bestOption))
+                            .add(quantity, actual, best);
+                });
+                result.merge(table, counts[0], unpricedCost[0], counts[1]);
+            });
+            result.finish(lines.sum(), System.nanoTime() - start);
+            return result;
+        }
+    }
+
+    /**
+     * A meter's price per unit of measure, and that of its cheapest alternative
+     */
+    static class MeterRate {
+        final String sku;
+        final double unitPrice;
+        final double bestUnitPrice;
+        final String bestOption;
+
+        private MeterRate(String sku, double unitPrice, double bestUnitPrice, String bestOption) {
+            this.sku = sku;
+            this.unitPrice = unitPrice;
+            this.bestUnitPrice = bestUnitPrice;
+            this.bestOption = bestOption;
+        }
+
+        /**
+         * The baseline item's retail price (see baselineItem) is the baseline. For time-based units the best commitment
+         * (reservation or savings plan) is the alternative when it is cheaper per hour; other
+         * units have no alternative, as commitments are not sold per GB or per transaction.
+         */
+        static MeterRate of(PriceItem meter, PricingResult result) {
+            String sku = meter.getArmSkuName() != null && !meter.getArmSkuName().isEmpty()
+                    ? meter.getArmSkuName() : meter.getProductName() + " " + meter.getSkuName();
+            double unitPrice = meter.getRetailPrice();
+            double bestUnitPrice = unitPrice;
+            String bestOption = Constants.Consumption;
+
+            BestOptionResult commitment = result.getBestOptionWithoutConsumption();
+            double hours = hoursPerUnit(meter.getUnitOfMeasure());
+            if (commitment != null && !Double.isNaN(hours) && commitment.getPrice() * hours < unitPrice) {
+                bestUnitPrice = commitment.getPrice() * hours;
+                bestOption = commitment.getOptionName();
+            }
+            return new MeterRate(sku, unitPrice, bestUnitPrice, bestOption);
+        }
+    }
+
+    /**
+     * The item whose price is the meter's pay-as-you-go baseline: the Consumption item with the
+     * lowest tierMinimumUnits in the region, matched case-insensitively against location and
+     * armRegionName, or in the lookup's first region if none matches. Reservation items and
+     * higher tiers are never the baseline, whatever order the lookup lists them in.
+     * @throws IllegalStateException if the meter has no Consumption price there
+     */
+    static PriceItem baselineItem(String meterId, String region, List<PriceItem> items) {
+        String armRegion = items.get(0).getArmRegionName();
+        for (PriceItem item : items) {
+            if (!region.isEmpty() && (region.equalsIgnoreCase(item.getLocation()) || region.equalsIgnoreCase(item.getArmRegionName()))) {
+                armRegion = item.getArmRegionName();
+                break;
+            }
+        }
+        PriceItem baseline = null;
+        for (PriceItem item : items) {
+            if (Constants.Consumption.equals(item.getType()) && Objects.equals(armRegion, item.getArmRegionName())
+                    && (baseline == null || item.getTierMinimumUnits() < baseline.getTierMinimumUnits())) {
+                baseline = item;
+            }
+        }
+        if (baseline == null) {
+            throw new IllegalStateException("No consumption price for meter ID " + meterId + " in region " + armRegion);
+        }
+        return baseline;
+    }
+
+    // Hours in one unit of a time-based unit of measure, or NaN for other units
+    static double hoursPerUnit(String unitOfMeasure) {
+        if (unitOfMeasure == null) {
+            return Double.NaN;
+        }
+        Matcher matcher = TIME_UNIT.matcher(unitOfMeasure.trim());
+        if (!matcher.matches()) {
+            return Double.NaN;
+        }
+        double count = Double.parseDouble(matcher.group(1));
+        return matcher.group(2).startsWith("Day") ? count * 24 : count;
+    }
+
+    /**
+     * The indexes of the columns the rater reads; -1 for optional columns the export lacks
+     */
+    static class Columns {
+        final int meterId;
+        final int quantity;
+        final int cost;
+        final int subscription;
+        final int region;
+
+        private Columns(int meterId, int quantity, int cost, int subscription, int region) {
+            this.meterId = meterId;
+            this.quantity = quantity;
+            this.cost = cost;
+            this.subscription = subscription;
+            this.region = region;
+        }
+
+        /**
+         * The line's region in lower case, as exports mix "EastUS" and "eastus"; empty if it has none
+         */
+        String region(Line line) {
+            return region < 0 ? "" : line.field(region).trim().toLowerCase(Locale.ROOT);
+        }
+
+        static Columns parse(List<String> header) {
+            int meterId = find(header, METER_COLUMNS);
+            int quantity = find(header, QUANTITY_COLUMNS);
+            if (meterId < 0 || quantity < 0) {
+                throw new IllegalArgumentException("Export header needs a meter ID and a quantity column: " + header);
+            }
+            return new Columns(meterId, quantity, find(header, COST_COLUMNS), find(header, SUBSCRIPTION_COLUMNS),
+                    find(header, REGION_COLUMNS));
+        }
+
+        private static int find(List<String> header, String[] names) {
+            for (String name : names) {
+                for (int i = 0; i < header.size(); i++) {
+                    if (header.get(i).trim().equalsIgnoreCase(name)) {
+                        return i;
+                    }
+                }
+            }
+            return -1;
+        }
+    }
+
+    private List<String> readHeader(FileChannel channel, long headerEnd) throws IOException {
+        if (headerEnd > Integer.MAX_VALUE) {
+            throw new IOException("Export header line is too long");
+        }
+        ByteBuffer buffer = ByteBuffer.allocate((int) headerEnd);
+        while (buffer.hasRemaining() && channel.read(buffer, buffer.position()) >= 0) {
+            // keep reading until the header line is in
+        }
+        buffer.flip();
+        Segment header = new Segment(buffer, 0, buffer.limit());
+        // Skip a UTF-8 byte order mark
+        if (buffer.limit() >= 3 && (buffer.get(0) & 0xFF) == 0xEF && (buffer.get(1) & 0xFF) == 0xBB && (buffer.get(2) & 0xFF) == 0xBF) {
+            header = new Segment(buffer, 3, buffer.limit());
+        }
+        List<String> fields = new ArrayList<>();
+        header.forEachLine(line -> {
+            for (int i = 0; i < line.fieldCount(); i++) {
+                fields.add(line.field(i));
+            }
+        });
+        return fields;
+    }
+
+    /**
+     * Splits the data lines into segments of about segmentBytes, each ending after a newline
+     */
+    List<long[]> split(FileChannel channel, long from, long size) throws IOException {
+        List<long[]> segments = new ArrayList<>();
+        long start = from;
+        while (start < size) {
+            long end = start + segmentBytes >= size ? size : nextLineStart(channel, start + segmentBytes, size);
+            segments.add(new long[] { start, end });
+            start = end;
+        }
+        return segments;
+    }
+
+    // The position after the first newline at or after a position, or the file size if there is none
+    private static long nextLineStart(FileChannel channel, long position, long size) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(8192);
+        while (position < size) {
+            buffer.clear();
+            int read = channel.read(buffer, position);
+            if (read <= 0) {
+                break;
+            }
+            for (int i = 0; i < read; i++) {
+                if (buffer.get(i) == '\n') {
+                    return position + i + 1;
+                }
+            }
+            position += read;
+        }
+        return size;
+    }
+
+    private interface SegmentTask {
+        void run(Segment segment);
+    }
+
+    private static void forEachSegment(List<long[]> segments, FileChannel channel, SegmentTask task) throws IOException {
+        try {
+            IntStream.range(0, segments.size()).parallel().forEach(i -> {
+                long[] bounds = segments.get(i);
+                MappedByteBuffer buffer;
+                try {
+                    buffer = channel.map(FileChannel.MapMode.READ_ONLY, bounds[0], bounds[1] - bounds[0]);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                task.run(new Segment(buffer, 0, buffer.limit()));
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * A run of whole lines in a buffer, split into fields without copying
+     */
+    static class Segment {
+        private final ByteBuffer buffer;
+        private final int start;
+        private final int end;
+
+        Segment(ByteBuffer buffer, int start, int end) {
+            this.buffer = buffer;
+            this.start = start;
+            this.end = end;
+        }
+
+        interface LineHandler {
+            void onLine(Line line);
+        }
+
+        /**
+         * Passes every non-empty line to the handler; the Line is reused between calls
+         */
+        void forEachLine(LineHandler handler) {
+            Line line = new Line(buffer);
+            int position = start;
+            while (position < end) {
+                position = line.parse(position, end);
+                if (line.fieldCount() > 1 || line.fieldLength(0) > 0) {
+                    handler.onLine(line);
+                }
+            }
+        }
+    }
+
+    /**
+     * The fields of one CSV line as byte ranges of the buffer
+     */
+    static class Line {
+        private final ByteBuffer buffer;
+        private int[] fieldStart = new int[64];
+        private int[] fieldEnd = new int[64];
+        private boolean[] quoted = new boolean[64];
+        private int fieldCount;
+
+        Line(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        /**
+         * Splits the line starting at a position
+         * @return The position of the next line
+         */
+        int parse(int position, int limit) {
+            fieldCount = 0;
+            while (true) {
+                if (fieldCount == fieldStart.length) {
+                    fieldStart = Arrays.copyOf(fieldStart, fieldCount * 2);
+                    fieldEnd = Arrays.copyOf(fieldEnd, fieldCount * 2);
+                    quoted = Arrays.copyOf(quoted, fieldCount * 2);
+                }
+                int field = fieldCount++;
+                if (position < limit && buffer.get(position) == '"') {
+                    // Quoted: runs to the closing quote; doubled quotes are kept and unescaped on decode
+                    position++;
+                    fieldStart[field] = position;
+                    while (position < limit) {
+                        if (buffer.get(position) == '"') {
+                            if (position + 1 < limit && buffer.get(position + 1) == '"') {
+                                position += 2;
+                                continue;
+                            }
+                            break;
+                        }
+                        position++;
+                    }
+                    fieldEnd[field] = position;
+                    quoted[field] = true;
+                    position = Math.min(position + 1, limit);
+                    while (position < limit && buffer.get(position) != ',' && buffer.get(position) != '\n') {
+                        position++;
+                    }
+                } else {
+                    fieldStart[field] = position;
+                    while (position < limit && buffer.get(position) != ',' && buffer.get(position) != '\n') {
+                        position++;
+                    }
+                    int fieldEndPosition = position;
+                    if (fieldEndPosition > fieldStart[field] && buffer.get(fieldEndPosition - 1) == '\r'
+                            && (position >= limit || buffer.get(position) == '\n')) {
+                        fieldEndPosition--;
+                    }
+                    fieldEnd[field] = fieldEndPosition;
+                    quoted[field] = false;
+                }
+                if (position >= limit) {
+                    return limit;
+                }
+                if (buffer.get(position) == '\n') {
+                    return position + 1;
+                }
+                position++;
+            }
+        }
+
+        int fieldCount() {
+            return fieldCount;
+        }
+
+        int fieldLength(int field) {
+            return fieldEnd[field] - fieldStart[field];
+        }
+
+        /**
+         * Decodes a field, or returns "" if the line has no such field
+         */
+        String field(int field) {
+            if (field >= fieldCount) {
+                return "";
+            }
+            byte[] bytes = new byte[fieldLength(field)];
+            buffer.get(fieldStart[field], bytes);
+            String value = new String(bytes, StandardCharsets.UTF_8);
+            return quoted[field] ? value.replace("\"\"", "\"") : value;
+        }
+
+        /**
+         * Parses a numeric field, or returns NaN if it is missing or not a number
+         */
+        double number(int field) {
+            String value = field(field).trim();
+            if (value.isEmpty()) {
+                return Double.NaN;
+            }
+            try {
+                return Double.parseDouble(value);
+            } catch (NumberFormatException e) {
+                return Double.NaN;
+            }
+        }
+    }
+}
@@ -0,0 +1,168 @@
+/**
+ * CostExportResult holds the outcome of a CostExportRater run: per subscription and SKU, the
+ * usage, what it cost, and what it would have cost at the meter's best alternative, ordered by
+ * potential savings. Lines that could not be rated are counted, not kept.
+ */
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public class CostExportResult {
+    // Aggregates printed by toString
+    private static final int TOP_ROWS = 20;
+
+    private final Map<String, Aggregate> aggregates = new HashMap<>();
+    private final long bytes;
+    private final int metersPriced;
+    private final Map<String, Exception> meterFailures;
+    private long unpricedLines;
+    private double unpricedCost;
+    private long skippedLines;
+    private long lines;
+    private long elapsedNanos;
+
+    /**
+     * Usage of one SKU within one subscription
+     */
+    public static class Aggregate {
+        private final String subscription;
+        private final String sku;
+        private final String bestOption;
+        private double quantity;
+        private double actualCost;
+        private double bestCost;
+        private long lines;
+
+        public Aggregate(String subscription, String sku, String bestOption) {
+            this.subscription = subscription;
+            this.sku = sku;
+            this.bestOption = bestOption;
+        }
+
+        void add(double quantity, double actualCost, double bestCost) {
+            this.quantity += quantity;
+            this.actualCost += actualCost;
+            this.bestCost += bestCost;
+            this.lines++;
+        }
+
+        void add(Aggregate other) {
+            this.quantity += other.quantity;
+            this.actualCost += other.actualCost;
+            this.bestCost += other.bestCost;
+            this.lines += other.lines;
+        }
+
+        public String getSubscription() { return subscription; }
+        public String getSku() { return sku; }
+        // The pricing option the best cost assumes; Consumption if nothing beats the meter's own price
+        public String getBestOption() { return bestOption; }
+        public double getQuantity() { return quantity; }
+        public double getActualCost() { return actualCost; }
+        public double getBestCost() { return bestCost; }
+        public long getLines() { return lines; }
+
+        public double getSavings() {
+            return actualCost - bestCost;
+        }
+    }
+
+    CostExportResult(long bytes, int metersPriced, Map<String, Exception> meterFailures) {
+        this.bytes = bytes;
+        this.metersPriced = metersPriced;
+        this.meterFailures = meterFailures;
+    }
+
+    /**
+     * Merges one segment's aggregates and counts
+     */
+    synchronized void merge(Map<String, Aggregate> segment, long unpriced, double unpricedCost, long skipped) {
+        for (Map.Entry<String, Aggregate> entry : segment.entrySet()) {
+            Aggregate existing = aggregates.putIfAbsent(entry.getKey(), entry.getValue());
+            if (existing != null) {
+                existing.add(entry.getValue());
+            }
+        }
+        this.unpricedLines += unpriced;
+        this.unpricedCost += unpricedCost;
+        this.skippedLines += skipped;
+    }
+
+    void finish(long lines, long elapsedNanos) {
+        this.lines = lines;
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    /**
+     * Returns the aggregates, the largest potential savings first
+     */
+    public List<Aggregate> getAggregates() {
+        List<Aggregate> sorted = new ArrayList<>(aggregates.values());
+        sorted.sort(Comparator.comparingDouble(Aggregate::getSavings).reversed()
+                .thenComparing(Aggregate::getSubscription).thenComparing(Aggregate::getSku));
+        return sorted;
+    }
+
+    public double getActualCost() {
+        double total = 0;
+        for (Aggregate aggregate : aggregates.values()) {
+            total += aggregate.actualCost;
+        }
+        return total;
+    }
+
+    public double getBestCost() {
+        double total = 0;
+        for (Aggregate aggregate : aggregates.values()) {
+            total += aggregate.bestCost;
+        }
+        return total;
+    }
+
+    public double getSavings() {
+        return getActualCost() - getBestCost();
+    }
+
+    public long getLines() { return lines; }
+    // Lines whose meter could not be priced, and the cost the export reports for them
+    public long getUnpricedLines() { return unpricedLines; }
+    public double getUnpricedCost() { return unpricedCost; }
+    // Lines of a priced meter without a usable quantity
+    public long getSkippedLines() { return skippedLines; }
+    public int getMetersPriced() { return metersPriced; }
+    public Map<String, Exception> getMeterFailures() { return meterFailures; }
+    public long getBytes() { return bytes; }
+    public long getElapsedNanos() { return elapsedNanos; }
+
+    public double getMegabytesPerSecond() {
+        return elapsedNanos == 0 ? 0 : bytes / 1e6 / (elapsedNanos / 1e9);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("Cost Export Rating:\n");
+        List<Aggregate> sorted = getAggregates();
+        sb.append(String.format("%-38s %-32s %14s %14s %14s  %s\n", "Subscription", "SKU", "Actual", "Best", "Savings", "Best option"));
+        for (Aggregate aggregate : sorted.subList(0, Math.min(TOP_ROWS, sorted.size()))) {
+            sb.append(String.format("%-38s %-32s %14.2f %14.2f %14.2f  %s\n", aggregate.subscription, aggregate.sku,
+                    aggregate.actualCost, aggregate.bestCost, aggregate.getSavings(), aggregate.bestOption));
+        }
+        if (sorted.size() > TOP_ROWS) {
+            sb.append(String.format("... %d more\n", sorted.size() - TOP_ROWS));
+        }
+        double actual = getActualCost();
+        sb.append(String.format("Total: actual %.2f, best %.2f, potential savings %.2f (%.1f%%)\n",
+                actual, getBestCost(), getSavings(), actual == 0 ? 0 : getSavings() / actual * 100));
+        sb.append(String.format("Lines: %d rated, %d unpriced (cost %.2f), %d skipped\n",
+                lines - unpricedLines - skippedLines, unpricedLines, unpricedCost, skippedLines));
+        sb.append(String.format("Meters: %d priced, %d failed\n", metersPriced, meterFailures.size()));
+        for (Map.Entry<String, Exception> failure : meterFailures.entrySet()) {
+            sb.append(String.format("  %s: %s\n", failure.getKey(), failure.getValue().getMessage()));
+        }
+        sb.append(String.format("Read %.1f MB in %.2f s (%.1f MB/s)\n", bytes / 1e6, elapsedNanos / 1e9, getMegabytesPerSecond()));
+        return sb.toString();
+    }
+}
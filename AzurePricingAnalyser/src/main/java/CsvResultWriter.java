@@ -0,0 +1,143 @@
+/**
+ * CsvResultWriter writes results as CSV, one row per price: a header line, then for every result
+ * its consumption prices (one row per tier for tiered prices), reservations, savings plans and
+ * best options. The kind column says which a row is:
+ *
+ *   Consumption, Reservation, Savings Plan, Best, Best Without Consumption, Term Best
+ *
+ * so a spreadsheet can filter on it. Fields are quoted only when they contain a comma, quote or
+ * line break; numbers are unformatted, and empty where a row has no such value.
+ */
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.util.Map;
+
+public class CsvResultWriter implements PricingResultWriter {
+    static final String HEADER = "meterId,service,region,instanceType,currency,kind,option,unitOfMeasure,tierMinimumUnits,unitPrice,hourlyRate,upfrontCost";
+
+    private final Writer out;
+    private boolean headerWritten;
+
+    public CsvResultWriter(OutputStream out) {
+        this.out = PricingResultWriter.utf8(out);
+    }
+
+    @Override
+    public void write(String meterId, PricingResult result) throws IOException {
+        if (!headerWritten) {
+            out.write(HEADER);
+            out.write('\n');
+            headerWritten = true;
+        }
+        if (result.getConsumptionPrices() != null) {
+            for (ConsumptionPriceResult price : result.getConsumptionPrices()) {
+                PriceInfo priceInfo = price.getPriceInfo();
+                if (priceInfo.hasTiers()) {
+                    for (TierInfo tier : priceInfo.getTiers()) {
+                        row(meterId, result, Constants.Consumption, price.getPricingType(), priceInfo.getUnitOfMeasure(),
+                                tier.getTierMinimumUnits(), tier.getRetailPrice(), Double.NaN, Double.NaN);
+                    }
+                } else {
+                    row(meterId, result, Constants.Consumption, price.getPricingType(), priceInfo.getUnitOfMeasure(),
+                            Double.NaN, priceInfo.getOriginalPrice(), priceInfo.getHourlyRate(), Double.NaN);
+                }
+            }
+        }
+        if (result.getReservationPrices() != null) {
+            for (ReservationPriceResult price : result.getReservationPrices()) {
+                row(meterId, result, Constants.Reservation, price.getTerm(), null,
+                        Double.NaN, Double.NaN, price.getHourlyRate(), price.getUpfrontCost());
+            }
+        }
+        if (result.getSavingsPlans() != null) {
+            for (SavingsPlanResult plan : result.getSavingsPlans()) {
+                row(meterId, result, Constants.Savings_Plan, plan.getTermYears() + " Years", null,
+                        Double.NaN, Double.NaN, plan.getHourlyRate(), plan.getUpfrontCost());
+            }
+        }
+        bestRow(meterId, result, "Best", result.getBestOption());
+        bestRow(meterId, result, "Best Without Consumption", result.getBestOptionWithoutConsumption());
+        if (result.getTermWiseBestOptions() != null) {
+            for (Map.Entry<String, BestOptionResult> entry : result.getTermWiseBestOptions().entrySet()) {
+                bestRow(meterId, result, "Term Best", entry.getValue());
+            }
+        }
+    }
+
+    private void bestRow(String meterId, PricingResult result, String kind, BestOptionResult option) throws IOException {
+        if (option != null) {
+            row(meterId, result, kind, option.getOptionName(), null, Double.NaN, Double.NaN, option.getPrice(), Double.NaN);
+        }
+    }
+
+    private void row(String meterId, PricingResult result, String kind, String option, String unitOfMeasure,
+            double tierMinimumUnits, double unitPrice, double hourlyRate, double upfrontCost) throws IOException {
+        field(meterId);
+        out.write(',');
+        field(result.getService());
+        out.write(',');
+        field(result.getRegion());
+        out.write(',');
+        field(result.getInstanceType());
+        out.write(',');
+        field(result.getCurrency());
+        out.write(',');
+        field(kind);
+        out.write(',');
+        field(option);
+        out.write(',');
+        field(unitOfMeasure);
+        out.write(',');
+        number(tierMinimumUnits);
+        out.write(',');
+        number(unitPrice);
+        out.write(',');
+        number(hourlyRate);
+        out.write(',');
+        number(upfrontCost);
+        out.write('\n');
+    }
+
+    private void number(double value) throws IOException {
+        if (Double.isFinite(value)) {
+            out.write(Double.toString(value));
+        }
+    }
+
+    private void field(String value) throws IOException {
+        if (value == null) {
+            return;
+        }
+        boolean quote = false;
+        for (int i = 0; i < value.length() && !quote; i++) {
+            char c = value.charAt(i);
+            quote = c == ',' || c == '"' || c == '\n' || c == '\r';
+        }
+        if (!quote) {
+            out.write(value);
+            return;
+        }
+        out.write('"');
+        int run = 0;
+        for (int i = 0; i < value.length(); i++) {
+            if (value.charAt(i) == '"') {
+                out.write(value, run, i + 1 - run);
+                out.write('"');
+                run = i + 1;
+            }
+        }
+        out.write(value, run, value.length() - run);
+        out.write('"');
+    }
+
+    @Override
+    public void flush() throws IOException {
+        out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        out.close();
+    }
+}
@@ -0,0 +1,380 @@
+/**
+ * DiskResponseCache is an optional second-level cache under ResponseCache that survives restarts.
+ * Responses are appended to segment files (segment-000001.dat, ...) as records of
+ *
+ *   int magic | int keyLength | int bodyLength | long fetchedAtMillis | int crc32 | key | body
+ *
+ * On startup only the record headers and keys are scanned to rebuild the in-memory index of
+ * endpoint to file position; bodies are read lazily on a hit. A later record for the same endpoint
+ * supersedes earlier ones. Records keep their original fetch timestamp so the TTL still applies
+ * after a restart. A torn record at the end of the last segment (e.g. after a crash) is truncated away.
+ *
+ * Sealed segments are reclaimed when the cache opens and whenever the active segment rolls over:
+ * a segment whose newest record has expired is deleted, and while the segments together exceed
+ * the byte budget the oldest ones are deleted too, taking their records out of the index. The
+ * active segment is never deleted, so the directory can exceed the budget by at most one segment.
+ *
+ * Enabled by setting azure.pricing.diskCache.dir; azure.pricing.diskCache.segmentBytes sets
+ * the size at which a new segment is started (default 64 MB) and azure.pricing.diskCache.maxBytes
+ * the byte budget for all segments (default 1 GB).
+ */
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+
+public class DiskResponseCache implements Closeable {
+    private static final Logger logger = Logger.getLogger(DiskResponseCache.class.getName());
+
+    private static final int MAGIC = 0x41505243; // "APRC"
+    private static final int HEADER_BYTES = 4 + 4 + 4 + 8 + 4;
+
+    private final Path directory;
+    private final long ttlMillis;
+    private final long maxSegmentBytes;
+    private final long maxBytes;
+
+    private final Map<String, Location> index = new ConcurrentHashMap<>();
+    private final Map<Integer, FileChannel> segments = new ConcurrentHashMap<>();
+    // Newest fetch timestamp in each segment, for expiring whole segments; guarded by "this"
+    private final Map<Integer, Long> newestFetch = new HashMap<>();
+
+    // Active segment state, guarded by "this"
+    private int activeSegmentId;
+    private FileChannel activeSegment;
+    private long activeSize;
+
+    /**
+     * A response read back from disk, with the time it was originally fetched
+     */
+    public static class Hit {
+        private final String value;
+        private final long fetchedAtMillis;
+
+        Hit(String value, long fetchedAtMillis) {
+            this.value = value;
+            this.fetchedAtMillis = fetchedAtMillis;
+        }
+
+        public String getValue() { return value; }
+        public long getFetchedAtMillis() { return fetchedAtMillis; }
+    }
+
+    private static class Location {
+        final int segmentId;
+        final long bodyOffset;
+        final int bodyLength;
+        final long fetchedAtMillis;
+        final int crc;
+
+        Location(int segmentId, long bodyOffset, int bodyLength, long fetchedAtMillis, int crc) {
+            this.segmentId = segmentId;
+            this.bodyOffset = bodyOffset;
+            this.bodyLength = bodyLength;
+            this.fetchedAtMillis = fetchedAtMillis;
+            this.crc = crc;
+        }
+    }
+
+    /**
+     * Opens the cache directory and rebuilds the index from the existing segments
+     * @param directory Directory holding the segment files; created if missing
+     * @param ttlMillis Time to live of each record, counted from its fetch time
+     * @param maxSegmentBytes Size at which the active segment is sealed and a new one started
+     * @param maxBytes Byte budget for all segments; the oldest sealed segments are deleted beyond it
+     * @throws IOException if the directory or a segment cannot be read
+     */
+    public DiskResponseCache(Path directory, long ttlMillis, long maxSegmentBytes, long maxBytes) throws IOException {
+        if (maxBytes < maxSegmentBytes) {
+            throw new IllegalArgumentException("Disk cache budget " + maxBytes + " is smaller than a segment (" + maxSegmentBytes + ")");
+        }
+        this.directory = directory;
+        this.ttlMillis = ttlMillis;
+        this.maxSegmentBytes = maxSegmentBytes;
+        this.maxBytes = maxBytes;
+        Files.createDirectories(directory);
+        open();
+    }
+
+    /**
+     * Opens the disk cache configured by system properties
+     * @param ttlMillis Time to live of each record, normally the in-memory cache's TTL
+     * @return The disk cache, or null if azure.pricing.diskCache.dir is not set
+     */
+    public static DiskResponseCache fromSystemProperties(long ttlMillis) throws IOException {
+        String dir = System.getProperty("azure.pricing.diskCache.dir");
+        if (dir == null || dir.isEmpty()) {
+            return null;
+        }
+        return new DiskResponseCache(Paths.get(dir), ttlMillis,
+                Long.getLong("azure.pricing.diskCache.segmentBytes", 64L * 1024 * 1024),
+                Long.getLong("azure.pricing.diskCache.maxBytes", 1024L * 1024 * 1024));
+    }
+
+    /**
+     * Looks up a response
+     * @param key The endpoint URL
+     * @return The stored response and its fetch time, or null if absent, expired or unreadable
+     */
+    public Hit get(String key) {
+        Location location = index.get(key);
+        if (location == null) {
+            return null;
+        }
+        if (System.currentTimeMillis() - location.fetchedAtMillis >= ttlMillis) {
+            index.remove(key, location);
+            return null;
+        }
+        try {
+            ByteBuffer body = ByteBuffer.allocate(location.bodyLength);
+            FileChannel channel = segments.get(location.segmentId);
+            if (channel == null) {
+                // The segment was reclaimed after the index lookup
+                return null;
+            }
+            long position = location.bodyOffset;
+            while (body.hasRemaining()) {
+                int n = channel.read(body, position);
+                if (n < 0) {
+                    throw new IOException("Unexpected end of segment " + location.segmentId);
+                }
+                position += n;
+            }
+
+            CRC32 crc = new CRC32();
+            crc.update(key.getBytes(StandardCharsets.UTF_8));
+            crc.update(body.array());
+            if ((int) crc.getValue() != location.crc) {
+                throw new IOException("Checksum mismatch in segment " + location.segmentId);
+            }
+            return new Hit(new String(body.array(), StandardCharsets.UTF_8), location.fetchedAtMillis);
+        } catch (ClosedChannelException e) {
+            // Reclaimed while being read
+            return null;
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "Failed to read cached response for " + key, e);
+            index.remove(key, location);
+            return null;
+        }
+    }
+
+    /**
+     * Appends a response to the active segment and indexes it
+     * Failures are logged and otherwise ignored; the disk tier is best effort
+     * @param fetchedAtMillis Wall-clock time the response was fetched
+     */
+    public void put(String key, String value, long fetchedAtMillis) {
+        byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+        byte[] body = value.getBytes(StandardCharsets.UTF_8);
+        CRC32 crc = new CRC32();
+        crc.update(keyBytes);
+        crc.update(body);
+
+        ByteBuffer record = ByteBuffer.allocate(HEADER_BYTES + keyBytes.length + body.length);
+        record.putInt(MAGIC).putInt(keyBytes.length).putInt(body.length).putLong(fetchedAtMillis).putInt((int) crc.getValue());
+        record.put(keyBytes).put(body);
+        record.flip();
+
+        synchronized (this) {
+            try {
+                if (activeSize > 0 && activeSize + record.remaining() > maxSegmentBytes) {
+                    startSegment(activeSegmentId + 1);
+                    reclaim(System.currentTimeMillis());
+                }
+                long recordOffset = activeSize;
+                while (record.hasRemaining()) {
+                    activeSize += activeSegment.write(record, activeSize);
+                }
+                newestFetch.merge(activeSegmentId, fetchedAtMillis, Math::max);
+                index.put(key, new Location(activeSegmentId, recordOffset + HEADER_BYTES + keyBytes.length, body.length, fetchedAtMillis, (int) crc.getValue()));
+            } catch (IOException e) {
+                logger.log(Level.WARNING, "Failed to write cached response for " + key, e);
+            }
+        }
+    }
+
+    public int size() {
+        return index.size();
+    }
+
+    /**
+     * Bytes held by all segments, including superseded and expired records not yet reclaimed
+     */
+    public synchronized long getDiskBytes() {
+        long bytes = 0;
+        for (FileChannel channel : segments.values()) {
+            try {
+                bytes += channel.size();
+            } catch (IOException e) {
+                // Counted as empty; the next reclaim retries it
+            }
+        }
+        return bytes;
+    }
+
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+    public Path getDirectory() {
+        return directory;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        for (FileChannel channel : segments.values()) {
+            channel.close();
+        }
+        segments.clear();
+        newestFetch.clear();
+        index.clear();
+    }
+
+    private synchronized void open() throws IOException {
+        List<Integer> ids = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "segment-*.dat")) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                ids.add(Integer.parseInt(name.substring("segment-".length(), name.length() - ".dat".length())));
+            }
+        }
+        Collections.sort(ids);
+
+        for (int i = 0; i < ids.size(); i++) {
+            int id = ids.get(i);
+            FileChannel channel = FileChannel.open(segmentPath(id), StandardOpenOption.READ, StandardOpenOption.WRITE);
+            newestFetch.put(id, scanSegment(id, channel, i == ids.size() - 1));
+            segments.put(id, channel);
+        }
+
+        if (ids.isEmpty()) {
+            startSegment(1);
+        } else {
+            activeSegmentId = ids.get(ids.size() - 1);
+            activeSegment = segments.get(activeSegmentId);
+            activeSize = activeSegment.size();
+        }
+        reclaim(System.currentTimeMillis());
+    }
+
+    /**
+     * Deletes the sealed segments whose records have all expired, then the oldest sealed segments
+     * while all segments together are over the byte budget. Failures are logged; the next roll retries
+     */
+    private synchronized void reclaim(long nowMillis) {
+        List<Integer> sealed = new ArrayList<>(segments.keySet());
+        sealed.remove(Integer.valueOf(activeSegmentId));
+        Collections.sort(sealed);
+
+        try {
+            long bytes = activeSize;
+            List<Integer> kept = new ArrayList<>();
+            for (int id : sealed) {
+                if (nowMillis - newestFetch.getOrDefault(id, 0L) >= ttlMillis) {
+                    deleteSegment(id);
+                } else {
+                    bytes += segments.get(id).size();
+                    kept.add(id);
+                }
+            }
+            for (int id : kept) {
+                if (bytes <= maxBytes) {
+                    break;
+                }
+                bytes -= segments.get(id).size();
+                deleteSegment(id);
+            }
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "Failed to reclaim segments in " + directory, e);
+        }
+    }
+
+    private void deleteSegment(int id) throws IOException {
+        // Out of the index first, so new lookups miss instead of reading a closed channel
+        index.values().removeIf(location -> location.segmentId == id);
+        newestFetch.remove(id);
+        FileChannel channel = segments.remove(id);
+        if (channel != null) {
+            channel.close();
+        }
+        Files.deleteIfExists(segmentPath(id));
+    }
+
+    /**
+     * Indexes every complete record of a segment, reading headers and keys only
+     * @return The newest fetch timestamp found in the segment
+     */
+    private long scanSegment(int id, FileChannel channel, boolean truncateTornTail) throws IOException {
+        long size = channel.size();
+        long position = 0;
+        long newest = 0;
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+
+        while (position + HEADER_BYTES <= size) {
+            header.clear();
+            readFully(channel, header, position);
+            header.flip();
+            int magic = header.getInt();
+            int keyLength = header.getInt();
+            int bodyLength = header.getInt();
+            long fetchedAtMillis = header.getLong();
+            int crc = header.getInt();
+            if (magic != MAGIC || keyLength < 0 || bodyLength < 0 || position + HEADER_BYTES + keyLength + bodyLength > size) {
+                break;
+            }
+
+            ByteBuffer key = ByteBuffer.allocate(keyLength);
+            readFully(channel, key, position + HEADER_BYTES);
+            long bodyOffset = position + HEADER_BYTES + keyLength;
+            index.put(new String(key.array(), StandardCharsets.UTF_8), new Location(id, bodyOffset, bodyLength, fetchedAtMillis, crc));
+            newest = Math.max(newest, fetchedAtMillis);
+            position = bodyOffset + bodyLength;
+        }
+
+        if (position < size) {
+            logger.warning("Discarding " + (size - position) + " unreadable bytes at the end of " + segmentPath(id));
+            if (truncateTornTail) {
+                channel.truncate(position);
+            }
+        }
+        return newest;
+    }
+
+    private void startSegment(int id) throws IOException {
+        FileChannel channel = FileChannel.open(segmentPath(id), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        segments.put(id, channel);
+        activeSegmentId = id;
+        activeSegment = channel;
+        activeSize = channel.size();
+    }
+
+    private Path segmentPath(int id) {
+        return directory.resolve(String.format("segment-%06d.dat", id));
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int n = channel.read(buffer, position);
+            if (n < 0) {
+                throw new IOException("Unexpected end of segment");
+            }
+            position += n;
+        }
+    }
+}
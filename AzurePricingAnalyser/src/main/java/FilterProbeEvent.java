@@ -0,0 +1,33 @@
+/**
+ * FilterProbeEvent is a Java Flight Recorder event for one summary query AzurePricingCalculator
+ * makes while building a meter's filter, from issuing the query to its page summary being
+ * available. Probes planned away are not recorded, the same as the filter_probes metric.
+ *
+ * Probes complete asynchronously, so the event is committed on the thread that completed the
+ * probe, not necessarily the one that issued it.
+ */
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+@Name("azure.pricing.FilterProbe")
+@Label("Filter Probe")
+@Category("Azure Pricing")
+@StackTrace(false)
+public class FilterProbeEvent extends jdk.jfr.Event {
+    @Label("Meter ID")
+    String meterId;
+
+    @Label("Probe")
+    @Description("detailed, region or region_check")
+    String probe;
+
+    @Label("Filter")
+    String filter;
+
+    @Label("Items")
+    @Description("Items on the probe's first page, or -1 if the probe failed")
+    int items;
+}
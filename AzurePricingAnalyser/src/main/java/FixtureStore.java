@@ -0,0 +1,84 @@
+/**
+ * FixtureStore keeps recorded Azure Retail Prices API responses on local disk.
+ * Each endpoint (including every NextPageLink page) is stored in its own file named after
+ * the SHA-256 of the endpoint URL, so lookups need no index. An index.tsv file mapping
+ * file names back to endpoints is appended alongside for humans inspecting a recording.
+ */
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+public class FixtureStore {
+    private static final String INDEX_FILE = "index.tsv";
+
+    private final Path directory;
+
+    public FixtureStore(Path directory) {
+        this.directory = directory;
+    }
+
+    public Path getDirectory() {
+        return directory;
+    }
+
+    /**
+     * Saves a response for the given endpoint, replacing any earlier recording
+     * The body is written to a temporary file first so a crash never leaves a truncated fixture
+     * @param endpoint The full request URL
+     * @param response The response body
+     * @throws IOException if the fixture cannot be written
+     */
+    public void save(String endpoint, String response) throws IOException {
+        Files.createDirectories(directory);
+        String fileName = fileNameFor(endpoint);
+        Path target = directory.resolve(fileName);
+        Path temp = Files.createTempFile(directory, fileName, ".tmp");
+        Files.write(temp, response.getBytes(StandardCharsets.UTF_8));
+        Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+        synchronized (this) {
+            Files.write(directory.resolve(INDEX_FILE),
+                (fileName + "\t" + endpoint + "\n").getBytes(StandardCharsets.UTF_8),
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        }
+    }
+
+    /**
+     * Loads the recorded response for the given endpoint
+     * @param endpoint The full request URL
+     * @return The recorded response body
+     * @throws IOException if no recording exists for the endpoint or it cannot be read
+     */
+    public String load(String endpoint) throws IOException {
+        Path file = directory.resolve(fileNameFor(endpoint));
+        try {
+            return new String(Files.readAllBytes(file), StandardCharsets.UTF_8);
+        } catch (NoSuchFileException e) {
+            throw new NoSuchFileException(file.toString(), null, "No recorded response for endpoint " + endpoint);
+        }
+    }
+
+    public boolean contains(String endpoint) {
+        return Files.exists(directory.resolve(fileNameFor(endpoint)));
+    }
+
+    static String fileNameFor(String endpoint) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            byte[] hash = digest.digest(endpoint.getBytes(StandardCharsets.UTF_8));
+            StringBuilder sb = new StringBuilder(hash.length * 2 + 5);
+            for (byte b : hash) {
+                sb.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+            }
+            return sb.append(".json").toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+}
@@ -0,0 +1,37 @@
+/**
+ * HttpStatusException reports a response with a status other than 200.
+ * It carries the status code and, for 429 and 503 responses, the server's Retry-After delay,
+ * so callers can tell throttling apart from other failures.
+ */
+import java.io.IOException;
+
+public class HttpStatusException extends IOException {
+    private static final long serialVersionUID = 1L;
+
+    private final int statusCode;
+    private final long retryAfterMillis;
+
+    /**
+     * @param retryAfterMillis Delay requested by a Retry-After header, or -1 if there was none
+     */
+    public HttpStatusException(int statusCode, long retryAfterMillis) {
+        super("Failed : HTTP error code : " + statusCode);
+        this.statusCode = statusCode;
+        this.retryAfterMillis = retryAfterMillis;
+    }
+
+    public int getStatusCode() {
+        return statusCode;
+    }
+
+    public long getRetryAfterMillis() {
+        return retryAfterMillis;
+    }
+
+    /**
+     * Whether the server asked the client to slow down: 429 Too Many Requests or 503 Service Unavailable
+     */
+    public boolean isThrottled() {
+        return statusCode == 429 || statusCode == 503;
+    }
+}
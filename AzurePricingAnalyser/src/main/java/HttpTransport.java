@@ -0,0 +1,42 @@
+/**
+ * HttpTransport performs the GET requests ApiClient sends to the pricing API.
+ * Implementations decide how connections are made and reused; ApiClient.setTransport swaps
+ * them, e.g. to point tests at a local stub or to add instrumentation.
+ */
+import java.io.IOException;
+import java.io.Reader;
+
+public interface HttpTransport {
+    /**
+     * Consumes a response body as characters while it is being received
+     */
+    interface BodyReader<T> {
+        T read(Reader body) throws IOException;
+    }
+
+    /**
+     * Sends a GET request and passes the decoded body to the reader
+     * @param url The full request URL
+     * @param reader Reads the body; the stream is closed after it returns
+     * @return What the reader returned
+     * @throws IOException if the request fails, times out or returns a non-200 status
+     */
+    <T> T get(String url, BodyReader<T> reader) throws IOException;
+
+    /**
+     * Sends a GET request and returns the whole body as a string
+     */
+    default String get(String url) throws IOException {
+        return get(url, HttpTransport::readFully);
+    }
+
+    static String readFully(Reader body) throws IOException {
+        StringBuilder sb = new StringBuilder(16384);
+        char[] buffer = new char[8192];
+        int n;
+        while ((n = body.read(buffer)) > 0) {
+            sb.append(buffer, 0, n);
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,324 @@
+/**
+ * A small pull parser for JSON text read from a Reader.
+ * It hands out one token at a time and never builds a document tree, so memory use depends on
+ * the longest single value rather than on the size of the input. Only the features the Azure
+ * Retail Prices responses need are supported. Malformed input raises org.json's JSONException,
+ * the same exception the DOM-based parsing in this project throws.
+ */
+import java.io.IOException;
+import java.io.Reader;
+
+import org.json.JSONException;
+
+public class JsonPullParser {
+    public enum Token { BEGIN_OBJECT, END_OBJECT, BEGIN_ARRAY, END_ARRAY, NAME, STRING, NUMBER, TRUE, FALSE, NULL, END_DOCUMENT }
+
+    // Scope states, as in a classic JSON writer/reader state machine
+    private static final int EMPTY_DOCUMENT = 0;
+    private static final int NONEMPTY_DOCUMENT = 1;
+    private static final int EMPTY_OBJECT = 2;
+    private static final int NONEMPTY_OBJECT = 3;
+    private static final int DANGLING_NAME = 4;
+    private static final int EMPTY_ARRAY = 5;
+    private static final int NONEMPTY_ARRAY = 6;
+
+    private final Reader reader;
+    private final char[] buffer = new char[8192];
+    private int pos;
+    private int limit;
+
+    private int[] stack = new int[32];
+    private int stackSize = 1;
+
+    // Text of the current NAME, STRING or NUMBER token; reused between tokens
+    private final StringBuilder text = new StringBuilder();
+    private Token token;
+
+    public JsonPullParser(Reader reader) {
+        this.reader = reader;
+        stack[0] = EMPTY_DOCUMENT;
+    }
+
+    /**
+     * Advances to the next token
+     * @return The token now current
+     * @throws IOException if the reader fails
+     */
+    public Token next() throws IOException {
+        int scope = stack[stackSize - 1];
+        int c;
+        switch (scope) {
+            case EMPTY_OBJECT:
+            case NONEMPTY_OBJECT:
+                c = nextNonWhitespace();
+                if (c == '}') {
+                    stackSize--;
+                    return token = Token.END_OBJECT;
+                }
+                if (scope == NONEMPTY_OBJECT) {
+                    if (c != ',') {
+                        throw syntaxError("Expected ',' or '}'");
+                    }
+                    c = nextNonWhitespace();
+                }
+                if (c != '"') {
+                    throw syntaxError("Expected name");
+                }
+                readString();
+                stack[stackSize - 1] = DANGLING_NAME;
+                return token = Token.NAME;
+            case DANGLING_NAME:
+                if (nextNonWhitespace() != ':') {
+                    throw syntaxError("Expected ':'");
+                }
+                stack[stackSize - 1] = NONEMPTY_OBJECT;
+                return token = readValue(nextNonWhitespace());
+            case EMPTY_ARRAY:
+            case NONEMPTY_ARRAY:
+                c = nextNonWhitespace();
+                if (c == ']') {
+                    stackSize--;
+                    return token = Token.END_ARRAY;
+                }
+                if (scope == NONEMPTY_ARRAY) {
+                    if (c != ',') {
+                        throw syntaxError("Expected ',' or ']'");
+                    }
+                    c = nextNonWhitespace();
+                }
+                stack[stackSize - 1] = NONEMPTY_ARRAY;
+                return token = readValue(c);
+            case EMPTY_DOCUMENT:
+                stack[stackSize - 1] = NONEMPTY_DOCUMENT;
+                return token = readValue(nextNonWhitespace());
+            default:
+                if (nextNonWhitespace() != -1) {
+                    throw syntaxError("Expected end of document");
+                }
+                return token = Token.END_DOCUMENT;
+        }
+    }
+
+    public Token getToken() {
+        return token;
+    }
+
+    /**
+     * Returns the text of the current NAME, STRING or NUMBER token
+     */
+    public String getText() {
+        return text.toString();
+    }
+
+    /**
+     * Returns the current NUMBER or numeric STRING token as a double
+     */
+    public double getDouble() {
+        if (token != Token.NUMBER && token != Token.STRING) {
+            throw new JSONException("Expected a number but was " + token);
+        }
+        try {
+            return Double.parseDouble(text.toString());
+        } catch (NumberFormatException e) {
+            throw new JSONException("Not a number: " + text, e);
+        }
+    }
+
+    /**
+     * Returns the current STRING token, or null for a NULL token
+     */
+    public String getStringOrNull() {
+        if (token == Token.NULL) {
+            return null;
+        }
+        if (token == Token.NUMBER || token == Token.TRUE || token == Token.FALSE) {
+            return token == Token.NUMBER ? text.toString() : token.name().toLowerCase();
+        }
+        if (token != Token.STRING) {
+            throw new JSONException("Expected a string but was " + token);
+        }
+        return text.toString();
+    }
+
+    /**
+     * Skips the value that follows the current NAME, or the rest of the container the
+     * current BEGIN_OBJECT/BEGIN_ARRAY token opened
+     */
+    public void skipValue() throws IOException {
+        int depth = 0;
+        if (token == Token.NAME) {
+            Token value = next();
+            if (value != Token.BEGIN_OBJECT && value != Token.BEGIN_ARRAY) {
+                return;
+            }
+        }
+        if (token == Token.BEGIN_OBJECT || token == Token.BEGIN_ARRAY) {
+            depth = 1;
+        }
+        while (depth > 0) {
+            switch (next()) {
+                case BEGIN_OBJECT:
+                case BEGIN_ARRAY:
+                    depth++;
+                    break;
+                case END_OBJECT:
+                case END_ARRAY:
+                    depth--;
+                    break;
+                case END_DOCUMENT:
+                    throw syntaxError("Unterminated value");
+                default:
+                    break;
+            }
+        }
+    }
+
+    private Token readValue(int c) throws IOException {
+        switch (c) {
+            case '{':
+                push(EMPTY_OBJECT);
+                return Token.BEGIN_OBJECT;
+            case '[':
+                push(EMPTY_ARRAY);
+                return Token.BEGIN_ARRAY;
+            case '"':
+                readString();
+                return Token.STRING;
+            case 't':
+                expectLiteral("rue");
+                return Token.TRUE;
+            case 'f':
+                expectLiteral("alse");
+                return Token.FALSE;
+            case 'n':
+                expectLiteral("ull");
+                return Token.NULL;
+            case -1:
+                throw syntaxError("Unexpected end of input");
+            default:
+                if (c == '-' || (c >= '0' && c <= '9')) {
+                    readNumber(c);
+                    return Token.NUMBER;
+                }
+                throw syntaxError("Unexpected character '" + (char) c + "'");
+        }
+    }
+
+    private void push(int scope) {
+        if (stackSize == stack.length) {
+            int[] grown = new int[stackSize * 2];
+            System.arraycopy(stack, 0, grown, 0, stackSize);
+            stack = grown;
+        }
+        stack[stackSize++] = scope;
+    }
+
+    private void readString() throws IOException {
+        text.setLength(0);
+        while (true) {
+            // Copy runs of plain characters straight from the buffer
+            int start = pos;
+            while (pos < limit) {
+                char c = buffer[pos];
+                if (c == '"' || c == '\\') {
+                    break;
+                }
+                pos++;
+            }
+            text.append(buffer, start, pos - start);
+            if (pos == limit) {
+                if (!fill()) {
+                    throw syntaxError("Unterminated string");
+                }
+                continue;
+            }
+            char c = buffer[pos++];
+            if (c == '"') {
+                return;
+            }
+            text.append(readEscape());
+        }
+    }
+
+    private char readEscape() throws IOException {
+        int c = read();
+        switch (c) {
+            case 'b': return '\b';
+            case 'f': return '\f';
+            case 'n': return '\n';
+            case 'r': return '\r';
+            case 't': return '\t';
+            case 'u':
+                int value = 0;
+                for (int i = 0; i < 4; i++) {
+                    int digit = Character.digit(read(), 16);
+                    if (digit < 0) {
+                        throw syntaxError("Invalid \\u escape");
+                    }
+                    value = (value << 4) | digit;
+                }
+                return (char) value;
+            case '"':
+            case '\\':
+            case '/':
+                return (char) c;
+            default:
+                throw syntaxError("Invalid escape");
+        }
+    }
+
+    private void readNumber(int first) throws IOException {
+        text.setLength(0);
+        text.append((char) first);
+        while (true) {
+            if (pos == limit && !fill()) {
+                return;
+            }
+            char c = buffer[pos];
+            if ((c >= '0' && c <= '9') || c == '.' || c == 'e' || c == 'E' || c == '+' || c == '-') {
+                text.append(c);
+                pos++;
+            } else {
+                return;
+            }
+        }
+    }
+
+    private void expectLiteral(String rest) throws IOException {
+        for (int i = 0; i < rest.length(); i++) {
+            if (read() != rest.charAt(i)) {
+                throw syntaxError("Invalid literal");
+            }
+        }
+    }
+
+    private int nextNonWhitespace() throws IOException {
+        while (true) {
+            if (pos == limit && !fill()) {
+                return -1;
+            }
+            char c = buffer[pos++];
+            if (c != ' ' && c != '\n' && c != '\r' && c != '\t') {
+                return c;
+            }
+        }
+    }
+
+    private int read() throws IOException {
+        if (pos == limit && !fill()) {
+            return -1;
+        }
+        return buffer[pos++];
+    }
+
+    private boolean fill() throws IOException {
+        int n = reader.read(buffer, 0, buffer.length);
+        pos = 0;
+        limit = Math.max(n, 0);
+        return n > 0;
+    }
+
+    private JSONException syntaxError(String message) {
+        return new JSONException(message + " in JSON input");
+    }
+}
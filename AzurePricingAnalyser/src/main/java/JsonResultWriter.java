@@ -0,0 +1,196 @@
+/**
+ * JsonResultWriter writes results as JSON: either one array of result objects, or one object per
+ * line (NDJSON) for tools that read results as they arrive. Objects are encoded field by field
+ * into the buffered output rather than built as JSONObjects first.
+ *
+ * Every object has the fields meterId, service, region, instanceType, currency,
+ * consumptionPrices, reservationPrices, savingsPlans, bestOption, bestOptionWithoutConsumption,
+ * termWiseBestOptions, lookupRoundTrips and priceRoundTrips. Rates are per hour; unit prices are
+ * per unitOfMeasure. Missing values and numbers JSON cannot hold (NaN, infinity) are null.
+ */
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.util.List;
+import java.util.Map;
+
+public class JsonResultWriter implements PricingResultWriter {
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private final Writer out;
+    private final boolean lines;
+    private boolean first = true;
+
+    /**
+     * @param lines True for NDJSON, false for a JSON array
+     */
+    public JsonResultWriter(OutputStream out, boolean lines) {
+        this(PricingResultWriter.utf8(out), lines);
+    }
+
+    public JsonResultWriter(Writer out, boolean lines) {
+        this.out = out;
+        this.lines = lines;
+    }
+
+    @Override
+    public void write(String meterId, PricingResult result) throws IOException {
+        if (!lines) {
+            out.write(first ? "[\n" : ",\n");
+        }
+        first = false;
+
+        out.write("{\"meterId\":");
+        string(meterId);
+        out.write(",\"service\":");
+        string(result.getService());
+        out.write(",\"region\":");
+        string(result.getRegion());
+        out.write(",\"instanceType\":");
+        string(result.getInstanceType());
+        out.write(",\"currency\":");
+        string(result.getCurrency());
+
+        out.write(",\"consumptionPrices\":[");
+        List<ConsumptionPriceResult> consumptionPrices = result.getConsumptionPrices();
+        for (int i = 0; consumptionPrices != null && i < consumptionPrices.size(); i++) {
+            ConsumptionPriceResult price = consumptionPrices.get(i);
+            PriceInfo priceInfo = price.getPriceInfo();
+            out.write(i == 0 ? "{\"pricingType\":" : ",{\"pricingType\":");
+            string(price.getPricingType());
+            out.write(",\"unitOfMeasure\":");
+            string(priceInfo.getUnitOfMeasure());
+            out.write(",\"unitPrice\":");
+            number(priceInfo.getOriginalPrice());
+            out.write(",\"hourlyRate\":");
+            number(priceInfo.getHourlyRate());
+            if (priceInfo.hasTiers()) {
+                out.write(",\"tiers\":[");
+                List<TierInfo> tiers = priceInfo.getTiers();
+                for (int t = 0; t < tiers.size(); t++) {
+                    out.write(t == 0 ? "{\"tierMinimumUnits\":" : ",{\"tierMinimumUnits\":");
+                    number(tiers.get(t).getTierMinimumUnits());
+                    out.write(",\"unitPrice\":");
+                    number(tiers.get(t).getRetailPrice());
+                    out.write('}');
+                }
+                out.write(']');
+            }
+            out.write('}');
+        }
+
+        out.write("],\"reservationPrices\":[");
+        List<ReservationPriceResult> reservationPrices = result.getReservationPrices();
+        for (int i = 0; reservationPrices != null && i < reservationPrices.size(); i++) {
+            ReservationPriceResult price = reservationPrices.get(i);
+            out.write(i == 0 ? "{\"term\":" : ",{\"term\":");
+            string(price.getTerm());
+            out.write(",\"hourlyRate\":");
+            number(price.getHourlyRate());
+            out.write(",\"upfrontCost\":");
+            number(price.getUpfrontCost());
+            out.write('}');
+        }
+
+        out.write("],\"savingsPlans\":[");
+        List<SavingsPlanResult> savingsPlans = result.getSavingsPlans();
+        for (int i = 0; savingsPlans != null && i < savingsPlans.size(); i++) {
+            SavingsPlanResult plan = savingsPlans.get(i);
+            out.write(i == 0 ? "{\"termYears\":" : ",{\"termYears\":");
+            out.write(Integer.toString(plan.getTermYears()));
+            out.write(",\"hourlyRate\":");
+            number(plan.getHourlyRate());
+            out.write(",\"upfrontCost\":");
+            number(plan.getUpfrontCost());
+            out.write('}');
+        }
+
+        out.write("],\"bestOption\":");
+        bestOption(result.getBestOption());
+        out.write(",\"bestOptionWithoutConsumption\":");
+        bestOption(result.getBestOptionWithoutConsumption());
+        out.write(",\"termWiseBestOptions\":{");
+        if (result.getTermWiseBestOptions() != null) {
+            boolean firstTerm = true;
+            for (Map.Entry<String, BestOptionResult> entry : result.getTermWiseBestOptions().entrySet()) {
+                if (!firstTerm) {
+                    out.write(',');
+                }
+                firstTerm = false;
+                string(entry.getKey());
+                out.write(':');
+                bestOption(entry.getValue());
+            }
+        }
+        out.write("},\"lookupRoundTrips\":");
+        out.write(Long.toString(result.getLookupRoundTrips()));
+        out.write(",\"priceRoundTrips\":");
+        out.write(Long.toString(result.getPriceRoundTrips()));
+        out.write('}');
+        if (lines) {
+            out.write('\n');
+        }
+    }
+
+    private void bestOption(BestOptionResult option) throws IOException {
+        if (option == null) {
+            out.write("null");
+            return;
+        }
+        out.write("{\"optionName\":");
+        string(option.getOptionName());
+        out.write(",\"pricingType\":");
+        string(option.getPricingType());
+        out.write(",\"hourlyRate\":");
+        number(option.getPrice());
+        out.write('}');
+    }
+
+    private void number(double value) throws IOException {
+        out.write(Double.isFinite(value) ? Double.toString(value) : "null");
+    }
+
+    private void string(String value) throws IOException {
+        if (value == null) {
+            out.write("null");
+            return;
+        }
+        out.write('"');
+        int run = 0;
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c >= 0x20 && c != '"' && c != '\\') {
+                continue;
+            }
+            // Copy the plain characters before the one to escape in one call
+            out.write(value, run, i - run);
+            run = i + 1;
+            switch (c) {
+                case '"': out.write("\\\""); break;
+                case '\\': out.write("\\\\"); break;
+                case '\n': out.write("\\n"); break;
+                case '\r': out.write("\\r"); break;
+                case '\t': out.write("\\t"); break;
+                default:
+                    out.write("\\u00");
+                    out.write(HEX[c >> 4]);
+                    out.write(HEX[c & 0xF]);
+            }
+        }
+        out.write(value, run, value.length() - run);
+        out.write('"');
+    }
+
+    @Override
+    public void flush() throws IOException {
+        out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (!lines) {
+            out.write(first ? "[]\n" : "\n]\n");
+        }
+        out.close();
+    }
+}
@@ -3,12 +3,178 @@
      * Main method to run the Azure Pricing Calculator
      * Prompts user for meter ID and optionally region
      * Calculates and displays pricing information VSG
+     *
+     * Batch mode (no prompts):
+     *   --meters id1,id2,...   meter IDs to price
+     *   --file path            file with one meter ID per line
+     *   --parallelism n        meters evaluated concurrently (default 64)
+     *   --region r             region applied when a meter matches several (default: keep all)
+     *   --catalog s1,s2,...    ingest these services' full price sheets first and price from memory
+     *   --format f             text (default), json, ndjson, csv or binary; see PricingResultWriter
+     *   --output path          write the results to a file instead of standard output, each as its meter completes
+     *
+     * Region sweep (no prompts):
+     *   --sweep id             price the meter's SKU in every region and rank the regions per pricing option
+     *   --regions r1,r2,...    ARM regions to sweep (default: every region the SKU is sold in)
+     *   --parallelism n        region fetches in flight at once (same default as batch mode)
+     *
+     * Cost export rating (no prompts):
+     *   --export path          rate a cost-management export CSV and total the potential savings per subscription and SKU
+     *   --parallelism n        meters priced concurrently (same default as batch mode)
+     *   --catalog s1,s2,...    as in batch mode
+     *
+     * Service mode (runs until stopped):
+     *   --serve port           serve GET /pricing?meterId=&region= and GET /status as JSON
+     *   --parallelism n        requests priced concurrently; more wait briefly, then get 503 (same default as batch mode)
+     *   --catalog s1,s2,...    as in batch mode
+     *
+     * Load test against a running server (no prompts):
+     *   --load url             send GET /pricing requests to the server at url, e.g. http://localhost:8080
+     *   --meters id1,id2,...   meter IDs requested in turn (or --file)
+     *   --clients n            concurrent clients (default: 16)
+     *   --duration s           seconds to run (default: 30)
+     *
+     * API traffic (all modes):
+     *   --record dir           save every API response to a fixture directory
+     *   --replay dir           serve API responses from a fixture directory, fully offline
+     *   --replay-latency ms    delay added to every replayed response
      */   
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
 import java.util.Scanner;
 
 public class MainClass {
 
 	 public static void main(String[] args) {
+	        List<String> meterIds = new ArrayList<>();
+	        int parallelism = BlockingExecutors.defaultConcurrency();
+	        RegionSelectionPolicy regionPolicy = RegionSelectionPolicy.keepAll();
+	        ApiClient.Mode mode = ApiClient.getMode();
+	        String fixtureDirectory = null;
+	        long replayLatency = 0;
+	        List<String> catalogServices = new ArrayList<>();
+	        String sweepMeterId = null;
+	        List<String> sweepRegions = null;
+	        String exportFile = null;
+	        String outputFormat = "text";
+	        String outputFile = null;
+	        int servePort = -1;
+	        String loadUrl = null;
+	        int loadClients = 16;
+	        int loadSeconds = 30;
+
+	        try {
+	            for (int i = 0; i < args.length; i++) {
+	                String option = args[i];
+	                if (i + 1 >= args.length) {
+	                    throw new IllegalArgumentException("Missing value for " + option);
+	                }
+	                String value = args[++i];
+	                switch (option) {
+	                    case "--meters":
+	                        meterIds.addAll(Arrays.asList(value.split("\\s*,\\s*")));
+	                        break;
+	                    case "--file":
+	                        meterIds.addAll(BatchPricingEngine.readMeterIds(Paths.get(value)));
+	                        break;
+	                    case "--parallelism":
+	                        parallelism = Integer.parseInt(value);
+	                        break;
+	                    case "--region":
+	                        regionPolicy = RegionSelectionPolicy.fixed(value);
+	                        break;
+	                    case "--catalog":
+	                        catalogServices.addAll(Arrays.asList(value.split("\\s*,\\s*")));
+	                        break;
+	                    case "--sweep":
+	                        sweepMeterId = value;
+	                        break;
+	                    case "--regions":
+	                        sweepRegions = Arrays.asList(value.split("\\s*,\\s*"));
+	                        break;
+	                    case "--export":
+	                        exportFile = value;
+	                        break;
+	                    case "--format":
+	                        outputFormat = value;
+	                        break;
+	                    case "--output":
+	                        outputFile = value;
+	                        break;
+	                    case "--serve":
+	                        servePort = Integer.parseInt(value);
+	                        break;
+	                    case "--load":
+	                        loadUrl = value;
+	                        break;
+	                    case "--clients":
+	                        loadClients = Integer.parseInt(value);
+	                        break;
+	                    case "--duration":
+	                        loadSeconds = Integer.parseInt(value);
+	                        break;
+	                    case "--record":
+	                        mode = ApiClient.Mode.RECORD;
+	                        fixtureDirectory = value;
+	                        break;
+	                    case "--replay":
+	                        mode = ApiClient.Mode.REPLAY;
+	                        fixtureDirectory = value;
+	                        break;
+	                    case "--replay-latency":
+	                        replayLatency = Long.parseLong(value);
+	                        break;
+	                    default:
+	                        throw new IllegalArgumentException("Unknown option: " + option);
+	                }
+	            }
+	            if (fixtureDirectory != null) {
+	                ApiClient.configure(mode, new FixtureStore(Paths.get(fixtureDirectory)), replayLatency);
+	            }
+	        } catch (Exception e) {
+	            e.printStackTrace();
+	            System.exit(1);
+	        }
+
+	        // The connection pool is sized here, once, for the chosen parallelism, before the first request
+	        ApiClient.setTransport(PooledHttpTransport.fromSystemProperties(parallelism));
+
+	        if (sweepMeterId != null) {
+	            runSweep(sweepMeterId, sweepRegions, parallelism);
+	            return;
+	        }
+
+	        if (servePort >= 0) {
+	            runServer(servePort, parallelism, catalogServices);
+	            return;
+	        }
+
+	        if (loadUrl != null) {
+	            runLoad(loadUrl, meterIds, loadClients, loadSeconds);
+	            return;
+	        }
+
+	        if (exportFile != null) {
+	            runExport(exportFile, parallelism, catalogServices);
+	            return;
+	        }
+
+	        if (!meterIds.isEmpty()) {
+	            runBatch(meterIds, parallelism, regionPolicy, catalogServices, outputFormat, outputFile);
+	            return;
+	        }
+
 	        Scanner scanner = new Scanner(System.in);
 
 	        System.out.println("Enter meter ID: ");
@@ -29,4 +195,143 @@ public class MainClass {
 	            scanner.close();
 	        }
 	    }
+
+	 /**
+	  * Runs the region sweep described above and prints the ranked regions.
+	  * Exits with status 1 if the sweep or any region failed.
+	  */
+	 private static void runSweep(String meterId, List<String> regions, int parallelism) {
+	        try {
+	            RegionSweepResult result = new RegionSweep(parallelism).run(meterId, regions);
+	            System.out.println(result);
+	            if (!result.getFailures().isEmpty()) {
+	                System.exit(1);
+	            }
+	        } catch (Exception e) {
+	            e.printStackTrace();
+	            System.exit(1);
+	        } finally {
+	            ApiClient.shutdown();
+	        }
+	    }
+
+	 /**
+	  * Rates the cost export described above and prints the savings table.
+	  * Exits with status 1 if the export could not be read or any meter failed.
+	  */
+	 private static void runExport(String file, int parallelism, List<String> catalogServices) {
+	        try {
+	            PriceCatalog catalog = ingestCatalog(catalogServices, System.out);
+	            CostExportResult result = new CostExportRater(parallelism, catalog).rate(Paths.get(file));
+	            System.out.println(result);
+	            if (!result.getMeterFailures().isEmpty()) {
+	                System.exit(1);
+	            }
+	        } catch (Exception e) {
+	            e.printStackTrace();
+	            System.exit(1);
+	        } finally {
+	            ApiClient.shutdown();
+	        }
+	    }
+
+	 /**
+	  * Starts the service mode described above; the server's threads keep the JVM running.
+	  * Exits with status 1 if the server cannot start.
+	  */
+	 private static void runServer(int port, int parallelism, List<String> catalogServices) {
+	        try {
+	            PricingServer server = new PricingServer(new InetSocketAddress(port), parallelism, ingestCatalog(catalogServices, System.out));
+	            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+	                server.stop(1);
+	                ApiClient.shutdown();
+	            }));
+	            server.start();
+	            System.out.printf("Serving on http://localhost:%d/pricing, %d concurrent requests%n",
+	                    server.getAddress().getPort(), server.getMaxConcurrent());
+	        } catch (Exception e) {
+	            e.printStackTrace();
+	            System.exit(1);
+	        }
+	    }
+
+	 /**
+	  * Runs the load test described above and prints the report.
+	  * Exits with status 1 if no meter IDs were given or the test could not run.
+	  */
+	 private static void runLoad(String url, List<String> meterIds, int clients, int seconds) {
+	        try {
+	            System.out.println(new PricingLoadGenerator(URI.create(url), meterIds, clients, seconds).run());
+	        } catch (Exception e) {
+	            e.printStackTrace();
+	            System.exit(1);
+	        }
+	    }
+
+	 /**
+	  * Ingests the named services' price sheets, or returns null if there are none
+	  * @param log Where the ingestion summary is printed
+	  */
+	 private static PriceCatalog ingestCatalog(List<String> services, PrintStream log) throws Exception {
+	        if (services.isEmpty()) {
+	            return null;
+	        }
+	        long start = System.nanoTime();
+	        PriceCatalog catalog = new PriceCatalog();
+	        catalog.ingest(services);
+	        log.printf("Catalog: %d prices for %s ingested in %d ms, %.1f MB%n", catalog.size(), catalog.getServices(),
+	                (System.nanoTime() - start) / 1000000, catalog.estimateBytes() / (1024.0 * 1024));
+	        return catalog;
+	    }
+
+	 /**
+	  * Runs the non-interactive batch mode described above and writes every result as its
+	  * meter completes, followed by the batch statistics. Statistics go to standard error when structured
+	  * results are written to standard output. Exits with status 1 if any meter failed.
+	  */
+	 private static void runBatch(List<String> meterIds, int parallelism, RegionSelectionPolicy regionPolicy, List<String> catalogServices,
+	            String outputFormat, String outputFile) {
+	        try {
+	            OutputStream out = outputFile != null ? Files.newOutputStream(Paths.get(outputFile)) : new FilterOutputStream(System.out) {
+	                @Override
+	                public void write(byte[] b, int off, int len) throws IOException {
+	                    this.out.write(b, off, len);
+	                }
+
+	                // Standard output stays open for the statistics
+	                @Override
+	                public void close() throws IOException {
+	                    flush();
+	                }
+	            };
+	            PrintStream statistics = outputFile == null && !"text".equalsIgnoreCase(outputFormat) ? System.err : System.out;
+	            BatchPricingResult batchResult;
+	            // Created first, so an unknown format fails before any meter is priced
+	            try (PricingResultWriter writer = PricingResultWriter.create(outputFormat, out)) {
+	                PriceCatalog catalog = ingestCatalog(catalogServices, statistics);
+	                BatchPricingEngine engine = new BatchPricingEngine(parallelism, "", regionPolicy, catalog);
+	                // Written as each meter completes, so the batch never holds its results
+	                batchResult = engine.run(meterIds, (meterId, result) -> {
+	                    try {
+	                        writer.write(meterId, result);
+	                    } catch (IOException e) {
+	                        throw new UncheckedIOException(e);
+	                    }
+	                });
+	            }
+	            for (Map.Entry<String, Exception> entry : batchResult.getFailures().entrySet()) {
+	                System.err.println("Meter ID " + entry.getKey() + " failed: " + entry.getValue());
+	            }
+	            statistics.println(batchResult);
+
+	            if (batchResult.getFailedCount() > 0) {
+	                System.exit(1);
+	            }
+	        } catch (Exception e) {
+	            e.printStackTrace();
+	            System.exit(1);
+	        } finally {
+	            ApiClient.shutdown();
+	        }
+	    }
 }
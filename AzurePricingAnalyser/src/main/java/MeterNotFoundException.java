@@ -0,0 +1,18 @@
+/**
+ * MeterNotFoundException reports a meter ID the pricing API has no items for.
+ * It lets callers tell an unknown meter apart from a failed lookup without matching on the message.
+ */
+public class MeterNotFoundException extends Exception {
+    private static final long serialVersionUID = 1L;
+
+    private final String meterId;
+
+    public MeterNotFoundException(String meterId) {
+        super("No data found for the given meter ID.");
+        this.meterId = meterId;
+    }
+
+    public String getMeterId() {
+        return meterId;
+    }
+}
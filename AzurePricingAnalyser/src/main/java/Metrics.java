@@ -0,0 +1,103 @@
+/**
+ * Metrics holds the analyzer's metrics in one process-wide MetricsRegistry, as static fields the
+ * instrumented code records into. The registry is published as the JMX MBean
+ * "AzurePricing:type=Metrics" when this class loads (disable with -Dazure.pricing.jmx=false),
+ * and in the Prometheus text format on the server's /metrics endpoint.
+ *
+ * Durations are recorded in nanoseconds and exposed in seconds. Page parsing is timed only for
+ * pages parsed from memory; pages parsed while they stream from the socket (catalog ingestion)
+ * would time the network too.
+ */
+public class Metrics {
+    public static final MetricsRegistry REGISTRY = new MetricsRegistry("azure_pricing_");
+
+    // ApiClient: every call, whether the cache answers it or not
+    public static final MetricsRegistry.Counter API_CALLS = REGISTRY.counter("api_calls",
+            "ApiClient.getApiResponse calls");
+    public static final MetricsRegistry.Counter API_LOADS = REGISTRY.counter("api_loads",
+            "Responses loaded from the network or fixture store because no cache had them");
+
+    // Transport: one request per attempt, retries included
+    public static final MetricsRegistry.Histogram HTTP_REQUEST_TIME = REGISTRY.timer("http_request_seconds",
+            "Time from sending a request to the end of its response body");
+    public static final MetricsRegistry.Counter HTTP_BYTES = REGISTRY.counter("http_received_bytes",
+            "Response body bytes received, as sent on the wire (compressed)");
+    // Requests that failed without a status (connection refused, timeouts), as code="error"
+    public static final MetricsRegistry.Counter HTTP_FAILURES = REGISTRY.counter("http_responses",
+            "HTTP responses by status code", "code", "error");
+    // Counters by status code, created on first use
+    private static final MetricsRegistry.Counter[] HTTP_RESPONSES = new MetricsRegistry.Counter[600];
+
+    public static final MetricsRegistry.Histogram PAGE_PARSE_TIME = REGISTRY.timer("page_parse_seconds",
+            "Time to parse one response page held in memory, including the item handler");
+    public static final MetricsRegistry.Histogram CONSUMPTION_PAGES = REGISTRY.histogram("fetch_prices_pages",
+            "Pages per fetchPrices call", "pricing", "consumption");
+    public static final MetricsRegistry.Histogram RESERVATION_PAGES = REGISTRY.histogram("fetch_prices_pages",
+            "Pages per fetchPrices call", "pricing", "reservation");
+
+    // Filter resolution probes that had to be fetched; planned-away probes are not counted
+    public static final MetricsRegistry.Counter DETAILED_PROBES = REGISTRY.counter("filter_probes",
+            "Summary queries made while building a meter's filter", "probe", "detailed");
+    public static final MetricsRegistry.Counter REGION_PROBES = REGISTRY.counter("filter_probes",
+            "Summary queries made while building a meter's filter", "probe", "region");
+    public static final MetricsRegistry.Counter REGION_CHECKS = REGISTRY.counter("filter_probes",
+            "Summary queries made while building a meter's filter", "probe", "region_check");
+
+    public static final MetricsRegistry.Histogram PRICING_TIME = REGISTRY.timer("calculate_pricing_seconds",
+            "End-to-end time to price one meter, successful or not");
+    public static final MetricsRegistry.Counter PRICING_SUCCEEDED = REGISTRY.counter("calculate_pricing",
+            "Meters priced, by outcome", "outcome", "success");
+    public static final MetricsRegistry.Counter PRICING_FAILED = REGISTRY.counter("calculate_pricing",
+            "Meters priced, by outcome", "outcome", "failure");
+
+    // PricingServer: every /pricing request, including rejected ones
+    public static final MetricsRegistry.Histogram SERVER_REQUEST_TIME = REGISTRY.timer("server_request_seconds",
+            "Time to answer a /pricing request, including the wait for a pricing slot");
+    private static final MetricsRegistry.Counter[] SERVER_RESPONSES = new MetricsRegistry.Counter[600];
+
+    static {
+        ResponseCache cache = ApiClient.getCache();
+        REGISTRY.counterFunction("cache_hits", "Response cache hits, by cache level", cache::getHitCount, "level", "memory");
+        REGISTRY.counterFunction("cache_hits", "Response cache hits, by cache level", cache::getSecondLevelHitCount, "level", "disk");
+        REGISTRY.counterFunction("cache_misses", "Response cache misses", cache::getMissCount);
+        REGISTRY.counterFunction("cache_evictions", "Responses evicted to stay within the size limit", cache::getEvictionCount);
+        REGISTRY.gauge("cache_entries", "Responses in the cache", cache::size);
+        REGISTRY.gauge("cache_bytes", "Estimated size of the cached responses", cache::getWeightBytes);
+        REGISTRY.gauge("cache_max_bytes", "Size limit of the response cache", cache::getMaxWeightBytes);
+
+        if (Boolean.parseBoolean(System.getProperty("azure.pricing.jmx", "true"))) {
+            REGISTRY.registerMBean("AzurePricing:type=Metrics");
+        }
+    }
+
+    private Metrics() {
+    }
+
+    /**
+     * Counts a response from the pricing API by status code
+     */
+    public static void httpResponse(int status) {
+        if (status < 0 || status >= HTTP_RESPONSES.length) {
+            HTTP_FAILURES.increment();
+            return;
+        }
+        byStatus(HTTP_RESPONSES, "http_responses", "HTTP responses by status code", status).increment();
+    }
+
+    /**
+     * Counts a response of the pricing server by status code
+     */
+    public static void serverResponse(int status) {
+        byStatus(SERVER_RESPONSES, "server_responses", "Responses of the pricing server by status code", status).increment();
+    }
+
+    private static MetricsRegistry.Counter byStatus(MetricsRegistry.Counter[] counters, String name, String help, int status) {
+        MetricsRegistry.Counter counter = counters[status];
+        if (counter == null) {
+            // A racing thread gets the same counter back from the registry, so the race is harmless
+            counter = REGISTRY.counter(name, help, "code", Integer.toString(status));
+            counters[status] = counter;
+        }
+        return counter;
+    }
+}
@@ -0,0 +1,406 @@
+/**
+ * MetricsRegistry holds named counters, gauges and latency histograms, and exposes them in the
+ * Prometheus text format and as the attributes of a JMX MBean.
+ *
+ * Recording never takes a lock: counters are LongAdders, which stripe contended updates across
+ * cells, and histograms add to an AtomicLongArray of log-linear buckets (HDR style: every power
+ * of two is split into SUB_BUCKETS linear buckets, so any recorded value is known to within
+ * 1/SUB_BUCKETS of itself, from 1 up to Long.MAX_VALUE, in a fixed 8 KB per histogram).
+ * Lookups by name happen when a metric is created, not when it is recorded, so callers keep the
+ * metric in a field. Metrics with the same name and different labels form one family.
+ */
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+import javax.management.Attribute;
+import javax.management.AttributeList;
+import javax.management.AttributeNotFoundException;
+import javax.management.DynamicMBean;
+import javax.management.JMException;
+import javax.management.MBeanAttributeInfo;
+import javax.management.MBeanInfo;
+import javax.management.ObjectName;
+
+public class MetricsRegistry {
+    // Linear buckets per power of two; 16 gives at most 1/16 = 6.25% error
+    static final int SUB_BUCKET_BITS = 4;
+    static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int BUCKETS = (64 - SUB_BUCKET_BITS + 1) * SUB_BUCKETS;
+
+    // Quantiles reported for every histogram
+    private static final double[] QUANTILES = { 0.5, 0.9, 0.99, 0.999 };
+    private static final String[] QUANTILE_SUFFIXES = { "_p50", "_p90", "_p99", "_p999" };
+
+    private final String prefix;
+    // Families by name, in creation order; each family's metrics by label set, also in creation order.
+    // Both are only touched under the registry's lock; recording goes to the metric objects directly.
+    private final Map<String, Family> families = new LinkedHashMap<>();
+
+    /**
+     * @param prefix Prepended to every metric name, e.g. "azure_pricing_"
+     */
+    public MetricsRegistry(String prefix) {
+        this.prefix = prefix;
+    }
+
+    /**
+     * A metric's value as Prometheus exposes it
+     */
+    interface Metric {
+        void writeSamples(Writer out, String name, String labels) throws IOException;
+    }
+
+    public static class Counter implements Metric {
+        private final LongAdder value = new LongAdder();
+
+        public void increment() {
+            value.increment();
+        }
+
+        public void add(long amount) {
+            value.add(amount);
+        }
+
+        public long get() {
+            return value.sum();
+        }
+
+        @Override
+        public void writeSamples(Writer out, String name, String labels) throws IOException {
+            sample(out, name, labels, get());
+        }
+    }
+
+    /**
+     * A counter kept elsewhere (e.g. by ResponseCache) and read when the registry is scraped
+     */
+    private static class CounterFunction implements Metric {
+        private final LongSupplier value;
+
+        CounterFunction(LongSupplier value) {
+            this.value = value;
+        }
+
+        @Override
+        public void writeSamples(Writer out, String name, String labels) throws IOException {
+            sample(out, name, labels, value.getAsLong());
+        }
+    }
+
+    private static class Gauge implements Metric {
+        private final LongSupplier value;
+
+        Gauge(LongSupplier value) {
+            this.value = value;
+        }
+
+        @Override
+        public void writeSamples(Writer out, String name, String labels) throws IOException {
+            sample(out, name, labels, value.getAsLong());
+        }
+    }
+
+    /**
+     * Distribution of non-negative long values, usually nanoseconds
+     * Exposed as a Prometheus summary; nanosecond histograms (names ending in _seconds) are divided down to seconds.
+     */
+    public static class Histogram implements Metric {
+        private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+        private final LongAdder count = new LongAdder();
+        private final LongAdder sum = new LongAdder();
+        private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+        private final double divisor;
+
+        Histogram(double divisor) {
+            this.divisor = divisor;
+        }
+
+        /**
+         * Records a value; negative values are recorded as 0
+         */
+        public void record(long value) {
+            value = Math.max(0, value);
+            buckets.incrementAndGet(bucketOf(value));
+            count.increment();
+            sum.add(value);
+            max.accumulate(value);
+        }
+
+        /**
+         * Records the time since a System.nanoTime() reading
+         */
+        public void recordSince(long startNanos) {
+            record(System.nanoTime() - startNanos);
+        }
+
+        public long getCount() { return count.sum(); }
+        public long getSum() { return sum.sum(); }
+        public long getMax() { return max.get(); }
+
+        /**
+         * Returns the value at a quantile, to within the bucket precision, or 0 if nothing was recorded
+         * Concurrent recording may shift the answer by the values recorded meanwhile.
+         */
+        public long getValueAtQuantile(double quantile) {
+            long[] snapshot = new long[BUCKETS];
+            long total = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                snapshot[i] = buckets.get(i);
+                total += snapshot[i];
+            }
+            if (total == 0) {
+                return 0;
+            }
+            long rank = Math.max(1, (long) Math.ceil(quantile * total));
+            long seen = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                seen += snapshot[i];
+                if (seen >= rank) {
+                    return Math.min(highestValueIn(i), getMax());
+                }
+            }
+            return getMax();
+        }
+
+        @Override
+        public void writeSamples(Writer out, String name, String labels) throws IOException {
+            for (double quantile : QUANTILES) {
+                String quantileLabel = "quantile=\"" + quantile + "\"";
+                sample(out, name, labels.isEmpty() ? quantileLabel : labels + "," + quantileLabel, getValueAtQuantile(quantile) / divisor);
+            }
+            sample(out, name + "_sum", labels, getSum() / divisor);
+            sample(out, name + "_count", labels, getCount());
+        }
+    }
+
+    /**
+     * Bucket of a value: values below SUB_BUCKETS have a bucket each; above that, the exponent
+     * picks a group of SUB_BUCKETS buckets and the bits below the leading one pick the bucket
+     */
+    static int bucketOf(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+        int subBucket = (int) (value >>> exponent) - SUB_BUCKETS;
+        return (exponent + 1) * SUB_BUCKETS + subBucket;
+    }
+
+    // The largest value that falls into a bucket
+    static long highestValueIn(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        int exponent = bucket / SUB_BUCKETS - 1;
+        long lowest = (long) (SUB_BUCKETS + bucket % SUB_BUCKETS) << exponent;
+        long highest = lowest + (1L << exponent) - 1;
+        return highest < 0 ? Long.MAX_VALUE : highest;
+    }
+
+    private static class Family {
+        final String name;
+        final String help;
+        final String type;
+        final Map<String, Metric> metrics = new LinkedHashMap<>();
+
+        Family(String name, String help, String type) {
+            this.name = name;
+            this.help = help;
+            this.type = type;
+        }
+    }
+
+    /**
+     * Creates a counter; its name gets the _total suffix Prometheus expects of counters
+     */
+    public Counter counter(String name, String help, String... labels) {
+        return (Counter) register(name + "_total", help, "counter", labels, Counter::new);
+    }
+
+    public void counterFunction(String name, String help, LongSupplier value, String... labels) {
+        register(name + "_total", help, "counter", labels, () -> new CounterFunction(value));
+    }
+
+    public void gauge(String name, String help, LongSupplier value, String... labels) {
+        register(name, help, "gauge", labels, () -> new Gauge(value));
+    }
+
+    /**
+     * Creates a histogram of nanosecond durations, exposed in seconds; the name should end in _seconds
+     */
+    public Histogram timer(String name, String help, String... labels) {
+        return (Histogram) register(name, help, "summary", labels, () -> new Histogram(1e9));
+    }
+
+    /**
+     * Creates a histogram of plain values, e.g. sizes or counts
+     */
+    public Histogram histogram(String name, String help, String... labels) {
+        return (Histogram) register(name, help, "summary", labels, () -> new Histogram(1));
+    }
+
+    /**
+     * Returns the metric with a name and labels, creating it if needed
+     * @param labels Label names and values, alternating
+     * @throws IllegalArgumentException if the name is already used by another type of metric
+     */
+    private synchronized Metric register(String name, String help, String type, String[] labels, Supplier<Metric> create) {
+        if (labels.length % 2 != 0) {
+            throw new IllegalArgumentException("Labels must be name and value pairs: " + labels.length);
+        }
+        String fullName = prefix + name;
+        Family family = families.computeIfAbsent(fullName, n -> new Family(n, help, type));
+        if (!family.type.equals(type)) {
+            throw new IllegalArgumentException("Metric " + fullName + " is a " + family.type + ", not a " + type);
+        }
+        StringBuilder labelText = new StringBuilder();
+        for (int i = 0; i < labels.length; i += 2) {
+            if (i > 0) {
+                labelText.append(',');
+            }
+            labelText.append(labels[i]).append("=\"").append(escape(labels[i + 1])).append('"');
+        }
+        return family.metrics.computeIfAbsent(labelText.toString(), l -> create.get());
+    }
+
+    /**
+     * Writes every metric in the Prometheus text exposition format (version 0.0.4)
+     */
+    public void writePrometheus(Writer out) throws IOException {
+        for (Map.Entry<Family, Map<String, Metric>> familyEntry : snapshot().entrySet()) {
+            Family family = familyEntry.getKey();
+            out.write("# HELP " + family.name + " " + family.help + "\n");
+            out.write("# TYPE " + family.name + " " + family.type + "\n");
+            for (Map.Entry<String, Metric> entry : familyEntry.getValue().entrySet()) {
+                entry.getValue().writeSamples(out, family.name, entry.getKey());
+            }
+        }
+    }
+
+    // The families and their metrics as they are now, to read without holding the lock
+    private synchronized Map<Family, Map<String, Metric>> snapshot() {
+        Map<Family, Map<String, Metric>> snapshot = new LinkedHashMap<>();
+        for (Family family : families.values()) {
+            snapshot.put(family, new LinkedHashMap<>(family.metrics));
+        }
+        return snapshot;
+    }
+
+    private static void sample(Writer out, String name, String labels, double value) throws IOException {
+        out.write(name);
+        if (!labels.isEmpty()) {
+            out.write('{');
+            out.write(labels);
+            out.write('}');
+        }
+        out.write(' ');
+        out.write(value == Math.rint(value) && Math.abs(value) < 1e15 ? Long.toString((long) value) : Double.toString(value));
+        out.write('\n');
+    }
+
+    private static String escape(String labelValue) {
+        return labelValue.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+
+    /**
+     * Registers the registry with the platform MBean server under an object name such as
+     * "AzurePricing:type=Metrics". Every counter and gauge is an attribute named after the metric
+     * and its labels; every histogram adds _count, _max, _p50, _p90, _p99 and _p999 attributes.
+     * @throws IllegalStateException if the name is taken or invalid
+     */
+    public void registerMBean(String objectName) {
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(new MBean(), new ObjectName(objectName));
+        } catch (JMException e) {
+            throw new IllegalStateException("Failed to register metrics MBean " + objectName, e);
+        }
+    }
+
+    /**
+     * Reads the metrics as JMX attributes; the attribute list is rebuilt on every call, so
+     * metrics created after registration show up too
+     */
+    private class MBean implements DynamicMBean {
+        private Map<String, Object> attributes() {
+            Map<String, Object> attributes = new LinkedHashMap<>();
+            for (Map.Entry<Family, Map<String, Metric>> familyEntry : snapshot().entrySet()) {
+                Family family = familyEntry.getKey();
+                for (Map.Entry<String, Metric> entry : familyEntry.getValue().entrySet()) {
+                    String name = family.name + (entry.getKey().isEmpty() ? "" : "{" + entry.getKey() + "}");
+                    Metric metric = entry.getValue();
+                    if (metric instanceof Counter) {
+                        attributes.put(name, ((Counter) metric).get());
+                    } else if (metric instanceof CounterFunction) {
+                        attributes.put(name, ((CounterFunction) metric).value.getAsLong());
+                    } else if (metric instanceof Gauge) {
+                        attributes.put(name, ((Gauge) metric).value.getAsLong());
+                    } else if (metric instanceof Histogram) {
+                        Histogram histogram = (Histogram) metric;
+                        attributes.put(name + "_count", histogram.getCount());
+                        attributes.put(name + "_max", histogram.getMax());
+                        for (int q = 0; q < QUANTILES.length; q++) {
+                            attributes.put(name + QUANTILE_SUFFIXES[q], histogram.getValueAtQuantile(QUANTILES[q]));
+                        }
+                    }
+                }
+            }
+            return attributes;
+        }
+
+        @Override
+        public Object getAttribute(String attribute) throws AttributeNotFoundException {
+            Map<String, Object> attributes = attributes();
+            if (!attributes.containsKey(attribute)) {
+                throw new AttributeNotFoundException(attribute);
+            }
+            return attributes.get(attribute);
+        }
+
+        @Override
+        public AttributeList getAttributes(String[] names) {
+            Map<String, Object> attributes = attributes();
+            AttributeList list = new AttributeList();
+            for (String name : names) {
+                if (attributes.containsKey(name)) {
+                    list.add(new Attribute(name, attributes.get(name)));
+                }
+            }
+            return list;
+        }
+
+        @Override
+        public void setAttribute(Attribute attribute) throws AttributeNotFoundException {
+            throw new AttributeNotFoundException("Metrics are read-only: " + attribute.getName());
+        }
+
+        @Override
+        public AttributeList setAttributes(AttributeList attributes) {
+            return new AttributeList();
+        }
+
+        @Override
+        public Object invoke(String actionName, Object[] params, String[] signature) {
+            throw new UnsupportedOperationException("No operations: " + actionName);
+        }
+
+        @Override
+        public MBeanInfo getMBeanInfo() {
+            List<MBeanAttributeInfo> infos = new ArrayList<>();
+            for (String name : attributes().keySet()) {
+                infos.add(new MBeanAttributeInfo(name, "long", name, true, false, false));
+            }
+            return new MBeanInfo(MetricsRegistry.class.getName(), "Azure pricing analyzer metrics",
+                    infos.toArray(new MBeanAttributeInfo[0]), null, null, null);
+        }
+    }
+}
@@ -0,0 +1,114 @@
+/**
+ * ODataFilter is a parsed form of the $filter expressions this project builds:
+ * one or more "field eq 'value'" clauses joined by "and" (see the *_FILTER constants).
+ * Anything outside that subset is rejected so callers can fall back to the API.
+ */
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+public class ODataFilter {
+    private final Map<String, String> clauses;
+
+    private ODataFilter(Map<String, String> clauses) {
+        this.clauses = Collections.unmodifiableMap(clauses);
+    }
+
+    /**
+     * Parses a filter expression
+     * @param filter An expression such as "serviceName eq 'Storage' and location eq 'US East'"
+     * @return The parsed filter, or null if it uses anything other than eq clauses joined by and,
+     *         or constrains the same field twice
+     */
+    public static ODataFilter parse(String filter) {
+        Map<String, String> clauses = new LinkedHashMap<>();
+        int pos = 0;
+        int length = filter.length();
+        while (true) {
+            pos = skipSpaces(filter, pos);
+            int fieldStart = pos;
+            while (pos < length && Character.isLetterOrDigit(filter.charAt(pos))) {
+                pos++;
+            }
+            String field = filter.substring(fieldStart, pos);
+            pos = skipSpaces(filter, pos);
+            if (field.isEmpty() || !filter.startsWith("eq ", pos)) {
+                return null;
+            }
+            pos = skipSpaces(filter, pos + 3);
+            if (pos >= length || filter.charAt(pos) != '\'') {
+                return null;
+            }
+
+            // Quoted value; '' is an escaped quote
+            StringBuilder value = new StringBuilder();
+            pos++;
+            while (true) {
+                if (pos >= length) {
+                    return null;
+                }
+                char c = filter.charAt(pos++);
+                if (c == '\'') {
+                    if (pos < length && filter.charAt(pos) == '\'') {
+                        value.append('\'');
+                        pos++;
+                    } else {
+                        break;
+                    }
+                } else {
+                    value.append(c);
+                }
+            }
+            if (clauses.put(field, value.toString()) != null) {
+                return null;
+            }
+
+            pos = skipSpaces(filter, pos);
+            if (pos >= length) {
+                return new ODataFilter(clauses);
+            }
+            if (!filter.startsWith("and ", pos)) {
+                return null;
+            }
+            pos += 4;
+        }
+    }
+
+    private static int skipSpaces(String s, int pos) {
+        while (pos < s.length() && s.charAt(pos) == ' ') {
+            pos++;
+        }
+        return pos;
+    }
+
+    /**
+     * The clauses in the order they appeared, field to required value
+     */
+    public Map<String, String> getClauses() {
+        return clauses;
+    }
+
+    public String get(String field) {
+        return clauses.get(field);
+    }
+
+    /**
+     * Returns the filter with clauses sorted by field, so equivalent filters compare equal
+     */
+    public String toCanonicalString() {
+        StringBuilder sb = new StringBuilder();
+        for (Map.Entry<String, String> clause : new TreeMap<>(clauses).entrySet()) {
+            if (sb.length() > 0) {
+                sb.append(" and ");
+            }
+            sb.append(clause.getKey()).append(" eq '").append(clause.getValue().replace("'", "''")).append('\'');
+        }
+        return sb.toString();
+    }
+
+    @Override
+    public String toString() {
+        return toCanonicalString();
+    }
+}
@@ -0,0 +1,37 @@
+/**
+ * PageParseEvent is a Java Flight Recorder event for parsing one response page into prices, in
+ * ConsumptionAndSavingsPlanPricing or ReservationPricing. The duration covers the streaming parse
+ * and the conversion of its items; the classify time is the part of it spent turning items into
+ * pricing types (the SkuClassifier for consumption pages, the term for reservation pages).
+ *
+ * Classification is interleaved with parsing item by item, so it is timed inside the page rather
+ * than as events of its own, and only while this event is enabled. Pages answered from the
+ * PriceCatalog are not parsed and have no event.
+ */
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+@Name("azure.pricing.PageParse")
+@Label("Page Parse")
+@Category("Azure Pricing")
+@StackTrace(false)
+public class PageParseEvent extends jdk.jfr.Event {
+    @Label("Pricing")
+    @Description("consumption or reservation")
+    String pricing;
+
+    @Label("Response Length")
+    @Description("Length of the page's JSON response, in characters")
+    int responseLength;
+
+    @Label("Items")
+    int items;
+
+    @Label("Classify Time")
+    @Timespan(Timespan.NANOSECONDS)
+    long classifyTime;
+}
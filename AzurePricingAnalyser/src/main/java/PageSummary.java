@@ -0,0 +1,108 @@
+/**
+ * PageSummary is the parsed form of the first page of a lookup query, as the calculator uses it:
+ * the items, their count, their distinct locations and whether any of them carries a savings
+ * plan or is a reservation. It also records whether the page was the only one, so the calculator
+ * can answer narrower questions from it (see hasRegion) instead of sending another query.
+ * It is built once per page and is immutable, so it can be shared between calculators through
+ * PageSummaryCache.
+ */
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+public class PageSummary {
+    private final List<PriceItem> rows;
+    private final Set<String> locations;
+    // Locations and armRegionNames of the items, lower-cased as the API compares them
+    private final Set<String> regionKeys;
+    private final boolean hasSavingsPlanOrReservation;
+    private final boolean complete;
+
+    private PageSummary(List<PriceItem> rows, boolean complete) {
+        Set<String> locations = new LinkedHashSet<>();
+        Set<String> regionKeys = new HashSet<>();
+        boolean hasSavingsPlanOrReservation = false;
+        for (PriceItem item : rows) {
+            String location = item.getLocation();
+            if (location != null && !location.isEmpty()) {
+                locations.add(location);
+                regionKeys.add(location.toLowerCase(Locale.ROOT));
+            }
+            String armRegionName = item.getArmRegionName();
+            if (armRegionName != null && !armRegionName.isEmpty()) {
+                regionKeys.add(armRegionName.toLowerCase(Locale.ROOT));
+            }
+            hasSavingsPlanOrReservation |= item.hasSavingsPlan() || Constants.Reservation.equals(item.getType());
+        }
+        this.rows = Collections.unmodifiableList(rows);
+        this.locations = Collections.unmodifiableSet(locations);
+        this.regionKeys = regionKeys;
+        this.hasSavingsPlanOrReservation = hasSavingsPlanOrReservation;
+        this.complete = complete;
+    }
+
+    /**
+     * Summarizes a response page
+     * @param response The page's JSON response
+     */
+    public static PageSummary parse(String response) {
+        List<PriceItem> rows = new ArrayList<>();
+        String nextPageLink = PricePageReader.read(response, item -> rows.add(item.copy()));
+        return new PageSummary(rows, nextPageLink == null);
+    }
+
+    /**
+     * Summarizes items that did not come from a response, e.g. a catalog query
+     * @param rows The items; the list must not be modified afterwards
+     * @param complete Whether the rows are every item matching the query
+     */
+    public static PageSummary of(List<PriceItem> rows, boolean complete) {
+        return new PageSummary(rows, complete);
+    }
+
+    public List<PriceItem> getRows() {
+        return rows;
+    }
+
+    public int getItemCount() {
+        return rows.size();
+    }
+
+    /**
+     * The distinct non-empty locations of the items, in first-seen order
+     */
+    public Set<String> getLocations() {
+        return locations;
+    }
+
+    /**
+     * Whether any item has a savings plan or is a reservation
+     */
+    public boolean hasSavingsPlanOrReservation() {
+        return hasSavingsPlanOrReservation;
+    }
+
+    /**
+     * Whether the page is the only page of its query, i.e. it had no NextPageLink
+     */
+    public boolean isComplete() {
+        return complete;
+    }
+
+    /**
+     * Whether the query, narrowed to a region, would return any items
+     * @param region A location (contains a space) or an armRegionName, as the region filters use them
+     * @return TRUE if an item on this page is in the region, FALSE if none is and the page is
+     *         complete, or null if only another query can tell
+     */
+    public Boolean hasRegion(String region) {
+        if (regionKeys.contains(region.toLowerCase(Locale.ROOT))) {
+            return Boolean.TRUE;
+        }
+        return complete ? Boolean.FALSE : null;
+    }
+}
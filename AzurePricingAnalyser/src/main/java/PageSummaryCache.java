@@ -0,0 +1,118 @@
+/**
+ * PageSummaryCache keeps parsed PageSummary objects keyed by canonical query, so the lookups the
+ * calculator repeats (within one meter and across meters) cost a map lookup instead of a JSON parse.
+ * Filters are canonicalized with ODataFilter, so clause order does not matter. Concurrent requests
+ * for the same query share one load. The least recently used summary is evicted once the entry
+ * limit is reached, and summaries expire with the same TTL as the response cache.
+ *
+ * Configured by azure.pricing.summaryCache.maxEntries (default 4096).
+ */
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+public class PageSummaryCache {
+    private final int maxEntries;
+    private final long ttlMillis;
+
+    // Access-ordered for LRU eviction; guarded by "this"
+    private final LinkedHashMap<String, Entry> entries;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    private static class Entry {
+        final CompletableFuture<PageSummary> summary;
+        final long createdAtMillis;
+
+        Entry(CompletableFuture<PageSummary> summary, long createdAtMillis) {
+            this.summary = summary;
+            this.createdAtMillis = createdAtMillis;
+        }
+    }
+
+    public PageSummaryCache(int maxEntries, long ttlMillis) {
+        this.maxEntries = maxEntries;
+        this.ttlMillis = ttlMillis;
+        this.entries = new LinkedHashMap<String, Entry>(256, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > PageSummaryCache.this.maxEntries;
+            }
+        };
+    }
+
+    public static PageSummaryCache fromSystemProperties(long ttlMillis) {
+        return new PageSummaryCache(Integer.getInteger("azure.pricing.summaryCache.maxEntries", 4096), ttlMillis);
+    }
+
+    /**
+     * Returns the summary for a query, loading it if absent, expired or failed
+     * @param filter The query's $filter expression
+     * @param loader Starts loading the summary; called at most once per missing query
+     * @return A stage completed with the summary, or exceptionally if the loader fails, whether
+     *         it throws or its stage fails; the failed entry is removed so the next call retries
+     */
+    public CompletableFuture<PageSummary> get(String filter, Function<String, CompletableFuture<PageSummary>> loader) {
+        String key = canonicalKey(filter);
+        CompletableFuture<PageSummary> load = new CompletableFuture<>();
+        synchronized (this) {
+            Entry entry = entries.get(key);
+            if (entry != null && !entry.summary.isCompletedExceptionally()
+                    && System.currentTimeMillis() - entry.createdAtMillis < ttlMillis) {
+                hits.increment();
+                return entry.summary;
+            }
+            entries.put(key, new Entry(load, System.currentTimeMillis()));
+        }
+
+        misses.increment();
+        CompletableFuture<PageSummary> loading;
+        try {
+            loading = loader.apply(filter);
+        } catch (RuntimeException e) {
+            // Callers already waiting on the entry get the failure too
+            fail(key, load, e);
+            return load;
+        } catch (Error e) {
+            fail(key, load, e);
+            throw e;
+        }
+        loading.whenComplete((summary, failure) -> {
+            if (failure != null) {
+                fail(key, load, failure);
+            } else {
+                load.complete(summary);
+            }
+        });
+        return load;
+    }
+
+    private void fail(String key, CompletableFuture<PageSummary> load, Throwable failure) {
+        synchronized (this) {
+            Entry entry = entries.get(key);
+            if (entry != null && entry.summary == load) {
+                entries.remove(key);
+            }
+        }
+        load.completeExceptionally(failure);
+    }
+
+    /**
+     * Canonical form of a filter, or the filter itself if ODataFilter cannot parse it
+     */
+    static String canonicalKey(String filter) {
+        ODataFilter parsed = ODataFilter.parse(filter);
+        return parsed == null ? filter : parsed.toCanonicalString();
+    }
+
+    public synchronized void invalidateAll() {
+        entries.clear();
+    }
+
+    public synchronized int size() { return entries.size(); }
+    public long getHitCount() { return hits.sum(); }
+    public long getMissCount() { return misses.sum(); }
+}
@@ -0,0 +1,151 @@
+/**
+ * Walks NextPageLink pagination with fetching and parsing overlapped.
+ * The calling thread fetches pages one after another and, as soon as a page arrives, pulls its
+ * NextPageLink out with a cheap scan of the tail of the response and requests the next page.
+ * The full parse of each page runs on a shared worker pool meanwhile. Parsed pages are returned
+ * in page order, and a semaphore bounds how many fetched-but-unparsed pages are held at once.
+ * Callers that want pages before the walk ends can pass a page callback, which the calling
+ * thread runs in page order between fetches, so a slow callback slows the walk, not the parsers.
+ * Each page fetched is recorded as a PaginationStepEvent when Flight Recorder is on.
+ */
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+import org.json.JSONObject;
+import org.json.JSONTokener;
+
+public class PaginationPipeline {
+    // Maximum number of pages fetched but not yet parsed, per pagination walk
+    public static final int DEFAULT_MAX_IN_FLIGHT_PAGES = Integer.getInteger("azure.pricing.maxInFlightPages", 4);
+
+    // Page parsing is CPU-bound, so the pool is sized to the machine rather than to the request count
+    private static final AtomicInteger threadCount = new AtomicInteger();
+    private static final ExecutorService parsePool = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(), r -> {
+        Thread t = new Thread(r, "page-parser-" + threadCount.incrementAndGet());
+        t.setDaemon(true);
+        return t;
+    });
+
+    public static <T> List<T> fetchAll(String endpoint, Function<String, T> pageParser) throws Exception {
+        return fetchAll(endpoint, pageParser, DEFAULT_MAX_IN_FLIGHT_PAGES, null, null);
+    }
+
+    public static <T> List<T> fetchAll(String endpoint, Function<String, T> pageParser, LongAdder roundTrips) throws Exception {
+        return fetchAll(endpoint, pageParser, DEFAULT_MAX_IN_FLIGHT_PAGES, roundTrips, null);
+    }
+
+    public static <T> List<T> fetchAll(String endpoint, Function<String, T> pageParser, LongAdder roundTrips, Consumer<? super T> onPage) throws Exception {
+        return fetchAll(endpoint, pageParser, DEFAULT_MAX_IN_FLIGHT_PAGES, roundTrips, onPage);
+    }
+
+    /**
+     * Fetches every page starting at the given endpoint and parses each on the worker pool
+     * @param endpoint The first page's URL
+     * @param pageParser Converts one page's response into a result; must be thread-safe
+     * @param maxInFlightPages Maximum number of fetched pages waiting to be parsed
+     * @param roundTrips Counts pages that were not already cached, or null
+     * @param onPage Called with each parsed page, in page order, as soon as the walk gets to it; or null
+     * @return The parsed pages, in the order the API returned them
+     * @throws Exception if a fetch, a parse or the callback fails; remaining pages are not requested
+     */
+    public static <T> List<T> fetchAll(String endpoint, Function<String, T> pageParser, int maxInFlightPages, LongAdder roundTrips,
+                                       Consumer<? super T> onPage) throws Exception {
+        Semaphore permits = new Semaphore(maxInFlightPages);
+        AtomicReference<Throwable> parseFailure = new AtomicReference<>();
+        List<CompletableFuture<T>> pages = new ArrayList<>();
+        int delivered = 0;
+
+        while (endpoint != null && parseFailure.get() == null) {
+            PaginationStepEvent step = new PaginationStepEvent();
+            step.begin();
+            long waitStart = step.isEnabled() ? System.nanoTime() : 0;
+            permits.acquire();
+            long permitWait = step.isEnabled() ? System.nanoTime() - waitStart : 0;
+            String pageEndpoint = endpoint;
+            String response;
+            try {
+                response = ApiClient.getApiResponse(endpoint, roundTrips);
+                endpoint = extractNextPageLink(response);
+            } catch (Exception e) {
+                permits.release();
+                throw e;
+            }
+            if (step.shouldCommit()) {
+                step.endpoint = pageEndpoint;
+                step.page = pages.size();
+                step.responseLength = response.length();
+                step.lastPage = endpoint == null;
+                step.permitWait = permitWait;
+                step.commit();
+            }
+
+            pages.add(CompletableFuture.supplyAsync(() -> {
+                try {
+                    return pageParser.apply(response);
+                } catch (RuntimeException e) {
+                    parseFailure.compareAndSet(null, e);
+                    throw e;
+                } finally {
+                    permits.release();
+                }
+            }, parsePool));
+
+            // Hand over the pages parsed so far without waiting for the rest
+            while (onPage != null && delivered < pages.size() && pages.get(delivered).isDone()
+                    && !pages.get(delivered).isCompletedExceptionally()) {
+                onPage.accept(pages.get(delivered++).join());
+            }
+        }
+
+        List<T> results = new ArrayList<>(pages.size());
+        try {
+            for (int i = 0; i < pages.size(); i++) {
+                T page = pages.get(i).join();
+                if (onPage != null && i >= delivered) {
+                    onPage.accept(page);
+                }
+                results.add(page);
+            }
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof Exception) {
+                throw (Exception) cause;
+            }
+            throw e;
+        }
+        return results;
+    }
+
+    /**
+     * Extracts the NextPageLink from a response without parsing the Items array
+     * The API writes NextPageLink after Items, so the last unescaped occurrence of the key is the
+     * top-level one. Falls back to a full parse if the key cannot be found that way.
+     * @param response The page's JSON response
+     * @return The next page's URL, or null on the last page
+     */
+    static String extractNextPageLink(String response) {
+        String key = "\"" + Constants.NEXT_PAGE_LINK + "\"";
+        int keyIndex = response.lastIndexOf(key);
+        if (keyIndex > 0 && response.charAt(keyIndex - 1) != '\\') {
+            int colon = keyIndex + key.length();
+            while (colon < response.length() && Character.isWhitespace(response.charAt(colon))) {
+                colon++;
+            }
+            if (colon < response.length() && response.charAt(colon) == ':') {
+                Object value = new JSONTokener(response.substring(colon + 1)).nextValue();
+                return value instanceof String ? (String) value : null;
+            }
+        }
+        return new JSONObject(response).optString(Constants.NEXT_PAGE_LINK, null);
+    }
+}
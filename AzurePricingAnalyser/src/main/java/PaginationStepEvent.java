@@ -0,0 +1,40 @@
+/**
+ * PaginationStepEvent is a Java Flight Recorder event for one page of a PaginationPipeline walk,
+ * from the wait for a parse slot through getting the page from ApiClient and finding its
+ * NextPageLink. Parsing is not included; it runs on the worker pool and is recorded there as a
+ * PageParseEvent.
+ *
+ * A step with an ApiFetchEvent inside it on the same thread went to the network; one without was
+ * answered by a cache or the fixture store.
+ */
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+@Name("azure.pricing.PaginationStep")
+@Label("Pagination Step")
+@Category("Azure Pricing")
+@StackTrace(false)
+public class PaginationStepEvent extends jdk.jfr.Event {
+    @Label("Endpoint")
+    String endpoint;
+
+    @Label("Page")
+    @Description("Index of the page in its walk, from 0")
+    int page;
+
+    @Label("Response Length")
+    @Description("Length of the page's JSON response, in characters")
+    int responseLength;
+
+    @Label("Last Page")
+    boolean lastPage;
+
+    @Label("Permit Wait")
+    @Description("Time spent waiting for earlier pages to be parsed before this one could be fetched")
+    @Timespan(Timespan.NANOSECONDS)
+    long permitWait;
+}
@@ -0,0 +1,328 @@
+/**
+ * PooledHttpTransport is the default HttpTransport, built on java.net.http.HttpClient.
+ * The client keeps its own pool of keep-alive connections, one per request in flight over
+ * HTTP/1.1, or a single multiplexed connection per host when HTTP/2 is enabled. Responses are
+ * requested gzip compressed and decoded from bytes as they arrive, and every body is read to the
+ * end so its connection goes back to the pool. A semaphore bulkhead caps the number of requests
+ * in flight, and with it the connections the pool opens, so a burst of callers waits here
+ * instead of opening sockets.
+ *
+ * Configured from system properties by fromSystemProperties(concurrency):
+ *   azure.pricing.http.connectTimeoutMs         connect timeout (default 10 s)
+ *   azure.pricing.http.requestTimeoutMs         timeout for the response headers, and between
+ *                                               received parts of the body (default 60 s)
+ *   azure.pricing.http.maxConcurrentRequests    requests in flight before callers wait (default: twice the concurrency)
+ *   azure.pricing.http.http2                    negotiate HTTP/2 where the server supports it (default false)
+ *
+ * Nothing here touches JVM-wide settings; each transport owns its client and pool.
+ */
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
+import java.io.Reader;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Flow;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
+
+public class PooledHttpTransport implements HttpTransport {
+    private final HttpClient client;
+    private final Duration requestTimeout;
+    private final Semaphore bulkhead;
+
+    /**
+     * @param connectTimeoutMillis Maximum time to establish a connection
+     * @param requestTimeoutMillis Maximum time to wait for the response headers, and then for
+     *                             each next part of the body
+     * @param maxConcurrentRequests Requests allowed in flight at once
+     * @param http2 Whether to negotiate HTTP/2, falling back to HTTP/1.1 where the server lacks it
+     */
+    public PooledHttpTransport(int connectTimeoutMillis, int requestTimeoutMillis, int maxConcurrentRequests, boolean http2) {
+        if (maxConcurrentRequests < 1) {
+            throw new IllegalArgumentException("At least one request must be allowed in flight: " + maxConcurrentRequests);
+        }
+        this.client = HttpClient.newBuilder()
+            .version(http2 ? HttpClient.Version.HTTP_2 : HttpClient.Version.HTTP_1_1)
+            .connectTimeout(Duration.ofMillis(connectTimeoutMillis))
+            .followRedirects(HttpClient.Redirect.NORMAL)
+            .build();
+        this.requestTimeout = Duration.ofMillis(requestTimeoutMillis);
+        this.bulkhead = new Semaphore(maxConcurrentRequests, true);
+    }
+
+    public static PooledHttpTransport fromSystemProperties() {
+        return fromSystemProperties(16);
+    }
+
+    /**
+     * Creates a transport sized for a number of concurrent callers: twice as many requests in
+     * flight, unless the system properties say otherwise
+     * @param concurrency Callers expected to send requests at the same time, e.g. the batch parallelism
+     */
+    public static PooledHttpTransport fromSystemProperties(int concurrency) {
+        return new PooledHttpTransport(
+            Integer.getInteger("azure.pricing.http.connectTimeoutMs", 10000),
+            Integer.getInteger("azure.pricing.http.requestTimeoutMs", 60000),
+            Integer.getInteger("azure.pricing.http.maxConcurrentRequests", concurrency * 2),
+            Boolean.getBoolean("azure.pricing.http.http2"));
+    }
+
+    @Override
+    public <T> T get(String url, BodyReader<T> reader) throws IOException {
+        // Wait for a slot no longer than a stalled response would be tolerated
+        try {
+            if (!bulkhead.tryAcquire(requestTimeout.toMillis(), TimeUnit.MILLISECONDS)) {
+                throw new IOException("Timed out waiting for a free request slot for " + url);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted waiting for a free request slot");
+        }
+
+        ApiFetchEvent event = new ApiFetchEvent();
+        event.begin();
+        long start = System.nanoTime();
+        int status = -1;
+        BodyStream counted = null;
+        try {
+            HttpRequest request;
+            try {
+                request = HttpRequest.newBuilder(URI.create(url))
+                    .timeout(requestTimeout)
+                    .header("Accept", "application/json")
+                    .header("Accept-Encoding", "gzip")
+                    .GET()
+                    .build();
+            } catch (IllegalArgumentException e) {
+                throw new IOException("Invalid request URL: " + url, e);
+            }
+            long readTimeoutMillis = requestTimeout.toMillis();
+            HttpResponse<BodyStream> response;
+            try {
+                response = client.send(request, info -> new BodyStream(readTimeoutMillis));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted waiting for " + url);
+            }
+            counted = response.body();
+
+            status = response.statusCode();
+            Metrics.httpResponse(status);
+            if (status != 200) {
+                drain(counted);
+                throw new HttpStatusException(status, parseRetryAfter(response.headers().firstValue("Retry-After").orElse(null)));
+            }
+
+            InputStream in = counted;
+            if ("gzip".equalsIgnoreCase(response.headers().firstValue("Content-Encoding").orElse(null))) {
+                in = new GZIPInputStream(in, 8192);
+            }
+            try (Reader body = new InputStreamReader(in, StandardCharsets.UTF_8)) {
+                T result = reader.read(body);
+                // Read any unconsumed remainder so the connection can be reused
+                char[] rest = new char[1024];
+                while (body.read(rest) >= 0) {
+                }
+                return result;
+            }
+        } catch (IOException e) {
+            if (status < 0) {
+                Metrics.HTTP_FAILURES.increment();
+            }
+            if (counted != null) {
+                counted.close();
+            }
+            throw e;
+        } finally {
+            Metrics.HTTP_REQUEST_TIME.recordSince(start);
+            bulkhead.release();
+            if (event.shouldCommit()) {
+                event.endpoint = url;
+                event.status = status;
+                event.bytes = counted == null ? 0 : counted.count;
+                event.commit();
+            }
+        }
+    }
+
+    /**
+     * A response body as a blocking stream, fed by the client one batch of buffers at a time.
+     * A read waits at most the read timeout for the next batch, so a stalled body fails instead
+     * of holding its request slot. Adds the bytes received, before decompression, to the
+     * received-bytes metric and to its own count for the request's ApiFetchEvent.
+     */
+    private static class BodyStream extends InputStream implements HttpResponse.BodySubscriber<BodyStream> {
+        private static final Object END = new Object();
+
+        private final long readTimeoutMillis;
+        private final BlockingQueue<Object> batches = new LinkedBlockingQueue<>();
+        private volatile Flow.Subscription subscription;
+        private volatile boolean closed;
+        private Iterator<ByteBuffer> batch;
+        private ByteBuffer current;
+        private boolean ended;
+        long count;
+
+        BodyStream(long readTimeoutMillis) {
+            this.readTimeoutMillis = readTimeoutMillis;
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+            if (closed) {
+                subscription.cancel();
+            } else {
+                subscription.request(1);
+            }
+        }
+
+        @Override
+        public void onNext(List<ByteBuffer> buffers) {
+            batches.add(buffers);
+        }
+
+        @Override
+        public void onError(Throwable error) {
+            batches.add(error);
+        }
+
+        @Override
+        public void onComplete() {
+            batches.add(END);
+        }
+
+        @Override
+        public CompletionStage<BodyStream> getBody() {
+            return CompletableFuture.completedStage(this);
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] one = new byte[1];
+            return read(one, 0, 1) < 0 ? -1 : one[0] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            if (length == 0) {
+                return 0;
+            }
+            if (!nextBuffer()) {
+                return -1;
+            }
+            int n = Math.min(length, current.remaining());
+            current.get(buffer, offset, n);
+            Metrics.HTTP_BYTES.add(n);
+            count += n;
+            return n;
+        }
+
+        // Moves to a buffer with bytes left, waiting for the next batch if needed
+        private boolean nextBuffer() throws IOException {
+            while (current == null || !current.hasRemaining()) {
+                if (batch != null && batch.hasNext()) {
+                    current = batch.next();
+                    continue;
+                }
+                if (ended) {
+                    return false;
+                }
+                if (closed) {
+                    throw new IOException("Response body closed");
+                }
+                Object next;
+                try {
+                    next = batches.poll(readTimeoutMillis, TimeUnit.MILLISECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("Interrupted reading the response body");
+                }
+                if (next == null) {
+                    throw new HttpTimeoutException("No response data received for " + readTimeoutMillis + " ms");
+                }
+                if (next == END) {
+                    ended = true;
+                } else if (next instanceof Throwable) {
+                    ended = true;
+                    Throwable error = (Throwable) next;
+                    throw error instanceof IOException ? (IOException) error : new IOException(error);
+                } else {
+                    @SuppressWarnings("unchecked")
+                    List<ByteBuffer> buffers = (List<ByteBuffer>) next;
+                    batch = buffers.iterator();
+                    subscription.request(1);
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public void close() {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            Flow.Subscription s = subscription;
+            if (s != null && !ended) {
+                s.cancel();
+            }
+        }
+    }
+
+    /**
+     * Number of requests that can start right now without waiting
+     */
+    public int getAvailableRequestSlots() {
+        return bulkhead.availablePermits();
+    }
+
+    /**
+     * Parses a Retry-After header, given either in seconds or as an HTTP date
+     * @return The delay in milliseconds, or -1 if the header is missing or malformed
+     */
+    static long parseRetryAfter(String value) {
+        if (value == null || value.trim().isEmpty()) {
+            return -1;
+        }
+        value = value.trim();
+        try {
+            return Math.max(0, Long.parseLong(value) * 1000);
+        } catch (NumberFormatException e) {
+            try {
+                ZonedDateTime at = ZonedDateTime.parse(value, DateTimeFormatter.RFC_1123_DATE_TIME);
+                return Math.max(0, at.toInstant().toEpochMilli() - System.currentTimeMillis());
+            } catch (DateTimeParseException e2) {
+                return -1;
+            }
+        }
+    }
+
+    private static void drain(InputStream in) {
+        byte[] buffer = new byte[4096];
+        try (InputStream body = in) {
+            while (body.read(buffer) >= 0) {
+            }
+        } catch (IOException e) {
+            // The connection is discarded instead of reused
+        }
+    }
+}
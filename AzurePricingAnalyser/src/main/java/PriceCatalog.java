@@ -0,0 +1,292 @@
+/**
+ * PriceCatalog holds the full retail price sheet of selected services in memory.
+ * Each service is ingested once by paging through "serviceName eq '...'" and indexed by
+ * meterId, armSkuName, armRegionName, location, serviceName, productName and type. Queries using
+ * the filters AzurePricingCalculator builds are then answered by intersecting posting lists
+ * instead of calling the API. The API is only used by ingest() and refresh().
+ * Rows are held in a ColumnarPriceStore. Values are matched case-insensitively, as the API's eq
+ * does, so posting lists are keyed by lower-cased value and merge the dictionary codes that
+ * differ only in case.
+ *
+ * Each ingest builds a new immutable snapshot and swaps it in, so lookups never block on a refresh.
+ */
+import java.io.UnsupportedEncodingException;
+import java.net.URLEncoder;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+public class PriceCatalog {
+    // Fields with a posting-list index; every field the calculator filters on is covered
+    private static final String[] INDEXED_FIELDS = {
+        Constants.METER_ID, Constants.ARM_SKU_NAME, Constants.ARM_REGION_NAME, Constants.LOCATION,
+        Constants.SERVICE_NAME, Constants.PRODUCT_NAME, Constants.TYPE
+    };
+
+    private static final int[] NO_ROWS = new int[0];
+
+    // The API returns at most this many items per page
+    public static final int API_PAGE_SIZE = 100;
+
+    private volatile Snapshot snapshot = new Snapshot(Collections.<String>emptySet(), ColumnarPriceStore.empty());
+
+    private static class Snapshot {
+        final Set<String> services;
+        final ColumnarPriceStore store;
+        // Field to posting lists, keyed by lower-cased value
+        final Map<String, Map<String, int[]>> index = new HashMap<>();
+
+        Snapshot(Set<String> services, ColumnarPriceStore store) {
+            this.services = services;
+            this.store = store;
+            for (String field : INDEXED_FIELDS) {
+                // Codes of values that differ only in case share one posting list
+                StringDictionary dictionary = store.getDictionary(field);
+                Map<String, Integer> keys = new HashMap<>();
+                int[] keyOfCode = new int[dictionary.size()];
+                for (int code = 0; code < keyOfCode.length; code++) {
+                    String value = dictionary.decode(code);
+                    keyOfCode[code] = value == null ? -1 : keys.computeIfAbsent(fold(value), k -> keys.size());
+                }
+                int[] counts = new int[keys.size()];
+                for (int row = 0; row < store.size(); row++) {
+                    int key = keyOfCode[store.getCode(field, row)];
+                    if (key >= 0) {
+                        counts[key]++;
+                    }
+                }
+                int[][] postings = new int[counts.length][];
+                for (int key = 0; key < counts.length; key++) {
+                    postings[key] = new int[counts[key]];
+                    counts[key] = 0;
+                }
+                for (int row = 0; row < store.size(); row++) {
+                    int key = keyOfCode[store.getCode(field, row)];
+                    if (key >= 0) {
+                        postings[key][counts[key]++] = row;
+                    }
+                }
+                Map<String, int[]> byValue = new HashMap<>();
+                keys.forEach((value, key) -> byValue.put(value, postings[key]));
+                index.put(field, byValue);
+            }
+        }
+
+        int[] postings(String field, String value) {
+            return index.get(field).getOrDefault(fold(value), NO_ROWS);
+        }
+    }
+
+    /**
+     * Rows matching a query, read from the snapshot that answered it
+     */
+    public static class Selection {
+        private final ColumnarPriceStore store;
+        private final int[] rows;
+
+        Selection(ColumnarPriceStore store, int[] rows) {
+            this.store = store;
+            this.rows = rows;
+        }
+
+        public int size() {
+            return rows.length;
+        }
+
+        /**
+         * Fills a reused PriceItem with the i-th matching row
+         */
+        public PriceItem read(int i, PriceItem item) {
+            return store.read(rows[i], item);
+        }
+
+        /**
+         * Returns a PricingOption view of the i-th matching row
+         */
+        public PricingOption view(int i) {
+            return store.view(rows[i]);
+        }
+
+        /**
+         * Copies up to limit matching rows out as independent PriceItems
+         */
+        public List<PriceItem> toList(int limit) {
+            List<PriceItem> items = new ArrayList<>(Math.min(limit, rows.length));
+            for (int i = 0; i < rows.length && i < limit; i++) {
+                items.add(store.read(rows[i], new PriceItem()));
+            }
+            return items;
+        }
+    }
+
+    /**
+     * Adds services to the catalog, paging through each service's full price sheet
+     * Services already in the catalog are fetched again, so this also refreshes them
+     * @param serviceNames Service names as the API spells them, e.g. "Virtual Machines"
+     * @throws Exception if a page cannot be fetched or parsed
+     */
+    public synchronized void ingest(Collection<String> serviceNames) throws Exception {
+        Snapshot current = snapshot;
+        Set<String> services = new LinkedHashSet<>(current.services);
+        for (String serviceName : serviceNames) {
+            if (!containsIgnoreCase(services, serviceName)) {
+                services.add(serviceName);
+            }
+        }
+
+        ColumnarPriceStore.Builder builder = new ColumnarPriceStore.Builder();
+        PriceItem scratch = new PriceItem();
+        for (int row = 0; row < current.store.size(); row++) {
+            if (!containsIgnoreCase(serviceNames, current.store.getField(Constants.SERVICE_NAME, row))) {
+                builder.add(current.store, row, scratch);
+            }
+        }
+        for (String serviceName : serviceNames) {
+            fetchService(serviceName, builder);
+        }
+        snapshot = new Snapshot(Collections.unmodifiableSet(services), builder.build());
+    }
+
+    /**
+     * Re-ingests every service in the catalog
+     */
+    public void refresh() throws Exception {
+        ingest(new ArrayList<>(snapshot.services));
+    }
+
+    private void fetchService(String serviceName, ColumnarPriceStore.Builder builder) throws Exception {
+        String endpoint = Constants.AZURE_PRICING_API + Constants.API_VERSION + Constants.API_FILTER
+                + encode(String.format(Constants.SERVICE_FILTER, serviceName));
+
+        // Full price sheets are far larger than the response cache, so pages bypass it. Each page is
+        // parsed while it is being received and appended to the store; no page is held as a string.
+        while (endpoint != null) {
+            endpoint = ApiClient.readApiResponse(endpoint, body -> PricePageReader.read(body, builder::add));
+        }
+    }
+
+    /**
+     * Answers a $filter query from the catalog
+     * @param filter A filter built from the *_FILTER constants
+     * @return The matching rows in ingest order, or null if the catalog cannot answer the filter:
+     *         it is not a supported expression, or it names neither an ingested service nor a
+     *         meter ID belonging to one
+     */
+    public Selection query(String filter) {
+        ODataFilter parsed = ODataFilter.parse(filter);
+        if (parsed == null) {
+            return null;
+        }
+        Snapshot current = snapshot;
+        if (!covers(current, parsed)) {
+            return null;
+        }
+
+        // Intersect the posting lists, smallest first; clauses on other fields are checked per row
+        List<int[]> postings = new ArrayList<>();
+        List<Map.Entry<String, String>> unindexed = new ArrayList<>();
+        for (Map.Entry<String, String> clause : parsed.getClauses().entrySet()) {
+            if (current.index.containsKey(clause.getKey())) {
+                postings.add(current.postings(clause.getKey(), clause.getValue()));
+            } else {
+                unindexed.add(clause);
+            }
+        }
+        postings.sort((a, b) -> Integer.compare(a.length, b.length));
+
+        int[] matches = postings.get(0);
+        for (int i = 1; i < postings.size() && matches.length > 0; i++) {
+            matches = intersect(matches, postings.get(i));
+        }
+
+        if (!unindexed.isEmpty()) {
+            int n = 0;
+            int[] filtered = new int[matches.length];
+            for (int row : matches) {
+                boolean matchesAll = true;
+                for (Map.Entry<String, String> clause : unindexed) {
+                    if (!clause.getValue().equalsIgnoreCase(current.store.getField(clause.getKey(), row))) {
+                        matchesAll = false;
+                        break;
+                    }
+                }
+                if (matchesAll) {
+                    filtered[n++] = row;
+                }
+            }
+            matches = Arrays.copyOf(filtered, n);
+        }
+        return new Selection(current.store, matches);
+    }
+
+    private boolean covers(Snapshot current, ODataFilter filter) {
+        String serviceName = filter.get(Constants.SERVICE_NAME);
+        if (serviceName != null) {
+            return containsIgnoreCase(current.services, serviceName);
+        }
+        // A meter ID is answerable once its service has been ingested, which is when it is indexed
+        String meterId = filter.get(Constants.METER_ID);
+        return meterId != null && current.postings(Constants.METER_ID, meterId).length > 0;
+    }
+
+    // Lower-cases a value the way the API compares values in eq clauses
+    private static String fold(String value) {
+        return value.toLowerCase(Locale.ROOT);
+    }
+
+    private static boolean containsIgnoreCase(Collection<String> values, String value) {
+        for (String candidate : values) {
+            if (candidate.equalsIgnoreCase(value)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static int[] intersect(int[] a, int[] b) {
+        int[] out = new int[Math.min(a.length, b.length)];
+        int i = 0, j = 0, n = 0;
+        while (i < a.length && j < b.length) {
+            if (a[i] < b[j]) {
+                i++;
+            } else if (a[i] > b[j]) {
+                j++;
+            } else {
+                out[n++] = a[i];
+                i++;
+                j++;
+            }
+        }
+        return Arrays.copyOf(out, n);
+    }
+
+    public Set<String> getServices() {
+        return snapshot.services;
+    }
+
+    public int size() {
+        return snapshot.store.size();
+    }
+
+    /**
+     * Rough heap size of the catalog's price columns and dictionaries, excluding the index
+     */
+    public long estimateBytes() {
+        return snapshot.store.estimateBytes();
+    }
+
+    private static String encode(String filter) {
+        try {
+            return URLEncoder.encode(filter, "UTF-8");
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
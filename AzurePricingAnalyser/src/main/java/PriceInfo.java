@@ -16,6 +16,8 @@ public class PriceInfo {
     private double yearlyPrice;
     private double upfrontCost;
     private List<TierInfo> tiers;
+    // Compiled from the tiers on first use by calculateCost
+    private volatile TieredCostEngine costEngine;
 
     public PriceInfo(double originalPrice, String unitOfMeasure, double hourlyRate, List<TierInfo> tiers) {
         this.originalPrice = originalPrice;
@@ -41,4 +43,16 @@ public class PriceInfo {
     public boolean hasTiers() {
         return tiers != null && !tiers.isEmpty();
     }
+
+    /**
+     * Returns the cost of a quantity, counted in the unit of measure, across the tiers if there are any
+     */
+    public double calculateCost(double quantity) {
+        TieredCostEngine engine = costEngine;
+        if (engine == null) {
+            engine = TieredCostEngine.of(this);
+            costEngine = engine;
+        }
+        return engine.cost(0, quantity);
+    }
 }
\ No newline at end of file
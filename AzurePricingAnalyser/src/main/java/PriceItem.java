@@ -0,0 +1,149 @@
+/**
+ * PriceItem holds the fields of one entry of the Azure Retail Prices "Items" array.
+ * PricePageReader reuses a single instance for every item on a page, so handlers must copy
+ * whatever they keep. Fields the API leaves out are null (strings) or 0 (numbers).
+ */
+import java.util.Arrays;
+
+public class PriceItem {
+    private String currencyCode;
+    private String meterId;
+    private String serviceName;
+    private String productName;
+    private String skuName;
+    private String armSkuName;
+    private String armRegionName;
+    private String location;
+    private String unitOfMeasure;
+    private String type;
+    private String reservationTerm;
+    private double retailPrice;
+    private double tierMinimumUnits;
+
+    // Savings plan entries, kept in parallel arrays that grow once and are reused
+    private boolean hasSavingsPlan;
+    private int savingsPlanCount;
+    private String[] savingsPlanTerms = new String[4];
+    private double[] savingsPlanPrices = new double[4];
+
+    void clear() {
+        currencyCode = null;
+        meterId = null;
+        serviceName = null;
+        productName = null;
+        skuName = null;
+        armSkuName = null;
+        armRegionName = null;
+        location = null;
+        unitOfMeasure = null;
+        type = null;
+        reservationTerm = null;
+        retailPrice = 0;
+        tierMinimumUnits = 0;
+        hasSavingsPlan = false;
+        savingsPlanCount = 0;
+    }
+
+    /**
+     * Returns an independent copy, for handlers that keep items beyond the callback
+     */
+    public PriceItem copy() {
+        PriceItem copy = new PriceItem();
+        copy.currencyCode = currencyCode;
+        copy.meterId = meterId;
+        copy.serviceName = serviceName;
+        copy.productName = productName;
+        copy.skuName = skuName;
+        copy.armSkuName = armSkuName;
+        copy.armRegionName = armRegionName;
+        copy.location = location;
+        copy.unitOfMeasure = unitOfMeasure;
+        copy.type = type;
+        copy.reservationTerm = reservationTerm;
+        copy.retailPrice = retailPrice;
+        copy.tierMinimumUnits = tierMinimumUnits;
+        copy.hasSavingsPlan = hasSavingsPlan;
+        copy.savingsPlanCount = savingsPlanCount;
+        copy.savingsPlanTerms = Arrays.copyOf(savingsPlanTerms, Math.max(savingsPlanCount, 1));
+        copy.savingsPlanPrices = Arrays.copyOf(savingsPlanPrices, Math.max(savingsPlanCount, 1));
+        return copy;
+    }
+
+    /**
+     * Returns a string field by its API name, as used in $filter clauses
+     * @param name The field name, e.g. "armRegionName"
+     * @return The field's value, or null if the field is absent or not a string field
+     */
+    public String getField(String name) {
+        switch (name) {
+            case Constants.CURRENCY: return currencyCode;
+            case Constants.METER_ID: return meterId;
+            case Constants.SERVICE_NAME: return serviceName;
+            case Constants.PRODUCT_NAME: return productName;
+            case Constants.SKU_NAME: return skuName;
+            case Constants.ARM_SKU_NAME: return armSkuName;
+            case Constants.ARM_REGION_NAME: return armRegionName;
+            case Constants.LOCATION: return location;
+            case Constants.UNIT_OF_MEASURE: return unitOfMeasure;
+            case Constants.TYPE: return type;
+            case Constants.RESERVATION_TERM: return reservationTerm;
+            default: return null;
+        }
+    }
+
+    void addSavingsPlan(String term, double retailPrice) {
+        if (savingsPlanCount == savingsPlanTerms.length) {
+            savingsPlanTerms = Arrays.copyOf(savingsPlanTerms, savingsPlanCount * 2);
+            savingsPlanPrices = Arrays.copyOf(savingsPlanPrices, savingsPlanCount * 2);
+        }
+        savingsPlanTerms[savingsPlanCount] = term;
+        savingsPlanPrices[savingsPlanCount] = retailPrice;
+        savingsPlanCount++;
+    }
+
+    public String getCurrencyCode() { return currencyCode; }
+    void setCurrencyCode(String currencyCode) { this.currencyCode = currencyCode; }
+
+    public String getMeterId() { return meterId; }
+    void setMeterId(String meterId) { this.meterId = meterId; }
+
+    public String getServiceName() { return serviceName; }
+    void setServiceName(String serviceName) { this.serviceName = serviceName; }
+
+    public String getProductName() { return productName; }
+    void setProductName(String productName) { this.productName = productName; }
+
+    public String getSkuName() { return skuName; }
+    void setSkuName(String skuName) { this.skuName = skuName; }
+
+    public String getArmSkuName() { return armSkuName; }
+    void setArmSkuName(String armSkuName) { this.armSkuName = armSkuName; }
+
+    public String getArmRegionName() { return armRegionName; }
+    void setArmRegionName(String armRegionName) { this.armRegionName = armRegionName; }
+
+    public String getLocation() { return location; }
+    void setLocation(String location) { this.location = location; }
+
+    public String getUnitOfMeasure() { return unitOfMeasure; }
+    void setUnitOfMeasure(String unitOfMeasure) { this.unitOfMeasure = unitOfMeasure; }
+
+    public String getType() { return type; }
+    void setType(String type) { this.type = type; }
+
+    public String getReservationTerm() { return reservationTerm; }
+    void setReservationTerm(String reservationTerm) { this.reservationTerm = reservationTerm; }
+
+    public double getRetailPrice() { return retailPrice; }
+    void setRetailPrice(double retailPrice) { this.retailPrice = retailPrice; }
+
+    public double getTierMinimumUnits() { return tierMinimumUnits; }
+    void setTierMinimumUnits(double tierMinimumUnits) { this.tierMinimumUnits = tierMinimumUnits; }
+
+    public boolean hasSavingsPlan() { return hasSavingsPlan; }
+    void setHasSavingsPlan(boolean hasSavingsPlan) { this.hasSavingsPlan = hasSavingsPlan; }
+
+    public int getSavingsPlanCount() { return savingsPlanCount; }
+    public String getSavingsPlanTerm(int index) { return savingsPlanTerms[index]; }
+    public double getSavingsPlanRetailPrice(int index) { return savingsPlanPrices[index]; }
+}
@@ -0,0 +1,128 @@
+/**
+ * Reads one page of an Azure Retail Prices response with JsonPullParser.
+ * The Items array is walked once; each item is decoded into a reused PriceItem and passed to
+ * the handler before the next item is read, so no DOM, item list or copy of the body is built.
+ */
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.UncheckedIOException;
+
+import org.json.JSONException;
+
+public class PricePageReader {
+    /**
+     * Receives each item of a page. The item is reused after the call returns.
+     */
+    public interface ItemHandler {
+        void onItem(PriceItem item);
+    }
+
+    /**
+     * Reads a page and passes every item to the handler
+     * @param reader The page's JSON response
+     * @param handler Called once per item, in page order
+     * @return The page's NextPageLink, or null on the last page
+     * @throws IOException if the reader fails
+     */
+    public static String read(Reader reader, ItemHandler handler) throws IOException {
+        JsonPullParser parser = new JsonPullParser(reader);
+        if (parser.next() != JsonPullParser.Token.BEGIN_OBJECT) {
+            throw new JSONException("Expected a JSON object for the response page");
+        }
+
+        String nextPageLink = null;
+        boolean hasItems = false;
+        PriceItem item = new PriceItem();
+        while (parser.next() == JsonPullParser.Token.NAME) {
+            String name = parser.getText();
+            if (Constants.ITEMS.equals(name)) {
+                if (parser.next() != JsonPullParser.Token.BEGIN_ARRAY) {
+                    throw new JSONException("JSONObject[\"" + Constants.ITEMS + "\"] is not a JSONArray.");
+                }
+                hasItems = true;
+                while (parser.next() == JsonPullParser.Token.BEGIN_OBJECT) {
+                    item.clear();
+                    readItem(parser, item);
+                    handler.onItem(item);
+                }
+            } else if (Constants.NEXT_PAGE_LINK.equals(name)) {
+                parser.next();
+                nextPageLink = parser.getStringOrNull();
+            } else {
+                parser.skipValue();
+            }
+        }
+
+        if (!hasItems) {
+            throw new JSONException("JSONObject[\"" + Constants.ITEMS + "\"] not found.");
+        }
+        return nextPageLink;
+    }
+
+    /**
+     * Reads a page held in memory, e.g. from the ApiClient cache
+     * @see #read(Reader, ItemHandler)
+     */
+    public static String read(String response, ItemHandler handler) {
+        long start = System.nanoTime();
+        try {
+            return read(new StringReader(response), handler);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            Metrics.PAGE_PARSE_TIME.recordSince(start);
+        }
+    }
+
+    private static void readItem(JsonPullParser parser, PriceItem item) throws IOException {
+        while (parser.next() == JsonPullParser.Token.NAME) {
+            String name = parser.getText();
+            switch (name) {
+                case Constants.CURRENCY: parser.next(); item.setCurrencyCode(parser.getStringOrNull()); break;
+                case Constants.METER_ID: parser.next(); item.setMeterId(parser.getStringOrNull()); break;
+                case Constants.SERVICE_NAME: parser.next(); item.setServiceName(parser.getStringOrNull()); break;
+                case Constants.PRODUCT_NAME: parser.next(); item.setProductName(parser.getStringOrNull()); break;
+                case Constants.SKU_NAME: parser.next(); item.setSkuName(parser.getStringOrNull()); break;
+                case Constants.ARM_SKU_NAME: parser.next(); item.setArmSkuName(parser.getStringOrNull()); break;
+                case Constants.ARM_REGION_NAME: parser.next(); item.setArmRegionName(parser.getStringOrNull()); break;
+                case Constants.LOCATION: parser.next(); item.setLocation(parser.getStringOrNull()); break;
+                case Constants.UNIT_OF_MEASURE: parser.next(); item.setUnitOfMeasure(parser.getStringOrNull()); break;
+                case Constants.TYPE: parser.next(); item.setType(parser.getStringOrNull()); break;
+                case Constants.RESERVATION_TERM: parser.next(); item.setReservationTerm(parser.getStringOrNull()); break;
+                case Constants.RETAIL_PRICE: parser.next(); item.setRetailPrice(parser.getDouble()); break;
+                case Constants.TIER_MINIMUM_UNITS: parser.next(); item.setTierMinimumUnits(parser.getDouble()); break;
+                case Constants.SAVINGS_PLAN:
+                    item.setHasSavingsPlan(true);
+                    readSavingsPlans(parser, item);
+                    break;
+                default:
+                    parser.skipValue();
+                    break;
+            }
+        }
+    }
+
+    private static void readSavingsPlans(JsonPullParser parser, PriceItem item) throws IOException {
+        if (parser.next() != JsonPullParser.Token.BEGIN_ARRAY) {
+            throw new JSONException("JSONObject[\"" + Constants.SAVINGS_PLAN + "\"] is not a JSONArray.");
+        }
+        while (parser.next() == JsonPullParser.Token.BEGIN_OBJECT) {
+            String term = null;
+            double retailPrice = 0;
+            while (parser.next() == JsonPullParser.Token.NAME) {
+                String name = parser.getText();
+                if (Constants.TERM.equals(name)) {
+                    parser.next();
+                    term = parser.getStringOrNull();
+                } else if (Constants.RETAIL_PRICE.equals(name)) {
+                    parser.next();
+                    retailPrice = parser.getDouble();
+                } else {
+                    parser.skipValue();
+                }
+            }
+            item.addSavingsPlan(term, retailPrice);
+        }
+    }
+}
@@ -0,0 +1,169 @@
+/**
+ * PricingLoadGenerator measures the sustained throughput of a PricingServer: a fixed number of
+ * clients send GET /pricing requests back to back for a fixed duration, cycling through a list
+ * of meter IDs, and the report gives requests per second, latency percentiles and the count of
+ * each status code. Each client waits for its response before sending the next request (closed
+ * loop), so the clients are the offered concurrency.
+ */
+import java.io.IOException;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class PricingLoadGenerator {
+    // How long one request may take before the client counts it as failed; overridable with -Dazure.pricing.loadTimeoutSeconds
+    private static final long DEFAULT_REQUEST_TIMEOUT_SECONDS = 30;
+
+    private final URI baseUri;
+    private final List<String> meterIds;
+    private final int clients;
+    private final long durationNanos;
+
+    /**
+     * Constructor for PricingLoadGenerator
+     * @param baseUri The server's address, e.g. http://localhost:8080
+     * @param meterIds The meter IDs to request, in turn
+     * @param clients Number of concurrent clients
+     * @param durationSeconds How long to send requests for
+     */
+    public PricingLoadGenerator(URI baseUri, List<String> meterIds, int clients, int durationSeconds) {
+        if (meterIds.isEmpty()) {
+            throw new IllegalArgumentException("At least one meter ID is needed");
+        }
+        if (clients < 1 || durationSeconds < 1) {
+            throw new IllegalArgumentException("Clients and duration must be at least 1: " + clients + ", " + durationSeconds);
+        }
+        this.baseUri = baseUri;
+        this.meterIds = new ArrayList<>(meterIds);
+        this.clients = clients;
+        this.durationNanos = durationSeconds * 1_000_000_000L;
+    }
+
+    /**
+     * Runs the load and reports what the server sustained
+     * @throws InterruptedException if interrupted while the clients run
+     */
+    public Report run() throws InterruptedException {
+        HttpClient http = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(10))
+                .build();
+        Duration requestTimeout = Duration.ofSeconds(Long.getLong("azure.pricing.loadTimeoutSeconds", DEFAULT_REQUEST_TIMEOUT_SECONDS));
+        ExecutorService pool = BlockingExecutors.create("load-client");
+        AtomicLong next = new AtomicLong();
+        long start = System.nanoTime();
+        long deadline = start + durationNanos;
+        List<Future<Report>> futures = new ArrayList<>();
+        try {
+            for (int c = 0; c < clients; c++) {
+                futures.add(pool.submit(() -> {
+                    Report report = new Report();
+                    while (System.nanoTime() < deadline) {
+                        String meterId = meterIds.get((int) (next.getAndIncrement() % meterIds.size()));
+                        HttpRequest request = HttpRequest.newBuilder(baseUri.resolve("/pricing?meterId="
+                                + URLEncoder.encode(meterId, StandardCharsets.UTF_8))).timeout(requestTimeout).GET().build();
+                        long requestStart = System.nanoTime();
+                        int status;
+                        try {
+                            status = http.send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+                        } catch (IOException e) {
+                            status = -1;
+                        }
+                        report.record(status, System.nanoTime() - requestStart);
+                    }
+                    return report;
+                }));
+            }
+            Report total = new Report();
+            for (Future<Report> future : futures) {
+                try {
+                    total.merge(future.get());
+                } catch (ExecutionException e) {
+                    throw new IllegalStateException("Load client failed", e.getCause());
+                }
+            }
+            total.clients = clients;
+            total.elapsedNanos = System.nanoTime() - start;
+            return total;
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * Requests sent, by status code (-1 for connection failures and timeouts), and their latencies
+     */
+    public static class Report {
+        private long[] latencies = new long[1024];
+        private int count;
+        private final Map<Integer, Long> statuses = new TreeMap<>();
+        private int clients;
+        private long elapsedNanos;
+
+        void record(int status, long latencyNanos) {
+            if (count == latencies.length) {
+                latencies = Arrays.copyOf(latencies, count * 2);
+            }
+            latencies[count++] = latencyNanos;
+            statuses.merge(status, 1L, Long::sum);
+        }
+
+        void merge(Report other) {
+            if (count + other.count > latencies.length) {
+                latencies = Arrays.copyOf(latencies, count + other.count);
+            }
+            System.arraycopy(other.latencies, 0, latencies, count, other.count);
+            count += other.count;
+            other.statuses.forEach((status, n) -> statuses.merge(status, n, Long::sum));
+        }
+
+        public long getRequests() { return count; }
+        public Map<Integer, Long> getStatuses() { return statuses; }
+        public long getElapsedNanos() { return elapsedNanos; }
+
+        public double getRequestsPerSecond() {
+            return elapsedNanos == 0 ? 0 : count / (elapsedNanos / 1e9);
+        }
+
+        /**
+         * Latency percentile over all requests, in milliseconds
+         */
+        public double getLatencyPercentileMillis(double percentile) {
+            if (count == 0) {
+                return 0;
+            }
+            long[] sorted = Arrays.copyOf(latencies, count);
+            Arrays.sort(sorted);
+            int index = (int) Math.ceil(percentile / 100.0 * count) - 1;
+            return sorted[Math.max(0, Math.min(count - 1, index))] / 1e6;
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder sb = new StringBuilder();
+            sb.append("Load Test:\n");
+            sb.append(String.format("Clients: %d, Duration: %.2f s\n", clients, elapsedNanos / 1e9));
+            sb.append(String.format("Requests: %d, Throughput: %.1f requests/s\n", count, getRequestsPerSecond()));
+            sb.append(String.format("Latency: p50 %.2f ms, p90 %.2f ms, p99 %.2f ms, max %.2f ms\n",
+                    getLatencyPercentileMillis(50), getLatencyPercentileMillis(90), getLatencyPercentileMillis(99),
+                    getLatencyPercentileMillis(100)));
+            sb.append("Statuses:");
+            statuses.forEach((status, n) -> sb.append(String.format(" %s=%d", status < 0 ? "error" : status, n)));
+            sb.append("\n");
+            return sb.toString();
+        }
+    }
+}
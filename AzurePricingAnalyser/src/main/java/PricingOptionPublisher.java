@@ -0,0 +1,96 @@
+/**
+ * PricingOptionPublisher streams the pricing options of one AzurePricingCalculator run to a
+ * subscriber as their pages arrive: the consumption prices and savings plans of each consumption
+ * page, and the reservations of each reservation page, each kind in page order. The two kinds
+ * are fetched concurrently, so they interleave; a BestOptionAggregator fed with the stream gives
+ * a provisional best option after the first page and the final one when the stream completes.
+ *
+ * The calculation starts when the subscriber subscribes, and it runs once, so only one
+ * subscriber is accepted. The stream completes after the final PricingResult is ready (see
+ * getResult) or fails with the error that stopped the calculation.
+ *
+ * Delivery goes through a SubmissionPublisher with a bounded buffer. Overflow policy: when a
+ * subscriber falls behind and the buffer is full, the thread walking the pages waits up to the
+ * offer timeout for space (azure.pricing.stream.offerTimeoutMillis, default 1000), and if there
+ * is still none the option is dropped from the stream and counted (getDroppedCount). A slow
+ * subscriber therefore delays the calculation by at most the timeout per option and can never
+ * stall it. The final PricingResult is built independently of the stream, so it is complete
+ * even when options were dropped; a subscriber that needs every option checks getDroppedCount
+ * when the stream completes, or takes the best options from getResult.
+ */
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.SubmissionPublisher;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+public class PricingOptionPublisher implements Flow.Publisher<PricingOption> {
+    private static final long DEFAULT_OFFER_TIMEOUT_MILLIS = 1000;
+
+    private final AzurePricingCalculator calculator;
+    private final Executor executor;
+    private final long offerTimeoutMillis;
+    private final AtomicBoolean subscribed = new AtomicBoolean();
+    private final CompletableFuture<PricingResult> result = new CompletableFuture<>();
+    private final LongAdder dropped = new LongAdder();
+
+    PricingOptionPublisher(AzurePricingCalculator calculator, Executor executor) {
+        this.calculator = calculator;
+        this.executor = executor;
+        this.offerTimeoutMillis = Long.getLong("azure.pricing.stream.offerTimeoutMillis", DEFAULT_OFFER_TIMEOUT_MILLIS);
+    }
+
+    @Override
+    public void subscribe(Flow.Subscriber<? super PricingOption> subscriber) {
+        Objects.requireNonNull(subscriber, "subscriber");
+        if (!subscribed.compareAndSet(false, true)) {
+            subscriber.onSubscribe(new Flow.Subscription() {
+                @Override
+                public void request(long n) {
+                }
+
+                @Override
+                public void cancel() {
+                }
+            });
+            subscriber.onError(new IllegalStateException("A pricing calculation can only be streamed to one subscriber"));
+            return;
+        }
+
+        SubmissionPublisher<PricingOption> delivery = new SubmissionPublisher<>();
+        delivery.subscribe(subscriber);
+        calculator.runPricingGraph(executor, option -> delivery.offer(option, offerTimeoutMillis, TimeUnit.MILLISECONDS, (s, item) -> {
+            // Not retried: the walker moves on, and the option still counts towards getResult
+            dropped.increment();
+            return false;
+        })).whenComplete((pricingResult, failure) -> {
+            if (failure != null) {
+                Throwable cause = failure instanceof CompletionException && failure.getCause() != null ? failure.getCause() : failure;
+                result.completeExceptionally(cause);
+                delivery.closeExceptionally(cause);
+            } else {
+                result.complete(pricingResult);
+                delivery.close();
+            }
+        });
+    }
+
+    /**
+     * A stage completed with the final pricing result, or exceptionally if the calculation failed
+     */
+    public CompletionStage<PricingResult> getResult() {
+        return result;
+    }
+
+    /**
+     * Options left out of the stream because the subscriber's buffer stayed full past the offer timeout
+     */
+    public long getDroppedCount() {
+        return dropped.sum();
+    }
+}
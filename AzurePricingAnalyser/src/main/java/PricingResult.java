@@ -3,6 +3,7 @@
  * It includes details on consumption prices, reservation prices, and savings plans.
  * The class also stores the best pricing options overall and term-wise.
  * It provides a toString method for formatted output of all pricing information. VSG
+ * For machine-readable output, see PricingResultWriter.
  */
 import java.util.List;
 import java.util.Map;
@@ -18,6 +19,8 @@ public class PricingResult {
     private BestOptionResult bestOption;
     private BestOptionResult bestOptionWithoutConsumption;
     private Map<String, BestOptionResult> termWiseBestOptions;
+    private long lookupRoundTrips;
+    private long priceRoundTrips;
 
     // Getters and setters for all fields
     public String getCurrency() { return currency; }
@@ -50,6 +53,15 @@ public class PricingResult {
     public Map<String, BestOptionResult> getTermWiseBestOptions() { return termWiseBestOptions; }
     public void setTermWiseBestOptions(Map<String, BestOptionResult> termWiseBestOptions) { this.termWiseBestOptions = termWiseBestOptions; }
 
+    // API calls made for this result that no cache could answer: filter lookups and price pages
+    public long getLookupRoundTrips() { return lookupRoundTrips; }
+    public void setLookupRoundTrips(long lookupRoundTrips) { this.lookupRoundTrips = lookupRoundTrips; }
+
+    public long getPriceRoundTrips() { return priceRoundTrips; }
+    public void setPriceRoundTrips(long priceRoundTrips) { this.priceRoundTrips = priceRoundTrips; }
+
+    public long getRoundTrips() { return lookupRoundTrips + priceRoundTrips; }
+
     @Override
     public String toString() {
         StringBuilder sb = new StringBuilder();
@@ -74,6 +86,8 @@ public class PricingResult {
                 sb.append(String.format("\t%s: %s\n", entry.getKey(), entry.getValue()));
             }
         }
+        sb.append(String.format("Round trips: %d (%d lookups, %d price pages)\n",
+                getRoundTrips(), lookupRoundTrips, priceRoundTrips));
 
         return sb.toString();
     }
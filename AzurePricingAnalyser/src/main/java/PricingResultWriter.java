@@ -0,0 +1,58 @@
+/**
+ * PricingResultWriter streams PricingResults to an output, one result at a time, in one of the
+ * formats below. Writers encode straight into a buffered stream, so a batch of any size is
+ * written without holding its output in memory.
+ *
+ *   text     PricingResult.toString, as the interactive and batch modes print it
+ *   json     one JSON array of result objects
+ *   ndjson   one JSON object per line
+ *   csv      one row per price, tier and best option (see CsvResultWriter)
+ *   binary   compact records for BinaryResultReader (see BinaryResultWriter)
+ *
+ * Closing a writer finishes the format (e.g. the closing bracket of a JSON array) and closes the output.
+ */
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+
+public interface PricingResultWriter extends Closeable, Flushable {
+    // Buffer between the encoders and the output
+    int BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * Writes one result
+     * @param meterId The meter the result is for, or null if unknown
+     */
+    void write(String meterId, PricingResult result) throws IOException;
+
+    /**
+     * Creates a writer for a format named as in the table above
+     * @throws IllegalArgumentException if the format is unknown
+     */
+    static PricingResultWriter create(String format, OutputStream out) {
+        switch (format.toLowerCase(Locale.ROOT)) {
+            case "text":
+                return new TextResultWriter(out);
+            case "json":
+                return new JsonResultWriter(out, false);
+            case "ndjson":
+                return new JsonResultWriter(out, true);
+            case "csv":
+                return new CsvResultWriter(out);
+            case "binary":
+                return new BinaryResultWriter(out);
+            default:
+                throw new IllegalArgumentException("Unknown output format: " + format + " (text, json, ndjson, csv, binary)");
+        }
+    }
+
+    static Writer utf8(OutputStream out) {
+        return new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), BUFFER_SIZE);
+    }
+}
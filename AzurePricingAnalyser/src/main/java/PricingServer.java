@@ -0,0 +1,294 @@
+/**
+ * PricingServer serves the calculator over HTTP, on the JDK's built-in server, so other programs
+ * can price meters without starting a JVM per meter. Every request is priced by its own
+ * AzurePricingCalculator, and they all share the static ApiClient cache, so a lookup or page
+ * fetched for one request answers the next one from memory while the server runs.
+ *
+ *   GET /pricing?meterId=id[&region=r]   the meter's PricingResult as JSON (see JsonResultWriter)
+ *   GET /status                          limits, in-flight requests and counters as JSON
+ *   GET /metrics                         every Metrics metric in the Prometheus text format
+ *
+ * At most maxConcurrent requests are priced at once and at most maxQueued more wait for a slot,
+ * each for up to the queue timeout, which starts when the request arrives because every exchange
+ * gets its own virtual thread. A request beyond both limits is answered with 503 and Retry-After
+ * at once, and a waiting one when its timeout runs out, so overload turns into fast rejections
+ * instead of an unbounded backlog. Errors are JSON objects with an "error" field.
+ * A throttled pricing API (429) is passed on as 503 with its Retry-After; other API failures are 502.
+ */
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.json.JSONObject;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+public class PricingServer {
+    // How long a request may wait for a pricing slot; overridable with -Dazure.pricing.serverQueueMillis
+    private static final long DEFAULT_QUEUE_MILLIS = 1000;
+    // How many requests may wait for a slot, as a multiple of maxConcurrent; overridable with -Dazure.pricing.serverMaxQueued
+    private static final int DEFAULT_QUEUED_PER_SLOT = 2;
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final PriceCatalog catalog;
+    private final int maxConcurrent;
+    private final long queueMillis;
+    private final int maxQueued;
+    private final Semaphore permits;
+    // Requests admitted and not yet answered: those in flight plus those waiting for a slot
+    private final AtomicInteger admitted = new AtomicInteger();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final LongAdder served = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final long startNanos = System.nanoTime();
+
+    /**
+     * Constructor for PricingServer; the server does not accept requests until start()
+     * @param address Address to listen on; port 0 picks a free port
+     * @param maxConcurrent Maximum number of requests priced at the same time
+     * @param catalog The ingested catalog to price from where it can, or null to always call the API
+     * @throws IOException if the address cannot be bound
+     */
+    public PricingServer(InetSocketAddress address, int maxConcurrent, PriceCatalog catalog) throws IOException {
+        this(address, maxConcurrent, catalog, Long.getLong("azure.pricing.serverQueueMillis", DEFAULT_QUEUE_MILLIS),
+                Integer.getInteger("azure.pricing.serverMaxQueued", DEFAULT_QUEUED_PER_SLOT * maxConcurrent));
+    }
+
+    PricingServer(InetSocketAddress address, int maxConcurrent, PriceCatalog catalog, long queueMillis, int maxQueued) throws IOException {
+        if (maxConcurrent < 1) {
+            throw new IllegalArgumentException("Concurrency limit must be at least 1: " + maxConcurrent);
+        }
+        if (maxQueued < 0) {
+            throw new IllegalArgumentException("Queue limit must not be negative: " + maxQueued);
+        }
+        this.catalog = catalog;
+        this.maxConcurrent = maxConcurrent;
+        this.queueMillis = queueMillis;
+        this.maxQueued = maxQueued;
+        this.permits = new Semaphore(maxConcurrent);
+
+        // Exchanges block on the API, so each runs on its own virtual thread; the permits limit them
+        this.executor = BlockingExecutors.create("pricing-server");
+        this.server = HttpServer.create(address, 0);
+        this.server.setExecutor(executor);
+        this.server.createContext("/pricing", this::handlePricing);
+        this.server.createContext("/status", this::handleStatus);
+        this.server.createContext("/metrics", this::handleMetrics);
+    }
+
+    public void start() {
+        server.start();
+    }
+
+    /**
+     * Stops accepting requests, waits up to the delay for exchanges in progress, and stops the executor
+     */
+    public void stop(int delaySeconds) {
+        server.stop(delaySeconds);
+        executor.shutdownNow();
+    }
+
+    public InetSocketAddress getAddress() {
+        return server.getAddress();
+    }
+
+    public int getMaxConcurrent() { return maxConcurrent; }
+    public int getMaxQueued() { return maxQueued; }
+    public int getInFlight() { return inFlight.get(); }
+    public long getServed() { return served.sum(); }
+    public long getRejected() { return rejected.sum(); }
+    public long getFailed() { return failed.sum(); }
+
+    private void handlePricing(HttpExchange exchange) throws IOException {
+        long start = System.nanoTime();
+        try {
+            if (!"GET".equals(exchange.getRequestMethod())) {
+                exchange.getResponseHeaders().set("Allow", "GET");
+                sendError(exchange, 405, "Method not allowed: " + exchange.getRequestMethod());
+                return;
+            }
+            Map<String, String> query = parseQuery(exchange.getRequestURI().getRawQuery());
+            String meterId = query.get("meterId");
+            if (meterId == null || meterId.trim().isEmpty()) {
+                sendError(exchange, 400, "Missing query parameter: meterId");
+                return;
+            }
+            String region = query.getOrDefault("region", "").trim();
+
+            // Admission comes first, so a request that could only join a full queue is turned away without waiting
+            if (admitted.incrementAndGet() > maxConcurrent + maxQueued) {
+                admitted.decrementAndGet();
+                rejected.increment();
+                exchange.getResponseHeaders().set("Retry-After", "1");
+                sendError(exchange, 503, "All " + maxConcurrent + " pricing slots and " + maxQueued + " queue places are taken");
+                return;
+            }
+            PricingResult result;
+            try {
+                boolean acquired;
+                try {
+                    acquired = permits.tryAcquire(queueMillis, TimeUnit.MILLISECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    sendError(exchange, 503, "Server is shutting down");
+                    return;
+                }
+                if (!acquired) {
+                    rejected.increment();
+                    exchange.getResponseHeaders().set("Retry-After", "1");
+                    sendError(exchange, 503, "All " + maxConcurrent + " pricing slots are busy");
+                    return;
+                }
+                inFlight.incrementAndGet();
+                try {
+                    result = price(meterId.trim(), region);
+                } catch (Exception e) {
+                    failed.increment();
+                    int status = statusFor(e);
+                    if (status == 503) {
+                        exchange.getResponseHeaders().set("Retry-After", Long.toString(retryAfterSeconds(e)));
+                    }
+                    sendError(exchange, status, String.valueOf(e.getMessage()));
+                    return;
+                } finally {
+                    inFlight.decrementAndGet();
+                    permits.release();
+                }
+            } finally {
+                admitted.decrementAndGet();
+            }
+            served.increment();
+            Metrics.serverResponse(200);
+            // Streamed with chunked encoding, so the body is never held whole
+            exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+            exchange.sendResponseHeaders(200, 0);
+            try (PricingResultWriter writer = new JsonResultWriter(exchange.getResponseBody(), true)) {
+                writer.write(meterId.trim(), result);
+            }
+        } finally {
+            exchange.close();
+            Metrics.SERVER_REQUEST_TIME.recordSince(start);
+        }
+    }
+
+    private PricingResult price(String meterId, String region) throws Exception {
+        RegionSelectionPolicy policy = region.isEmpty() ? RegionSelectionPolicy.keepAll() : RegionSelectionPolicy.fixed(region);
+        AzurePricingCalculator calculator = new AzurePricingCalculator(meterId, region, policy, catalog);
+        calculator.calculatePricing(false);
+        return calculator.getPricingResult(false);
+    }
+
+    /**
+     * Unknown meters are 404, an API answering 429 is 503, any other API error status 502,
+     * anything else 500
+     */
+    static int statusFor(Exception e) {
+        if (causeOfType(e, MeterNotFoundException.class) != null) {
+            return 404;
+        }
+        HttpStatusException upstream = upstreamFailure(e);
+        if (upstream != null) {
+            return upstream.getStatusCode() == 429 ? 503 : 502;
+        }
+        return 500;
+    }
+
+    /**
+     * The API's Retry-After for a throttled request, rounded up to whole seconds; 1 if it sent none
+     */
+    static long retryAfterSeconds(Exception e) {
+        HttpStatusException upstream = upstreamFailure(e);
+        long millis = upstream == null ? -1 : upstream.getRetryAfterMillis();
+        return millis <= 0 ? 1 : (millis + 999) / 1000;
+    }
+
+    /**
+     * Finds the API's error status in the cause chain; ApiClient and the pricing graph wrap it
+     */
+    private static HttpStatusException upstreamFailure(Throwable e) {
+        return causeOfType(e, HttpStatusException.class);
+    }
+
+    private static <T extends Throwable> T causeOfType(Throwable e, Class<T> type) {
+        for (Throwable t = e; t != null; t = t.getCause() == t ? null : t.getCause()) {
+            if (type.isInstance(t)) {
+                return type.cast(t);
+            }
+        }
+        return null;
+    }
+
+    private void handleStatus(HttpExchange exchange) throws IOException {
+        try {
+            JSONObject status = new JSONObject();
+            status.put("maxConcurrent", maxConcurrent);
+            status.put("maxQueued", maxQueued);
+            status.put("queueMillis", queueMillis);
+            status.put("queued", Math.max(0, admitted.get() - inFlight.get()));
+            status.put("inFlight", inFlight.get());
+            status.put("served", served.sum());
+            status.put("rejected", rejected.sum());
+            status.put("failed", failed.sum());
+            status.put("cacheSize", ApiClient.getCacheSize());
+            status.put("uptimeSeconds", (System.nanoTime() - startNanos) / 1_000_000_000L);
+            send(exchange, 200, status);
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private void handleMetrics(HttpExchange exchange) throws IOException {
+        try {
+            exchange.getResponseHeaders().set("Content-Type", "text/plain; version=0.0.4; charset=utf-8");
+            exchange.sendResponseHeaders(200, 0);
+            try (Writer out = new BufferedWriter(new OutputStreamWriter(exchange.getResponseBody(), StandardCharsets.UTF_8))) {
+                Metrics.REGISTRY.writePrometheus(out);
+            }
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private static void sendError(HttpExchange exchange, int status, String message) throws IOException {
+        Metrics.serverResponse(status);
+        send(exchange, status, new JSONObject().put("error", message));
+    }
+
+    private static void send(HttpExchange exchange, int status, JSONObject body) throws IOException {
+        byte[] bytes = body.toString().getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    static Map<String, String> parseQuery(String rawQuery) {
+        Map<String, String> query = new HashMap<>();
+        if (rawQuery == null || rawQuery.isEmpty()) {
+            return query;
+        }
+        for (String pair : rawQuery.split("&")) {
+            int equals = pair.indexOf('=');
+            String name = equals < 0 ? pair : pair.substring(0, equals);
+            String value = equals < 0 ? "" : pair.substring(equals + 1);
+            query.putIfAbsent(URLDecoder.decode(name, StandardCharsets.UTF_8), URLDecoder.decode(value, StandardCharsets.UTF_8));
+        }
+        return query;
+    }
+}
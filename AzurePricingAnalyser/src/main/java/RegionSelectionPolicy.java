@@ -0,0 +1,43 @@
+/**
+ * Decides which region to price when the filter built for a meter matches more than one region.
+ * AzurePricingCalculator used to prompt on stdin at this point; the policy lets batch and
+ * other unattended callers make that decision up front instead.
+ */
+import java.util.Scanner;
+import java.util.Set;
+
+public interface RegionSelectionPolicy {
+    /**
+     * Picks the region to narrow the filter to
+     * @param meterId The meter ID being priced
+     * @param regions The distinct locations returned for the current filter
+     * @return A location ("East US") or ARM region name ("eastus"), or null/empty to keep the filter unchanged
+     */
+    String selectRegion(String meterId, Set<String> regions);
+
+    /**
+     * Prompts on stdin, matching the original behaviour of the interactive CLI; the prompt goes
+     * to stderr so it never mixes with results written to stdout
+     */
+    static RegionSelectionPolicy interactive() {
+        return (meterId, regions) -> {
+            System.err.println("Multiple regions found. Please enter a specific region:");
+            Scanner scanner = new Scanner(System.in);
+            return scanner.nextLine().trim();
+        };
+    }
+
+    /**
+     * Always narrows to the given region
+     */
+    static RegionSelectionPolicy fixed(String region) {
+        return (meterId, regions) -> region;
+    }
+
+    /**
+     * Never narrows; prices every region the filter matches
+     */
+    static RegionSelectionPolicy keepAll() {
+        return (meterId, regions) -> null;
+    }
+}
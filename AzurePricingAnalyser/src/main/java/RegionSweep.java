@@ -0,0 +1,202 @@
+/**
+ * Prices one SKU in every Azure region to find the cheapest placement.
+ * The meter ID is looked up once for its service, armSkuName and product. Discovering the
+ * regions walks the SKU's consumption prices across all regions, and those same items, grouped
+ * by armRegionName, give each region its consumption and savings plan prices, so only the
+ * reservation fetches remain per region. They run in parallel on virtual threads, with a
+ * semaphore limiting how many are in flight, and go through the shared ApiClient cache like any
+ * other calculation, so a sweep costs about one listing plus its slowest reservation fetch.
+ * When the caller names the regions, there is no listing and each region's consumption is
+ * fetched alongside its reservations.
+ */
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.json.JSONException;
+
+public class RegionSweep {
+    private final int parallelism;
+
+    /**
+     * Constructor for RegionSweep
+     * @param parallelism Maximum number of region fetches in flight at the same time
+     */
+    public RegionSweep(int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("Parallelism must be at least 1: " + parallelism);
+        }
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * Prices the meter's SKU in every region it is sold in
+     * @param meterId A meter ID of the SKU, in any region
+     * @return The region-ranked prices per pricing option
+     */
+    public RegionSweepResult run(String meterId) throws Exception {
+        return run(meterId, null);
+    }
+
+    /**
+     * Prices the meter's SKU in the given regions
+     * A failure in one region is recorded in the result and does not stop the sweep
+     * @param meterId A meter ID of the SKU, in any region
+     * @param regions ARM region names to price, or null to discover them from the API
+     * @return The region-ranked prices per pricing option
+     * @throws Exception if the meter lookup or the region discovery fails
+     */
+    public RegionSweepResult run(String meterId, Collection<String> regions) throws Exception {
+        long start = System.nanoTime();
+        LongAdder roundTrips = new LongAdder();
+        PriceItem sku = AzurePricingCalculator.lookupMeter(meterId, null, roundTrips);
+        String baseFilter = buildBaseFilter(sku);
+        String productName = sku.getProductName() == null ? "" : sku.getProductName();
+
+        Map<String, String> locations = new LinkedHashMap<>();
+        Map<String, List<PriceItem>> discovered = null;
+        if (regions == null) {
+            discovered = discoverRegions(baseFilter, roundTrips);
+            for (Map.Entry<String, List<PriceItem>> entry : discovered.entrySet()) {
+                String location = entry.getValue().get(0).getLocation();
+                locations.put(entry.getKey(), location == null ? entry.getKey() : location);
+            }
+        } else {
+            for (String region : regions) {
+                locations.put(region, region);
+            }
+        }
+
+        RegionSweepResult result = new RegionSweepResult(meterId, sku.getServiceName(),
+                sku.getArmSkuName() == null || sku.getArmSkuName().isEmpty() ? productName : sku.getArmSkuName(), sku.getCurrencyCode());
+        ExecutorService pool = BlockingExecutors.create("region-sweep");
+        Semaphore permits = new Semaphore(parallelism);
+        try {
+            // Discovered regions already have their consumption items; the others fetch them as a second task
+            Map<String, List<Future<List<? extends PricingOption>>>> futures = new LinkedHashMap<>();
+            Map<String, List<PricingOption>> consumption = new LinkedHashMap<>();
+            for (String region : locations.keySet()) {
+                String filter = baseFilter + " and " + String.format(Constants.ARM_REGION_FILTER, region);
+                List<Future<List<? extends PricingOption>>> regionFutures = new ArrayList<>();
+                if (discovered != null) {
+                    ConsumptionAndSavingsPlanPricing pricing = new ConsumptionAndSavingsPlanPricing();
+                    List<PricingOption> options = new ArrayList<>();
+                    pricing.addPrices(discovered.get(region), productName, options::add);
+                    consumption.put(region, options);
+                } else {
+                    regionFutures.add(pool.submit(() -> limited(permits, () -> {
+                        ConsumptionAndSavingsPlanPricing pricing = new ConsumptionAndSavingsPlanPricing();
+                        try {
+                            List<PricingOption> options = new ArrayList<>();
+                            pricing.fetchPrices(filter, productName, options::add);
+                            return options;
+                        } finally {
+                            roundTrips.add(pricing.getRoundTrips());
+                        }
+                    })));
+                }
+                regionFutures.add(pool.submit(() -> limited(permits, () -> {
+                    ReservationPricing pricing = new ReservationPricing();
+                    try {
+                        return pricing.fetchPrices(filter);
+                    } finally {
+                        roundTrips.add(pricing.getRoundTrips());
+                    }
+                })));
+                futures.put(region, regionFutures);
+            }
+
+            for (Map.Entry<String, List<Future<List<? extends PricingOption>>>> entry : futures.entrySet()) {
+                String region = entry.getKey();
+                try {
+                    List<PricingOption> options = new ArrayList<>(consumption.getOrDefault(region, List.of()));
+                    for (Future<List<? extends PricingOption>> future : entry.getValue()) {
+                        options.addAll(future.get());
+                    }
+                    result.addRegion(region, locations.get(region), options);
+                } catch (ExecutionException e) {
+                    Throwable cause = e.getCause();
+                    result.addFailure(region, cause instanceof Exception ? (Exception) cause : e);
+                }
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+        result.setRoundTrips(roundTrips.sum());
+        result.setElapsedNanos(System.nanoTime() - start);
+        return result;
+    }
+
+    @FunctionalInterface
+    private interface Fetch {
+        List<? extends PricingOption> call() throws Exception;
+    }
+
+    private static List<? extends PricingOption> limited(Semaphore permits, Fetch fetch) throws Exception {
+        permits.acquire();
+        try {
+            return fetch.call();
+        } finally {
+            permits.release();
+        }
+    }
+
+    /**
+     * Builds the filter that selects the SKU in every region: the service and the armSkuName,
+     * or the product name for SKUs without one
+     */
+    static String buildBaseFilter(PriceItem sku) {
+        String serviceName = sku.getServiceName();
+        if (serviceName == null) {
+            throw new JSONException("JSONObject[\"" + Constants.SERVICE_NAME + "\"] not found.");
+        }
+        StringBuilder filter = new StringBuilder(String.format(Constants.SERVICE_FILTER, serviceName));
+        String armSkuName = sku.getArmSkuName();
+        String productName = sku.getProductName();
+        if (armSkuName != null && !armSkuName.isEmpty()) {
+            filter.append(" and ").append(String.format(Constants.INSTANCE_TYPE_FILTER, armSkuName));
+        } else if (productName != null && !productName.isEmpty()) {
+            filter.append(" and ").append(String.format(Constants.PRODUCT_NAME_FILTER, productName));
+        } else {
+            throw new IllegalStateException("Meter has neither an armSkuName nor a product name to sweep by");
+        }
+        return filter.toString();
+    }
+
+    /**
+     * Walks the SKU's consumption prices across all regions and groups the items by the region they are in
+     * The pages are the ones a consumption fetch for the base filter would request, so they are cached alike
+     * @return Each ARM region name's consumption items, in listing order, with the regions in first-seen order
+     */
+    private static Map<String, List<PriceItem>> discoverRegions(String baseFilter, LongAdder roundTrips) throws Exception {
+        String endpoint = ConsumptionAndSavingsPlanPricing.buildEndpoint(baseFilter);
+        Map<String, List<PriceItem>> items = new LinkedHashMap<>();
+        for (Map<String, List<PriceItem>> page : PaginationPipeline.fetchAll(endpoint, RegionSweep::parseRegions, roundTrips)) {
+            for (Map.Entry<String, List<PriceItem>> entry : page.entrySet()) {
+                items.computeIfAbsent(entry.getKey(), k -> new ArrayList<>()).addAll(entry.getValue());
+            }
+        }
+        if (items.isEmpty()) {
+            throw new IllegalStateException("No regional prices found for " + baseFilter);
+        }
+        return items;
+    }
+
+    private static Map<String, List<PriceItem>> parseRegions(String response) {
+        Map<String, List<PriceItem>> items = new LinkedHashMap<>();
+        PricePageReader.read(response, item -> {
+            String region = item.getArmRegionName();
+            if (region != null && !region.isEmpty()) {
+                items.computeIfAbsent(region, k -> new ArrayList<>()).add(item.copy());
+            }
+        });
+        return items;
+    }
+}
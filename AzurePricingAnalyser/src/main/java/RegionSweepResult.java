@@ -0,0 +1,167 @@
+/**
+ * RegionSweepResult holds the outcome of a RegionSweep: for each pricing option of the SKU
+ * (consumption pricing type, reservation term, savings plan term), the regions that offer it
+ * ranked from the cheapest hourly rate up. Regions without any price for the SKU and regions
+ * whose fetch failed are kept separately.
+ */
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+public class RegionSweepResult {
+    private final String meterId;
+    private final String service;
+    private final String sku;
+    private final String currency;
+    private final Map<String, List<RegionPrice>> pricesByOption = new LinkedHashMap<>();
+    private final List<String> regionsWithoutPrices = new ArrayList<>();
+    private final Map<String, Exception> failures = new LinkedHashMap<>();
+    private int regionCount;
+    private long roundTrips;
+    private long elapsedNanos;
+
+    /**
+     * One region's price for a pricing option
+     */
+    public static class RegionPrice {
+        private final String region;
+        private final String location;
+        private final double hourlyRate;
+
+        public RegionPrice(String region, String location, double hourlyRate) {
+            this.region = region;
+            this.location = location;
+            this.hourlyRate = hourlyRate;
+        }
+
+        public String getRegion() { return region; }
+        public String getLocation() { return location; }
+        public double getHourlyRate() { return hourlyRate; }
+    }
+
+    public RegionSweepResult(String meterId, String service, String sku, String currency) {
+        this.meterId = meterId;
+        this.service = service;
+        this.sku = sku;
+        this.currency = currency;
+    }
+
+    /**
+     * Adds a region's options; where several share a pricing type the cheapest one counts
+     * @param region The ARM region name
+     * @param location The region's display name
+     * @param options Every option priced in the region
+     */
+    void addRegion(String region, String location, List<PricingOption> options) {
+        if (options.isEmpty()) {
+            regionsWithoutPrices.add(region);
+            return;
+        }
+        Map<String, Double> cheapest = new LinkedHashMap<>();
+        for (PricingOption option : options) {
+            cheapest.merge(option.getPricingType(), option.getHourlyRate(), Math::min);
+        }
+        for (Map.Entry<String, Double> entry : cheapest.entrySet()) {
+            pricesByOption.computeIfAbsent(entry.getKey(), k -> new ArrayList<>())
+                    .add(new RegionPrice(region, location, entry.getValue()));
+        }
+        regionCount++;
+    }
+
+    void addFailure(String region, Exception failure) {
+        failures.put(region, failure);
+    }
+
+    void setRoundTrips(long roundTrips) {
+        this.roundTrips = roundTrips;
+    }
+
+    void setElapsedNanos(long elapsedNanos) {
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    public String getMeterId() { return meterId; }
+    public String getService() { return service; }
+    public String getSku() { return sku; }
+    public String getCurrency() { return currency; }
+    public List<String> getRegionsWithoutPrices() { return regionsWithoutPrices; }
+    public Map<String, Exception> getFailures() { return failures; }
+    public int getRegionCount() { return regionCount; }
+    public long getRoundTrips() { return roundTrips; }
+    public long getElapsedNanos() { return elapsedNanos; }
+
+    /**
+     * The pricing options found in any region, in first-seen order
+     */
+    public List<String> getPricingOptions() {
+        return new ArrayList<>(pricesByOption.keySet());
+    }
+
+    /**
+     * Returns the regions offering a pricing option, cheapest first; ties keep region order
+     */
+    public List<RegionPrice> getRanking(String pricingOption) {
+        List<RegionPrice> prices = pricesByOption.get(pricingOption);
+        if (prices == null) {
+            return Collections.emptyList();
+        }
+        List<RegionPrice> ranking = new ArrayList<>(prices);
+        ranking.sort(Comparator.comparingDouble(RegionPrice::getHourlyRate));
+        return ranking;
+    }
+
+    /**
+     * The cheapest region over every pricing option, or null if no region was priced
+     */
+    public RegionPrice getCheapest() {
+        String option = getCheapestOption();
+        return option == null ? null : getRanking(option).get(0);
+    }
+
+    /**
+     * The pricing option of getCheapest(), or null if no region was priced
+     */
+    public String getCheapestOption() {
+        String cheapestOption = null;
+        double cheapestRate = Double.MAX_VALUE;
+        for (String option : pricesByOption.keySet()) {
+            double rate = getRanking(option).get(0).getHourlyRate();
+            if (cheapestOption == null || rate < cheapestRate) {
+                cheapestOption = option;
+                cheapestRate = rate;
+            }
+        }
+        return cheapestOption;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("Region Sweep:\n");
+        sb.append(String.format("Meter ID: %s\nService: %s\nSKU: %s\nCurrency: %s\n", meterId, service, sku, currency));
+        for (String option : pricesByOption.keySet()) {
+            sb.append("\n").append(option).append(":\n");
+            int rank = 1;
+            for (RegionPrice price : getRanking(option)) {
+                sb.append(String.format("  %3d. %-20s %-24s %.4f\n", rank++, price.getRegion(), price.getLocation(), price.getHourlyRate()));
+            }
+        }
+        RegionPrice cheapest = getCheapest();
+        if (cheapest != null) {
+            sb.append(String.format("\nCheapest placement: %s (%s), %s at %.4f\n",
+                    cheapest.getRegion(), cheapest.getLocation(), getCheapestOption(), cheapest.getHourlyRate()));
+        }
+        if (!regionsWithoutPrices.isEmpty()) {
+            sb.append("No prices in: ").append(String.join(", ", regionsWithoutPrices)).append("\n");
+        }
+        for (Map.Entry<String, Exception> entry : failures.entrySet()) {
+            sb.append(String.format("Region %s failed: %s\n", entry.getKey(), entry.getValue()));
+        }
+        sb.append(String.format("Regions: %d priced, %d without prices, %d failed; Elapsed: %.2f s; Round trips: %d\n",
+                regionCount, regionsWithoutPrices.size(), failures.size(), elapsedNanos / 1e9, roundTrips));
+        return sb.toString();
+    }
+}
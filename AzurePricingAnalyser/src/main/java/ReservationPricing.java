@@ -1,42 +1,120 @@
 /**
  * This class handles fetching and parsing reservation pricing information from Azure.
  * It includes methods to:
- * - Fetch prices using a filter and paginate through results
- * - Parse individual reservation price items
+ * - Fetch prices using a filter and paginate through results (pipelined, see PaginationPipeline)
+ * - Parse individual reservation price items, streamed from each page without building a JSON tree
  * - Extract the number of years from a reservation term
  * The class uses the Azure Pricing API and returns a list of ReservationPriceResult objects.
  */
+import java.io.UnsupportedEncodingException;
 import java.net.URLEncoder;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
 
-import org.json.JSONArray;
-import org.json.JSONObject;
+import org.json.JSONException;
 
 public class ReservationPricing {
+    // Answers price queries locally when it covers the filter; null to always call the API
+    private final PriceCatalog catalog;
+
+    // API calls that missed the response cache, including prefetches made for this fetch
+    final LongAdder roundTrips = new LongAdder();
+
+    public ReservationPricing() {
+        this(null);
+    }
+
+    public ReservationPricing(PriceCatalog catalog) {
+        this.catalog = catalog;
+    }
+
     public List<ReservationPriceResult> fetchPrices(String filter) throws Exception {
+        return fetchPrices(filter, null);
+    }
+
+    /**
+     * Fetches the reservation prices for a filter, handing each page's prices to a listener as the page arrives
+     * @param onPrice Called with every price, in list order, from the fetching thread; or null
+     */
+    public List<ReservationPriceResult> fetchPrices(String filter, Consumer<? super PricingOption> onPrice) throws Exception {
         List<ReservationPriceResult> prices = new ArrayList<>();
-        String endpoint = Constants.AZURE_PRICING_API + Constants.API_FILTER + URLEncoder.encode(filter + " and " + Constants.TYPE_RESERVATION_FILTER, "UTF-8");
+        PriceCatalog.Selection rows = catalog == null ? null : catalog.query(filter + " and " + Constants.TYPE_RESERVATION_FILTER);
+        if (rows != null) {
+            PriceItem item = new PriceItem();
+            for (int i = 0; i < rows.size(); i++) {
+                ReservationPriceResult price = parseReservationPrice(rows.read(i, item));
+                prices.add(price);
+                if (onPrice != null) {
+                    onPrice.accept(price);
+                }
+            }
+            // As many pages as the API would have returned
+            Metrics.RESERVATION_PAGES.record((rows.size() + PriceCatalog.API_PAGE_SIZE - 1) / PriceCatalog.API_PAGE_SIZE);
+            return prices;
+        }
+        String endpoint = buildEndpoint(filter);
+
+        // Pages are fetched back to back and parsed on the pipeline's worker pool, then merged in page order
+        Consumer<List<ReservationPriceResult>> onPage = onPrice == null ? null : page -> page.forEach(onPrice);
+        List<List<ReservationPriceResult>> pages = PaginationPipeline.fetchAll(endpoint, this::parsePage, roundTrips, onPage);
+        Metrics.RESERVATION_PAGES.record(pages.size());
+        for (List<ReservationPriceResult> page : pages) {
+            prices.addAll(page);
+        }
 
-        while (endpoint != null) {
-            String response = ApiClient.getApiResponse(endpoint);
-            JSONObject jsonObject = new JSONObject(response);
-            JSONArray items = jsonObject.getJSONArray(Constants.ITEMS);
+        return prices;
+    }
 
-            for (int i = 0; i < items.length(); i++) {
-                JSONObject item = items.getJSONObject(i);
-                prices.add(parseReservationPrice(item));
-            }
+    public long getRoundTrips() {
+        return roundTrips.sum();
+    }
 
-            endpoint = jsonObject.optString(Constants.NEXT_PAGE_LINK, null);
+    /**
+     * Builds the first-page endpoint fetched for a filter
+     * Also used by AzurePricingCalculator to prefetch the page before the filter is final
+     */
+    static String buildEndpoint(String filter) {
+        try {
+            return Constants.AZURE_PRICING_API + Constants.API_FILTER + URLEncoder.encode(filter + " and " + Constants.TYPE_RESERVATION_FILTER, "UTF-8");
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
         }
+    }
 
+    private List<ReservationPriceResult> parsePage(String response) {
+        PageParseEvent event = new PageParseEvent();
+        event.begin();
+        List<ReservationPriceResult> prices = new ArrayList<>();
+        if (!event.isEnabled()) {
+            PricePageReader.read(response, item -> prices.add(parseReservationPrice(item)));
+            return prices;
+        }
+
+        // Recording: time the conversion of each item apart from the parse around it
+        long[] classifyTime = new long[1];
+        PricePageReader.read(response, item -> {
+            long start = System.nanoTime();
+            prices.add(parseReservationPrice(item));
+            classifyTime[0] += System.nanoTime() - start;
+        });
+        if (event.shouldCommit()) {
+            event.pricing = "reservation";
+            event.responseLength = response.length();
+            event.items = prices.size();
+            event.classifyTime = classifyTime[0];
+            event.commit();
+        }
         return prices;
     }
 
-    private ReservationPriceResult parseReservationPrice(JSONObject item) {
-        String term = item.getString(Constants.RESERVATION_TERM);
-        double unitPrice = item.getDouble(Constants.RETAIL_PRICE);
+    private ReservationPriceResult parseReservationPrice(PriceItem item) {
+        String term = item.getReservationTerm();
+        if (term == null) {
+            throw new JSONException("JSONObject[\"" + Constants.RESERVATION_TERM + "\"] not found.");
+        }
+        double unitPrice = item.getRetailPrice();
         int years = extractYearsFromTerm(term);
         double hours = years * Constants.YEARLY;
         double hourlyRate = unitPrice/ hours;
@@ -0,0 +1,313 @@
+/**
+ * ResponseCache is the in-memory cache behind ApiClient.
+ * Entries keep the response String itself, so a hit costs no copy, or, when compression is on,
+ * a gzip-compressed UTF-8 byte array that is inflated on every hit. Each entry is weighed by its
+ * stored size (a char per byte for Strings, as the API's JSON is ASCII and kept one byte per char).
+ * Keys are spread by hash over up to 16 segments, each with its own lock, access-ordered map and
+ * equal share of the byte budget, so lookups of different keys rarely contend; once a segment is
+ * over its share its least recently used entries are evicted. Every entry expires a fixed time
+ * after it was fetched. Loading happens outside the segment locks: concurrent requests for the
+ * same missing key wait for a single in-flight load, while requests for other keys are never
+ * blocked by a slow fetch.
+ *
+ * Configured from system properties by fromSystemProperties():
+ *   azure.pricing.cache.maxBytes     byte budget (default 256 MB)
+ *   azure.pricing.cache.ttlSeconds   time to live per entry (default 24 hours)
+ *   azure.pricing.cache.compress     store entries gzip-compressed (default false)
+ * An optional DiskResponseCache can sit underneath; it is consulted on a miss before loading
+ * and receives every freshly loaded value.
+ */
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+public class ResponseCache {
+    // Rough per-entry bookkeeping cost added to the stored bytes: map node, entry object, key header
+    private static final int ENTRY_OVERHEAD_BYTES = 96;
+    private static final int MAX_SEGMENTS = 16;
+    // Smallest budget share worth a segment of its own, so one large page still fits in a segment
+    private static final long MIN_SEGMENT_BYTES = 4L * 1024 * 1024;
+
+    private final long maxWeightBytes;
+    private final long ttlMillis;
+    private final boolean compress;
+
+    private final Segment[] segments;
+
+    // Loads in progress, so only one caller fetches a given key at a time
+    private final ConcurrentHashMap<String, CompletableFuture<String>> inFlight = new ConcurrentHashMap<>();
+
+    // Optional persistent tier consulted on a miss
+    private volatile DiskResponseCache secondLevel;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder secondLevelHits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder expirations = new LongAdder();
+
+    public ResponseCache(long maxWeightBytes, long ttlMillis, boolean compress) {
+        this.maxWeightBytes = maxWeightBytes;
+        this.ttlMillis = ttlMillis;
+        this.compress = compress;
+        // A power of two, so a key's segment is a mask of its hash; small budgets get a single exact LRU
+        int count = (int) Math.min(MAX_SEGMENTS, Math.max(1, Long.highestOneBit(maxWeightBytes / MIN_SEGMENT_BYTES)));
+        this.segments = new Segment[count];
+        for (int i = 0; i < count; i++) {
+            segments[i] = new Segment(maxWeightBytes / count);
+        }
+    }
+
+    public static ResponseCache fromSystemProperties() {
+        return new ResponseCache(
+            Long.getLong("azure.pricing.cache.maxBytes", 256L * 1024 * 1024),
+            TimeUnit.SECONDS.toMillis(Long.getLong("azure.pricing.cache.ttlSeconds", TimeUnit.HOURS.toSeconds(24))),
+            Boolean.getBoolean("azure.pricing.cache.compress"));
+    }
+
+    /**
+     * Returns the cached value for a key, loading it if absent or expired
+     * @param key The cache key, an endpoint URL for ApiClient
+     * @param loader Loads the value on a miss; runs without holding any cache lock
+     * @return The cached or freshly loaded value
+     */
+    public String get(String key, Function<String, String> loader) {
+        String cached = getIfPresent(key);
+        if (cached != null) {
+            return cached;
+        }
+
+        CompletableFuture<String> load = new CompletableFuture<>();
+        CompletableFuture<String> existing = inFlight.putIfAbsent(key, load);
+        if (existing != null) {
+            try {
+                return existing.join();
+            } catch (CompletionException e) {
+                throw e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : e;
+            }
+        }
+
+        try {
+            // Another caller may have finished loading between the lookup and claiming the key
+            String value = getIfPresent(key);
+            if (value == null) {
+                value = loadFromSecondLevel(key);
+            }
+            if (value == null) {
+                misses.increment();
+                value = loader.apply(key);
+                long fetchedAtMillis = System.currentTimeMillis();
+                put(key, value, fetchedAtMillis);
+                DiskResponseCache disk = secondLevel;
+                if (disk != null) {
+                    disk.put(key, value, fetchedAtMillis);
+                }
+            }
+            load.complete(value);
+            return value;
+        } catch (RuntimeException | Error e) {
+            load.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, load);
+        }
+    }
+
+    private String loadFromSecondLevel(String key) {
+        DiskResponseCache disk = secondLevel;
+        DiskResponseCache.Hit hit = disk == null ? null : disk.get(key);
+        if (hit == null) {
+            return null;
+        }
+        secondLevelHits.increment();
+        put(key, hit.getValue(), hit.getFetchedAtMillis());
+        return hit.getValue();
+    }
+
+    public void setSecondLevel(DiskResponseCache secondLevel) {
+        this.secondLevel = secondLevel;
+    }
+
+    public DiskResponseCache getSecondLevel() {
+        return secondLevel;
+    }
+
+    /**
+     * Returns the cached value for a key, or null if absent or expired
+     */
+    public String getIfPresent(String key) {
+        Segment segment = segmentFor(key);
+        Entry entry;
+        synchronized (segment) {
+            entry = segment.entries.get(key);
+            if (entry != null && isExpired(entry, System.currentTimeMillis())) {
+                segment.remove(key, entry);
+                expirations.increment();
+                entry = null;
+            }
+        }
+        if (entry == null) {
+            return null;
+        }
+        hits.increment();
+        return decode(entry);
+    }
+
+    /**
+     * Stores a value fetched at the given time, evicting the segment's least recently used
+     * entries over its share of the budget. Values larger than a segment's share are not cached
+     * @param fetchedAtMillis Wall-clock time the value was fetched; the TTL counts from here
+     */
+    public void put(String key, String value, long fetchedAtMillis) {
+        Segment segment = segmentFor(key);
+        Entry entry = encode(value, fetchedAtMillis);
+        entry.weight = ENTRY_OVERHEAD_BYTES + 2L * key.length() + entry.storedBytes();
+        if (entry.weight > segment.maxWeightBytes) {
+            return;
+        }
+
+        synchronized (segment) {
+            Entry previous = segment.entries.put(key, entry);
+            if (previous != null) {
+                segment.weightBytes -= previous.weight;
+            }
+            segment.weightBytes += entry.weight;
+
+            Iterator<Map.Entry<String, Entry>> eldest = segment.entries.entrySet().iterator();
+            while (segment.weightBytes > segment.maxWeightBytes && eldest.hasNext()) {
+                Entry evicted = eldest.next().getValue();
+                eldest.remove();
+                segment.weightBytes -= evicted.weight;
+                evictions.increment();
+            }
+        }
+    }
+
+    public void invalidateAll() {
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                segment.entries.clear();
+                segment.weightBytes = 0;
+            }
+        }
+    }
+
+    public int size() {
+        int size = 0;
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                size += segment.entries.size();
+            }
+        }
+        return size;
+    }
+
+    public long getWeightBytes() {
+        long weightBytes = 0;
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                weightBytes += segment.weightBytes;
+            }
+        }
+        return weightBytes;
+    }
+
+    public long getMaxWeightBytes() { return maxWeightBytes; }
+    public long getTtlMillis() { return ttlMillis; }
+    public long getHitCount() { return hits.sum(); }
+    public long getSecondLevelHitCount() { return secondLevelHits.sum(); }
+    public long getMissCount() { return misses.sum(); }
+    public long getEvictionCount() { return evictions.sum(); }
+    public long getExpirationCount() { return expirations.sum(); }
+
+    private boolean isExpired(Entry entry, long nowMillis) {
+        return nowMillis - entry.fetchedAtMillis >= ttlMillis;
+    }
+
+    private Segment segmentFor(String key) {
+        int hash = key.hashCode();
+        return segments[(hash ^ (hash >>> 16)) & (segments.length - 1)];
+    }
+
+    private Entry encode(String value, long fetchedAtMillis) {
+        if (!compress) {
+            return new Entry(value, null, fetchedAtMillis);
+        }
+        byte[] utf8 = value.getBytes(StandardCharsets.UTF_8);
+        ByteArrayOutputStream out = new ByteArrayOutputStream(utf8.length / 8 + 64);
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out, 8192)) {
+            gzip.write(utf8);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return new Entry(null, out.toByteArray(), fetchedAtMillis);
+    }
+
+    private String decode(Entry entry) {
+        if (entry.value != null) {
+            return entry.value;
+        }
+        try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(entry.compressed), 8192)) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream(entry.compressed.length * 8);
+            byte[] buffer = new byte[8192];
+            int n;
+            while ((n = in.read(buffer)) > 0) {
+                out.write(buffer, 0, n);
+            }
+            return new String(out.toByteArray(), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * One stripe of the cache: an access-ordered map, giving LRU iteration order, and its weight,
+     * both guarded by the segment's monitor
+     */
+    private static class Segment {
+        final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(64, 0.75f, true);
+        final long maxWeightBytes;
+        long weightBytes;
+
+        Segment(long maxWeightBytes) {
+            this.maxWeightBytes = maxWeightBytes;
+        }
+
+        void remove(String key, Entry entry) {
+            entries.remove(key);
+            weightBytes -= entry.weight;
+        }
+    }
+
+    // Holds either the value itself or its gzip-compressed UTF-8 bytes
+    private static class Entry {
+        final String value;
+        final byte[] compressed;
+        final long fetchedAtMillis;
+        long weight;
+
+        Entry(String value, byte[] compressed, long fetchedAtMillis) {
+            this.value = value;
+            this.compressed = compressed;
+            this.fetchedAtMillis = fetchedAtMillis;
+        }
+
+        long storedBytes() {
+            return value != null ? value.length() : compressed.length;
+        }
+    }
+}
@@ -0,0 +1,322 @@
+/**
+ * SkuClassifier derives the pricing type of a price item, such as "Windows Spot" for a Virtual
+ * Machines item or the SKU name for other services, from rules rather than code.
+ * Each rule belongs to a dimension (base, priority, license, ...); the first matching rule of a
+ * dimension gives its label, and the key joins the labels of the matched dimensions in order.
+ *
+ * A classifier is compiled once per meter product and cached: the product name is normalized
+ * once, not per item. Classifying an item allocates nothing once its key has been built;
+ * every key is built once per classifier and the same String is returned from then on.
+ *
+ * The rules are read from the file named by azure.pricing.skuRules, or from the sku-rules.txt
+ * resource, which also documents the format.
+ */
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+public class SkuClassifier {
+    private static final String RULES_RESOURCE = "/sku-rules.txt";
+
+    // Distinct base labels whose keys are cached per classifier; keys for further ones are built per call
+    private static final int MAX_CACHED_BASES = 4096;
+
+    private static volatile Rules defaultRules;
+    private static final ConcurrentHashMap<String, SkuClassifier> byProduct = new ConcurrentHashMap<>();
+
+    private final Rules rules;
+    private final String family;
+
+    // Keys by base label, indexed by the combination of the other dimensions' matched rules
+    private final ConcurrentHashMap<String, AtomicReferenceArray<String>> keysByBase = new ConcurrentHashMap<>();
+
+    /**
+     * @param rules The parsed rules
+     * @param productName The product name of the meter being priced
+     */
+    public SkuClassifier(Rules rules, String productName) {
+        this.rules = rules;
+        // Same normalization the VM pricing key has always used, now done once per product
+        this.family = productName == null ? "" : productName.replaceAll(Constants.WINDOWS + "\\s*", "").replaceAll("\\s+", " ").trim();
+    }
+
+    /**
+     * Returns the cached classifier for a meter's product, compiling it on first use
+     */
+    public static SkuClassifier forProduct(String productName) {
+        String key = productName == null ? "" : productName;
+        SkuClassifier classifier = byProduct.get(key);
+        if (classifier == null) {
+            classifier = byProduct.computeIfAbsent(key, p -> new SkuClassifier(getDefaultRules(), p));
+        }
+        return classifier;
+    }
+
+    /**
+     * Returns the pricing type key for an item
+     */
+    public String classify(PriceItem item) {
+        String productName = item.getProductName();
+        boolean inFamily = productName != null && productName.contains(family);
+        String base = "";
+        int combination = 0;
+        for (int d = 0; d < rules.dimensions.size(); d++) {
+            Rule[] candidates = rules.byDimension[d];
+            for (int r = 0; r < candidates.length; r++) {
+                if (candidates[r].matches(item, inFamily)) {
+                    if (d == 0) {
+                        base = candidates[r].labelFor(item);
+                    } else {
+                        combination += rules.radix[d] * (r + 1);
+                    }
+                    break;
+                }
+            }
+        }
+        return key(base == null ? "" : base, combination);
+    }
+
+    private String key(String base, int combination) {
+        AtomicReferenceArray<String> keys = keysByBase.get(base);
+        if (keys == null) {
+            if (keysByBase.size() >= MAX_CACHED_BASES) {
+                return buildKey(base, combination);
+            }
+            keys = keysByBase.computeIfAbsent(base, b -> new AtomicReferenceArray<>(rules.combinations));
+        }
+        String key = keys.get(combination);
+        if (key == null) {
+            keys.compareAndSet(combination, null, buildKey(base, combination));
+            key = keys.get(combination);
+        }
+        return key;
+    }
+
+    private String buildKey(String base, int combination) {
+        StringBuilder sb = new StringBuilder(base);
+        for (int d = 1; d < rules.dimensions.size(); d++) {
+            int matched = combination / rules.radix[d] % (rules.byDimension[d].length + 1);
+            if (matched > 0) {
+                if (sb.length() > 0) {
+                    sb.append(' ');
+                }
+                sb.append(rules.byDimension[d][matched - 1].label);
+            }
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Returns the rules from azure.pricing.skuRules or the bundled resource, loading them once
+     */
+    public static Rules getDefaultRules() {
+        Rules rules = defaultRules;
+        if (rules == null) {
+            synchronized (SkuClassifier.class) {
+                rules = defaultRules;
+                if (rules == null) {
+                    rules = loadDefaultRules();
+                    defaultRules = rules;
+                }
+            }
+        }
+        return rules;
+    }
+
+    private static Rules loadDefaultRules() {
+        String file = System.getProperty("azure.pricing.skuRules");
+        try {
+            if (file != null) {
+                try (Reader reader = Files.newBufferedReader(Paths.get(file), StandardCharsets.UTF_8)) {
+                    return Rules.parse(reader, file);
+                }
+            }
+            InputStream in = SkuClassifier.class.getResourceAsStream(RULES_RESOURCE);
+            if (in == null) {
+                throw new IllegalStateException("SKU rules resource " + RULES_RESOURCE + " not found");
+            }
+            try (Reader reader = new InputStreamReader(in, StandardCharsets.UTF_8)) {
+                return Rules.parse(reader, RULES_RESOURCE);
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed to read SKU rules from " + (file != null ? file : RULES_RESOURCE), e);
+        }
+    }
+
+    /**
+     * A parsed rules file: the dimensions in order and each dimension's rules in order
+     */
+    public static class Rules {
+        private final List<String> dimensions;
+        private final Rule[][] byDimension;
+        // Place value of each dimension's matched rule in a key combination; 0 for the base
+        private final int[] radix;
+        private final int combinations;
+
+        private Rules(List<String> dimensions, List<List<Rule>> rules) {
+            this.dimensions = dimensions;
+            this.byDimension = new Rule[dimensions.size()][];
+            this.radix = new int[dimensions.size()];
+            int combinations = 1;
+            for (int d = 0; d < dimensions.size(); d++) {
+                byDimension[d] = rules.get(d).toArray(new Rule[0]);
+                if (d > 0) {
+                    radix[d] = combinations;
+                    combinations *= byDimension[d].length + 1;
+                }
+            }
+            this.combinations = combinations;
+        }
+
+        public List<String> getDimensions() {
+            return dimensions;
+        }
+
+        /**
+         * Parses rules, one per line as "scope | dimension | condition | label"
+         * @param source Name of the rules' origin, for error messages
+         * @throws IllegalArgumentException if a line is malformed
+         */
+        public static Rules parse(Reader reader, String source) throws IOException {
+            List<String> dimensions = new ArrayList<>();
+            List<List<Rule>> rules = new ArrayList<>();
+            BufferedReader lines = new BufferedReader(reader);
+            String line;
+            int lineNumber = 0;
+            while ((line = lines.readLine()) != null) {
+                lineNumber++;
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+                String[] columns = line.split("\\|", -1);
+                if (columns.length != 4) {
+                    throw new IllegalArgumentException(source + ":" + lineNumber + ": expected scope | dimension | condition | label");
+                }
+                String dimension = columns[1].trim();
+                int d = dimensions.indexOf(dimension);
+                if (d < 0) {
+                    d = dimensions.size();
+                    dimensions.add(dimension);
+                    rules.add(new ArrayList<>());
+                }
+                rules.get(d).add(Rule.parse(columns[0].trim(), columns[2].trim(), columns[3].trim(), d == 0, source + ":" + lineNumber));
+            }
+            if (dimensions.isEmpty()) {
+                throw new IllegalArgumentException(source + ": no rules");
+            }
+            return new Rules(dimensions, rules);
+        }
+    }
+
+    private enum Operator {
+        CONTAINS("contains"), EQUALS("equals"), STARTS_WITH("startsWith"), ENDS_WITH("endsWith");
+
+        private final String name;
+
+        Operator(String name) {
+            this.name = name;
+        }
+
+        static Operator named(String name) {
+            for (Operator operator : values()) {
+                if (operator.name.equals(name)) {
+                    return operator;
+                }
+            }
+            return null;
+        }
+    }
+
+    private static class Rule {
+        private final String serviceName;
+        private final boolean family;
+        private final String field;
+        private final Operator operator;
+        private final String text;
+        private final String label;
+        private final String labelField;
+
+        private Rule(String serviceName, boolean family, String field, Operator operator, String text, String label, String labelField) {
+            this.serviceName = serviceName;
+            this.family = family;
+            this.field = field;
+            this.operator = operator;
+            this.text = text;
+            this.label = label;
+            this.labelField = labelField;
+        }
+
+        static Rule parse(String scope, String condition, String label, boolean base, String where) {
+            String serviceName = null;
+            boolean family = false;
+            for (String part : scope.split("&")) {
+                part = part.trim();
+                if (part.equals("family")) {
+                    family = true;
+                } else if (part.startsWith("service=")) {
+                    serviceName = part.substring("service=".length()).trim();
+                } else if (!part.equals("any")) {
+                    throw new IllegalArgumentException(where + ": unknown scope " + part);
+                }
+            }
+
+            String field = null;
+            Operator operator = null;
+            String text = null;
+            if (!condition.equals("*")) {
+                String[] parts = condition.split("\\s+", 3);
+                operator = parts.length == 3 ? Operator.named(parts[1]) : null;
+                if (operator == null) {
+                    throw new IllegalArgumentException(where + ": expected <field> contains|equals|startsWith|endsWith <text> or *");
+                }
+                field = parts[0];
+                text = parts[2];
+            }
+
+            String labelField = null;
+            if (label.startsWith("{") && label.endsWith("}")) {
+                if (!base) {
+                    throw new IllegalArgumentException(where + ": only the first dimension may take its label from a field");
+                }
+                labelField = label.substring(1, label.length() - 1);
+            }
+            return new Rule(serviceName, family, field, operator, text, label, labelField);
+        }
+
+        boolean matches(PriceItem item, boolean inFamily) {
+            if (family && !inFamily) {
+                return false;
+            }
+            if (serviceName != null && !serviceName.equals(item.getServiceName())) {
+                return false;
+            }
+            if (field == null) {
+                return true;
+            }
+            String value = item.getField(field);
+            if (value == null) {
+                return false;
+            }
+            switch (operator) {
+                case CONTAINS: return value.contains(text);
+                case EQUALS: return value.equals(text);
+                case STARTS_WITH: return value.startsWith(text);
+                default: return value.endsWith(text);
+            }
+        }
+
+        String labelFor(PriceItem item) {
+            return labelField == null ? label : item.getField(labelField);
+        }
+    }
+}
@@ -0,0 +1,69 @@
+/**
+ * StringDictionary assigns dense int codes to distinct strings, for dictionary-encoded columns.
+ * Code 0 always stands for null, so a column of codes needs no separate null mask.
+ * Not thread-safe while being built; read-only use after building is safe to share.
+ */
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+public class StringDictionary {
+    public static final int NULL_CODE = 0;
+
+    private final Map<String, Integer> codes = new HashMap<>();
+    private String[] values = new String[16];
+    private int size = 1;
+
+    /**
+     * Returns the code for a value, adding it if it is new
+     */
+    public int encode(String value) {
+        if (value == null) {
+            return NULL_CODE;
+        }
+        Integer code = codes.get(value);
+        if (code == null) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            code = size++;
+            values[code] = value;
+            codes.put(value, code);
+        }
+        return code;
+    }
+
+    /**
+     * Returns the code for a value without adding it
+     * @return The code, or -1 if the value has never been encoded
+     */
+    public int lookup(String value) {
+        if (value == null) {
+            return NULL_CODE;
+        }
+        Integer code = codes.get(value);
+        return code == null ? -1 : code;
+    }
+
+    public String decode(int code) {
+        return values[code];
+    }
+
+    /**
+     * Number of codes in use, including the null code
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Rough heap size of the dictionary: the strings, the code array and the lookup map
+     */
+    long estimateBytes() {
+        long bytes = 16 + 8L * values.length;
+        for (int i = 1; i < size; i++) {
+            bytes += 40 + values[i].length() + 48; // String plus its map node and boxed code
+        }
+        return bytes;
+    }
+}
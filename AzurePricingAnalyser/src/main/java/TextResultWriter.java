@@ -0,0 +1,36 @@
+/**
+ * TextResultWriter writes results in the human-readable form of PricingResult.toString, each
+ * headed by its meter ID, as batch mode has always printed them.
+ */
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+
+public class TextResultWriter implements PricingResultWriter {
+    private final Writer out;
+
+    public TextResultWriter(OutputStream out) {
+        this.out = PricingResultWriter.utf8(out);
+    }
+
+    @Override
+    public void write(String meterId, PricingResult result) throws IOException {
+        if (meterId != null) {
+            out.write("Meter ID: ");
+            out.write(meterId);
+            out.write(System.lineSeparator());
+        }
+        out.write(result.toString());
+        out.write(System.lineSeparator());
+    }
+
+    @Override
+    public void flush() throws IOException {
+        out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        out.close();
+    }
+}
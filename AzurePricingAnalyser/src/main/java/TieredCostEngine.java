@@ -0,0 +1,242 @@
+/**
+ * TieredCostEngine rates quantities against graduated tier prices: each tier's price applies to
+ * the units from its tierMinimumUnits up to the next tier's, as the Retail Prices API quotes them.
+ * Quantities are counted in the meter's unit of measure.
+ *
+ * Meters are compiled once into flat primitive arrays: per meter, its tier breakpoints in
+ * ascending order, their prices, and the cost of the quantity up to each breakpoint. The cost of
+ * a quantity is then one search for its tier plus one multiply-add. The search is a branch-free
+ * binary search over the meter's breakpoints, so the batch loop has no data-dependent branches
+ * and the JIT can keep it in registers; batches are split over the cores in parallel.
+ */
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
+
+public class TieredCostEngine {
+    // Pairs per parallel task in batch rating; smaller batches are rated on the calling thread
+    private static final int PAIRS_PER_TASK = 16384;
+
+    // Meter m's tiers are entries meterStart[m] until meterStart[m + 1]
+    private final int[] meterStart;
+    private final double[] breakpoints;
+    private final double[] prices;
+    // Cost of the quantity breakpoints[k], i.e. of every tier below tier k in full
+    private final double[] baseCosts;
+    private final Map<String, Integer> meterIndex;
+
+    private TieredCostEngine(Builder b) {
+        this.meterStart = Arrays.copyOf(b.meterStart, b.meterCount + 1);
+        this.breakpoints = Arrays.copyOf(b.breakpoints, b.tierCount);
+        this.prices = Arrays.copyOf(b.prices, b.tierCount);
+        this.baseCosts = new double[b.tierCount];
+        for (int m = 0; m < b.meterCount; m++) {
+            for (int k = meterStart[m] + 1; k < meterStart[m + 1]; k++) {
+                baseCosts[k] = baseCosts[k - 1] + (breakpoints[k] - breakpoints[k - 1]) * prices[k - 1];
+            }
+        }
+        this.meterIndex = new HashMap<>(b.meterIndex);
+    }
+
+    /**
+     * Compiles the tiers of one price; a price without tiers is one tier from zero units
+     */
+    public static TieredCostEngine of(PriceInfo priceInfo) {
+        Builder builder = new Builder();
+        builder.add(null, priceInfo);
+        return builder.build();
+    }
+
+    /**
+     * Compiles every tier range of a store as a meter, in range order
+     * Ranges are registered under their meter ID; where a meter has several ranges (other
+     * types or reservation terms), the first one keeps the ID.
+     */
+    public static TieredCostEngine fromStore(ColumnarPriceStore store) {
+        Builder builder = new Builder();
+        for (int range = 0; range < store.getTierRangeCount(); range++) {
+            int start = store.getTierRangeStart(range);
+            int end = store.getTierRangeEnd(range);
+            double[] minimums = new double[end - start];
+            double[] rangePrices = new double[end - start];
+            for (int row = start; row < end; row++) {
+                minimums[row - start] = store.getTierMinimumUnits(row);
+                rangePrices[row - start] = store.getRetailPrice(row);
+            }
+            String meterId = store.getField(Constants.METER_ID, start);
+            builder.add(meterId != null && builder.meterIndex.containsKey(meterId) ? null : meterId, minimums, rangePrices);
+        }
+        return builder.build();
+    }
+
+    public int getMeterCount() {
+        return meterStart.length - 1;
+    }
+
+    public int getTierCount(int meter) {
+        return meterStart[meter + 1] - meterStart[meter];
+    }
+
+    /**
+     * Returns the index of the meter registered under a key, or -1
+     */
+    public int indexOf(String key) {
+        Integer index = meterIndex.get(key);
+        return index == null ? -1 : index;
+    }
+
+    /**
+     * Returns the cost of a quantity of a meter
+     * Units below the first tier's minimum are not charged.
+     * @throws IllegalArgumentException if the quantity is negative or not a number
+     */
+    public double cost(int meter, double quantity) {
+        if (!(quantity >= 0)) {
+            throw new IllegalArgumentException("Quantity must not be negative: " + quantity);
+        }
+        return rate(meter, quantity);
+    }
+
+    private double rate(int meter, double quantity) {
+        int start = meterStart[meter];
+        int count = meterStart[meter + 1] - start;
+        if (count == 0 || quantity < breakpoints[start]) {
+            return 0;
+        }
+        // Branch-free lower bound: the last tier whose breakpoint is at or below the quantity
+        int base = start;
+        while (count > 1) {
+            int half = count >>> 1;
+            base = breakpoints[base + half] <= quantity ? base + half : base;
+            count -= half;
+        }
+        return baseCosts[base] + (quantity - breakpoints[base]) * prices[base];
+    }
+
+    /**
+     * Rates many (meter, quantity) pairs into a caller-supplied array, in parallel for large batches
+     * @param meters Meter index of each pair
+     * @param quantities Quantity of each pair
+     * @param costs Receives the cost of each pair
+     * @throws IllegalArgumentException if the arrays differ in length or a quantity is negative
+     */
+    public void costs(int[] meters, double[] quantities, double[] costs) {
+        int n = meters.length;
+        if (quantities.length != n || costs.length != n) {
+            throw new IllegalArgumentException("Expected " + n + " quantities and costs, got " + quantities.length + " and " + costs.length);
+        }
+        int tasks = (n + PAIRS_PER_TASK - 1) / PAIRS_PER_TASK;
+        if (tasks <= 1) {
+            rateRange(meters, quantities, costs, 0, n);
+        } else {
+            IntStream.range(0, tasks).parallel().forEach(t ->
+                    rateRange(meters, quantities, costs, t * PAIRS_PER_TASK, Math.min(n, (t + 1) * PAIRS_PER_TASK)));
+        }
+    }
+
+    private void rateRange(int[] meters, double[] quantities, double[] costs, int from, int to) {
+        for (int i = from; i < to; i++) {
+            double quantity = quantities[i];
+            if (!(quantity >= 0)) {
+                throw new IllegalArgumentException("Quantity " + i + " must not be negative: " + quantity);
+            }
+            costs[i] = rate(meters[i], quantity);
+        }
+    }
+
+    /**
+     * Rates many pairs and returns the sum of their costs
+     */
+    public double totalCost(int[] meters, double[] quantities) {
+        double[] costs = new double[meters.length];
+        costs(meters, quantities, costs);
+        double total = 0;
+        for (double cost : costs) {
+            total += cost;
+        }
+        return total;
+    }
+
+    /**
+     * Appends meters and builds the engine. Arrays grow by doubling and are trimmed by build().
+     */
+    public static class Builder {
+        private int meterCount;
+        private int[] meterStart = new int[17];
+        private int tierCount;
+        private double[] breakpoints = new double[64];
+        private double[] prices = new double[64];
+        private final Map<String, Integer> meterIndex = new HashMap<>();
+
+        /**
+         * Appends a meter's tiers, which need not be sorted
+         * @param key Name to find the meter by with indexOf, or null
+         * @return The meter's index
+         * @throws IllegalArgumentException if the arrays differ in length or a key is repeated
+         */
+        public int add(String key, double[] tierMinimumUnits, double[] tierPrices) {
+            if (tierMinimumUnits.length != tierPrices.length) {
+                throw new IllegalArgumentException("Expected a price per tier: " + tierMinimumUnits.length + " minimums, " + tierPrices.length + " prices");
+            }
+            if (key != null && meterIndex.containsKey(key)) {
+                throw new IllegalArgumentException("Meter already added: " + key);
+            }
+            Integer[] order = new Integer[tierMinimumUnits.length];
+            for (int i = 0; i < order.length; i++) {
+                order[i] = i;
+            }
+            // Stable, so tiers with the same minimum keep their order like parsePriceInfo's sort
+            Arrays.sort(order, (a, b) -> Double.compare(tierMinimumUnits[a], tierMinimumUnits[b]));
+
+            if (tierCount + order.length > breakpoints.length) {
+                int capacity = Math.max(breakpoints.length * 2, tierCount + order.length);
+                breakpoints = Arrays.copyOf(breakpoints, capacity);
+                prices = Arrays.copyOf(prices, capacity);
+            }
+            for (int i : order) {
+                breakpoints[tierCount] = tierMinimumUnits[i];
+                prices[tierCount] = tierPrices[i];
+                tierCount++;
+            }
+            if (meterCount + 1 == meterStart.length) {
+                meterStart = Arrays.copyOf(meterStart, meterStart.length * 2);
+            }
+            int meter = meterCount++;
+            meterStart[meterCount] = tierCount;
+            if (key != null) {
+                meterIndex.put(key, meter);
+            }
+            return meter;
+        }
+
+        /**
+         * Appends a price's tiers, or its original price from zero units if it has none
+         */
+        public int add(String key, PriceInfo priceInfo) {
+            if (!priceInfo.hasTiers()) {
+                return add(key, new double[] { 0 }, new double[] { priceInfo.getOriginalPrice() });
+            }
+            return add(key, priceInfo.getTiers());
+        }
+
+        public int add(String key, List<TierInfo> tiers) {
+            double[] minimums = new double[tiers.size()];
+            double[] tierPrices = new double[tiers.size()];
+            for (int i = 0; i < tiers.size(); i++) {
+                minimums[i] = tiers.get(i).getTierMinimumUnits();
+                tierPrices[i] = tiers.get(i).getRetailPrice();
+            }
+            return add(key, minimums, tierPrices);
+        }
+
+        public int size() {
+            return meterCount;
+        }
+
+        public TieredCostEngine build() {
+            return new TieredCostEngine(this);
+        }
+    }
+}
@@ -0,0 +1,88 @@
+/**
+ * Tests for AdaptiveRateLimiter: additive increase, multiplicative decrease at most once per
+ * second, the rate bounds, Retry-After pauses and the backoff delays.
+ */
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+public class AdaptiveRateLimiterTest {
+    private static AdaptiveRateLimiter limiter(double initialRate, double burst) {
+        return new AdaptiveRateLimiter(initialRate, 0.5, 50, burst, 6, 100, 1000);
+    }
+
+    @Test
+    public void increasesAdditively() {
+        AdaptiveRateLimiter limiter = limiter(10, 5);
+        limiter.onSuccess();
+        assertEquals(10.1, limiter.getCurrentRate(), 1e-9);
+        for (int i = 0; i < 10_000; i++) {
+            limiter.onSuccess();
+        }
+        assertEquals(50, limiter.getCurrentRate(), 1e-9);
+    }
+
+    @Test
+    public void decreasesMultiplicativelyOncePerSecond() {
+        AdaptiveRateLimiter limiter = limiter(16, 5);
+        limiter.onThrottled(-1);
+        assertEquals(8, limiter.getCurrentRate(), 1e-9);
+        // A burst of 429s is one congestion signal
+        limiter.onThrottled(-1);
+        limiter.onThrottled(-1);
+        assertEquals(8, limiter.getCurrentRate(), 1e-9);
+        assertEquals(3, limiter.getThrottledCount());
+    }
+
+    @Test
+    public void neverDecreasesBelowTheMinimum() throws InterruptedException {
+        AdaptiveRateLimiter limiter = new AdaptiveRateLimiter(1, 0.5, 50, 5, 6, 100, 1000);
+        limiter.onThrottled(-1);
+        assertEquals(0.5, limiter.getCurrentRate(), 1e-9);
+        TimeUnit.MILLISECONDS.sleep(1050);
+        limiter.onThrottled(-1);
+        assertEquals(0.5, limiter.getCurrentRate(), 1e-9);
+    }
+
+    @Test
+    public void pausesForRetryAfter() throws InterruptedException {
+        AdaptiveRateLimiter limiter = limiter(1000, 5);
+        limiter.onThrottled(300);
+        long start = System.nanoTime();
+        limiter.acquire();
+        long waitedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        assertTrue(waitedMillis >= 250, "waited " + waitedMillis + " ms");
+    }
+
+    @Test
+    public void spendsTheBurstThenPaces() throws InterruptedException {
+        AdaptiveRateLimiter limiter = limiter(20, 3);
+        long start = System.nanoTime();
+        for (int i = 0; i < 3; i++) {
+            limiter.acquire();
+        }
+        assertTrue(System.nanoTime() - start < TimeUnit.MILLISECONDS.toNanos(40));
+        // The fourth request waits for a token at 20 per second
+        limiter.acquire();
+        assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(40));
+        assertEquals(4, limiter.getRequestCount());
+    }
+
+    @Test
+    public void backsOffExponentiallyWithJitterAndHonorsRetryAfter() {
+        AdaptiveRateLimiter limiter = limiter(10, 5);
+        for (int i = 0; i < 100; i++) {
+            long first = limiter.backoffMillis(1, -1);
+            assertTrue(first >= 50 && first <= 100, "first " + first);
+            long third = limiter.backoffMillis(3, -1);
+            assertTrue(third >= 200 && third <= 400, "third " + third);
+            long capped = limiter.backoffMillis(30, -1);
+            assertTrue(capped >= 500 && capped <= 1000, "capped " + capped);
+        }
+        assertEquals(5000, limiter.backoffMillis(1, 5000));
+        assertEquals(301, limiter.getRetryCount());
+    }
+}
@@ -0,0 +1,180 @@
+/**
+ * Tests BestOptionAggregator against the three-pass calculateBestOptions it replaced, kept here
+ * as the reference: for random option lists with tied rates, fed in list order and in random
+ * interleavings of the three kinds, both must pick the same options.
+ */
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+import org.junit.jupiter.api.Test;
+
+public class BestOptionAggregatorTest {
+    private static final double[] RATES = { 0.05, 0.08, 0.1, 0.1, 0.12, 0.2 };
+    private static final String[] RESERVATION_TERMS = { "1 Year", "3 Years", "5 Years" };
+
+    @Test
+    public void matchesTheThreePassCalculation() {
+        Random random = new Random(42);
+        for (int run = 0; run < 2000; run++) {
+            PricingResult lists = randomLists(random);
+            PricingResult expected = copyLists(lists);
+            calculateBestOptions(expected);
+
+            BestOptionAggregator inOrder = new BestOptionAggregator();
+            lists.getConsumptionPrices().forEach(inOrder::accept);
+            lists.getReservationPrices().forEach(inOrder::accept);
+            lists.getSavingsPlans().forEach(inOrder::accept);
+            assertSameBest(expected, inOrder, "run " + run + " in list order");
+
+            BestOptionAggregator interleaved = new BestOptionAggregator();
+            interleave(lists, random).forEach(interleaved::accept);
+            assertSameBest(expected, interleaved, "run " + run + " interleaved");
+        }
+    }
+
+    @Test
+    public void startsEmpty() {
+        BestOptionAggregator aggregator = new BestOptionAggregator();
+        assertNull(aggregator.getBestOption());
+        assertNull(aggregator.getBestOptionWithoutConsumption());
+        assertEquals(Map.of(), aggregator.getTermWiseBestOptions());
+        assertEquals(0, aggregator.getOptionCount());
+    }
+
+    @Test
+    public void rejectsUnknownOptionKinds() {
+        PricingOption other = new PricingOption() {
+            public String getPricingType() { return "Spot"; }
+            public double getHourlyRate() { return 0.01; }
+            public double getUpfrontCost() { return 0; }
+            public PriceInfo getPriceInfo() { return null; }
+        };
+        assertThrows(IllegalArgumentException.class, () -> new BestOptionAggregator().accept(other));
+    }
+
+    private static void assertSameBest(PricingResult expected, BestOptionAggregator aggregator, String message) {
+        assertEquals(describe(expected.getBestOption()), describe(aggregator.getBestOption()), message);
+        assertEquals(describe(expected.getBestOptionWithoutConsumption()), describe(aggregator.getBestOptionWithoutConsumption()), message);
+        assertEquals(describe(expected.getTermWiseBestOptions()), describe(aggregator.getTermWiseBestOptions()), message);
+    }
+
+    private static PricingResult randomLists(Random random) {
+        PricingResult result = new PricingResult();
+        List<ConsumptionPriceResult> consumption = new ArrayList<>();
+        for (int i = random.nextInt(4); i > 0; i--) {
+            double rate = RATES[random.nextInt(RATES.length)];
+            consumption.add(new ConsumptionPriceResult("Type " + i, new PriceInfo(rate, "1 Hour", rate, null)));
+        }
+        List<ReservationPriceResult> reservations = new ArrayList<>();
+        for (int i = random.nextInt(5); i > 0; i--) {
+            reservations.add(new ReservationPriceResult(RESERVATION_TERMS[random.nextInt(RESERVATION_TERMS.length)],
+                    RATES[random.nextInt(RATES.length)], 100 * i));
+        }
+        List<SavingsPlanResult> plans = new ArrayList<>();
+        for (int i = random.nextInt(5); i > 0; i--) {
+            plans.add(new SavingsPlanResult(random.nextBoolean() ? 1 : 3, RATES[random.nextInt(RATES.length)]));
+        }
+        result.setConsumptionPrices(consumption);
+        result.setReservationPrices(reservations);
+        result.setSavingsPlans(plans);
+        return result;
+    }
+
+    private static PricingResult copyLists(PricingResult lists) {
+        PricingResult copy = new PricingResult();
+        copy.setConsumptionPrices(lists.getConsumptionPrices());
+        copy.setReservationPrices(lists.getReservationPrices());
+        copy.setSavingsPlans(lists.getSavingsPlans());
+        return copy;
+    }
+
+    // Merges the three lists in a random order that keeps each list's own order
+    private static List<PricingOption> interleave(PricingResult lists, Random random) {
+        List<List<? extends PricingOption>> kinds = List.of(lists.getConsumptionPrices(), lists.getReservationPrices(), lists.getSavingsPlans());
+        int[] next = new int[kinds.size()];
+        List<PricingOption> merged = new ArrayList<>();
+        while (true) {
+            List<Integer> open = new ArrayList<>();
+            for (int k = 0; k < kinds.size(); k++) {
+                if (next[k] < kinds.get(k).size()) {
+                    open.add(k);
+                }
+            }
+            if (open.isEmpty()) {
+                return merged;
+            }
+            int k = open.get(random.nextInt(open.size()));
+            merged.add(kinds.get(k).get(next[k]++));
+        }
+    }
+
+    private static String describe(BestOptionResult option) {
+        return option == null ? null : option.getOptionName() + " / " + option.getPricingType() + " / " + option.getPrice();
+    }
+
+    private static Map<String, String> describe(Map<String, BestOptionResult> options) {
+        Map<String, String> described = new TreeMap<>();
+        options.forEach((term, option) -> described.put(term, describe(option)));
+        return described;
+    }
+
+    // The original AzurePricingCalculator.PricingCalculator.calculateBestOptions, before the aggregator
+    private static void calculateBestOptions(PricingResult pricingResult) {
+        double lowestPrice = Double.MAX_VALUE;
+        double lowestPriceWithoutConsumption = Double.MAX_VALUE;
+        BestOptionResult bestOption = null;
+        BestOptionResult bestOptionWithoutConsumption = null;
+        Map<String, BestOptionResult> termWiseBestOptions = new HashMap<>();
+
+        for (ConsumptionPriceResult price : pricingResult.getConsumptionPrices()) {
+            double hourlyRate = price.getHourlyRate();
+            if (hourlyRate < lowestPrice) {
+                lowestPrice = hourlyRate;
+                bestOption = new BestOptionResult(price.getPricingType(), hourlyRate, Constants.Consumption);
+            }
+        }
+
+        for (ReservationPriceResult price : pricingResult.getReservationPrices()) {
+            double hourlyRate = price.getHourlyRate();
+            if (hourlyRate < lowestPrice) {
+                lowestPrice = hourlyRate;
+                bestOption = new BestOptionResult(price.getTerm() + " " + Constants.Reservation, hourlyRate, Constants.Reservation);
+            }
+            if (hourlyRate < lowestPriceWithoutConsumption) {
+                lowestPriceWithoutConsumption = hourlyRate;
+                bestOptionWithoutConsumption = new BestOptionResult(price.getTerm() + " " + Constants.Reservation, hourlyRate, Constants.Reservation);
+            }
+            String term = price.getTerm().split(" ")[0] + " Year";
+            termWiseBestOptions.put(term, new BestOptionResult(term + " " + Constants.Reservation, hourlyRate, Constants.Reservation));
+        }
+
+        for (SavingsPlanResult plan : pricingResult.getSavingsPlans()) {
+            double hourlyRate = plan.getHourlyRate();
+            if (hourlyRate < lowestPrice) {
+                lowestPrice = hourlyRate;
+                bestOption = new BestOptionResult(plan.getTermYears() + " Years " + Constants.Savings_Plan, hourlyRate, Constants.Savings_Plan);
+            }
+            if (hourlyRate < lowestPriceWithoutConsumption) {
+                lowestPriceWithoutConsumption = hourlyRate;
+                bestOptionWithoutConsumption = new BestOptionResult(plan.getTermYears() + " Years " + Constants.Savings_Plan, hourlyRate, Constants.Savings_Plan);
+            }
+            String term = plan.getTermYears() + " Year";
+            BestOptionResult currentBest = termWiseBestOptions.get(term);
+            if (currentBest == null || hourlyRate < currentBest.getPrice()) {
+                termWiseBestOptions.put(term, new BestOptionResult(term + " " + Constants.Savings_Plan, hourlyRate, Constants.Savings_Plan));
+            }
+        }
+
+        pricingResult.setBestOption(bestOption);
+        pricingResult.setBestOptionWithoutConsumption(bestOptionWithoutConsumption);
+        pricingResult.setTermWiseBestOptions(termWiseBestOptions);
+    }
+}
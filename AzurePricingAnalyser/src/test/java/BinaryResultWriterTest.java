@@ -0,0 +1,129 @@
+/**
+ * Round-trip tests for BinaryResultWriter and BinaryResultReader: the results read back must
+ * render to the same JSON as the results written, and damaged streams must be rejected.
+ */
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+public class BinaryResultWriterTest {
+    @Test
+    public void roundTripsResults() throws IOException {
+        PricingResult first = result("eastus", "Standard_D2s_v3", "USD", 0.096);
+        PricingResult second = result("Zürich Nord", "Standard_D2s_v3", null, 0.12);
+        second.setBestOptionWithoutConsumption(null);
+
+        byte[] bytes = writeBinary(first, second);
+        List<String> meterIds = new ArrayList<>();
+        ByteArrayOutputStream json = new ByteArrayOutputStream();
+        try (BinaryResultReader reader = new BinaryResultReader(new ByteArrayInputStream(bytes));
+                JsonResultWriter writer = new JsonResultWriter(json, true)) {
+            PricingResult result;
+            while ((result = reader.read()) != null) {
+                meterIds.add(reader.getMeterId());
+                writer.write(reader.getMeterId(), result);
+            }
+            assertNull(reader.read());
+        }
+        assertEquals(List.of("meter-1", "meter-2"), meterIds);
+        assertEquals(writeJson(first, second), json.toString(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void readsAnEmptyStream() throws IOException {
+        try (BinaryResultReader reader = new BinaryResultReader(new ByteArrayInputStream(new byte[0]))) {
+            assertNull(reader.read());
+        }
+        try (BinaryResultReader reader = new BinaryResultReader(new ByteArrayInputStream(writeBinary()))) {
+            assertNull(reader.read());
+        }
+    }
+
+    @Test
+    public void rejectsTruncatedStreams() throws IOException {
+        byte[] bytes = writeBinary(result("eastus", "Standard_D2s_v3", "USD", 0.096));
+        for (int length = BinaryResultWriter.MAGIC.length + 2; length < bytes.length; length++) {
+            byte[] truncated = Arrays.copyOf(bytes, length);
+            assertThrows(IOException.class, () -> {
+                try (BinaryResultReader reader = new BinaryResultReader(new ByteArrayInputStream(truncated))) {
+                    reader.read();
+                }
+            }, "length " + length);
+        }
+    }
+
+    @Test
+    public void rejectsOtherFormats() {
+        byte[] json = "{\"meterId\":1}".getBytes(StandardCharsets.UTF_8);
+        assertThrows(IOException.class, () -> new BinaryResultReader(new ByteArrayInputStream(json)).read());
+        byte[] version = Arrays.copyOf(BinaryResultWriter.MAGIC, BinaryResultWriter.MAGIC.length + 1);
+        version[version.length - 1] = (byte) (BinaryResultWriter.VERSION + 1);
+        assertThrows(IOException.class, () -> new BinaryResultReader(new ByteArrayInputStream(version)).read());
+    }
+
+    @Test
+    public void writesTheHeaderOnce() throws IOException {
+        byte[] bytes = writeBinary(result("eastus", "a", "USD", 1), result("eastus", "a", "USD", 1));
+        assertArrayEquals(BinaryResultWriter.MAGIC, Arrays.copyOf(bytes, BinaryResultWriter.MAGIC.length));
+        // The second record refers back to the strings of the first, so it is the smaller one
+        byte[] one = writeBinary(result("eastus", "a", "USD", 1));
+        assertTrue(bytes.length - one.length < one.length - BinaryResultWriter.MAGIC.length - 1);
+    }
+
+    private static PricingResult result(String region, String instanceType, String currency, double rate) {
+        PricingResult result = new PricingResult();
+        result.setService("Virtual Machines");
+        result.setRegion(region);
+        result.setInstanceType(instanceType);
+        result.setCurrency(currency);
+        List<TierInfo> tiers = List.of(new TierInfo(0, rate, "1 Hour"), new TierInfo(100, rate / 2, "1 Hour"));
+        ConsumptionPriceResult consumption = new ConsumptionPriceResult(Constants.Consumption, new PriceInfo(rate, "1 Hour", rate, tiers));
+        ConsumptionPriceResult spot = new ConsumptionPriceResult("Spot", new PriceInfo(rate / 5, "1 Hour", rate / 5, null));
+        result.setConsumptionPrices(List.of(consumption, spot));
+        result.setReservationPrices(List.of(new ReservationPriceResult("1 Year", rate * 0.6, 500), new ReservationPriceResult("3 Years", rate * 0.4, 1100)));
+        result.setSavingsPlans(List.of(new SavingsPlanResult(1, rate * 0.7), new SavingsPlanResult(3, rate * 0.5)));
+        result.setBestOption(new BestOptionResult("Spot", rate / 5, Constants.Consumption));
+        result.setBestOptionWithoutConsumption(new BestOptionResult("3 Years Reservation", rate * 0.4, Constants.Reservation));
+        Map<String, BestOptionResult> termWise = new LinkedHashMap<>();
+        termWise.put("1 Year", new BestOptionResult("1 Year Reservation", rate * 0.6, Constants.Reservation));
+        termWise.put("3 Year", new BestOptionResult("3 Year Reservation", rate * 0.4, Constants.Reservation));
+        result.setTermWiseBestOptions(termWise);
+        result.setLookupRoundTrips(1);
+        result.setPriceRoundTrips(3);
+        return result;
+    }
+
+    private static byte[] writeBinary(PricingResult... results) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (BinaryResultWriter writer = new BinaryResultWriter(out)) {
+            for (int i = 0; i < results.length; i++) {
+                writer.write("meter-" + (i + 1), results[i]);
+            }
+        }
+        return out.toByteArray();
+    }
+
+    private static String writeJson(PricingResult... results) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (JsonResultWriter writer = new JsonResultWriter(out, true)) {
+            for (int i = 0; i < results.length; i++) {
+                writer.write("meter-" + (i + 1), results[i]);
+            }
+        }
+        return out.toString(StandardCharsets.UTF_8);
+    }
+}
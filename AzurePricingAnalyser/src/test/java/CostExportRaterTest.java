@@ -0,0 +1,117 @@
+/**
+ * Tests the parallel segment splitting of CostExportRater: for every segment size, the segments
+ * must cover the data lines exactly, end on line boundaries, and parse to the same fields as the
+ * whole file, including quoted fields with commas, doubled quotes and CRLF line endings.
+ */
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class CostExportRaterTest {
+    private static final String HEADER = "MeterId,ResourceLocation,Quantity\n";
+    private static final String LINES =
+            "a1,eastus,1.5\n"
+            + "\"b2\",\"West Europe, NL\",2\r\n"
+            + "c3,\"say \"\"hi\"\", ok\",\"3,25\"\n"
+            + "\n"
+            + "d4,,\n"
+            + "e5,\"\",7";
+
+    @TempDir
+    Path directory;
+
+    @Test
+    public void parsesQuotedFields() {
+        List<List<String>> lines = parse(LINES);
+        assertEquals(5, lines.size());
+        assertEquals(List.of("a1", "eastus", "1.5"), lines.get(0));
+        assertEquals(List.of("b2", "West Europe, NL", "2"), lines.get(1));
+        assertEquals(List.of("c3", "say \"hi\", ok", "3,25"), lines.get(2));
+        assertEquals(List.of("d4", "", ""), lines.get(3));
+        assertEquals(List.of("e5", "", "7"), lines.get(4));
+    }
+
+    @Test
+    public void readsNumbers() {
+        ByteBuffer buffer = ByteBuffer.wrap("x, 2.5 ,,abc\n".getBytes(StandardCharsets.UTF_8));
+        List<Double> numbers = new ArrayList<>();
+        new CostExportRater.Segment(buffer, 0, buffer.limit()).forEachLine(line -> {
+            numbers.add(line.number(1));
+            numbers.add(line.number(2));
+            numbers.add(line.number(3));
+            numbers.add(line.number(9));
+        });
+        assertEquals(List.of(2.5, Double.NaN, Double.NaN, Double.NaN), numbers);
+    }
+
+    @Test
+    public void splitsOnLineBoundariesForEverySegmentSize() throws IOException {
+        Path file = directory.resolve("export.csv");
+        Files.write(file, (HEADER + LINES).getBytes(StandardCharsets.UTF_8));
+        List<List<String>> expected = parse(LINES);
+        long headerEnd = HEADER.length();
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            for (long segmentBytes = 1; segmentBytes <= size; segmentBytes++) {
+                List<long[]> segments = new CostExportRater(1, null, segmentBytes).split(channel, headerEnd, size);
+                List<List<String>> lines = new ArrayList<>();
+                long position = headerEnd;
+                for (long[] segment : segments) {
+                    assertEquals(position, segment[0], "segment bytes " + segmentBytes);
+                    assertTrue(segment[1] > segment[0]);
+                    if (segment[1] < size) {
+                        assertEquals('\n', byteAt(channel, segment[1] - 1), "segment bytes " + segmentBytes);
+                    }
+                    ByteBuffer buffer = ByteBuffer.allocate((int) (segment[1] - segment[0]));
+                    channel.read(buffer, segment[0]);
+                    lines.addAll(parse(buffer));
+                    position = segment[1];
+                }
+                assertEquals(size, position, "segment bytes " + segmentBytes);
+                assertEquals(expected, lines, "segment bytes " + segmentBytes);
+            }
+        }
+    }
+
+    @Test
+    public void rejectsOutOfRangeSegmentSizes() {
+        assertThrows(IllegalArgumentException.class, () -> new CostExportRater(1, null, 0));
+        assertThrows(IllegalArgumentException.class, () -> new CostExportRater(1, null, 1L << 31));
+    }
+
+    private static byte byteAt(FileChannel channel, long position) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(1);
+        channel.read(buffer, position);
+        return buffer.get(0);
+    }
+
+    private static List<List<String>> parse(String text) {
+        return parse(ByteBuffer.wrap(text.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private static List<List<String>> parse(ByteBuffer buffer) {
+        List<List<String>> lines = new ArrayList<>();
+        new CostExportRater.Segment(buffer, 0, buffer.limit()).forEachLine(line -> {
+            List<String> fields = new ArrayList<>();
+            for (int i = 0; i < line.fieldCount(); i++) {
+                fields.add(line.field(i));
+            }
+            lines.add(fields);
+        });
+        return lines;
+    }
+}
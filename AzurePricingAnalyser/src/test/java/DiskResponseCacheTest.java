@@ -0,0 +1,142 @@
+/**
+ * Tests for DiskResponseCache: recovery of the index after a restart, checksums, torn records,
+ * expiry, and the byte budget enforced as segments roll.
+ */
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class DiskResponseCacheTest {
+    private static final long HOUR = TimeUnit.HOURS.toMillis(1);
+    private static final long MB = 1024 * 1024;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    public void recoversTheIndexAfterRestart() throws IOException {
+        long fetchedAt = System.currentTimeMillis() - 1000;
+        try (DiskResponseCache cache = new DiskResponseCache(directory, HOUR, MB, 8 * MB)) {
+            cache.put("a", "first", fetchedAt);
+            cache.put("b", "été", fetchedAt);
+            cache.put("a", "second", fetchedAt + 1);
+        }
+        try (DiskResponseCache cache = new DiskResponseCache(directory, HOUR, MB, 8 * MB)) {
+            assertEquals(2, cache.size());
+            DiskResponseCache.Hit hit = cache.get("a");
+            assertEquals("second", hit.getValue());
+            assertEquals(fetchedAt + 1, hit.getFetchedAtMillis());
+            assertEquals("été", cache.get("b").getValue());
+        }
+    }
+
+    @Test
+    public void rejectsRecordsFailingTheChecksum() throws IOException {
+        try (DiskResponseCache cache = new DiskResponseCache(directory, HOUR, MB, 8 * MB)) {
+            cache.put("a", "payload", System.currentTimeMillis());
+        }
+        Path segment = onlySegment();
+        byte[] bytes = Files.readAllBytes(segment);
+        bytes[bytes.length - 1] ^= 0x20;
+        Files.write(segment, bytes);
+
+        try (DiskResponseCache cache = new DiskResponseCache(directory, HOUR, MB, 8 * MB)) {
+            assertNull(cache.get("a"));
+            assertEquals(0, cache.size());
+        }
+    }
+
+    @Test
+    public void truncatesATornTail() throws IOException {
+        try (DiskResponseCache cache = new DiskResponseCache(directory, HOUR, MB, 8 * MB)) {
+            cache.put("a", "complete", System.currentTimeMillis());
+        }
+        Path segment = onlySegment();
+        long complete = Files.size(segment);
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+            // The start of a header, as if the process died mid-write
+            channel.write(ByteBuffer.wrap(new byte[] { 0x41, 0x50, 0x52, 0x43, 0, 0, 0 }));
+        }
+
+        try (DiskResponseCache cache = new DiskResponseCache(directory, HOUR, MB, 8 * MB)) {
+            assertEquals("complete", cache.get("a").getValue());
+            assertEquals(complete, Files.size(segment));
+            cache.put("b", "appended", System.currentTimeMillis());
+        }
+        try (DiskResponseCache cache = new DiskResponseCache(directory, HOUR, MB, 8 * MB)) {
+            assertEquals("appended", cache.get("b").getValue());
+        }
+    }
+
+    @Test
+    public void expiresRecordsByTheirOriginalFetchTime() throws IOException {
+        try (DiskResponseCache cache = new DiskResponseCache(directory, HOUR, MB, 8 * MB)) {
+            cache.put("old", "v", System.currentTimeMillis() - 2 * HOUR);
+            cache.put("new", "v", System.currentTimeMillis());
+        }
+        try (DiskResponseCache cache = new DiskResponseCache(directory, HOUR, MB, 8 * MB)) {
+            assertNull(cache.get("old"));
+            assertNotNull(cache.get("new"));
+        }
+    }
+
+    @Test
+    public void keepsWithinTheByteBudgetAsSegmentsRoll() throws IOException {
+        String value = "x".repeat(300);
+        try (DiskResponseCache cache = new DiskResponseCache(directory, HOUR, 1000, 3000)) {
+            for (int i = 0; i < 50; i++) {
+                cache.put("k" + i, value, System.currentTimeMillis());
+                // The active segment may run over the budget by at most one segment
+                assertTrue(cache.getDiskBytes() <= 3000 + 1000, "disk bytes " + cache.getDiskBytes());
+            }
+            assertNull(cache.get("k0"));
+            assertEquals(value, cache.get("k49").getValue());
+            try (Stream<Path> files = Files.list(directory)) {
+                assertTrue(files.count() <= 4);
+            }
+        }
+    }
+
+    @Test
+    public void deletesExpiredSegmentsWhenRolling() throws IOException {
+        long stale = System.currentTimeMillis() - 2 * HOUR;
+        try (DiskResponseCache cache = new DiskResponseCache(directory, HOUR, 1000, 100 * MB)) {
+            for (int i = 0; i < 10; i++) {
+                cache.put("old" + i, "y".repeat(400), stale);
+            }
+            cache.put("new", "y".repeat(900), System.currentTimeMillis());
+            cache.put("newer", "y".repeat(900), System.currentTimeMillis());
+            try (Stream<Path> files = Files.list(directory)) {
+                assertEquals(2, files.count());
+            }
+            assertEquals(2, cache.size());
+        }
+    }
+
+    @Test
+    public void rejectsABudgetSmallerThanASegment() {
+        assertThrows(IllegalArgumentException.class, () -> new DiskResponseCache(directory, HOUR, 2000, 1000));
+    }
+
+    private Path onlySegment() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.reduce((a, b) -> {
+                throw new AssertionError("More than one segment");
+            }).orElseThrow();
+        }
+    }
+}
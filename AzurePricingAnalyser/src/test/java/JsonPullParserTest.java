@@ -0,0 +1,154 @@
+/**
+ * Tests for JsonPullParser and PricePageReader: tokens, escapes and numbers, skipping, values
+ * split across reads, and the JSONException raised for malformed input.
+ */
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.json.JSONException;
+import org.junit.jupiter.api.Test;
+
+public class JsonPullParserTest {
+    private static final String PAGE = "{\"BillingCurrency\":\"USD\",\"Items\":["
+            + "{\"currencyCode\":\"USD\",\"retailPrice\":0.096,\"tierMinimumUnits\":0.0,\"armRegionName\":\"eastus\","
+            + "\"location\":\"US East\",\"meterId\":\"m-1\",\"productName\":\"Virtual Machines Dsv3 Series\","
+            + "\"skuName\":\"D2s v3\",\"serviceName\":\"Virtual Machines\",\"unitOfMeasure\":\"1 Hour\",\"type\":\"Consumption\","
+            + "\"armSkuName\":\"Standard_D2s_v3\",\"isPrimaryMeterRegion\":true,\"effectiveStartDate\":\"2020-01-01T00:00:00Z\","
+            + "\"savingsPlan\":[{\"unitPrice\":0.04,\"retailPrice\":0.0441,\"term\":\"3 Years\"},{\"retailPrice\":0.066,\"term\":\"1 Year\"}]},"
+            + "{\"retailPrice\":438,\"type\":\"Reservation\",\"reservationTerm\":\"1 Year\",\"meterId\":\"m-1\",\"extra\":{\"a\":[1,{\"b\":null}]}}"
+            + "],\"NextPageLink\":\"https://prices.azure.com/api/retail/prices?$skip=100\",\"Count\":2}";
+
+    @Test
+    public void readsTokensEscapesAndNumbers() throws IOException {
+        JsonPullParser parser = new JsonPullParser(new StringReader(
+                "{\"s\":\"a\\\"b\\\\c\\/d\\n\\u00e9\",\"n\":[-1.5e2,0,12],\"t\":true,\"f\":false,\"z\":null}"));
+        assertEquals(JsonPullParser.Token.BEGIN_OBJECT, parser.next());
+        assertEquals(JsonPullParser.Token.NAME, parser.next());
+        assertEquals("s", parser.getText());
+        assertEquals(JsonPullParser.Token.STRING, parser.next());
+        assertEquals("a\"b\\c/d\n\u00e9", parser.getStringOrNull());
+        assertEquals(JsonPullParser.Token.NAME, parser.next());
+        assertEquals(JsonPullParser.Token.BEGIN_ARRAY, parser.next());
+        assertEquals(JsonPullParser.Token.NUMBER, parser.next());
+        assertEquals(-150.0, parser.getDouble());
+        assertEquals(JsonPullParser.Token.NUMBER, parser.next());
+        assertEquals(0.0, parser.getDouble());
+        assertEquals(JsonPullParser.Token.NUMBER, parser.next());
+        assertEquals(12.0, parser.getDouble());
+        assertEquals(JsonPullParser.Token.END_ARRAY, parser.next());
+        assertEquals(JsonPullParser.Token.NAME, parser.next());
+        assertEquals(JsonPullParser.Token.TRUE, parser.next());
+        assertEquals(JsonPullParser.Token.NAME, parser.next());
+        assertEquals(JsonPullParser.Token.FALSE, parser.next());
+        assertEquals(JsonPullParser.Token.NAME, parser.next());
+        assertEquals(JsonPullParser.Token.NULL, parser.next());
+        assertNull(parser.getStringOrNull());
+        assertEquals(JsonPullParser.Token.END_OBJECT, parser.next());
+        assertEquals(JsonPullParser.Token.END_DOCUMENT, parser.next());
+    }
+
+    @Test
+    public void skipsNestedValues() throws IOException {
+        JsonPullParser parser = new JsonPullParser(new StringReader("{\"skip\":{\"a\":[1,[2,{\"b\":\"}\"}]]},\"keep\":7}"));
+        parser.next();
+        parser.next();
+        parser.skipValue();
+        assertEquals(JsonPullParser.Token.NAME, parser.next());
+        assertEquals("keep", parser.getText());
+        parser.next();
+        assertEquals(7.0, parser.getDouble());
+    }
+
+    @Test
+    public void readsPageItemsAndNextPageLink() {
+        List<PriceItem> items = new ArrayList<>();
+        String next = PricePageReader.read(PAGE, item -> items.add(item.copy()));
+
+        assertEquals("https://prices.azure.com/api/retail/prices?$skip=100", next);
+        assertEquals(2, items.size());
+        PriceItem vm = items.get(0);
+        assertEquals("m-1", vm.getMeterId());
+        assertEquals("Virtual Machines", vm.getServiceName());
+        assertEquals("Standard_D2s_v3", vm.getArmSkuName());
+        assertEquals("eastus", vm.getArmRegionName());
+        assertEquals("Consumption", vm.getType());
+        assertEquals(0.096, vm.getRetailPrice());
+        assertEquals(2, vm.getSavingsPlanCount());
+        assertEquals("3 Years", vm.getSavingsPlanTerm(0));
+        assertEquals(0.0441, vm.getSavingsPlanRetailPrice(0));
+        assertEquals("1 Year", vm.getSavingsPlanTerm(1));
+
+        PriceItem reservation = items.get(1);
+        assertEquals("Reservation", reservation.getType());
+        assertEquals("1 Year", reservation.getReservationTerm());
+        assertEquals(438.0, reservation.getRetailPrice());
+        assertNull(reservation.getLocation());
+        assertEquals(0, reservation.getSavingsPlanCount());
+    }
+
+    @Test
+    public void readsValuesSplitAcrossReads() throws IOException {
+        List<String> meterIds = new ArrayList<>();
+        String next = PricePageReader.read(new OneCharReader(PAGE), item -> meterIds.add(item.getMeterId()));
+        assertEquals(List.of("m-1", "m-1"), meterIds);
+        assertEquals("https://prices.azure.com/api/retail/prices?$skip=100", next);
+    }
+
+    @Test
+    public void lastPageHasNoNextPageLink() {
+        assertNull(PricePageReader.read("{\"Items\":[],\"NextPageLink\":null}", item -> { }));
+        assertNull(PricePageReader.read("{\"Items\":[]}", item -> { }));
+    }
+
+    @Test
+    public void rejectsMalformedInput() {
+        String[] malformed = {
+            "",
+            "[]",
+            "{\"Items\":[{\"meterId\":\"m-1\"}",
+            "{\"Items\":[{\"meterId\":\"m-1}]}",
+            "{\"Items\":[{\"meterId\" \"m-1\"}]}",
+            "{\"Items\":[{\"meterId\":\"m-1\"} {\"meterId\":\"m-2\"}]}",
+            "{\"Items\":[{\"retailPrice\":tru}]}",
+            "{\"Items\":[{\"retailPrice\":\"cheap\"}]}",
+            "{\"Items\":[{\"meterId\":\"\\x\"}]}",
+            "{\"Items\":[{\"meterId\":\"\\u12G4\"}]}",
+            "{\"Items\":{}}",
+            "{\"Items\":[{\"savingsPlan\":{}}]}",
+            "{\"NextPageLink\":null}",
+        };
+        for (String page : malformed) {
+            assertThrows(JSONException.class, () -> PricePageReader.read(page, item -> { }), page);
+        }
+    }
+
+    // Hands out one character per read, so every value crosses a buffer refill
+    private static class OneCharReader extends Reader {
+        private final String text;
+        private int pos;
+
+        OneCharReader(String text) {
+            this.text = text;
+        }
+
+        @Override
+        public int read(char[] buffer, int offset, int length) {
+            if (pos == text.length()) {
+                return -1;
+            }
+            buffer[offset] = text.charAt(pos++);
+            return 1;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
@@ -0,0 +1,61 @@
+/**
+ * Tests for ODataFilter parsing and canonicalization, and for the canonical keys
+ * PageSummaryCache derives from it.
+ */
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+public class ODataFilterTest {
+    @Test
+    public void parsesEqClausesInOrder() {
+        ODataFilter filter = ODataFilter.parse("serviceName eq 'Virtual Machines' and  armRegionName eq 'eastus'");
+        assertEquals(Map.of("serviceName", "Virtual Machines", "armRegionName", "eastus"), filter.getClauses());
+        assertEquals(List.of("serviceName", "armRegionName"), List.copyOf(filter.getClauses().keySet()));
+        assertEquals("eastus", filter.get("armRegionName"));
+        assertNull(filter.get("location"));
+    }
+
+    @Test
+    public void canonicalFormIgnoresClauseOrder() {
+        String a = ODataFilter.parse("serviceName eq 'Storage' and location eq 'US East' and type eq 'Consumption'").toCanonicalString();
+        String b = ODataFilter.parse("type eq 'Consumption' and serviceName eq 'Storage' and location eq 'US East'").toCanonicalString();
+        assertEquals(a, b);
+        assertEquals("location eq 'US East' and serviceName eq 'Storage' and type eq 'Consumption'", a);
+        assertEquals(a, PageSummaryCache.canonicalKey("type eq 'Consumption' and location eq 'US East' and serviceName eq 'Storage'"));
+    }
+
+    @Test
+    public void keepsEscapedQuotes() {
+        ODataFilter filter = ODataFilter.parse("productName eq 'Azure''s Product'");
+        assertEquals("Azure's Product", filter.get("productName"));
+        assertEquals("productName eq 'Azure''s Product'", filter.toCanonicalString());
+        assertEquals(filter.toCanonicalString(), ODataFilter.parse(filter.toCanonicalString()).toCanonicalString());
+    }
+
+    @Test
+    public void rejectsExpressionsOutsideTheSubset() {
+        String[] unsupported = {
+            "",
+            "serviceName eq 'Storage' or location eq 'US East'",
+            "serviceName ne 'Storage'",
+            "contains(productName, 'Windows')",
+            "serviceName eq Storage",
+            "serviceName eq 'Storage",
+            "serviceName eq 'Storage' and",
+            "serviceName eq 'Storage' and serviceName eq 'Compute'",
+        };
+        for (String filter : unsupported) {
+            assertNull(ODataFilter.parse(filter), filter);
+        }
+    }
+
+    @Test
+    public void unparsableFiltersAreTheirOwnCacheKey() {
+        assertEquals("contains(productName, 'Windows')", PageSummaryCache.canonicalKey("contains(productName, 'Windows')"));
+    }
+}
@@ -0,0 +1,225 @@
+/**
+ * Tests PooledHttpTransport against a local com.sun.net.httpserver stub: gzip decoding, the
+ * request and body timeouts, Retry-After on throttled responses, and the bulkhead that caps the
+ * requests in flight.
+ */
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.http.HttpTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPOutputStream;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+public class PooledHttpTransportTest {
+    private static final String BODY = "{\"Items\":[{\"meterId\":\"m-1\",\"productName\":\"Zürich\"}],\"NextPageLink\":null}";
+
+    private HttpServer server;
+    private ExecutorService handlers;
+    private String base;
+
+    @BeforeEach
+    public void start() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        handlers = Executors.newCachedThreadPool();
+        server.setExecutor(handlers);
+        server.start();
+        base = "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    @AfterEach
+    public void stop() {
+        server.stop(0);
+        handlers.shutdownNow();
+    }
+
+    @Test
+    public void decodesGzipAndPlainBodies() throws IOException {
+        server.createContext("/gzip", exchange -> {
+            ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+            try (GZIPOutputStream gzip = new GZIPOutputStream(compressed)) {
+                gzip.write(BODY.getBytes(StandardCharsets.UTF_8));
+            }
+            boolean accepted = "gzip".equals(exchange.getRequestHeaders().getFirst("Accept-Encoding"));
+            exchange.getResponseHeaders().set("Content-Encoding", "gzip");
+            send(exchange, 200, accepted ? compressed.toByteArray() : new byte[0]);
+        });
+        server.createContext("/plain", exchange -> send(exchange, 200, BODY.getBytes(StandardCharsets.UTF_8)));
+
+        PooledHttpTransport transport = new PooledHttpTransport(1000, 5000, 4, false);
+        assertEquals(BODY, transport.get(base + "/gzip"));
+        assertEquals(BODY, transport.get(base + "/plain"));
+        // A reader that stops early still leaves the slot free
+        Integer first = transport.get(base + "/gzip", body -> body.read());
+        assertEquals('{', first.intValue());
+        assertEquals(4, transport.getAvailableRequestSlots());
+    }
+
+    @Test
+    public void timesOutWaitingForTheResponse() {
+        server.createContext("/slow", exchange -> {
+            sleep(2000);
+            send(exchange, 200, BODY.getBytes(StandardCharsets.UTF_8));
+        });
+        PooledHttpTransport transport = new PooledHttpTransport(1000, 200, 4, false);
+        long start = System.nanoTime();
+        assertThrows(HttpTimeoutException.class, () -> transport.get(base + "/slow"));
+        assertTrue(System.nanoTime() - start < TimeUnit.MILLISECONDS.toNanos(1500));
+        assertEquals(4, transport.getAvailableRequestSlots());
+    }
+
+    @Test
+    public void timesOutWhenTheBodyStalls() {
+        server.createContext("/stall", exchange -> {
+            exchange.sendResponseHeaders(200, 0);
+            OutputStream out = exchange.getResponseBody();
+            out.write("{\"Items\":[".getBytes(StandardCharsets.UTF_8));
+            out.flush();
+            sleep(2000);
+            exchange.close();
+        });
+        PooledHttpTransport transport = new PooledHttpTransport(1000, 200, 4, false);
+        long start = System.nanoTime();
+        assertThrows(HttpTimeoutException.class, () -> transport.get(base + "/stall"));
+        assertTrue(System.nanoTime() - start < TimeUnit.MILLISECONDS.toNanos(1500));
+    }
+
+    @Test
+    public void reportsStatusAndRetryAfter() throws IOException {
+        server.createContext("/throttled", exchange -> {
+            exchange.getResponseHeaders().set("Retry-After", "7");
+            send(exchange, 429, "slow down".getBytes(StandardCharsets.UTF_8));
+        });
+        server.createContext("/missing", exchange -> send(exchange, 404, new byte[0]));
+
+        PooledHttpTransport transport = new PooledHttpTransport(1000, 5000, 4, false);
+        HttpStatusException throttled = assertThrows(HttpStatusException.class, () -> transport.get(base + "/throttled"));
+        assertEquals(429, throttled.getStatusCode());
+        assertEquals(7000, throttled.getRetryAfterMillis());
+        HttpStatusException missing = assertThrows(HttpStatusException.class, () -> transport.get(base + "/missing"));
+        assertEquals(404, missing.getStatusCode());
+        assertEquals(-1, missing.getRetryAfterMillis());
+        assertEquals(4, transport.getAvailableRequestSlots());
+    }
+
+    @Test
+    public void parsesRetryAfterDates() {
+        String inTenSeconds = DateTimeFormatter.RFC_1123_DATE_TIME.format(ZonedDateTime.now().plusSeconds(10));
+        long delay = PooledHttpTransport.parseRetryAfter(inTenSeconds);
+        assertTrue(delay > 8000 && delay <= 10000, "delay " + delay);
+        assertEquals(0, PooledHttpTransport.parseRetryAfter("Thu, 01 Jan 1970 00:00:00 GMT"));
+        assertEquals(-1, PooledHttpTransport.parseRetryAfter("soon"));
+        assertEquals(-1, PooledHttpTransport.parseRetryAfter(null));
+    }
+
+    @Test
+    public void capsTheRequestsInFlight() throws Exception {
+        AtomicInteger inFlight = new AtomicInteger();
+        AtomicInteger maxInFlight = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+        server.createContext("/held", exchange -> {
+            maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+            try {
+                release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            inFlight.decrementAndGet();
+            send(exchange, 200, BODY.getBytes(StandardCharsets.UTF_8));
+        });
+
+        PooledHttpTransport transport = new PooledHttpTransport(1000, 5000, 2, false);
+        ExecutorService callers = Executors.newFixedThreadPool(6);
+        try {
+            List<Future<String>> results = new ArrayList<>();
+            for (int i = 0; i < 6; i++) {
+                results.add(callers.submit(() -> transport.get(base + "/held")));
+            }
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (inFlight.get() < 2 && System.nanoTime() < deadline) {
+                Thread.sleep(10);
+            }
+            Thread.sleep(200);
+            assertEquals(2, inFlight.get());
+            assertEquals(0, transport.getAvailableRequestSlots());
+
+            release.countDown();
+            for (Future<String> result : results) {
+                assertEquals(BODY, result.get(5, TimeUnit.SECONDS));
+            }
+            assertEquals(2, maxInFlight.get());
+            assertEquals(2, transport.getAvailableRequestSlots());
+        } finally {
+            release.countDown();
+            callers.shutdownNow();
+        }
+    }
+
+    @Test
+    public void failsWhenNoSlotFreesInTime() throws Exception {
+        server.createContext("/plain", exchange -> send(exchange, 200, BODY.getBytes(StandardCharsets.UTF_8)));
+        CountDownLatch reading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        PooledHttpTransport transport = new PooledHttpTransport(1000, 300, 1, false);
+        ExecutorService callers = Executors.newSingleThreadExecutor();
+        try {
+            // The holder keeps its slot while its reader waits
+            Future<String> holder = callers.submit(() -> transport.get(base + "/plain", body -> {
+                reading.countDown();
+                try {
+                    release.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return HttpTransport.readFully(body);
+            }));
+            assertTrue(reading.await(5, TimeUnit.SECONDS));
+            IOException waited = assertThrows(IOException.class, () -> transport.get(base + "/plain"));
+            assertTrue(waited.getMessage().contains("free request slot"), waited.getMessage());
+
+            release.countDown();
+            assertEquals(BODY, holder.get(5, TimeUnit.SECONDS));
+            assertEquals(BODY, transport.get(base + "/plain"));
+        } finally {
+            release.countDown();
+            callers.shutdownNow();
+        }
+    }
+
+    private static void send(HttpExchange exchange, int status, byte[] body) throws IOException {
+        exchange.sendResponseHeaders(status, body.length == 0 ? -1 : body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,99 @@
+/**
+ * Tests for PriceCatalog: which filters it answers, and that its answers match the API's
+ * case-insensitive eq on indexed and unindexed fields. The catalog is ingested from a canned
+ * page through a stub HttpTransport.
+ */
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class PriceCatalogTest {
+    private static final String PAGE = "{\"Items\":["
+            + item("s-1", "Storage", "Premium SSD Managed Disks", "P10 LRS", "eastus", "US East", "Consumption", 19.71)
+            + "," + item("s-1", "Storage", "Premium SSD Managed Disks", "P10 LRS", "EastUS", "US East", "Reservation", 100.0)
+            + "," + item("s-2", "Storage", "Premium SSD Managed Disks", "P20 LRS", "westus", "US West", "Consumption", 38.02)
+            + "," + item("s-3", "Storage", "Blob Storage", "Hot LRS", "eastus", "US East", "Consumption", 0.0184)
+            + "],\"NextPageLink\":null}";
+
+    private HttpTransport previousTransport;
+    private PriceCatalog catalog;
+
+    @BeforeEach
+    public void ingest() throws Exception {
+        previousTransport = ApiClient.getTransport();
+        ApiClient.setTransport(new HttpTransport() {
+            @Override
+            public <T> T get(String url, BodyReader<T> reader) throws java.io.IOException {
+                return reader.read(new StringReader(PAGE));
+            }
+        });
+        catalog = new PriceCatalog();
+        catalog.ingest(List.of("Storage"));
+    }
+
+    @AfterEach
+    public void restoreTransport() {
+        ApiClient.setTransport(previousTransport);
+    }
+
+    @Test
+    public void answersOnlyFiltersItCovers() {
+        assertEquals(4, catalog.size());
+        assertEquals(4, catalog.query("serviceName eq 'Storage'").size());
+        assertEquals(4, catalog.query("serviceName eq 'storage'").size());
+        assertEquals(2, catalog.query("meterId eq 's-1'").size());
+        // A meter ID is answerable only once its service is ingested
+        assertNull(catalog.query("meterId eq 'unknown'"));
+        assertNull(catalog.query("serviceName eq 'Virtual Machines'"));
+        assertNull(catalog.query("serviceName eq 'Storage' or type eq 'Consumption'"));
+    }
+
+    @Test
+    public void matchesValuesCaseInsensitively() {
+        assertEquals(List.of("s-1", "s-1", "s-3"), meterIds(catalog.query("serviceName eq 'Storage' and armRegionName eq 'eastus'")));
+        assertEquals(List.of("s-1", "s-1", "s-3"), meterIds(catalog.query("serviceName eq 'Storage' and armRegionName eq 'EASTUS'")));
+        assertEquals(List.of("s-2"), meterIds(catalog.query("serviceName eq 'Storage' and location eq 'us west'")));
+    }
+
+    @Test
+    public void intersectsIndexedAndUnindexedClauses() {
+        assertEquals(List.of("s-1"), meterIds(catalog.query(
+                "serviceName eq 'Storage' and productName eq 'Premium SSD Managed Disks' and type eq 'Consumption' and armRegionName eq 'eastus'")));
+        // skuName has no index, so it is checked row by row
+        assertEquals(List.of("s-2"), meterIds(catalog.query("serviceName eq 'Storage' and skuName eq 'p20 lrs'")));
+        assertEquals(List.of(), meterIds(catalog.query("serviceName eq 'Storage' and skuName eq 'P30 LRS'")));
+    }
+
+    @Test
+    public void readsRowsBackInIngestOrder() {
+        PriceCatalog.Selection rows = catalog.query("meterId eq 's-1'");
+        PriceItem item = rows.read(1, new PriceItem());
+        assertEquals("Reservation", item.getType());
+        assertEquals("EastUS", item.getArmRegionName());
+        assertEquals(100.0, item.getRetailPrice());
+    }
+
+    private static List<String> meterIds(PriceCatalog.Selection rows) {
+        List<String> ids = new ArrayList<>();
+        PriceItem item = new PriceItem();
+        for (int i = 0; i < rows.size(); i++) {
+            ids.add(rows.read(i, item).getMeterId());
+        }
+        return ids;
+    }
+
+    private static String item(String meterId, String service, String product, String sku, String armRegion,
+                               String location, String type, double price) {
+        return "{\"currencyCode\":\"USD\",\"meterId\":\"" + meterId + "\",\"serviceName\":\"" + service
+                + "\",\"productName\":\"" + product + "\",\"skuName\":\"" + sku + "\",\"armRegionName\":\"" + armRegion
+                + "\",\"location\":\"" + location + "\",\"type\":\"" + type + "\",\"unitOfMeasure\":\"1/Month\",\"retailPrice\":"
+                + price + ",\"tierMinimumUnits\":0.0}";
+    }
+}
@@ -0,0 +1,139 @@
+/**
+ * Tests for ResponseCache: expiry, LRU eviction by weight, compressed entries, and single
+ * loading of a missing key.
+ */
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+public class ResponseCacheTest {
+    private static final long HOUR = TimeUnit.HOURS.toMillis(1);
+
+    @Test
+    public void expiresEntriesByFetchTime() {
+        ResponseCache cache = new ResponseCache(1 << 20, HOUR, false);
+        long now = System.currentTimeMillis();
+        cache.put("fresh", "a", now);
+        cache.put("stale", "b", now - HOUR);
+
+        assertEquals("a", cache.getIfPresent("fresh"));
+        assertNull(cache.getIfPresent("stale"));
+        assertEquals(1, cache.getExpirationCount());
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    public void reloadsExpiredEntries() {
+        ResponseCache cache = new ResponseCache(1 << 20, HOUR, false);
+        cache.put("k", "old", System.currentTimeMillis() - HOUR);
+        assertEquals("new", cache.get("k", key -> "new"));
+        assertEquals("new", cache.getIfPresent("k"));
+        assertEquals(1, cache.getMissCount());
+    }
+
+    @Test
+    public void evictsLeastRecentlyUsedOverBudget() {
+        String value = "x".repeat(500);
+        // Each entry weighs 96 + 2 * 1 + 500 = 598 bytes, so two fit
+        ResponseCache cache = new ResponseCache(1300, HOUR, false);
+        long now = System.currentTimeMillis();
+        cache.put("a", value, now);
+        cache.put("b", value, now);
+        cache.getIfPresent("a");
+        cache.put("c", value, now);
+
+        assertNotNull(cache.getIfPresent("a"));
+        assertNull(cache.getIfPresent("b"));
+        assertNotNull(cache.getIfPresent("c"));
+        assertEquals(1, cache.getEvictionCount());
+        assertEquals(2 * 598, cache.getWeightBytes());
+    }
+
+    @Test
+    public void skipsValuesLargerThanTheBudget() {
+        ResponseCache cache = new ResponseCache(1000, HOUR, false);
+        cache.put("big", "x".repeat(2000), System.currentTimeMillis());
+        assertNull(cache.getIfPresent("big"));
+        assertEquals(0, cache.getWeightBytes());
+    }
+
+    @Test
+    public void returnsTheStoredStringOnAHit() {
+        ResponseCache cache = new ResponseCache(1 << 20, HOUR, false);
+        String value = "{\"Items\":[]}";
+        cache.put("k", value, System.currentTimeMillis());
+        assertSame(value, cache.getIfPresent("k"));
+    }
+
+    @Test
+    public void compressedEntriesRoundTrip() {
+        ResponseCache cache = new ResponseCache(1 << 20, HOUR, true);
+        String value = "{\"Items\":[{\"location\":\"Europe Ouest é\"}]}".repeat(100);
+        cache.put("k", value, System.currentTimeMillis());
+        assertEquals(value, cache.getIfPresent("k"));
+        // Repetitive JSON compresses well below its length
+        assertEquals(true, cache.getWeightBytes() < value.length());
+    }
+
+    @Test
+    public void concurrentMissesShareOneLoad() throws Exception {
+        ResponseCache cache = new ResponseCache(1 << 20, HOUR, false);
+        AtomicInteger loads = new AtomicInteger();
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<String>> results = new ArrayList<>();
+            results.add(pool.submit(() -> cache.get("k", key -> {
+                loads.incrementAndGet();
+                loading.countDown();
+                await(release);
+                return "v";
+            })));
+            loading.await();
+            for (int i = 0; i < 3; i++) {
+                results.add(pool.submit(() -> cache.get("k", key -> {
+                    loads.incrementAndGet();
+                    return "other";
+                })));
+            }
+            release.countDown();
+            for (Future<String> result : results) {
+                assertEquals("v", result.get(5, TimeUnit.SECONDS));
+            }
+            assertEquals(1, loads.get());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    public void failedLoadsAreNotCached() {
+        ResponseCache cache = new ResponseCache(1 << 20, HOUR, false);
+        assertThrows(IllegalStateException.class, () -> cache.get("k", key -> {
+            throw new IllegalStateException("down");
+        }));
+        assertEquals("v", cache.get("k", key -> "v"));
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}